@@ -10,6 +10,7 @@ import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 import lombok.extern.slf4j.Slf4j;
 import java.net.*;
+import java.time.*;
 
 /**
  * Implementación del delegate de la API de cuentas.
@@ -34,19 +35,33 @@ public class AccountApiDelegateImpl implements ApiApiDelegate {
 
   @Override
   public Mono<ResponseEntity<InlineResponse200>> listAccounts(
-      ServerWebExchange exchange) {
-    log.info("Listando todas las cuentas");
-    return service.listAccounts()
-        .collectList()
-        .map(list -> new InlineResponse200().items(list))
+      Integer limit, String cursor, String accountType, Boolean active,
+      LocalDate creationDateFrom, LocalDate creationDateTo, ServerWebExchange exchange) {
+    log.info("Listando cuentas (limit={}, accountType={}, active={})", limit, accountType, active);
+    return service.listAccountsPage(limit, cursor, accountType, active, creationDateFrom, creationDateTo)
         .map(ResponseEntity::ok);
   }
 
+  // Sin collectList: cada cuenta se escribe (NDJSON/SSE) según la demanda del cliente
+  @Override
+  public Mono<ResponseEntity<Flux<AccountResponse>>> streamAccounts(
+      ServerWebExchange exchange) {
+    log.info("Listando todas las cuentas en streaming");
+    return Mono.just(ResponseEntity.ok(service.listAccounts()));
+  }
+
+  @Override
+  public Mono<ResponseEntity<Flux<AccountResponse>>> streamAccountEvents(
+      ServerWebExchange exchange) {
+    log.info("Listando todas las cuentas en streaming (SSE)");
+    return Mono.just(ResponseEntity.ok(service.listAccounts()));
+  }
+
   @Override
   public Mono<ResponseEntity<AccountResponse>> getAccountById(
-      String id, ServerWebExchange exchange) {
+      String id, String fields, ServerWebExchange exchange) {
     log.info("Obteniendo cuentas por id: {}", id);
-    return service.getAccountById(id).map(ResponseEntity::ok);
+    return service.getAccountById(id, fields).map(ResponseEntity::ok);
   }
 
   @Override
@@ -83,11 +98,27 @@ public class AccountApiDelegateImpl implements ApiApiDelegate {
         .map(ResponseEntity::ok);
   }
 
+  @Override
+  public Mono<ResponseEntity<BalanceOperationBatchResponse>> applyBalanceOperationsBatch(
+      Mono<BalanceOperationBatchRequest> balanceOperationBatchRequest, ServerWebExchange exchange) {
+    log.info("Aplicando lote de operaciones de balance");
+    return balanceOperationBatchRequest
+        .flatMap(service::applyBalanceOperationsBatch)
+        .map(ResponseEntity::ok);
+  }
+
+  @Override
+  public Mono<ResponseEntity<Flux<AccountMovement>>> listAccountMovements(
+      String id, String cursor, Integer limit, ServerWebExchange exchange) {
+    log.info("Listando movimientos de cuenta por id: {}", id);
+    return Mono.just(ResponseEntity.ok(service.listAccountMovements(id, cursor, limit)));
+  }
+
   @Override
   public Mono<ResponseEntity<Flux<AccountResponse>>> listAccountsByHolderDocument(
-      String document, ServerWebExchange exchange) {
+      String document, String fields, ServerWebExchange exchange) {
     log.info("obteneniendo cuentas por documento del titular: {}", document);
-    return service.getAccountsByHolderDocument(document)
+    return service.getAccountsByHolderDocument(document, fields)
         .collectList()
         .map(list -> list.isEmpty()
             ? ResponseEntity.status(404).body(Flux.empty())
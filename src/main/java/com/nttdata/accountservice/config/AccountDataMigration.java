@@ -0,0 +1,133 @@
+package com.nttdata.accountservice.config;
+
+import com.mongodb.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.service.balance.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.bson.Document;
+import org.bson.types.*;
+import org.springframework.boot.context.event.*;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.math.*;
+import java.util.*;
+
+/**
+ * Migración de cuentas anteriores al motor atómico de saldos, al iniciar:
+ * <ul>
+ *   <li>Importes String a Decimal128 con $toDecimal (el mapeo por defecto escribía los
+ *   BigDecimal como String, y sobre un String no funcionan ni $inc ni $gte). El motor de
+ *   saldos convierte también la cuenta que opera si aún no se migró.</li>
+ *   <li>opIds heredado copiado a balance_operations y luego eliminado de la cuenta. Hasta
+ *   entonces el motor y el lote siguen excluyendo esas operaciones en su filtro.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AccountDataMigration {
+
+  public static final String LEGACY_OP_IDS = "opIds";
+  static final List<String> MONEY_FIELDS = List.of(
+      "balance", "interestRate", "maintenanceFee", "commissionFee", "earlyWithdrawalPenalty");
+  // Código de error de Mongo al aplicar $inc sobre un valor no numérico
+  private static final int TYPE_MISMATCH = 14;
+  private static final int BSON_STRING = 2;
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BalanceIdempotencyStore idempotencyStore;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateOnStartup() {
+    migrateMoney()
+        .doOnNext(migrated -> {
+          if (migrated > 0) log.info("Importes de {} cuentas convertidos a Decimal128", migrated);
+        })
+        // los importes ya convertidos se copian tal cual en las respuestas del registro
+        .then(backfillOperationIds())
+        .subscribe(
+            migrated -> {
+              if (migrated > 0) log.info("opIds heredado de {} cuentas copiado a balance_operations", migrated);
+            },
+            ex -> log.warn("No se pudo migrar las cuentas heredadas: {}", ex.getMessage()));
+  }
+
+  /**
+   * Convierte los importes String de todas las cuentas; devuelve las cuentas modificadas.
+   */
+  public Mono<Long> migrateMoney() {
+    return mongoTemplate.updateMulti(new Query(stringMoney()), toDecimal(), Account.class)
+        .map(result -> result.getModifiedCount());
+  }
+
+  /**
+   * Convierte los importes String de una cuenta; true si tenía alguno.
+   */
+  public Mono<Boolean> migrateMoney(String accountId) {
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(accountId).andOperator(stringMoney())),
+            toDecimal(), Account.class)
+        .map(result -> result.getModifiedCount() > 0);
+  }
+
+  /**
+   * Copia el opIds heredado de cada cuenta a balance_operations y lo elimina de la cuenta;
+   * devuelve las cuentas migradas.
+   */
+  public Mono<Long> backfillOperationIds() {
+    Query query = new Query(Criteria.where(LEGACY_OP_IDS).exists(true));
+    query.fields().include(LEGACY_OP_IDS).include("balance");
+    return mongoTemplate.find(query, Document.class, mongoTemplate.getCollectionName(Account.class))
+        .concatMap(doc -> {
+          String accountId = doc.get("_id") instanceof ObjectId
+              ? doc.getObjectId("_id").toHexString() : String.valueOf(doc.get("_id"));
+          List<String> operationIds = doc.getList(LEGACY_OP_IDS, String.class, List.of());
+          BigDecimal balance = mongoTemplate.getConverter().read(Account.class, doc).getBalance();
+          // Registro antes de eliminar opIds: si se corta entre ambos, repetir la copia no cambia nada
+          return idempotencyStore.backfill(accountId, operationIds, balance)
+              .then(mongoTemplate.updateFirst(new Query(Criteria.where("id").is(accountId)),
+                  new Update().unset(LEGACY_OP_IDS), Account.class));
+        })
+        .count();
+  }
+
+  /**
+   * true si el documento sin mapear aún guarda algún importe como String.
+   */
+  public static boolean hasStringMoney(Document doc) {
+    return MONEY_FIELDS.stream().anyMatch(field -> doc.get(field) instanceof String);
+  }
+
+  public static boolean isTypeMismatch(Throwable ex) {
+    for (Throwable t = ex; t != null; t = t.getCause()) {
+      if (t instanceof MongoServerException && ((MongoServerException) t).getCode() == TYPE_MISMATCH) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // ===== Helpers =====
+
+  private static Criteria stringMoney() {
+    return new Criteria().orOperator(MONEY_FIELDS.stream()
+        .map(field -> Criteria.where(field).type(BSON_STRING))
+        .toArray(Criteria[]::new));
+  }
+
+  // Un solo $set por pipeline: cada campo String pasa a Decimal128, el resto queda igual
+  private static AggregationUpdate toDecimal() {
+    Document set = new Document();
+    MONEY_FIELDS.forEach(field -> set.append(field, new Document("$cond", List.of(
+        new Document("$eq", List.of(new Document("$type", "$" + field), "string")),
+        new Document("$toDecimal", "$" + field),
+        "$" + field))));
+    return AggregationUpdate.from(List.<AggregationOperation>of(context -> new Document("$set", set)));
+  }
+}
@@ -0,0 +1,27 @@
+package com.nttdata.accountservice.config;
+
+import com.fasterxml.jackson.annotation.*;
+import com.fasterxml.jackson.databind.ser.impl.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.service.impl.*;
+import org.springframework.boot.autoconfigure.jackson.*;
+import org.springframework.context.annotation.*;
+
+/**
+ * Serialización de respuestas parciales de cuenta (?fields=): AccountResponse lleva el
+ * filtro de {@link AccountFields}, que solo omite campos en las respuestas parciales.
+ */
+@Configuration
+public class AccountFieldsConfig {
+
+  @Bean
+  public Jackson2ObjectMapperBuilderCustomizer accountFieldsFilter() {
+    return builder -> builder
+        .mixIn(AccountResponse.class, AccountResponseFields.class)
+        .filters(new SimpleFilterProvider().addFilter(AccountFields.FILTER_ID, AccountFields.filter()));
+  }
+
+  @JsonFilter(AccountFields.FILTER_ID)
+  interface AccountResponseFields {
+  }
+}
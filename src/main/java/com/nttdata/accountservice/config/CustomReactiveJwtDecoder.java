@@ -1,42 +1,197 @@
 package com.nttdata.accountservice.config;
 
 
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.security.oauth2.jwt.*;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+/**
+ * Decodificador JWT multi-emisor. Mantiene un decoder por emisor permitido, cada uno con
+ * su JWKS en caché, y elige el decoder por el claim {@code iss} (sin verificar) del token:
+ * una sola verificación de firma por petición. El JWKS de un emisor es
+ * {@code <issuer>/protocol/openid-connect/certs} salvo que {@code app.auth.jwks.uris} indique
+ * otro ({@code issuer=uri,...}); los emisores con la misma URI (alias del mismo realm, p. ej.
+ * localhost y el nombre del contenedor) comparten una sola caché. La descarga del JWKS está
+ * acotada por {@code app.auth.jwks.timeout}; si falla o vence, se sigue usando el JWKS en caché.
+ */
+@Slf4j
 @Component
 public class CustomReactiveJwtDecoder implements ReactiveJwtDecoder {
 
-  private final List<String> allowedIssuers;
+  private final Map<String, ReactiveJwtDecoder> decoders = new LinkedHashMap<>();
 
-  public CustomReactiveJwtDecoder(@Value("${app.auth.allowed-issuers}") String issuers) {
-    this.allowedIssuers = Arrays.asList(issuers.split(","));
+  public CustomReactiveJwtDecoder(@Value("${app.auth.allowed-issuers}") String issuers,
+                                  @Value("${app.auth.jwks.uris:}") String jwksUris,
+                                  @Value("${app.auth.jwks.min-refresh-interval:PT30S}") Duration minRefreshInterval,
+                                  @Value("${app.auth.jwks.max-age:PT10M}") Duration maxAge,
+                                  @Value("${app.auth.jwks.timeout:PT3S}") Duration timeout) {
+    WebClient webClient = WebClient.builder()
+        .clientConnector(new ReactorClientHttpConnector(HttpClient.create()
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) timeout.toMillis())
+            .responseTimeout(timeout)))
+        .build();
+    Map<String, String> uris = parseJwksUris(jwksUris);
+    Map<String, JwkSetCache> caches = new HashMap<>();
+    split(issuers).forEach(issuer -> {
+      String uri = uris.getOrDefault(issuer, issuer + "/protocol/openid-connect/certs");
+      JwkSetCache jwkSet = caches.computeIfAbsent(uri,
+          u -> new JwkSetCache(webClient, u, minRefreshInterval, maxAge, timeout));
+      decoders.put(issuer, issuerDecoder(issuer, jwkSet));
+    });
+    uris.keySet().stream()
+        .filter(issuer -> !decoders.containsKey(issuer))
+        .forEach(issuer -> log.warn("app.auth.jwks.uris: {} no está en app.auth.allowed-issuers", issuer));
   }
 
   @Override
   public Mono<Jwt> decode(String token) throws JwtException {
-    return tryDecodeWithIssuers(token, 0);
+    String issuer;
+    try {
+      issuer = JWTParser.parse(token).getJWTClaimsSet().getIssuer();
+    } catch (ParseException e) {
+      return Mono.error(new BadJwtException("Token JWT mal formado", e));
+    }
+    ReactiveJwtDecoder decoder = issuer == null ? null : decoders.get(issuer);
+    if (decoder == null) {
+      return Mono.error(new BadJwtException("Emisor no permitido: " + issuer));
+    }
+    return decoder.decode(token);
   }
 
-  private Mono<Jwt> tryDecodeWithIssuers(String token, int index) {
-    if (index >= allowedIssuers.size()) {
-      return Mono.error(new JwtValidationException("No valid issuer found for token", null));
+  private static ReactiveJwtDecoder issuerDecoder(String issuer, JwkSetCache jwkSet) {
+    NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSet::select).build();
+    // el emisor del token debe coincidir con el del decoder elegido
+    decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuer));
+    return decoder;
+  }
+
+  private static List<String> split(String value) {
+    return Arrays.stream(value.split(","))
+        .map(String::trim)
+        .filter(item -> !item.isEmpty())
+        .collect(Collectors.toList());
+  }
+
+  // "issuer=uri,issuer=uri": la URI del emisor se separa por el primer '='
+  private static Map<String, String> parseJwksUris(String value) {
+    Map<String, String> uris = new LinkedHashMap<>();
+    for (String entry : split(value == null ? "" : value)) {
+      int eq = entry.indexOf('=');
+      if (eq <= 0 || eq == entry.length() - 1) {
+        throw new IllegalArgumentException("app.auth.jwks.uris inválido: " + entry);
+      }
+      uris.put(entry.substring(0, eq).trim(), entry.substring(eq + 1).trim());
     }
+    return uris;
+  }
 
-    String issuer = allowedIssuers.get(index);
-    NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
-        .withJwkSetUri(issuer + "/protocol/openid-connect/certs")
-        .build();
+  /**
+   * JWKS de un emisor en memoria. Se recarga al superar {@code maxAge} o ante un kid
+   * desconocido (rotación de claves), como mucho una vez por {@code minRefreshInterval};
+   * las recargas simultáneas comparten la misma petición. Una recarga fallida o que supera
+   * {@code timeout} devuelve el JWKS que ya había.
+   */
+  private static final class JwkSetCache {
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration minRefreshInterval;
+    private final Duration maxAge;
+    private final Duration timeout;
 
-    return decoder.decode(token)
-        .onErrorResume(JwtException.class, e -> {
-          // Intentar con el siguiente issuer
-          return tryDecodeWithIssuers(token, index + 1);
-        });
+    private volatile JWKSet jwkSet;
+    private volatile Instant fetchedAt = Instant.EPOCH;
+    private Instant lastAttempt = Instant.EPOCH;
+    private Mono<JWKSet> inflight;
+
+    JwkSetCache(WebClient webClient, String jwkSetUri, Duration minRefreshInterval,
+                Duration maxAge, Duration timeout) {
+      this.webClient = webClient;
+      this.jwkSetUri = jwkSetUri;
+      this.minRefreshInterval = minRefreshInterval;
+      this.maxAge = maxAge;
+      this.timeout = timeout;
+    }
+
+    Flux<JWK> select(SignedJWT jwt) {
+      JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+      JWKSet current = jwkSet;
+      Mono<JWKSet> source = current == null || olderThan(fetchedAt, maxAge)
+          ? refresh()
+          : Mono.just(current);
+      return source.flatMapMany(set -> {
+        List<JWK> keys = selector.select(set);
+        if (!keys.isEmpty()) return Flux.fromIterable(keys);
+        // kid desconocido: puede que el emisor haya rotado sus claves
+        return refresh().flatMapIterable(selector::select);
+      });
+    }
+
+    private synchronized Mono<JWKSet> refresh() {
+      if (inflight != null) return inflight;
+      JWKSet current = jwkSet;
+      if (!olderThan(lastAttempt, minRefreshInterval)) {
+        return current != null ? Mono.just(current)
+            : Mono.error(new JwtException("JWKS no disponible: " + jwkSetUri));
+      }
+      lastAttempt = Instant.now();
+      inflight = webClient.get().uri(jwkSetUri)
+          .retrieve()
+          .bodyToMono(String.class)
+          // conexión, respuesta y cuerpo: una validación de token no espera más que esto
+          .timeout(timeout)
+          .map(JwkSetCache::parse)
+          .doOnNext(set -> {
+            jwkSet = set;
+            fetchedAt = Instant.now();
+            log.info("JWKS recargado desde {} ({} claves)", jwkSetUri, set.getKeys().size());
+          })
+          .onErrorResume(ex -> {
+            log.warn("No se pudo recargar el JWKS de {}: {}", jwkSetUri, ex.getMessage());
+            return current != null ? Mono.just(current)
+                : Mono.error(new JwtException("JWKS no disponible: " + jwkSetUri, ex));
+          })
+          .doFinally(signal -> clearInflight())
+          .cache();
+      return inflight;
+    }
+
+    private synchronized void clearInflight() {
+      inflight = null;
+    }
+
+    private boolean olderThan(Instant instant, Duration duration) {
+      return instant.plus(duration).isBefore(Instant.now());
+    }
+
+    private static JWKSet parse(String body) {
+      try {
+        return JWKSet.parse(body);
+      } catch (ParseException e) {
+        throw new JwtException("JWKS inválido", e);
+      }
+    }
   }
-}
\ No newline at end of file
+}
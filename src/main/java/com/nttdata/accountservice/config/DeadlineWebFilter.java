@@ -0,0 +1,47 @@
+package com.nttdata.accountservice.config;
+
+import com.nttdata.accountservice.integration.support.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+
+/**
+ * Fija el plazo de cada petición: el de la cabecera {@link Deadline#HEADER} (acotado a
+ * {@code request.deadline.max}) o {@code request.deadline.default}, y lo deja en el contexto
+ * de Reactor para las llamadas salientes.
+ */
+@Slf4j
+@Component
+public class DeadlineWebFilter implements WebFilter {
+
+  @Value("${request.deadline.enabled:true}")
+  private boolean enabled = true;
+  @Value("${request.deadline.default:PT5S}")
+  private Duration defaultBudget = Duration.ofSeconds(5);
+  @Value("${request.deadline.max:PT30S}")
+  private Duration maxBudget = Duration.ofSeconds(30);
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    if (!enabled) return chain.filter(exchange);
+    Duration budget = budget(exchange.getRequest().getHeaders().getFirst(Deadline.HEADER));
+    return chain.filter(exchange)
+        .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(budget)));
+  }
+
+  private Duration budget(String header) {
+    if (header == null) return defaultBudget;
+    try {
+      Duration requested = Duration.ofMillis(Long.parseLong(header.trim()));
+      if (requested.isNegative()) return Duration.ZERO;
+      return requested.compareTo(maxBudget) > 0 ? maxBudget : requested;
+    } catch (NumberFormatException e) {
+      log.debug("Cabecera {} inválida: {}", Deadline.HEADER, header);
+      return defaultBudget;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.nttdata.accountservice.config;
+
+import com.nttdata.accountservice.repository.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.context.annotation.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.*;
+
+/**
+ * Conversor de Mongo del servicio: el de Spring Boot (mismas conversiones y contexto de
+ * mapeo) con {@link AccountMongoConverter} para Account. {@code mongo.account-codec.enabled=false}
+ * vuelve al mapeo reflexivo.
+ */
+@Configuration
+public class MongoConverterConfig {
+
+  @Bean
+  public MappingMongoConverter mappingMongoConverter(
+      MongoMappingContext mappingContext, MongoCustomConversions conversions,
+      @Value("${mongo.account-codec.enabled:true}") boolean accountCodec) {
+    MappingMongoConverter converter =
+        new AccountMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext, accountCodec);
+    converter.setCustomConversions(conversions);
+    return converter;
+  }
+}
@@ -0,0 +1,145 @@
+package com.nttdata.accountservice.config;
+
+import com.nttdata.accountservice.model.entity.*;
+import lombok.extern.slf4j.*;
+import org.bson.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.*;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.index.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Índices de Mongo del servicio, creados en segundo plano al iniciar y sin depender de
+ * spring.data.mongodb.auto-index-creation: los declarados en {@link Account}
+ * (@Indexed, @CompoundIndex), el de keyset de movimientos y el TTL de idempotencia.
+ * {@link #drift()} compara las claves requeridas con las existentes por colección; con
+ * {@code mongo.indexes.fail-on-missing} el arranque falla si falta alguno.
+ */
+@Slf4j
+@Component
+public class MongoIndexManager {
+
+  private static final String ID_INDEX = "_id_";
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final Map<Class<?>, List<IndexDefinition>> required = new LinkedHashMap<>();
+
+  @Value("${mongo.indexes.fail-on-missing:false}")
+  private boolean failOnMissing;
+  @Value("${mongo.indexes.startup-timeout:PT60S}")
+  private Duration startupTimeout = Duration.ofSeconds(60);
+
+  public MongoIndexManager(ReactiveMongoTemplate mongoTemplate,
+                           @Value("${balance.idempotency.ttl:P7D}") Duration idempotencyTtl) {
+    this.mongoTemplate = mongoTemplate;
+    IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    List<IndexDefinition> accountIndexes = new ArrayList<>();
+    resolver.resolveIndexFor(Account.class).forEach(accountIndexes::add);
+    required.put(Account.class, accountIndexes);
+    required.put(Movement.class, List.of(new Index()
+        .on("accountId", Sort.Direction.ASC)
+        .on("date", Sort.Direction.DESC)
+        .on("_id", Sort.Direction.DESC)
+        .background()));
+    // Un TTL distinto al existente no se aplica: se registra al crear y no cuenta como deriva
+    required.put(BalanceOperationRecord.class, List.of(new Index()
+        .on("createdAt", Sort.Direction.ASC)
+        .expire(idempotencyTtl)
+        .background()));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void ensureRequiredIndexes() {
+    Mono<List<CollectionDrift>> check = ensureIndexes().then(drift()).doOnNext(this::logDrift);
+    if (!failOnMissing) {
+      check.subscribe(drift -> { },
+          ex -> log.warn("No se pudo validar los índices de Mongo: {}", ex.getMessage()));
+      return;
+    }
+    List<CollectionDrift> drift = check.block(startupTimeout);
+    String missing = drift == null ? "" : drift.stream()
+        .filter(d -> !d.getMissing().isEmpty())
+        .map(d -> d.getCollection() + " " + d.getMissing())
+        .collect(Collectors.joining(", "));
+    if (!missing.isEmpty()) {
+      throw new IllegalStateException("Faltan índices requeridos de Mongo: " + missing);
+    }
+  }
+
+  public Mono<Void> ensureIndexes() {
+    return Flux.fromIterable(required.entrySet())
+        .concatMap(entry -> {
+          ReactiveIndexOperations ops = mongoTemplate.indexOps(entry.getKey());
+          String collection = mongoTemplate.getCollectionName(entry.getKey());
+          return Flux.fromIterable(entry.getValue())
+              .concatMap(index -> ops.ensureIndex(index)
+                  .doOnNext(name -> log.info("Índice {} de {}", name, collection))
+                  .onErrorResume(ex -> {
+                    log.warn("No se pudo crear el índice {} de {}: {}",
+                        index.getIndexKeys().toJson(), collection, ex.getMessage());
+                    return Mono.empty();
+                  }));
+        })
+        .then();
+  }
+
+  /**
+   * Deriva por colección: claves requeridas que no existen y existentes que nadie requiere.
+   */
+  public Mono<List<CollectionDrift>> drift() {
+    return Flux.fromIterable(required.entrySet())
+        .concatMap(entry -> mongoTemplate.indexOps(entry.getKey()).getIndexInfo()
+            .filter(info -> !ID_INDEX.equals(info.getName()))
+            .map(MongoIndexManager::keysOf)
+            .collect(Collectors.toCollection(LinkedHashSet::new))
+            .map(existing -> {
+              Set<String> wanted = entry.getValue().stream()
+                  .map(index -> index.getIndexKeys().toJson())
+                  .collect(Collectors.toCollection(LinkedHashSet::new));
+              List<String> missing = wanted.stream()
+                  .filter(keys -> !existing.contains(keys)).collect(Collectors.toList());
+              List<String> unexpected = existing.stream()
+                  .filter(keys -> !wanted.contains(keys)).collect(Collectors.toList());
+              return new CollectionDrift(
+                  mongoTemplate.getCollectionName(entry.getKey()), missing, unexpected);
+            }))
+        .collectList();
+  }
+
+  // ===== Helpers =====
+
+  private void logDrift(List<CollectionDrift> drift) {
+    drift.stream()
+        .filter(d -> !d.getMissing().isEmpty() || !d.getUnexpected().isEmpty())
+        .forEach(d -> log.warn("Índices de {} con deriva: faltan {}, no declarados {}",
+            d.getCollection(), d.getMissing(), d.getUnexpected()));
+  }
+
+  // Claves del índice en el mismo formato que IndexDefinition.getIndexKeys()
+  private static String keysOf(IndexInfo info) {
+    Document keys = new Document();
+    for (IndexField field : info.getIndexFields()) {
+      if (field.getDirection() != null) {
+        keys.append(field.getKey(), field.getDirection() == Sort.Direction.ASC ? 1 : -1);
+      } else {
+        keys.append(field.getKey(), field.isText() ? "text" : field.isHashed() ? "hashed" : "2d");
+      }
+    }
+    return keys.toJson();
+  }
+
+  @lombok.Value
+  public static class CollectionDrift {
+    String collection;
+    List<String> missing;
+    List<String> unexpected;
+  }
+}
@@ -0,0 +1,33 @@
+package com.nttdata.accountservice.config;
+
+import lombok.*;
+import org.springframework.boot.actuate.endpoint.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.util.*;
+
+/**
+ * /actuator/mongoindexes: deriva entre los índices requeridos y los existentes en Mongo.
+ * status DRIFT si a alguna colección le falta un índice o tiene uno no declarado.
+ */
+@Component
+@Endpoint(id = "mongoindexes")
+@RequiredArgsConstructor
+public class MongoIndexesEndpoint {
+
+  private final MongoIndexManager indexManager;
+
+  @ReadOperation
+  public Mono<Map<String, Object>> indexes() {
+    return indexManager.drift()
+        .map(drift -> {
+          boolean clean = drift.stream()
+              .allMatch(d -> d.getMissing().isEmpty() && d.getUnexpected().isEmpty());
+          Map<String, Object> body = new LinkedHashMap<>();
+          body.put("status", clean ? "OK" : "DRIFT");
+          body.put("collections", drift);
+          return body;
+        });
+  }
+}
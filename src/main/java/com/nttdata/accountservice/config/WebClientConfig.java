@@ -1,41 +1,122 @@
 package com.nttdata.accountservice.config;
 
-
+import com.nttdata.accountservice.integration.support.*;
 import io.netty.channel.*;
 import io.netty.handler.timeout.*;
 import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
 import org.springframework.context.annotation.*;
+import org.springframework.core.env.*;
 import org.springframework.http.*;
 import org.springframework.http.client.reactive.*;
 import org.springframework.security.oauth2.server.resource.web.reactive.function.client.*;
 import org.springframework.web.reactive.function.client.*;
 import reactor.netty.http.client.*;
+import reactor.netty.resources.*;
 
 import java.time.*;
 
 import static reactor.core.publisher.Mono.*;
 
+/**
+ * Clientes HTTP de las integraciones. Cada servicio remoto tiene su propio WebClient,
+ * construido una sola vez al iniciar, sobre un pool de conexiones con nombre
+ * ({@code services.<nombre>.pool.*}) cuyas métricas se publican en
+ * {@code reactor.netty.connection.provider.*{name=<nombre>}}. Las URLs {@code lb://} se
+ * resuelven con {@link LatencyAwareLoadBalancer}.
+ */
 @Configuration
 @Slf4j
 public class WebClientConfig {
+
+  public static final String CUSTOMERS = "customers";
+  public static final String CREDITS = "credits";
+
   @Bean
-  //@LoadBalanced
+  // sin @LoadBalanced: las URLs lb:// las resuelve LatencyAwareLoadBalancer en cada cliente
   public WebClient.Builder webClientBuilder() {
-    HttpClient httpClient = HttpClient.create()
-        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
-        .responseTimeout(Duration.ofSeconds(2))
-        .doOnConnected(conn -> conn
-            .addHandlerLast(new ReadTimeoutHandler(2))
-            .addHandlerLast(new WriteTimeoutHandler(2)));
-
     return WebClient.builder()
-        .clientConnector(new ReactorClientHttpConnector(httpClient))
+        .clientConnector(new ReactorClientHttpConnector(withTimeouts(HttpClient.create())))
         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
         .filter(new ServerBearerExchangeFilterFunction())
+        .filter(propagateDeadline())
         .filter(logRequest())
         .filter(logResponse());
   }
 
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider customersConnectionProvider(Environment env) {
+    return connectionProvider(CUSTOMERS, env);
+  }
+
+  @Bean(destroyMethod = "dispose")
+  public ConnectionProvider creditsConnectionProvider(Environment env) {
+    return connectionProvider(CREDITS, env);
+  }
+
+  @Bean
+  public WebClient customersWebClient(WebClient.Builder webClientBuilder,
+                                      @Qualifier("customersConnectionProvider") ConnectionProvider provider,
+                                      @Value("${services.customers.url}") String baseUrl,
+                                      LatencyAwareLoadBalancer loadBalancer) {
+    return webClient(webClientBuilder, provider, baseUrl, loadBalancer);
+  }
+
+  @Bean
+  public WebClient creditsWebClient(WebClient.Builder webClientBuilder,
+                                    @Qualifier("creditsConnectionProvider") ConnectionProvider provider,
+                                    @Value("${services.credits.url}") String baseUrl,
+                                    LatencyAwareLoadBalancer loadBalancer) {
+    return webClient(webClientBuilder, provider, baseUrl, loadBalancer);
+  }
+
+  /**
+   * Pool con nombre para un servicio remoto: tamaño, espera de adquisición y expulsión
+   * de conexiones ociosas o demasiado antiguas.
+   */
+  private static ConnectionProvider connectionProvider(String name, Environment env) {
+    String prefix = "services." + name + ".pool.";
+    return ConnectionProvider.builder(name)
+        .maxConnections(env.getProperty(prefix + "max-connections", Integer.class, 50))
+        .pendingAcquireMaxCount(env.getProperty(prefix + "pending-acquire-max-count", Integer.class, 200))
+        .pendingAcquireTimeout(env.getProperty(prefix + "pending-acquire-timeout", Duration.class, Duration.ofSeconds(1)))
+        .maxIdleTime(env.getProperty(prefix + "max-idle-time", Duration.class, Duration.ofSeconds(30)))
+        .maxLifeTime(env.getProperty(prefix + "max-life-time", Duration.class, Duration.ofMinutes(5)))
+        .evictInBackground(env.getProperty(prefix + "evict-in-background", Duration.class, Duration.ofSeconds(30)))
+        .metrics(true)
+        .build();
+  }
+
+  // Copia del builder común (filtros, cabeceras) con su propio conector y URL base;
+  // con lb://<servicio> cada petición va a la instancia que elige el balanceador
+  private static WebClient webClient(WebClient.Builder base, ConnectionProvider provider, String baseUrl,
+                                     LatencyAwareLoadBalancer loadBalancer) {
+    return base.clone()
+        .clientConnector(new ReactorClientHttpConnector(withTimeouts(HttpClient.create(provider))))
+        .filter(loadBalancer)
+        .baseUrl(baseUrl)
+        .build();
+  }
+
+  private static HttpClient withTimeouts(HttpClient httpClient) {
+    return httpClient
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 3000)
+        .responseTimeout(Duration.ofSeconds(2))
+        .doOnConnected(conn -> conn
+            .addHandlerLast(new ReadTimeoutHandler(2))
+            .addHandlerLast(new WriteTimeoutHandler(2)));
+  }
+
+  // El servicio remoto recibe el presupuesto que le queda a la petición entrante
+  private ExchangeFilterFunction propagateDeadline() {
+    return (req, next) -> deferContextual(ctx -> {
+      Deadline deadline = ctx.getOrDefault(Deadline.class, null);
+      if (deadline == null) return next.exchange(req);
+      return next.exchange(ClientRequest.from(req)
+          .header(Deadline.HEADER, String.valueOf(deadline.remaining().toMillis()))
+          .build());
+    });
+  }
 
   private ExchangeFilterFunction logRequest() {
     return ExchangeFilterFunction.ofRequestProcessor(req -> {
@@ -0,0 +1,78 @@
+package com.nttdata.accountservice.integration.credits;
+
+import com.github.benmanes.caffeine.cache.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.cache.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Caché en memoria de "tiene tarjeta de crédito activa" por customerId.
+ * Un {@code true} vive {@code ttl}; un {@code false} usa {@code negative-ttl}, más corto, para
+ * no bloquear a un cliente que acaba de activar su tarjeta. Los errores no se guardan.
+ */
+@Component
+public class CreditCardCache {
+
+  static final String CACHE_NAME = "credits.credit-card";
+
+  private final boolean enabled;
+  private final AsyncCache<String, Boolean> cache;
+
+  public CreditCardCache(@Value("${credits.card.cache.enabled:true}") boolean enabled,
+                         @Value("${credits.card.cache.ttl:PT10M}") Duration ttl,
+                         @Value("${credits.card.cache.negative-ttl:PT1M}") Duration negativeTtl,
+                         @Value("${credits.card.cache.max-size:10000}") long maxSize,
+                         MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfter(new Expiry<String, Boolean>() {
+          @Override
+          public long expireAfterCreate(String key, Boolean value, long currentTime) {
+            return Boolean.TRUE.equals(value) ? ttl.toNanos() : negativeTtl.toNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Boolean value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Boolean value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+  }
+
+  public Mono<Boolean> get(String customerId, Supplier<Mono<Boolean>> loader) {
+    if (!enabled) return loader.get();
+    return Mono.deferContextual(ctx -> {
+          // la carga lleva el contexto (plazo de la petición) de quien la inicia
+          CompletableFuture<Boolean> shared = cache.get(customerId,
+              (k, executor) -> loader.get().defaultIfEmpty(false).contextWrite(ctx).toFuture());
+          // Futuro derivado: cancelar esta suscripción no cancela la carga compartida
+          return Mono.fromFuture(shared.thenApply(Function.identity()));
+        })
+        .onErrorMap(CompletionException.class, ex -> ex.getCause() != null ? ex.getCause() : ex);
+  }
+
+  /**
+   * Vuelve a cargar el valor desde {@code loader} y reemplaza la entrada (refresco en segundo plano
+   * del último valor bueno). Si la carga falla se conserva la entrada que hubiera.
+   */
+  public Mono<Boolean> refresh(String customerId, Supplier<Mono<Boolean>> loader) {
+    if (!enabled) return Mono.defer(loader);
+    return Mono.defer(loader)
+        .defaultIfEmpty(false)
+        .doOnNext(value -> cache.put(customerId, CompletableFuture.completedFuture(value)));
+  }
+}
@@ -1,12 +1,12 @@
 package com.nttdata.accountservice.integration.credits;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.reactor.circuitbreaker.operator.*;
 import io.github.resilience4j.reactor.timelimiter.*;
 import io.github.resilience4j.timelimiter.*;
 import lombok.*;
 import org.springframework.beans.factory.annotation.*;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.*;
 import org.springframework.web.reactive.function.client.*;
@@ -14,32 +14,60 @@ import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 
 import java.util.concurrent.*;
+import java.util.function.*;
 
 @Component
 @RequiredArgsConstructor
 public class CreditsClient {
-  private final WebClient.Builder webClientBuilder;
+  @Qualifier("creditsWebClient")
+  private final WebClient webClient;
   private final CircuitBreakerRegistry circuitBreakerRegistry;
   private final TimeLimiterRegistry timeLimiterRegistry;
+  private final CreditCardCache creditCardCache;
+  private final SingleFlightRegistry singleFlightRegistry;
+  private final LastKnownGoodRegistry lastKnownGoodRegistry;
+  private final ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+  private final RetryBudgetRegistry retryBudgetRegistry;
 
 
-  @Value("${services.credits.url}")
-  private String baseUrl; // http://localhost:8585/api/v1
-
   public Mono<Boolean> hasActiveCreditCard(String customerId) {
+    LastKnownGoodStore lastKnownGood = lastKnownGoodRegistry.store("credits");
+    // Capas como en CustomersClient: la caché agrupa sus cargas; SingleFlight solo la llamada
+    Supplier<Mono<Boolean>> fetch = () -> singleFlightRegistry.singleFlight("credits")
+        .execute(customerId, () -> fetchHasActiveCreditCard(customerId)
+            .transform(lastKnownGood.recording(customerId)));
+    return lastKnownGood.orStale(customerId, creditCardCache.get(customerId, fetch),
+        () -> creditCardCache.refresh(customerId, fetch));
+  }
+
+  private Mono<Boolean> fetchHasActiveCreditCard(String customerId) {
     var cb = circuitBreakerRegistry.circuitBreaker("credits");
     var tl = timeLimiterRegistry.timeLimiter("credits");
-    return webClientBuilder.baseUrl(baseUrl)
-        .build()
-        .get()
-        .uri(u -> u.path("/credits").queryParam("customerId", customerId).build())
-        .retrieve()
-        .bodyToFlux(CreditDTO.class)
+    // con el límite de concurrencia ocupado se espera turno o se rechaza al momento
+    return concurrencyLimiterRegistry.limiter("credits").execute(() -> retryBudgetRegistry.budget("credits")
+        // fallos transitorios se reintentan con presupuesto, dentro del TimeLimiter
+        .execute(() -> requestHasActiveCreditCard(customerId))
         .transformDeferred(CircuitBreakerOperator.of(cb))
         .transformDeferred(TimeLimiterOperator.of(tl))
         .onErrorMap(TimeoutException.class,
             ex -> new ResponseStatusException(
-                HttpStatus.GATEWAY_TIMEOUT, "Timeout en Credits (2s)", ex))
+                HttpStatus.GATEWAY_TIMEOUT, "Timeout en Credits (2s)", ex)))
+        // solo el plazo que le queda a la petición entrante, espera de turno incluida
+        .transform(Deadline::bounded);
+  }
+
+  private Mono<Boolean> requestHasActiveCreditCard(String customerId) {
+    return webClient
+        .get()
+        // Filtro en Credits: solo tarjetas activas, no la lista completa del cliente
+        .uri(u -> u.path("/credits")
+            .queryParam("customerId", customerId)
+            .queryParam("type", "CREDIT_CARD")
+            .queryParam("status", "ACTIVE")
+            .build())
+        .retrieve()
+        .bodyToFlux(CreditDTO.class)
+        // se mantiene el filtro local por si Credits ignora los parámetros
         .filter(c -> "CREDIT_CARD".equals(c.getType()) && "ACTIVE".equals(c.getStatus()))
         .hasElements();
   }
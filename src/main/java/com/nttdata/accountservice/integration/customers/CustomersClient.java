@@ -1,12 +1,12 @@
 package com.nttdata.accountservice.integration.customers;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.reactor.circuitbreaker.operator.*;
 import io.github.resilience4j.reactor.timelimiter.*;
 import io.github.resilience4j.timelimiter.*;
 import lombok.*;
 import org.springframework.beans.factory.annotation.*;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.*;
 import org.springframework.web.reactive.function.client.*;
@@ -14,25 +14,60 @@ import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 
 import java.util.concurrent.*;
+import java.util.function.*;
 @lombok.extern.slf4j.Slf4j
 @Component
 @RequiredArgsConstructor
 public class CustomersClient {
 
-  private final WebClient.Builder webClientBuilder;
+  @Qualifier("customersWebClient")
+  private final WebClient webClient;
   private final CircuitBreakerRegistry circuitBreakerRegistry;
   private final TimeLimiterRegistry timeLimiterRegistry;
+  private final EligibilityCache eligibilityCache;
+  private final SingleFlightRegistry singleFlightRegistry;
+  private final LastKnownGoodRegistry lastKnownGoodRegistry;
+  private final EligibilityBatcher eligibilityBatcher;
+  private final RequestHedgerRegistry requestHedgerRegistry;
+  private final ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+  private final RetryBudgetRegistry retryBudgetRegistry;
 
 
-  @Value("${services.customers.url}")
-  private String baseUrl; // http://localhost:8086/api/v1
-
   public Mono<EligibilityResponse> getEligibilityByDocument(
       String documentType, String documentNumber) {
+    String key = EligibilityCache.key(documentType, documentNumber);
+    LastKnownGoodStore lastKnownGood = lastKnownGoodRegistry.store("customers");
+    // Capas: la caché ya agrupa sus cargas por clave; SingleFlight solo envuelve la salida a la
+    // red, para la caché desactivada y para el refresco en segundo plano del último valor bueno.
+    // En modo lote la consulta viaja junto a otras; la llamada individual queda de respaldo
+    Supplier<Mono<EligibilityResponse>> fetch = () -> singleFlightRegistry.singleFlight("customers")
+        .execute(key, () -> eligibilityBatcher
+            .load(documentType, documentNumber, () -> fetchEligibility(documentType, documentNumber))
+            .transform(lastKnownGood.recording(key)));
+    // con el circuito abierto o timeout se sirve el último valor bueno; su refresco pasa por la caché
+    return lastKnownGood.orStale(key, eligibilityCache.get(documentType, documentNumber, fetch),
+        () -> eligibilityCache.refresh(documentType, documentNumber, fetch));
+  }
+
+  private Mono<EligibilityResponse> fetchEligibility(String documentType, String documentNumber) {
     CircuitBreaker cb = circuitBreakerRegistry.circuitBreaker("customers");
-    log.info("CustomersClient - baseUrl configurado: {}", baseUrl);
-    return webClientBuilder.baseUrl(baseUrl)
-        .build()
+    // con el límite de concurrencia ocupado se espera turno o se rechaza al momento
+    return concurrencyLimiterRegistry.limiter("customers").execute(() -> retryBudgetRegistry.budget("customers")
+        // fallos transitorios se reintentan con presupuesto, dentro del TimeLimiter
+        .execute(() -> requestHedgerRegistry.hedger("customers")
+            // una respuesta lenta se cubre con una segunda petición (otra instancia); gana la primera
+            .execute(() -> requestEligibility(documentType, documentNumber)))
+        .transformDeferred(CircuitBreakerOperator.of(cb))
+        .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter("customers")))
+        .onErrorMap(TimeoutException.class,
+            ex -> new ResponseStatusException(
+                HttpStatus.GATEWAY_TIMEOUT, "Timeout en Customers (2s)", ex)))
+        // solo el plazo que le queda a la petición entrante, espera de turno incluida
+        .transform(Deadline::bounded);
+  }
+
+  private Mono<EligibilityResponse> requestEligibility(String documentType, String documentNumber) {
+    return webClient
         .get()
         .uri(uriBuilder -> uriBuilder
             .path("/customers/eligibility")
@@ -41,11 +76,8 @@ public class CustomersClient {
             .build())
         .retrieve()
         .bodyToMono(EligibilityResponse.class)
-        .transformDeferred(CircuitBreakerOperator.of(cb))
-        .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter("customers")))
-        .onErrorMap(TimeoutException.class,
-            ex -> new ResponseStatusException(
-                HttpStatus.GATEWAY_TIMEOUT, "Timeout en Customers (2s)", ex));
+        // 404 = sin cliente activo: respuesta válida (vacía), no cuenta como fallo del circuito
+        .onErrorResume(WebClientResponseException.NotFound.class, ex -> Mono.empty());
   }
 
 }
\ No newline at end of file
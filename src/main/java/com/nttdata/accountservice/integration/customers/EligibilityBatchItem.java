@@ -0,0 +1,16 @@
+package com.nttdata.accountservice.integration.customers;
+
+import lombok.*;
+
+/**
+ * Elemento del endpoint de elegibilidad en lote: en la petición solo el documento,
+ * en la respuesta además la elegibilidad (nula si no hay cliente activo).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EligibilityBatchItem {
+  private String documentType;
+  private String documentNumber;
+  private EligibilityResponse eligibility;
+}
@@ -0,0 +1,290 @@
+package com.nttdata.accountservice.integration.customers;
+
+import com.nttdata.accountservice.integration.support.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.github.resilience4j.reactor.circuitbreaker.operator.*;
+import io.github.resilience4j.reactor.timelimiter.*;
+import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.core.*;
+import org.springframework.http.*;
+import org.springframework.security.core.*;
+import org.springframework.security.core.context.*;
+import org.springframework.security.oauth2.core.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.*;
+import reactor.core.publisher.*;
+import reactor.core.scheduler.*;
+import reactor.util.context.*;
+
+import java.time.*;
+import java.time.temporal.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Agrupa consultas de elegibilidad en lotes (modo opcional para altas masivas).
+ * Las consultas que llegan dentro de {@code window}, o hasta {@code max-size} documentos,
+ * se envían en un solo {@code POST} al endpoint de lote y cada resultado se entrega a su
+ * consulta. Si el lote falla se usa la llamada individual de cada documento; si el endpoint
+ * no existe o no admite al llamante (401/403/404/405/501) no se vuelve a intentar hasta pasado
+ * {@code retry-after}.
+ * <p>
+ * Un lote solo junta consultas con el mismo token: el {@code POST} viaja con el contexto de
+ * Reactor de una de ellas (token y plazo más holgado) y pasa por el mismo limitador,
+ * presupuesto de reintentos, circuito y TimeLimiter que la llamada individual.
+ */
+@Slf4j
+@Component
+public class EligibilityBatcher {
+
+  private static final ParameterizedTypeReference<List<EligibilityBatchItem>> ITEMS =
+      new ParameterizedTypeReference<>() {
+      };
+
+  private final WebClient webClient;
+  private final TimeLimiterRegistry timeLimiterRegistry;
+  private final CircuitBreakerRegistry circuitBreakerRegistry;
+  private final ConcurrencyLimiterRegistry concurrencyLimiterRegistry;
+  private final RetryBudgetRegistry retryBudgetRegistry;
+  private final boolean enabled;
+  private final Duration window;
+  private final int maxSize;
+  private final String path;
+  private final Duration retryAfter;
+  private final Counter batched;
+  private final Counter fallback;
+  private final DistributionSummary batchSize;
+
+  private final List<Pending> pending = new ArrayList<>();
+  private Disposable scheduledFlush;
+  private volatile Instant unavailableUntil = Instant.EPOCH;
+
+  public EligibilityBatcher(@Qualifier("customersWebClient") WebClient webClient,
+                            TimeLimiterRegistry timeLimiterRegistry,
+                            CircuitBreakerRegistry circuitBreakerRegistry,
+                            ConcurrencyLimiterRegistry concurrencyLimiterRegistry,
+                            RetryBudgetRegistry retryBudgetRegistry,
+                            MeterRegistry meterRegistry,
+                            @Value("${customers.eligibility.batch.enabled:false}") boolean enabled,
+                            @Value("${customers.eligibility.batch.window:PT0.01S}") Duration window,
+                            @Value("${customers.eligibility.batch.max-size:50}") int maxSize,
+                            @Value("${customers.eligibility.batch.path:/customers/eligibility/batch}") String path,
+                            @Value("${customers.eligibility.batch.retry-after:PT1M}") Duration retryAfter) {
+    this.webClient = webClient;
+    this.timeLimiterRegistry = timeLimiterRegistry;
+    this.circuitBreakerRegistry = circuitBreakerRegistry;
+    this.concurrencyLimiterRegistry = concurrencyLimiterRegistry;
+    this.retryBudgetRegistry = retryBudgetRegistry;
+    this.enabled = enabled;
+    this.window = window;
+    this.maxSize = maxSize;
+    this.path = path;
+    this.retryAfter = retryAfter;
+    this.batched = lookupCounter(meterRegistry, "batched");
+    this.fallback = lookupCounter(meterRegistry, "fallback");
+    this.batchSize = DistributionSummary.builder("customers.eligibility.batch.size")
+        .description("Documentos por lote de elegibilidad")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Elegibilidad del documento vía lote; {@code single} es la llamada individual de respaldo.
+   * Vacío si no hay cliente activo.
+   */
+  public Mono<EligibilityResponse> load(String documentType, String documentNumber,
+                                        Supplier<Mono<EligibilityResponse>> single) {
+    if (!enabled || Instant.now().isBefore(unavailableUntil)) return single.get();
+    return bearerToken().flatMap(token -> Mono.create(sink -> {
+      Pending request = new Pending(documentType, documentNumber, token, sink, single);
+      // consulta cancelada antes del envío: sale de la cola y no viaja en el lote
+      sink.onDispose(() -> discard(request));
+      enqueue(request);
+    }));
+  }
+
+  // ===== Helpers =====
+
+  private void enqueue(Pending request) {
+    List<Pending> full = null;
+    synchronized (this) {
+      pending.add(request);
+      if (pending.size() >= maxSize) {
+        full = drain();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = Schedulers.parallel().schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+      }
+    }
+    if (full != null) send(full);
+  }
+
+  private void flush() {
+    List<Pending> batch;
+    synchronized (this) {
+      scheduledFlush = null;
+      batch = drain();
+    }
+    if (!batch.isEmpty()) send(batch);
+  }
+
+  private void discard(Pending request) {
+    request.done = true;
+    synchronized (this) {
+      pending.remove(request);
+    }
+  }
+
+  // Llamar con el monitor tomado
+  private List<Pending> drain() {
+    if (scheduledFlush != null) {
+      scheduledFlush.dispose();
+      scheduledFlush = null;
+    }
+    List<Pending> batch = new ArrayList<>(pending);
+    pending.clear();
+    return batch;
+  }
+
+  private void send(List<Pending> batch) {
+    // cada token viaja en su propio lote: el POST lleva la identidad de quien consulta
+    batch.stream()
+        .collect(Collectors.groupingBy(p -> p.token, LinkedHashMap::new, Collectors.toList()))
+        .values()
+        .forEach(this::sendAs);
+  }
+
+  private void sendAs(List<Pending> batch) {
+    // un mismo documento repetido en la ventana viaja una sola vez
+    Map<String, List<Pending>> byKey = batch.stream().collect(Collectors.groupingBy(
+        Pending::key, LinkedHashMap::new, Collectors.toList()));
+    List<EligibilityBatchItem> body = byKey.values().stream()
+        .map(group -> group.get(0))
+        .map(p -> new EligibilityBatchItem(p.documentType, p.documentNumber, null))
+        .collect(Collectors.toList());
+    batchSize.record(body.size());
+
+    Mono<Optional<List<EligibilityBatchItem>>> post = webClient.post()
+        .uri(path)
+        .contentType(MediaType.APPLICATION_JSON)
+        .bodyValue(body)
+        .retrieve()
+        .bodyToMono(ITEMS)
+        .map(Optional::of)
+        // endpoint ausente o sin permiso: no es un fallo de Customers, no abre el circuito
+        .onErrorResume(EligibilityBatcher::unsupported, ex -> {
+          markUnavailable(ex);
+          return Mono.just(Optional.empty());
+        });
+    concurrencyLimiterRegistry.limiter("customers")
+        .execute(() -> retryBudgetRegistry.budget("customers").execute(() -> post)
+            .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker("customers")))
+            .transformDeferred(TimeLimiterOperator.of(timeLimiterRegistry.timeLimiter("customers"))))
+        .transform(Deadline::bounded)
+        .contextWrite(context(batch))
+        .subscribe(
+            results -> {
+              if (results.isPresent()) complete(byKey, results.get());
+              else fallBack(byKey);
+            },
+            ex -> {
+              log.warn("Falló el lote de elegibilidad de {} documentos: {}", byKey.size(), ex.toString());
+              fallBack(byKey);
+            });
+  }
+
+  // Contexto de la consulta con más plazo (o sin plazo): el lote puede servir a todas
+  private static ContextView context(List<Pending> batch) {
+    return batch.stream()
+        .map(p -> p.sink.contextView())
+        .max(Comparator.comparing(ctx -> ctx.<Deadline>getOrEmpty(Deadline.class)
+            .map(Deadline::remaining)
+            .orElse(ChronoUnit.FOREVER.getDuration())))
+        .orElse(Context.empty());
+  }
+
+  private void complete(Map<String, List<Pending>> byKey, List<EligibilityBatchItem> results) {
+    batched.increment(byKey.size());
+    Map<String, EligibilityResponse> found = new HashMap<>();
+    for (EligibilityBatchItem item : results) {
+      if (item.getEligibility() != null) {
+        found.put(EligibilityCache.key(item.getDocumentType(), item.getDocumentNumber()),
+            item.getEligibility());
+      }
+    }
+    // documento ausente o sin elegibilidad = sin cliente activo
+    byKey.forEach((key, group) -> group.forEach(p -> {
+      EligibilityResponse eligibility = found.get(key);
+      if (eligibility != null) p.sink.success(eligibility);
+      else p.sink.success();
+    }));
+  }
+
+  private void markUnavailable(Throwable ex) {
+    unavailableUntil = Instant.now().plus(retryAfter);
+    log.warn("Endpoint de elegibilidad en lote no disponible ({}), llamadas individuales durante {}",
+        ex.getMessage(), retryAfter);
+  }
+
+  private void fallBack(Map<String, List<Pending>> byKey) {
+    fallback.increment(byKey.size());
+    byKey.values().forEach(group -> {
+      List<Pending> waiting = group.stream().filter(p -> !p.done).collect(Collectors.toList());
+      if (waiting.isEmpty()) return;
+      Mono<EligibilityResponse> single = waiting.get(0).single.get().cache();
+      waiting.forEach(p -> single.contextWrite(p.sink.contextView())
+          .subscribe(p.sink::success, p.sink::error, p.sink::success));
+    });
+  }
+
+  private static boolean unsupported(Throwable ex) {
+    return ex instanceof WebClientResponseException.Unauthorized
+        || ex instanceof WebClientResponseException.Forbidden
+        || ex instanceof WebClientResponseException.NotFound
+        || ex instanceof WebClientResponseException.MethodNotAllowed
+        || ex instanceof WebClientResponseException.NotImplemented;
+  }
+
+  // Token de la petición entrante (el que reenvía ServerBearerExchangeFilterFunction); "" sin token
+  private static Mono<String> bearerToken() {
+    return ReactiveSecurityContextHolder.getContext()
+        .map(SecurityContext::getAuthentication)
+        .map(Authentication::getCredentials)
+        .filter(AbstractOAuth2Token.class::isInstance)
+        .map(credentials -> ((AbstractOAuth2Token) credentials).getTokenValue())
+        .defaultIfEmpty("");
+  }
+
+  private static Counter lookupCounter(MeterRegistry registry, String result) {
+    return Counter.builder("customers.eligibility.batch.lookups")
+        .description("Consultas de elegibilidad resueltas por lote o por llamada individual")
+        .tag("result", result)
+        .register(registry);
+  }
+
+  private static final class Pending {
+    private final String documentType;
+    private final String documentNumber;
+    private final String token;
+    private final MonoSink<EligibilityResponse> sink;
+    private final Supplier<Mono<EligibilityResponse>> single;
+    private volatile boolean done;
+
+    private Pending(String documentType, String documentNumber, String token,
+                    MonoSink<EligibilityResponse> sink, Supplier<Mono<EligibilityResponse>> single) {
+      this.documentType = documentType;
+      this.documentNumber = documentNumber;
+      this.token = token;
+      this.sink = sink;
+      this.single = single;
+    }
+
+    private String key() {
+      return EligibilityCache.key(documentType, documentNumber);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.nttdata.accountservice.integration.customers;
+
+import com.github.benmanes.caffeine.cache.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.cache.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Caché en memoria de elegibilidad por (tipo, número de documento).
+ * Las respuestas positivas viven {@code ttl}; "sin cliente activo" se guarda como entrada
+ * negativa con un TTL corto. Los errores no se guardan. Acotada por tamaño y expuesta en
+ * métricas como {@code cache.*{cache=customers.eligibility}}.
+ */
+@Component
+public class EligibilityCache {
+
+  static final String CACHE_NAME = "customers.eligibility";
+
+  private final boolean enabled;
+  private final AsyncCache<String, Optional<EligibilityResponse>> cache;
+
+  @Autowired
+  public EligibilityCache(@Value("${customers.eligibility.cache.enabled:true}") boolean enabled,
+                          @Value("${customers.eligibility.cache.ttl:PT10M}") Duration ttl,
+                          @Value("${customers.eligibility.cache.negative-ttl:PT30S}") Duration negativeTtl,
+                          @Value("${customers.eligibility.cache.max-size:10000}") long maxSize,
+                          MeterRegistry meterRegistry) {
+    this(enabled, ttl, negativeTtl, maxSize, meterRegistry, Ticker.systemTicker());
+  }
+
+  EligibilityCache(boolean enabled, Duration ttl, Duration negativeTtl, long maxSize,
+                   MeterRegistry meterRegistry, Ticker ticker) {
+    this.enabled = enabled;
+    this.cache = Caffeine.newBuilder()
+        .ticker(ticker)
+        .maximumSize(maxSize)
+        .expireAfter(new EntryExpiry(ttl.toNanos(), negativeTtl.toNanos()))
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), CACHE_NAME);
+  }
+
+  /**
+   * Elegibilidad desde la caché o, si no está, desde {@code loader}. Vacío si no hay cliente activo.
+   * Las consultas simultáneas de la misma clave comparten una sola carga.
+   */
+  public Mono<EligibilityResponse> get(String documentType, String documentNumber,
+                                       Supplier<Mono<EligibilityResponse>> loader) {
+    if (!enabled) return loader.get();
+    return Mono.deferContextual(ctx -> {
+          // la carga lleva el contexto (plazo de la petición) de quien la inicia
+          CompletableFuture<Optional<EligibilityResponse>> shared = cache.get(
+              key(documentType, documentNumber),
+              (k, executor) -> loader.get()
+                  .map(Optional::of)
+                  .defaultIfEmpty(Optional.empty())
+                  .contextWrite(ctx)
+                  .toFuture());
+          // Futuro derivado: cancelar esta suscripción no cancela la carga compartida
+          return Mono.fromFuture(shared.thenApply(Function.identity()));
+        })
+        .onErrorMap(CompletionException.class, ex -> ex.getCause() != null ? ex.getCause() : ex)
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  /**
+   * Vuelve a cargar la elegibilidad desde {@code loader} y reemplaza la entrada (refresco en
+   * segundo plano del último valor bueno). Si la carga falla se conserva la entrada que hubiera.
+   */
+  public Mono<EligibilityResponse> refresh(String documentType, String documentNumber,
+                                           Supplier<Mono<EligibilityResponse>> loader) {
+    if (!enabled) return Mono.defer(loader);
+    return Mono.defer(loader)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .doOnNext(value -> cache.put(key(documentType, documentNumber), CompletableFuture.completedFuture(value)))
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  static String key(String documentType, String documentNumber) {
+    return documentType + ":" + documentNumber;
+  }
+
+  // TTL por entrada: corto para "sin cliente activo"
+  private static final class EntryExpiry implements Expiry<String, Optional<EligibilityResponse>> {
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+
+    private EntryExpiry(long ttlNanos, long negativeTtlNanos) {
+      this.ttlNanos = ttlNanos;
+      this.negativeTtlNanos = negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, Optional<EligibilityResponse> value, long currentTime) {
+      return value.isPresent() ? ttlNanos : negativeTtlNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, Optional<EligibilityResponse> value,
+                                  long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, Optional<EligibilityResponse> value,
+                                long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
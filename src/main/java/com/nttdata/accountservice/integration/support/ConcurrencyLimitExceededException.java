@@ -0,0 +1,15 @@
+package com.nttdata.accountservice.integration.support;
+
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+
+/**
+ * Llamada rechazada sin salir a la red: el servicio remoto tiene ocupado su límite de
+ * concurrencia y la cola de espera está llena.
+ */
+public class ConcurrencyLimitExceededException extends ResponseStatusException {
+
+  public ConcurrencyLimitExceededException(String name) {
+    super(HttpStatus.SERVICE_UNAVAILABLE, "Límite de concurrencia alcanzado en " + name);
+  }
+}
@@ -0,0 +1,164 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Límite adaptativo de llamadas en curso hacia un servicio remoto (AIMD).
+ * Cada respuesta por debajo de {@code latencyThreshold} con el límite en uso lo sube en uno;
+ * una respuesta lenta o un timeout lo multiplica por {@code backoffRatio}. Con el límite
+ * ocupado las llamadas esperan en una cola de {@code maxQueue} y, con la cola llena, se
+ * rechazan al momento con {@link ConcurrencyLimitExceededException}.
+ */
+public class ConcurrencyLimiter {
+
+  private final String name;
+  private final boolean enabled;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueue;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+  private final Counter rejected;
+
+  private final Deque<Permit> queue = new ArrayDeque<>();
+  private int limit;
+  private int inflight;
+
+  ConcurrencyLimiter(String name, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                     int maxQueue, Duration latencyThreshold, double backoffRatio,
+                     MeterRegistry meterRegistry) {
+    this.name = name;
+    this.enabled = enabled;
+    this.limit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueue = maxQueue;
+    this.latencyThresholdNanos = latencyThreshold.toNanos();
+    this.backoffRatio = backoffRatio;
+    this.rejected = Counter.builder("integration.concurrency.rejected")
+        .description("Llamadas rechazadas por límite de concurrencia y cola llenos")
+        .tag("name", name)
+        .register(meterRegistry);
+    gauge(meterRegistry, "integration.concurrency.limit", "Límite actual de llamadas en curso", l -> l.limit);
+    gauge(meterRegistry, "integration.concurrency.inflight", "Llamadas en curso", l -> l.inflight);
+    gauge(meterRegistry, "integration.concurrency.queue", "Llamadas esperando turno", l -> l.queue.size());
+  }
+
+  public <V> Mono<V> execute(Supplier<Mono<V>> call) {
+    if (!enabled) return call.get();
+    return Mono.defer(() -> {
+      Permit permit = new Permit();
+      return acquire(permit)
+          .then(Mono.defer(() -> {
+            permit.start = System.nanoTime();
+            return call.get();
+          }))
+          .doOnSuccess(value -> permit.dropped = System.nanoTime() - permit.start > latencyThresholdNanos)
+          // otros errores no dicen nada de la saturación: no mueven el límite
+          .doOnError(ex -> permit.dropped = isTimeout(ex) ? Boolean.TRUE : null)
+          .doFinally(signal -> release(permit));
+    });
+  }
+
+  synchronized int limit() {
+    return limit;
+  }
+
+  // ===== Helpers =====
+
+  private synchronized Mono<Void> acquire(Permit permit) {
+    if (inflight < limit) {
+      inflight++;
+      permit.granted = true;
+      return Mono.empty();
+    }
+    if (queue.size() >= maxQueue) {
+      rejected.increment();
+      return Mono.error(new ConcurrencyLimitExceededException(name));
+    }
+    queue.add(permit);
+    return Mono.create(permit::attach);
+  }
+
+  private void release(Permit permit) {
+    List<Permit> ready = new ArrayList<>();
+    synchronized (this) {
+      if (!permit.granted) {
+        // cancelada o rechazada antes de obtener turno
+        queue.remove(permit);
+        return;
+      }
+      if (permit.released) return;
+      permit.released = true;
+      if (permit.completed()) adjust(permit.dropped);
+      inflight--;
+      while (inflight < limit && !queue.isEmpty()) {
+        Permit next = queue.poll();
+        next.granted = true;
+        inflight++;
+        ready.add(next);
+      }
+    }
+    ready.forEach(Permit::signal);
+  }
+
+  // Llamar con el monitor tomado
+  private void adjust(boolean dropped) {
+    if (dropped) {
+      limit = Math.max(minLimit, (int) (limit * backoffRatio));
+    } else if (inflight * 2 >= limit) {
+      // solo crece si el límite se está usando
+      limit = Math.min(maxLimit, limit + 1);
+    }
+  }
+
+  private static boolean isTimeout(Throwable ex) {
+    return ex instanceof TimeoutException
+        || ex instanceof ResponseStatusException
+        && ((ResponseStatusException) ex).getStatus() == HttpStatus.GATEWAY_TIMEOUT;
+  }
+
+  private void gauge(MeterRegistry registry, String metric, String description,
+                     ToDoubleFunction<ConcurrencyLimiter> value) {
+    Gauge.builder(metric, this, limiter -> {
+          synchronized (limiter) {
+            return value.applyAsDouble(limiter);
+          }
+        })
+        .description(description)
+        .tag("name", name)
+        .register(registry);
+  }
+
+  private static final class Permit {
+    private boolean granted;
+    private boolean released;
+    private volatile long start;
+    private volatile Boolean dropped;
+    private MonoSink<Void> sink;
+    private boolean signalled;
+
+    private boolean completed() {
+      return dropped != null;
+    }
+
+    // el turno puede concederse antes o después de suscribirse a la espera
+    private synchronized void attach(MonoSink<Void> sink) {
+      this.sink = sink;
+      if (signalled) sink.success();
+    }
+
+    private synchronized void signal() {
+      signalled = true;
+      if (sink != null) sink.success();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+/**
+ * Un {@link ConcurrencyLimiter} por servicio remoto, todos con la misma configuración.
+ */
+@Component
+public class ConcurrencyLimiterRegistry {
+
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueue;
+  private final Duration latencyThreshold;
+  private final double backoffRatio;
+  private final ConcurrentMap<String, ConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+  public ConcurrencyLimiterRegistry(MeterRegistry meterRegistry,
+                                    @Value("${integration.concurrency.enabled:true}") boolean enabled,
+                                    @Value("${integration.concurrency.initial-limit:20}") int initialLimit,
+                                    @Value("${integration.concurrency.min-limit:5}") int minLimit,
+                                    @Value("${integration.concurrency.max-limit:50}") int maxLimit,
+                                    @Value("${integration.concurrency.max-queue:50}") int maxQueue,
+                                    @Value("${integration.concurrency.latency-threshold:PT1S}") Duration latencyThreshold,
+                                    @Value("${integration.concurrency.backoff-ratio:0.9}") double backoffRatio) {
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueue = maxQueue;
+    this.latencyThreshold = latencyThreshold;
+    this.backoffRatio = backoffRatio;
+  }
+
+  public ConcurrencyLimiter limiter(String name) {
+    return limiters.computeIfAbsent(name, n -> new ConcurrencyLimiter(n, enabled, initialLimit, minLimit,
+        maxLimit, maxQueue, latencyThreshold, backoffRatio, meterRegistry));
+  }
+}
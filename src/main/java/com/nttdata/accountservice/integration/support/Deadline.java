@@ -0,0 +1,48 @@
+package com.nttdata.accountservice.integration.support;
+
+import reactor.core.publisher.*;
+
+import java.time.*;
+
+/**
+ * Plazo total de una petición entrante, guardado en el contexto de Reactor. Las llamadas
+ * salientes solo disponen del tiempo que queda y el trabajo se abandona al vencer.
+ */
+public final class Deadline {
+
+  /** Cabecera con el presupuesto restante en milisegundos, de entrada y de salida. */
+  public static final String HEADER = "X-Request-Timeout-Ms";
+
+  private final long expiresAtNanos;
+
+  private Deadline(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  public static Deadline after(Duration budget) {
+    return new Deadline(System.nanoTime() + budget.toNanos());
+  }
+
+  public Duration remaining() {
+    long nanos = expiresAtNanos - System.nanoTime();
+    return nanos > 0 ? Duration.ofNanos(nanos) : Duration.ZERO;
+  }
+
+  public boolean isExpired() {
+    return remaining().isZero();
+  }
+
+  /**
+   * Limita {@code mono} al plazo del contexto, si lo hay: vencido no se suscribe y, si no
+   * termina a tiempo, se cancela. En ambos casos falla con {@link DeadlineExceededException}.
+   */
+  public static <T> Mono<T> bounded(Mono<T> mono) {
+    return Mono.deferContextual(ctx -> {
+      Deadline deadline = ctx.getOrDefault(Deadline.class, null);
+      if (deadline == null) return mono;
+      Duration remaining = deadline.remaining();
+      if (remaining.isZero()) return Mono.error(new DeadlineExceededException());
+      return mono.timeout(remaining, Mono.error(new DeadlineExceededException()));
+    });
+  }
+}
@@ -0,0 +1,14 @@
+package com.nttdata.accountservice.integration.support;
+
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+
+/**
+ * Venció el plazo de la petición entrante: no se inicia ni se espera más trabajo.
+ */
+public class DeadlineExceededException extends ResponseStatusException {
+
+  public DeadlineExceededException() {
+    super(HttpStatus.GATEWAY_TIMEOUT, "Plazo de la petición agotado");
+  }
+}
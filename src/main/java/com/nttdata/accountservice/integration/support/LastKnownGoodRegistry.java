@@ -0,0 +1,64 @@
+package com.nttdata.accountservice.integration.support;
+
+import com.github.benmanes.caffeine.cache.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+/**
+ * Un {@link LastKnownGoodStore} por servicio remoto, ligado al circuit breaker del mismo nombre
+ * para refrescar en segundo plano cuando el circuito vuelve a CLOSED.
+ */
+@Component
+public class LastKnownGoodRegistry {
+
+  private final CircuitBreakerRegistry circuitBreakerRegistry;
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final Duration maxStaleness;
+  private final long maxSize;
+  private final int refreshBatch;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, LastKnownGoodStore> stores = new ConcurrentHashMap<>();
+
+  @Autowired
+  public LastKnownGoodRegistry(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry,
+                               @Value("${integration.stale.enabled:true}") boolean enabled,
+                               @Value("${integration.stale.max-staleness:PT30M}") Duration maxStaleness,
+                               @Value("${integration.stale.max-size:10000}") long maxSize,
+                               @Value("${integration.stale.refresh-batch:50}") int refreshBatch) {
+    this(circuitBreakerRegistry, meterRegistry, enabled, maxStaleness, maxSize, refreshBatch,
+        Ticker.systemTicker());
+  }
+
+  LastKnownGoodRegistry(CircuitBreakerRegistry circuitBreakerRegistry, MeterRegistry meterRegistry,
+                        boolean enabled, Duration maxStaleness, long maxSize, int refreshBatch,
+                        Ticker ticker) {
+    this.circuitBreakerRegistry = circuitBreakerRegistry;
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.maxStaleness = maxStaleness;
+    this.maxSize = maxSize;
+    this.refreshBatch = refreshBatch;
+    this.ticker = ticker;
+  }
+
+  public LastKnownGoodStore store(String name) {
+    return stores.computeIfAbsent(name, n -> {
+      LastKnownGoodStore store = new LastKnownGoodStore(n, enabled, maxStaleness, maxSize, refreshBatch,
+          meterRegistry, ticker);
+      circuitBreakerRegistry.circuitBreaker(n).getEventPublisher()
+          .onStateTransition(event -> {
+            // en HALF_OPEN los refrescos competirían con las llamadas de prueba del circuito
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+              store.refreshPending();
+            }
+          });
+      return store;
+    });
+  }
+}
@@ -0,0 +1,122 @@
+package com.nttdata.accountservice.integration.support;
+
+import com.github.benmanes.caffeine.cache.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.core.scheduler.*;
+import reactor.util.context.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Último valor bueno por clave de un servicio remoto (stale-while-revalidate).
+ * Si la llamada falla por circuito abierto, timeout o límite de concurrencia, se sirve el
+ * último valor obtenido del servicio, siempre que no supere {@code maxStaleness}; la clave
+ * queda pendiente de refresco. Al volver el circuito a CLOSED se vuelven a consultar en segundo
+ * plano a lo sumo {@code refreshBatch} claves, con el contexto de la lectura que sirvió el valor
+ * (token); el resto se refresca con la siguiente lectura que llegue al servicio (o en la
+ * próxima transición). En HALF_OPEN no se refresca: las llamadas de prueba quedan para el tráfico real.
+ */
+@Slf4j
+public class LastKnownGoodStore {
+
+  private final String name;
+  private final boolean enabled;
+  private final int refreshBatch;
+  private final Cache<String, Object> values;
+  private final Map<String, Supplier<? extends Mono<?>>> pendingRefresh = new ConcurrentHashMap<>();
+  private final Counter served;
+  private final Counter unavailable;
+
+  LastKnownGoodStore(String name, boolean enabled, Duration maxStaleness, long maxSize, int refreshBatch,
+                     MeterRegistry meterRegistry, Ticker ticker) {
+    this.name = name;
+    this.enabled = enabled;
+    this.refreshBatch = refreshBatch;
+    this.values = Caffeine.newBuilder()
+        .ticker(ticker)
+        .expireAfterWrite(maxStaleness)
+        .maximumSize(maxSize)
+        .build();
+    this.served = staleCounter(meterRegistry, name, "served");
+    this.unavailable = staleCounter(meterRegistry, name, "unavailable");
+  }
+
+  /**
+   * Guarda cada valor que llega del servicio remoto; aplicar sobre la llamada real, no sobre cachés.
+   */
+  public <V> Function<Mono<V>, Mono<V>> recording(String key) {
+    return call -> enabled ? call.doOnNext(value -> {
+      values.put(key, value);
+      // un valor fresco deja la clave sin refresco pendiente
+      pendingRefresh.remove(key);
+    }) : call;
+  }
+
+  /**
+   * {@code call} o, si falla por circuito abierto o timeout, el último valor bueno de la clave.
+   * {@code refresh} es la llamada real que se repetirá en segundo plano al cerrarse el circuito.
+   */
+  @SuppressWarnings("unchecked")
+  public <V> Mono<V> orStale(String key, Mono<V> call, Supplier<Mono<V>> refresh) {
+    if (!enabled) return call;
+    return call.onErrorResume(LastKnownGoodStore::isUnavailable, ex -> Mono.deferContextual(ctx -> {
+      Object stale = values.getIfPresent(key);
+      if (stale == null) {
+        unavailable.increment();
+        return Mono.error(ex);
+      }
+      served.increment();
+      // el refresco viaja con el contexto de esta lectura (token, seguridad); sin su plazo, que
+      // ya habrá vencido: lo acotan el TimeLimiter y el presupuesto de reintentos del cliente
+      Context refreshContext = Context.of(ctx).delete(Deadline.class);
+      pendingRefresh.put(key, () -> Mono.defer(refresh).contextWrite(refreshContext));
+      log.warn("{} no disponible ({}): se sirve el último valor conocido de {}", name, ex.toString(), key);
+      return Mono.just((V) stale);
+    }));
+  }
+
+  // Circuito de nuevo en CLOSED: refrescar en segundo plano hasta refreshBatch claves servidas desde
+  // el último valor, para no lanzar de golpe una llamada por clave contra un servicio que se recupera
+  void refreshPending() {
+    int started = 0;
+    for (String key : new ArrayList<>(pendingRefresh.keySet())) {
+      if (started >= refreshBatch) break;
+      Supplier<? extends Mono<?>> refresh = pendingRefresh.remove(key);
+      if (refresh == null) continue;
+      // valor ya caducado: no hay nada que servir, la próxima lectura consultará igualmente
+      if (values.getIfPresent(key) == null) continue;
+      started++;
+      // fuera del hilo que publica la transición del circuito
+      Mono.defer(refresh).subscribeOn(Schedulers.parallel()).subscribe(
+          value -> log.info("{}: refrescado {} tras cerrarse el circuito", name, key),
+          ex -> log.debug("{}: refresco de {} fallido: {}", name, key, ex.toString()));
+    }
+  }
+
+  int pendingCount() {
+    return pendingRefresh.size();
+  }
+
+  static boolean isUnavailable(Throwable ex) {
+    if (ex instanceof CallNotPermittedException || ex instanceof TimeoutException
+        || ex instanceof ConcurrencyLimitExceededException) return true;
+    return ex instanceof ResponseStatusException
+        && ((ResponseStatusException) ex).getStatus() == HttpStatus.GATEWAY_TIMEOUT;
+  }
+
+  private static Counter staleCounter(MeterRegistry registry, String name, String result) {
+    return Counter.builder("integration.stale.fallbacks")
+        .description("Fallos por circuito abierto o timeout: served con último valor bueno, unavailable sin él")
+        .tag("name", name)
+        .tag("result", result)
+        .register(registry);
+  }
+}
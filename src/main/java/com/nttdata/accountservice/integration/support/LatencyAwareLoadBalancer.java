@@ -0,0 +1,189 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.cloud.client.*;
+import org.springframework.cloud.client.discovery.*;
+import org.springframework.http.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.reactive.function.client.*;
+import org.springframework.web.server.*;
+import org.springframework.web.util.*;
+import reactor.core.publisher.*;
+
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+/**
+ * Balanceo en cliente para URLs {@code lb://<servicio>} sobre las instancias del
+ * {@link DiscoveryClient}. Elige entre dos instancias al azar la de menor
+ * {@code latencia EWMA × (peticiones en curso + 1)} y expulsa temporalmente las que
+ * encadenan {@code max-slow} respuestas por encima de {@code latency-threshold} o
+ * {@code max-failures} fallos. Una respuesta lenta aislada solo encarece la instancia en la
+ * elección. Si todas están expulsadas se usan igualmente. El resto de URLs pasan sin cambios.
+ */
+@Slf4j
+@Component
+public class LatencyAwareLoadBalancer implements ExchangeFilterFunction {
+
+  static final String SCHEME = "lb";
+
+  private final DiscoveryClient discoveryClient;
+  private final MeterRegistry meterRegistry;
+  private final long decayNanos;
+  private final long latencyThresholdNanos;
+  private final int maxSlow;
+  private final int maxFailures;
+  private final Duration ejectionDuration;
+  private final ConcurrentMap<String, InstanceStats> stats = new ConcurrentHashMap<>();
+
+  public LatencyAwareLoadBalancer(DiscoveryClient discoveryClient, MeterRegistry meterRegistry,
+                                  @Value("${integration.lb.decay:PT10S}") Duration decay,
+                                  @Value("${integration.lb.ejection.latency-threshold:PT1S}") Duration latencyThreshold,
+                                  @Value("${integration.lb.ejection.max-slow:3}") int maxSlow,
+                                  @Value("${integration.lb.ejection.max-failures:3}") int maxFailures,
+                                  @Value("${integration.lb.ejection.duration:PT30S}") Duration ejectionDuration) {
+    this.discoveryClient = discoveryClient;
+    this.meterRegistry = meterRegistry;
+    this.decayNanos = decay.toNanos();
+    this.latencyThresholdNanos = latencyThreshold.toNanos();
+    this.maxSlow = maxSlow;
+    this.maxFailures = maxFailures;
+    this.ejectionDuration = ejectionDuration;
+  }
+
+  @Override
+  public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+    URI url = request.url();
+    if (!SCHEME.equalsIgnoreCase(url.getScheme())) return next.exchange(request);
+    String serviceId = url.getHost();
+    return Mono.defer(() -> {
+      ServiceInstance instance = choose(serviceId);
+      if (instance == null) {
+        return Mono.error(new ResponseStatusException(
+            HttpStatus.SERVICE_UNAVAILABLE, "Sin instancias disponibles de " + serviceId));
+      }
+      InstanceStats instanceStats = stats(serviceId, instance);
+      instanceStats.start();
+      long start = System.nanoTime();
+      return next.exchange(ClientRequest.from(request).url(routedUrl(url, instance)).build())
+          .doOnNext(response -> instanceStats.complete(
+              System.nanoTime() - start, response.statusCode().is5xxServerError()))
+          .doOnError(ex -> instanceStats.complete(System.nanoTime() - start, true))
+          .doFinally(signal -> instanceStats.finish());
+    });
+  }
+
+  ServiceInstance choose(String serviceId) {
+    List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+    if (instances.isEmpty()) return null;
+    List<ServiceInstance> available = instances.stream()
+        .filter(instance -> !stats(serviceId, instance).isEjected())
+        .collect(Collectors.toList());
+    // todas expulsadas: mejor una instancia lenta que ninguna
+    List<ServiceInstance> candidates = available.isEmpty() ? instances : available;
+    if (candidates.size() == 1) return candidates.get(0);
+    // dos al azar, la de menor coste (power of two choices)
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(candidates.size());
+    int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+    ServiceInstance a = candidates.get(first);
+    ServiceInstance b = candidates.get(second);
+    return stats(serviceId, a).cost() <= stats(serviceId, b).cost() ? a : b;
+  }
+
+  // ===== Helpers =====
+
+  private InstanceStats stats(String serviceId, ServiceInstance instance) {
+    return stats.computeIfAbsent(serviceId + "|" + instance.getUri(),
+        key -> new InstanceStats(serviceId, instance.getUri()));
+  }
+
+  private static URI routedUrl(URI original, ServiceInstance instance) {
+    return UriComponentsBuilder.fromUri(original)
+        .scheme(instance.isSecure() ? "https" : "http")
+        .host(instance.getHost())
+        .port(instance.getPort())
+        .build(true)
+        .toUri();
+  }
+
+  /**
+   * Latencia EWMA con pico (una respuesta más lenta que la media la reemplaza), peticiones
+   * en curso, respuestas lentas y fallos consecutivos, y expulsión de una instancia.
+   */
+  private final class InstanceStats {
+    private final String serviceId;
+    private final URI uri;
+    private final Counter latencyEjections;
+    private final Counter failureEjections;
+    private double ewmaNanos;
+    private long lastSampleNanos = System.nanoTime();
+    private int outstanding;
+    private int consecutiveSlow;
+    private int consecutiveFailures;
+    private Instant ejectedUntil = Instant.EPOCH;
+
+    private InstanceStats(String serviceId, URI uri) {
+      this.serviceId = serviceId;
+      this.uri = uri;
+      this.latencyEjections = ejectionCounter(serviceId, "latency");
+      this.failureEjections = ejectionCounter(serviceId, "failures");
+    }
+
+    private synchronized void start() {
+      outstanding++;
+    }
+
+    private synchronized void finish() {
+      outstanding--;
+    }
+
+    private synchronized void complete(long latencyNanos, boolean failed) {
+      long now = System.nanoTime();
+      double weight = Math.exp(-(double) (now - lastSampleNanos) / decayNanos);
+      lastSampleNanos = now;
+      ewmaNanos = latencyNanos > ewmaNanos ? latencyNanos : ewmaNanos * weight + latencyNanos * (1 - weight);
+      consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+      // el pico de la EWMA lo fija una sola respuesta: para expulsar hacen falta varias seguidas
+      consecutiveSlow = latencyNanos > latencyThresholdNanos ? consecutiveSlow + 1 : 0;
+      if (consecutiveFailures >= maxFailures) {
+        eject(failureEjections, consecutiveFailures + " fallos seguidos");
+        consecutiveFailures = 0;
+      } else if (consecutiveSlow >= maxSlow) {
+        eject(latencyEjections, consecutiveSlow + " respuestas lentas seguidas, última "
+            + Duration.ofNanos(latencyNanos).toMillis() + " ms");
+        consecutiveSlow = 0;
+      }
+    }
+
+    // Llamar con el monitor tomado
+    private void eject(Counter counter, String reason) {
+      ejectedUntil = Instant.now().plus(ejectionDuration);
+      counter.increment();
+      log.warn("Instancia {} de {} expulsada durante {} ({})", uri, serviceId, ejectionDuration, reason);
+    }
+
+    private synchronized boolean isEjected() {
+      return Instant.now().isBefore(ejectedUntil);
+    }
+
+    // sin muestras nuevas la latencia se olvida poco a poco: una instancia expulsada vuelve a probarse
+    private synchronized double cost() {
+      double decayed = ewmaNanos * Math.exp(-(double) (System.nanoTime() - lastSampleNanos) / decayNanos);
+      return (decayed + 1) * (outstanding + 1);
+    }
+  }
+
+  private Counter ejectionCounter(String serviceId, String reason) {
+    return Counter.builder("integration.lb.ejections")
+        .description("Expulsiones temporales de instancias por respuestas lentas o fallos seguidos")
+        .tag("service", serviceId)
+        .tag("reason", reason)
+        .register(meterRegistry);
+  }
+}
@@ -0,0 +1,115 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Peticiones de cobertura (hedging) contra la cola de latencia: si la llamada no responde
+ * dentro del percentil configurado de las latencias recientes, se lanza una segunda (el
+ * balanceador la envía a otra instancia) y gana la primera que responda; la otra se cancela.
+ * Las coberturas se limitan con un presupuesto: cada llamada aporta {@code maxExtraLoad}
+ * fichas y cada cobertura consume una, de modo que la carga extra no supera ese porcentaje.
+ */
+public class RequestHedger {
+
+  private static final int WINDOW_SIZE = 256;
+  private static final double MAX_TOKENS = 10;
+
+  private final boolean enabled;
+  private final double percentile;
+  private final Duration minDelay;
+  private final double maxExtraLoad;
+  private final int minSamples;
+  private final Counter sent;
+  private final Counter won;
+
+  private final long[] latencies = new long[WINDOW_SIZE];
+  private int samples;
+  private int next;
+  private double tokens;
+
+  RequestHedger(String name, boolean enabled, double percentile, Duration minDelay,
+                double maxExtraLoad, int minSamples, MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.percentile = percentile;
+    this.minDelay = minDelay;
+    this.maxExtraLoad = maxExtraLoad;
+    this.minSamples = minSamples;
+    this.sent = hedgeCounter(meterRegistry, name, "sent");
+    this.won = hedgeCounter(meterRegistry, name, "won");
+  }
+
+  /**
+   * Ejecuta {@code call} y, si tarda más que el retardo de cobertura y hay presupuesto, la
+   * repite. Un error de la cobertura se ignora: decide la llamada original.
+   */
+  public <V> Mono<V> execute(Supplier<Mono<V>> call) {
+    if (!enabled) return call.get();
+    return Mono.defer(() -> {
+      Duration delay = hedgeDelay();
+      addToken();
+      Mono<Optional<V>> primary = timed(call);
+      if (delay == null) return primary.flatMap(Mono::justOrEmpty);
+      Mono<Optional<V>> hedge = Mono.delay(delay)
+          .flatMap(tick -> {
+            if (!tryAcquire()) return Mono.never();
+            sent.increment();
+            return timed(call)
+                .doOnNext(result -> won.increment())
+                .onErrorResume(ex -> Mono.never());
+          });
+      return Mono.firstWithSignal(primary, hedge).flatMap(Mono::justOrEmpty);
+    });
+  }
+
+  // ===== Helpers =====
+
+  // Resultado envuelto para que "vacío" también cuente como respuesta
+  private <V> Mono<Optional<V>> timed(Supplier<Mono<V>> call) {
+    return Mono.defer(() -> {
+      long start = System.nanoTime();
+      return call.get()
+          .map(Optional::of)
+          .defaultIfEmpty(Optional.empty())
+          .doOnNext(result -> record(System.nanoTime() - start));
+    });
+  }
+
+  // Nulo mientras no haya muestras suficientes para estimar el percentil
+  private synchronized Duration hedgeDelay() {
+    if (samples < minSamples) return null;
+    long[] sorted = Arrays.copyOf(latencies, samples);
+    Arrays.sort(sorted);
+    int index = Math.min(samples - 1, (int) Math.ceil(percentile * samples) - 1);
+    Duration observed = Duration.ofNanos(sorted[Math.max(0, index)]);
+    return observed.compareTo(minDelay) > 0 ? observed : minDelay;
+  }
+
+  private synchronized void record(long nanos) {
+    latencies[next] = nanos;
+    next = (next + 1) % WINDOW_SIZE;
+    samples = Math.min(samples + 1, WINDOW_SIZE);
+  }
+
+  private synchronized void addToken() {
+    tokens = Math.min(MAX_TOKENS, tokens + maxExtraLoad);
+  }
+
+  private synchronized boolean tryAcquire() {
+    if (tokens < 1) return false;
+    tokens -= 1;
+    return true;
+  }
+
+  private static Counter hedgeCounter(MeterRegistry registry, String name, String result) {
+    return Counter.builder("integration.hedge.requests")
+        .description("Peticiones de cobertura: sent lanzadas, won respondieron antes que la original")
+        .tag("name", name)
+        .tag("result", result)
+        .register(registry);
+  }
+}
@@ -0,0 +1,42 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+/**
+ * Un {@link RequestHedger} por servicio remoto, todos con la misma configuración.
+ */
+@Component
+public class RequestHedgerRegistry {
+
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final double percentile;
+  private final Duration minDelay;
+  private final double maxExtraLoad;
+  private final int minSamples;
+  private final ConcurrentMap<String, RequestHedger> hedgers = new ConcurrentHashMap<>();
+
+  public RequestHedgerRegistry(MeterRegistry meterRegistry,
+                               @Value("${integration.hedge.enabled:false}") boolean enabled,
+                               @Value("${integration.hedge.percentile:0.95}") double percentile,
+                               @Value("${integration.hedge.min-delay:PT0.02S}") Duration minDelay,
+                               @Value("${integration.hedge.max-extra-load:0.05}") double maxExtraLoad,
+                               @Value("${integration.hedge.min-samples:20}") int minSamples) {
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.percentile = percentile;
+    this.minDelay = minDelay;
+    this.maxExtraLoad = maxExtraLoad;
+    this.minSamples = minSamples;
+  }
+
+  public RequestHedger hedger(String name) {
+    return hedgers.computeIfAbsent(name, n -> new RequestHedger(
+        n, enabled, percentile, minDelay, maxExtraLoad, minSamples, meterRegistry));
+  }
+}
@@ -0,0 +1,117 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.http.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.*;
+import reactor.util.retry.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Reintentos de GETs idempotentes ante fallos transitorios (error de conexión, 502/503/504),
+ * con espera decorrelated jitter entre {@code baseDelay} y {@code maxDelay}. Un presupuesto
+ * de fichas limita la carga extra: cada llamada aporta {@code ratio} fichas (hasta
+ * {@code maxTokens}) y cada reintento consume una; sin fichas el error se devuelve tal cual.
+ * Debe ir dentro del TimeLimiter para que los reintentos no alarguen el timeout total.
+ */
+public class RetryBudget {
+
+  private final boolean enabled;
+  private final int maxAttempts;
+  private final double ratio;
+  private final double maxTokens;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final Counter attempted;
+  private final Counter succeeded;
+  private final Counter denied;
+
+  private double tokens;
+
+  RetryBudget(String name, boolean enabled, int maxAttempts, double ratio, double maxTokens,
+              Duration baseDelay, Duration maxDelay, MeterRegistry meterRegistry) {
+    this.enabled = enabled;
+    this.maxAttempts = maxAttempts;
+    this.ratio = ratio;
+    this.maxTokens = maxTokens;
+    this.tokens = maxTokens;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.attempted = retryCounter(meterRegistry, name, "attempted");
+    this.succeeded = retryCounter(meterRegistry, name, "succeeded");
+    this.denied = retryCounter(meterRegistry, name, "denied");
+  }
+
+  public <V> Mono<V> execute(Supplier<Mono<V>> call) {
+    if (!enabled) return call.get();
+    return Mono.defer(() -> {
+      deposit();
+      Attempts attempts = new Attempts(baseDelay);
+      return Mono.defer(call)
+          .retryWhen(Retry.from(signals -> signals.concatMap(signal -> backoff(signal.failure(), attempts))))
+          .doOnSuccess(value -> {
+            if (attempts.retries > 0) succeeded.increment();
+          });
+    });
+  }
+
+  static boolean isTransient(Throwable ex) {
+    if (ex instanceof WebClientRequestException) return true;
+    if (!(ex instanceof WebClientResponseException)) return false;
+    int status = ((WebClientResponseException) ex).getRawStatusCode();
+    return status == HttpStatus.BAD_GATEWAY.value()
+        || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+        || status == HttpStatus.GATEWAY_TIMEOUT.value();
+  }
+
+  // ===== Helpers =====
+
+  private Mono<Long> backoff(Throwable failure, Attempts attempts) {
+    if (!isTransient(failure) || attempts.retries + 1 >= maxAttempts) return Mono.error(failure);
+    if (!tryWithdraw()) {
+      denied.increment();
+      return Mono.error(failure);
+    }
+    attempts.retries++;
+    attempted.increment();
+    return Mono.delay(attempts.nextDelay());
+  }
+
+  private synchronized void deposit() {
+    tokens = Math.min(maxTokens, tokens + ratio);
+  }
+
+  private synchronized boolean tryWithdraw() {
+    if (tokens < 1) return false;
+    tokens -= 1;
+    return true;
+  }
+
+  private static Counter retryCounter(MeterRegistry registry, String name, String result) {
+    return Counter.builder("integration.retry.retries")
+        .description("Reintentos: attempted lanzados, succeeded llamadas resueltas tras reintentar, denied sin presupuesto")
+        .tag("name", name)
+        .tag("result", result)
+        .register(registry);
+  }
+
+  // Reintentos de una llamada y última espera (decorrelated jitter)
+  private final class Attempts {
+    private int retries;
+    private long previousNanos;
+
+    private Attempts(Duration baseDelay) {
+      this.previousNanos = baseDelay.toNanos();
+    }
+
+    private Duration nextDelay() {
+      long base = baseDelay.toNanos();
+      long upper = Math.max(base + 1, previousNanos * 3);
+      previousNanos = Math.min(maxDelay.toNanos(), ThreadLocalRandom.current().nextLong(base, upper));
+      return Duration.ofNanos(previousNanos);
+    }
+  }
+}
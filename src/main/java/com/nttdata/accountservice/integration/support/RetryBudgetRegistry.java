@@ -0,0 +1,45 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.stereotype.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+/**
+ * Un {@link RetryBudget} por servicio remoto, todos con la misma configuración.
+ */
+@Component
+public class RetryBudgetRegistry {
+
+  private final MeterRegistry meterRegistry;
+  private final boolean enabled;
+  private final int maxAttempts;
+  private final double ratio;
+  private final double maxTokens;
+  private final Duration baseDelay;
+  private final Duration maxDelay;
+  private final ConcurrentMap<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+  public RetryBudgetRegistry(MeterRegistry meterRegistry,
+                             @Value("${integration.retry.enabled:true}") boolean enabled,
+                             @Value("${integration.retry.max-attempts:3}") int maxAttempts,
+                             @Value("${integration.retry.budget-ratio:0.1}") double ratio,
+                             @Value("${integration.retry.max-tokens:10}") double maxTokens,
+                             @Value("${integration.retry.base-delay:PT0.05S}") Duration baseDelay,
+                             @Value("${integration.retry.max-delay:PT0.5S}") Duration maxDelay) {
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.maxAttempts = maxAttempts;
+    this.ratio = ratio;
+    this.maxTokens = maxTokens;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+  }
+
+  public RetryBudget budget(String name) {
+    return budgets.computeIfAbsent(name, n -> new RetryBudget(
+        n, enabled, maxAttempts, ratio, maxTokens, baseDelay, maxDelay, meterRegistry));
+  }
+}
@@ -0,0 +1,55 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import reactor.core.publisher.*;
+
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Agrupa llamadas idénticas concurrentes: mientras hay una llamada en curso para una clave,
+ * los demás suscriptores de esa clave reciben su mismo resultado (valor, vacío o error) en
+ * lugar de lanzar otra. Al terminar, la clave queda libre y la siguiente llamada sale de nuevo.
+ */
+public class SingleFlight {
+
+  private final ConcurrentMap<String, Mono<?>> inflight = new ConcurrentHashMap<>();
+  private final Counter leaders;
+  private final Counter coalesced;
+
+  SingleFlight(String name, MeterRegistry meterRegistry) {
+    this.leaders = callCounter(meterRegistry, name, "leader");
+    this.coalesced = callCounter(meterRegistry, name, "coalesced");
+  }
+
+  @SuppressWarnings("unchecked")
+  public <V> Mono<V> execute(String key, Supplier<Mono<V>> call) {
+    return Mono.defer(() -> {
+      Mono<?>[] created = new Mono<?>[1];
+      Mono<?> shared = inflight.computeIfAbsent(key, k -> {
+        created[0] = call.get()
+            .doFinally(signal -> inflight.remove(k, created[0]))
+            .cache();
+        return created[0];
+      });
+      if (shared == created[0]) {
+        leaders.increment();
+      } else {
+        coalesced.increment();
+      }
+      return (Mono<V>) shared;
+    });
+  }
+
+  int inflightCount() {
+    return inflight.size();
+  }
+
+  private static Counter callCounter(MeterRegistry registry, String name, String role) {
+    return Counter.builder("integration.singleflight.calls")
+        .description("Llamadas salientes por rol: leader sale a la red, coalesced reutiliza una en curso")
+        .tag("name", name)
+        .tag("role", role)
+        .register(registry);
+  }
+}
@@ -0,0 +1,22 @@
+package com.nttdata.accountservice.integration.support;
+
+import io.micrometer.core.instrument.*;
+import lombok.*;
+import org.springframework.stereotype.*;
+
+import java.util.concurrent.*;
+
+/**
+ * Un {@link SingleFlight} por servicio remoto, al estilo de los registros de Resilience4j.
+ */
+@Component
+@RequiredArgsConstructor
+public class SingleFlightRegistry {
+
+  private final MeterRegistry meterRegistry;
+  private final ConcurrentMap<String, SingleFlight> flights = new ConcurrentHashMap<>();
+
+  public SingleFlight singleFlight(String name) {
+    return flights.computeIfAbsent(name, n -> new SingleFlight(n, meterRegistry));
+  }
+}
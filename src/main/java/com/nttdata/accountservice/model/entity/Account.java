@@ -16,6 +16,23 @@ import java.util.*;
  */
 @Data
 @Document(collection = "accounts")
+// Listado paginado: igualdades, orden por _id y rango de creationDate.
+// Titular y tipo: reglas de alta y consultas de otros servicios (findByHolderDocument).
+// Los crea y valida MongoIndexManager al iniciar.
+// Se lee y escribe con AccountDocumentCodec: un campo nuevo debe agregarse también allí.
+@CompoundIndexes({
+    @CompoundIndex(name = "type_active_id_created",
+        def = "{'accountType': 1, 'active': 1, '_id': -1, 'creationDate': 1}", background = true),
+    @CompoundIndex(name = "active_id_created",
+        def = "{'active': 1, '_id': -1, 'creationDate': 1}", background = true),
+    @CompoundIndex(name = "holder_type",
+        def = "{'holderDocument': 1, 'accountType': 1}", background = true),
+    // LinkedCard.id se guarda como linkedCard._id; def no pasa por el mapeo de campos
+    @CompoundIndex(name = "linked_card_id",
+        def = "{'linkedCard._id': 1}", sparse = true, background = true),
+    @CompoundIndex(name = "authorized_signers",
+        def = "{'authorizedSigners': 1}", sparse = true, background = true)
+})
 public class Account {
   @Id
   private String id;
@@ -31,10 +48,13 @@ public class Account {
   private String accountType;  // SAVINGS, CHECKING, FIXED_TERM
   private Boolean active;
   // Saldos y tasas
+  @Field(targetType = FieldType.DECIMAL128) // requerido para $inc atómico
   private BigDecimal balance;
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal interestRate;
   //Reglas
   private Integer monthlyMovementLimit; // solo SAVINGS
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal maintenanceFee;    // solo CHECKING
   private Integer allowedDayOfMonth;    // solo FIXED_TERM
 
@@ -43,16 +63,21 @@ public class Account {
   private com.nttdata.accountservice.model.LinkedCard linkedCard;
   // Nuevos campos entregable II
   private Integer freeTransactionsLimit;// operaciones sin comisión
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal commissionFee;
   /// / comisión por transacción extra
 
-  private ArrayList<String> opIds;
   private com.nttdata.accountservice.model.entity.OpsCounter opsCounter;
 
   private LocalDate openingDate; // solo FIXED_TERM
   private LocalDate maturityDate; // solo FIXED_TERM
+  @Field(targetType = FieldType.DECIMAL128)
   private BigDecimal earlyWithdrawalPenalty; // % penalización por retiro anticipado
   private Integer term; // plazo en meses
+  // Movimientos escritos junto con el saldo y aún no copiados a account_movements
+  private List<Movement> pendingMovements;
+  // Últimos lotes de saldo aplicados (BalanceBatchProcessor), para conciliar un bulkWrite con conflictos
+  private List<String> batchMarks;
 }
 
 
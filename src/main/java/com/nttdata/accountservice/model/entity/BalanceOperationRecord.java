@@ -0,0 +1,34 @@
+package com.nttdata.accountservice.model.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.*;
+import org.springframework.data.mongodb.core.mapping.*;
+
+import java.math.*;
+import java.time.*;
+
+/**
+ * Registro de idempotencia de una operación de saldo.
+ * El _id es "accountId:operationId"; createdAt alimenta el índice TTL.
+ */
+@Data
+@Document(collection = "balance_operations")
+public class BalanceOperationRecord {
+  public static final String PENDING = "PENDING";
+  public static final String COMPLETED = "COMPLETED";
+
+  @Id
+  private String id;
+  private String accountId;
+  private String operationId;
+  private String status;        // PENDING mientras se aplica, COMPLETED con respuesta
+  // Respuesta original
+  private Boolean applied;
+  @Field(targetType = FieldType.DECIMAL128)
+  private BigDecimal newBalance;
+  @Field(targetType = FieldType.DECIMAL128)
+  private BigDecimal commissionApplied;
+  private String message;
+
+  private Instant createdAt;
+}
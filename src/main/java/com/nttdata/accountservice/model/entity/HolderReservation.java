@@ -0,0 +1,18 @@
+package com.nttdata.accountservice.model.entity;
+
+import lombok.*;
+
+import java.time.*;
+
+/**
+ * Reserva de cupo de un alta en curso dentro del resumen del titular
+ * (AccountRulesService.reserve hasta confirm/release).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HolderReservation {
+  private String reservationId;
+  private String accountType;  // contador que incrementó
+  private Instant at;          // momento de la reserva, del que corre el lease
+}
@@ -0,0 +1,31 @@
+package com.nttdata.accountservice.model.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.*;
+import org.springframework.data.mongodb.core.mapping.*;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * Resumen de cuentas de un titular (colección holder_summaries).
+ * El _id es el documento del titular; counts lleva el número de cuentas por accountType
+ * y se mantiene con $inc en cada alta y baja.
+ */
+@Data
+@Document(collection = "holder_summaries")
+public class HolderSummary {
+  @Id
+  private String id;
+  private String customerType;
+  private Map<String, Integer> counts;
+  // Reservas de altas en curso (AccountRulesService.reserve hasta confirm/release)
+  private List<HolderReservation> reservations;
+
+  private Instant updatedAt;
+
+  public int countOf(String accountType) {
+    if (counts == null || accountType == null) return 0;
+    return counts.getOrDefault(accountType.toUpperCase(), 0);
+  }
+}
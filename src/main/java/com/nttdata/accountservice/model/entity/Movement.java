@@ -0,0 +1,27 @@
+package com.nttdata.accountservice.model.entity;
+
+import lombok.*;
+import org.springframework.data.annotation.*;
+import org.springframework.data.mongodb.core.mapping.*;
+
+import java.math.*;
+import java.time.*;
+
+/**
+ * Movimiento del libro de la cuenta (solo inserción).
+ * El _id es "accountId:operationId", igual que el registro de idempotencia.
+ */
+@Data
+@Document(collection = "account_movements")
+public class Movement {
+  @Id
+  private String id;
+  private String accountId;
+  private String transactionId;  // operationId de la operación de saldo
+  private Instant date;
+  private String type;           // deposit, withdrawal, transfer, commission
+  @Field(targetType = FieldType.DECIMAL128)
+  private BigDecimal amount;     // variación del saldo, negativa en débitos
+  @Field(targetType = FieldType.DECIMAL128)
+  private BigDecimal commissionApplied;
+}
@@ -0,0 +1,178 @@
+package com.nttdata.accountservice.repository;
+
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import org.bson.*;
+import org.bson.types.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Lectura y escritura de {@link Account} campo a campo, sin la reflexión de
+ * MappingMongoConverter. Escribe el mismo documento que el mapeo reflexivo (_id como
+ * ObjectId si es válido, dinero en Decimal128, fechas como Date a inicio del día en la zona
+ * del sistema, nulos omitidos). Al leer acepta el dinero heredado guardado como String y
+ * omite los campos que la entidad no declara (p. ej. la lista opIds).
+ */
+public final class AccountDocumentCodec {
+
+  private AccountDocumentCodec() {
+  }
+
+  public static Account read(Document doc) {
+    Account acc = new Account();
+    acc.setId(id(doc.get("_id")));
+    acc.setAccountNumber((String) doc.get("accountNumber"));
+    acc.setInterbankNumber((String) doc.get("interbankNumber"));
+    acc.setHolderDocument((String) doc.get("holderDocument"));
+    acc.setHolderDocumentType((String) doc.get("holderDocumentType"));
+    acc.setAuthorizedSigners(strings(doc.get("authorizedSigners")));
+    acc.setAccountType((String) doc.get("accountType"));
+    acc.setActive((Boolean) doc.get("active"));
+    acc.setBalance(money(doc.get("balance")));
+    acc.setInterestRate(money(doc.get("interestRate")));
+    acc.setMonthlyMovementLimit(integer(doc.get("monthlyMovementLimit")));
+    acc.setMaintenanceFee(money(doc.get("maintenanceFee")));
+    acc.setAllowedDayOfMonth(integer(doc.get("allowedDayOfMonth")));
+    acc.setCreationDate(localDate(doc.get("creationDate")));
+    Object card = doc.get("linkedCard");
+    if (card instanceof Document) {
+      acc.setLinkedCard(new LinkedCard().id(id(((Document) card).get("_id"))));
+    }
+    acc.setFreeTransactionsLimit(integer(doc.get("freeTransactionsLimit")));
+    acc.setCommissionFee(money(doc.get("commissionFee")));
+    Object counter = doc.get("opsCounter");
+    if (counter instanceof Document) {
+      OpsCounter oc = new OpsCounter();
+      oc.setYearMonth((String) ((Document) counter).get("yearMonth"));
+      oc.setCount(integer(((Document) counter).get("count")));
+      acc.setOpsCounter(oc);
+    }
+    acc.setOpeningDate(localDate(doc.get("openingDate")));
+    acc.setMaturityDate(localDate(doc.get("maturityDate")));
+    acc.setEarlyWithdrawalPenalty(money(doc.get("earlyWithdrawalPenalty")));
+    acc.setTerm(integer(doc.get("term")));
+    Object pending = doc.get("pendingMovements");
+    if (pending instanceof List) {
+      List<Movement> movements = new ArrayList<>();
+      for (Object m : (List<?>) pending) movements.add(movement((Document) m));
+      acc.setPendingMovements(movements);
+    }
+    acc.setBatchMarks(strings(doc.get("batchMarks")));
+    return acc;
+  }
+
+  public static void write(Account acc, Document doc) {
+    put(doc, "_id", objectId(acc.getId()));
+    put(doc, "accountNumber", acc.getAccountNumber());
+    put(doc, "interbankNumber", acc.getInterbankNumber());
+    put(doc, "holderDocument", acc.getHolderDocument());
+    put(doc, "holderDocumentType", acc.getHolderDocumentType());
+    put(doc, "authorizedSigners",
+        acc.getAuthorizedSigners() == null ? null : new ArrayList<>(acc.getAuthorizedSigners()));
+    put(doc, "accountType", acc.getAccountType());
+    put(doc, "active", acc.getActive());
+    put(doc, "balance", decimal(acc.getBalance()));
+    put(doc, "interestRate", decimal(acc.getInterestRate()));
+    put(doc, "monthlyMovementLimit", acc.getMonthlyMovementLimit());
+    put(doc, "maintenanceFee", decimal(acc.getMaintenanceFee()));
+    put(doc, "allowedDayOfMonth", acc.getAllowedDayOfMonth());
+    put(doc, "creationDate", toDate(acc.getCreationDate()));
+    if (acc.getLinkedCard() != null) {
+      Document card = new Document();
+      put(card, "_id", objectId(acc.getLinkedCard().getId()));
+      doc.put("linkedCard", card);
+    }
+    put(doc, "freeTransactionsLimit", acc.getFreeTransactionsLimit());
+    put(doc, "commissionFee", decimal(acc.getCommissionFee()));
+    if (acc.getOpsCounter() != null) {
+      Document counter = new Document();
+      put(counter, "yearMonth", acc.getOpsCounter().getYearMonth());
+      put(counter, "count", acc.getOpsCounter().getCount());
+      doc.put("opsCounter", counter);
+    }
+    put(doc, "openingDate", toDate(acc.getOpeningDate()));
+    put(doc, "maturityDate", toDate(acc.getMaturityDate()));
+    put(doc, "earlyWithdrawalPenalty", decimal(acc.getEarlyWithdrawalPenalty()));
+    put(doc, "term", acc.getTerm());
+    if (acc.getPendingMovements() != null) {
+      List<Document> movements = new ArrayList<>();
+      acc.getPendingMovements().forEach(m -> movements.add(movement(m)));
+      doc.put("pendingMovements", movements);
+    }
+    put(doc, "batchMarks", acc.getBatchMarks() == null ? null : new ArrayList<>(acc.getBatchMarks()));
+  }
+
+  // ===== Helpers =====
+
+  private static Movement movement(Document doc) {
+    Movement m = new Movement();
+    m.setId(id(doc.get("_id")));
+    m.setAccountId((String) doc.get("accountId"));
+    m.setTransactionId((String) doc.get("transactionId"));
+    Object date = doc.get("date");
+    m.setDate(date == null ? null : ((Date) date).toInstant());
+    m.setType((String) doc.get("type"));
+    m.setAmount(money(doc.get("amount")));
+    m.setCommissionApplied(money(doc.get("commissionApplied")));
+    return m;
+  }
+
+  private static Document movement(Movement m) {
+    Document doc = new Document();
+    put(doc, "_id", objectId(m.getId()));
+    put(doc, "accountId", m.getAccountId());
+    put(doc, "transactionId", m.getTransactionId());
+    put(doc, "date", m.getDate() == null ? null : Date.from(m.getDate()));
+    put(doc, "type", m.getType());
+    put(doc, "amount", decimal(m.getAmount()));
+    put(doc, "commissionApplied", decimal(m.getCommissionApplied()));
+    return doc;
+  }
+
+  private static void put(Document doc, String key, Object value) {
+    if (value != null) doc.put(key, value);
+  }
+
+  // Mismo criterio que el mapeo reflexivo para ids String: ObjectId si el texto lo es
+  private static Object objectId(String id) {
+    return id != null && ObjectId.isValid(id) ? new ObjectId(id) : id;
+  }
+
+  private static String id(Object value) {
+    if (value == null) return null;
+    return value instanceof ObjectId ? ((ObjectId) value).toHexString() : value.toString();
+  }
+
+  private static Decimal128 decimal(BigDecimal value) {
+    return value == null ? null : new Decimal128(value);
+  }
+
+  private static BigDecimal money(Object value) {
+    if (value == null) return null;
+    if (value instanceof Decimal128) return ((Decimal128) value).bigDecimalValue();
+    if (value instanceof BigDecimal) return (BigDecimal) value;
+    // Cuentas anteriores a Decimal128: el mapeo por defecto guardaba BigDecimal como String
+    return new BigDecimal(value.toString());
+  }
+
+  private static Integer integer(Object value) {
+    return value == null ? null : ((Number) value).intValue();
+  }
+
+  private static Date toDate(LocalDate value) {
+    return value == null ? null : Date.from(value.atStartOfDay(ZoneId.systemDefault()).toInstant());
+  }
+
+  private static LocalDate localDate(Object value) {
+    return value == null ? null
+        : LocalDate.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<String> strings(Object value) {
+    return value == null ? null : new ArrayList<>((List<String>) value);
+  }
+}
@@ -0,0 +1,47 @@
+package com.nttdata.accountservice.repository;
+
+import com.nttdata.accountservice.model.entity.*;
+import org.bson.Document;
+import org.bson.conversions.*;
+import org.springframework.data.mapping.context.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.*;
+import org.springframework.data.util.*;
+
+/**
+ * MappingMongoConverter que lee y escribe {@link Account} con {@link AccountDocumentCodec}.
+ * No se registra como conversión personalizada porque eso convertiría Account en tipo
+ * simple y perdería sus metadatos de mapeo (índices, _id y Decimal128 en consultas y
+ * updates). El resto de tipos y las proyecciones a interfaces/DTO siguen el mapeo reflexivo.
+ */
+public class AccountMongoConverter extends MappingMongoConverter {
+
+  private final boolean codecEnabled;
+
+  public AccountMongoConverter(DbRefResolver dbRefResolver,
+                               MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext,
+                               boolean codecEnabled) {
+    super(dbRefResolver, mappingContext);
+    this.codecEnabled = codecEnabled;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  protected <S> S read(TypeInformation<S> type, Bson bson) {
+    if (codecEnabled && type.getType() == Account.class && bson instanceof Document) {
+      return (S) AccountDocumentCodec.read((Document) bson);
+    }
+    return super.read(type, bson);
+  }
+
+  @Override
+  public void write(Object obj, Bson bson) {
+    if (codecEnabled && obj != null && obj.getClass() == Account.class && bson instanceof Document) {
+      AccountDocumentCodec.write((Account) obj, (Document) bson);
+      // _class igual que el mapeo reflexivo
+      getTypeMapper().writeType(ClassTypeInformation.from(Account.class), bson);
+      return;
+    }
+    super.write(obj, bson);
+  }
+}
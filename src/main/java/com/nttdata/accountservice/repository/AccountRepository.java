@@ -6,7 +6,11 @@ import reactor.core.publisher.*;
 
 
 @Repository
-public interface AccountRepository extends ReactiveMongoRepository<com.nttdata.accountservice.model.entity.Account, String> {
+public interface AccountRepository extends ReactiveMongoRepository<com.nttdata.accountservice.model.entity.Account, String>, AccountRepositoryCustom {
   Flux<com.nttdata.accountservice.model.entity.Account> findByHolderDocument(String holderDocument);
 
+  // Límites de la cuenta: solo los campos que lee getAccountLimits
+  @Query(value = "{ '_id': ?0 }", fields = "{ 'freeTransactionsLimit': 1, 'commissionFee': 1, 'opsCounter': 1 }")
+  Mono<com.nttdata.accountservice.model.entity.Account> findLimitsById(String id);
+
 }
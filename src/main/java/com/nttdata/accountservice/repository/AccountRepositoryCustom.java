@@ -0,0 +1,20 @@
+package com.nttdata.accountservice.repository;
+
+import com.nttdata.accountservice.model.entity.*;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+
+import java.util.*;
+
+public interface AccountRepositoryCustom {
+  // Página por keyset sobre _id (descendente), con filtros opcionales
+  Flux<Account> findPage(AccountSearchCriteria criteria);
+
+  // Lecturas proyectadas a los campos pedidos (?fields=)
+  Mono<Account> findByIdIncluding(String id, Collection<String> fields);
+
+  Flux<Account> findByHolderDocumentIncluding(String holderDocument, Collection<String> fields);
+
+  // $set de campos sueltos; devuelve la cuenta actualizada o vacío si no existe
+  Mono<Account> updateFields(String id, Update update);
+}
@@ -0,0 +1,66 @@
+package com.nttdata.accountservice.repository;
+
+import com.nttdata.accountservice.model.entity.*;
+import lombok.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+
+import java.util.*;
+
+/**
+ * Consultas dinámicas de cuentas. Igualdades primero, orden por _id y rango de fecha al
+ * final, alineado con los índices compuestos declarados en {@link Account}.
+ */
+@RequiredArgsConstructor
+public class AccountRepositoryImpl implements AccountRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Flux<Account> findPage(AccountSearchCriteria search) {
+    Criteria criteria = new Criteria();
+    if (search.getAccountType() != null) {
+      criteria.and("accountType").is(search.getAccountType());
+    }
+    if (search.getActive() != null) {
+      criteria.and("active").is(search.getActive());
+    }
+    if (search.getAfterId() != null) {
+      criteria.and("id").lt(search.getAfterId());
+    }
+    if (search.getCreationDateFrom() != null || search.getCreationDateTo() != null) {
+      Criteria date = criteria.and("creationDate");
+      if (search.getCreationDateFrom() != null) date.gte(search.getCreationDateFrom());
+      if (search.getCreationDateTo() != null) date.lte(search.getCreationDateTo());
+    }
+    Query query = new Query(criteria)
+        .with(Sort.by(Sort.Direction.DESC, "id"))
+        .limit(search.getLimit());
+    return mongoTemplate.find(query, Account.class);
+  }
+
+  @Override
+  public Mono<Account> findByIdIncluding(String id, Collection<String> fields) {
+    return mongoTemplate.findOne(including(Criteria.where("id").is(id), fields), Account.class);
+  }
+
+  @Override
+  public Flux<Account> findByHolderDocumentIncluding(String holderDocument, Collection<String> fields) {
+    return mongoTemplate.find(
+        including(Criteria.where("holderDocument").is(holderDocument), fields), Account.class);
+  }
+
+  @Override
+  public Mono<Account> updateFields(String id, Update update) {
+    return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(id)), update,
+        FindAndModifyOptions.options().returnNew(true), Account.class);
+  }
+
+  private static Query including(Criteria criteria, Collection<String> fields) {
+    Query query = new Query(criteria);
+    query.fields().include(fields.toArray(new String[0]));
+    return query;
+  }
+}
@@ -0,0 +1,18 @@
+package com.nttdata.accountservice.repository;
+
+import lombok.*;
+
+import java.time.*;
+
+/**
+ * Filtros y posición (keyset) para listar cuentas por páginas.
+ */
+@Data
+public class AccountSearchCriteria {
+  private String accountType;
+  private Boolean active;
+  private LocalDate creationDateFrom;  // inclusive
+  private LocalDate creationDateTo;    // inclusive
+  private String afterId;              // _id de la última cuenta de la página anterior
+  private int limit;
+}
@@ -0,0 +1,20 @@
+package com.nttdata.accountservice.repository;
+
+import com.nttdata.accountservice.model.entity.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.repository.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+
+
+@Repository
+public interface MovementRepository extends ReactiveMongoRepository<Movement, String> {
+  // Primera página
+  Flux<Movement> findByAccountId(String accountId, Pageable page);
+
+  // Páginas siguientes (keyset): movimientos anteriores a (date, _id) del cursor
+  @Query("{ 'accountId': ?0, '$or': [ { 'date': { '$lt': ?1 } }, { 'date': ?1, '_id': { '$lt': ?2 } } ] }")
+  Flux<Movement> findPageBefore(String accountId, Instant date, String id, Pageable page);
+}
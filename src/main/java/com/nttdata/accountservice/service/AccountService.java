@@ -3,11 +3,20 @@ package com.nttdata.accountservice.service;
 import com.nttdata.accountservice.model.*;
 import reactor.core.publisher.*;
 
+import java.time.*;
+
 public interface AccountService {
   Flux<AccountResponse> listAccounts();
 
+  Mono<InlineResponse200> listAccountsPage(Integer limit, String cursor, String accountType,
+                                           Boolean active, LocalDate creationDateFrom,
+                                           LocalDate creationDateTo);
+
   Mono<AccountResponse> getAccountById(String id);
 
+  // Solo los campos de fields (separados por coma); sin fields, la cuenta completa
+  Mono<AccountResponse> getAccountById(String id, String fields);
+
   Mono<AccountResponse> createAccount(AccountRequest request);
 
   Mono<AccountResponse> updateAccount(String id, AccountRequest request);
@@ -18,6 +27,12 @@ public interface AccountService {
 
   Mono<BalanceOperationResponse> applyBalanceOperation(String accountId, BalanceOperationRequest request);
 
+  Mono<BalanceOperationBatchResponse> applyBalanceOperationsBatch(BalanceOperationBatchRequest request);
+
   Flux<AccountResponse> getAccountsByHolderDocument(String holderDocument);
 
+  Flux<AccountResponse> getAccountsByHolderDocument(String holderDocument, String fields);
+
+  Flux<AccountMovement> listAccountMovements(String accountId, String cursor, Integer limit);
+
 }
@@ -0,0 +1,364 @@
+package com.nttdata.accountservice.service.balance;
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.http.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Motor de operaciones de saldo.
+ * Cada operación se reserva en {@link BalanceIdempotencyStore} y se aplica con un único
+ * findAndModify condicional: el filtro exige día permitido (FIXED_TERM) y saldo suficiente,
+ * y la actualización usa $inc sobre balance y opsCounter.count devolviendo el nuevo estado.
+ * El mismo findAndModify agrega el movimiento a pendingMovements de la cuenta; después se
+ * copia a {@link MovementLedger}, se completa el registro y se quita de la cuenta. Si algo
+ * de eso falla, la repetición de la operación o la siguiente operación sobre la cuenta lo
+ * recuperan. Mientras el movimiento siga pendiente el filtro no vuelve a coincidir, así que
+ * un reintento tras un error ambiguo (timeout después de escribir) no aplica el saldo dos
+ * veces. Una operación repetida devuelve la respuesta original guardada.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AccountBalanceEngine {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final String FIXED_TERM = "FIXED_TERM";
+  // Campos que leen las reglas de saldo y la respuesta (compartidos con el lote)
+  static final String[] BALANCE_FIELDS = {
+      "accountType", "allowedDayOfMonth", "balance", "opsCounter", "freeTransactionsLimit", "commissionFee"};
+  // Un pendiente más antiguo ya no es de una operación en curso: lo copia la siguiente operación
+  private static final Duration STALE_PENDING = Duration.ofMinutes(1);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final BalanceIdempotencyStore idempotencyStore;
+  private final MovementLedger movementLedger;
+  private final AccountDataMigration dataMigration;
+
+  public Mono<BalanceOperationResponse> apply(String accountId, BalanceOperationRequest request) {
+    return idempotencyStore.claim(accountId, request.getOperationId())
+        .flatMap(previous -> previous.isPresent()
+            ? resume(accountId, request, previous.get())
+            : run(accountId, request));
+  }
+
+  /**
+   * Respuesta de una operación ya reservada. Si sigue en curso pero su movimiento está
+   * pendiente en la cuenta, la operación se aplicó: se recupera en vez de responder 409. Si no
+   * hay movimiento y la reserva supera el lease (petición cortada, proceso caído, liberación o
+   * lote fallidos), esta repetición la toma y aplica la operación.
+   */
+  public Mono<BalanceOperationResponse> resume(String accountId, BalanceOperationRequest request,
+                                               BalanceOperationRecord record) {
+    if (BalanceOperationRecord.COMPLETED.equals(record.getStatus())) {
+      return BalanceIdempotencyStore.replay(record);
+    }
+    return recover(accountId, record.getOperationId())
+        .switchIfEmpty(Mono.defer(() -> idempotencyStore.takeOver(accountId, record.getOperationId())
+            .flatMap(taken -> taken ? run(accountId, request) : BalanceIdempotencyStore.replay(record))));
+  }
+
+  /**
+   * Copia al libro el movimiento pendiente de la operación y completa su registro;
+   * vacío si la cuenta no tiene ese movimiento pendiente.
+   */
+  public Mono<BalanceOperationResponse> recover(String accountId, String operationId) {
+    String key = BalanceIdempotencyStore.key(accountId, operationId);
+    Query query = new Query(Criteria.where("id").is(accountId).and(MovementLedger.PENDING + ".id").is(key));
+    query.fields().include("balance").include(MovementLedger.PENDING);
+    return mongoTemplate.findOne(query, Account.class)
+        .flatMap(acc -> Mono.justOrEmpty(pending(acc).stream()
+                .filter(m -> key.equals(m.getId())).findFirst())
+            .flatMap(movement -> flush(accountId, acc.getBalance(), List.of(movement))
+                .thenReturn(BalanceIdempotencyStore.recovered(movement, acc.getBalance()))));
+  }
+
+  // Con la reserva de esta petición: aplicar y completar. Sin aplicar (regla, cuenta inexistente,
+  // conflicto) o cancelada a mitad (cliente desconectado) se libera; si la cancelación llegó
+  // tras escribir, el movimiento pendiente impide aplicarla otra vez y la repetición lo recupera
+  private Mono<BalanceOperationResponse> run(String accountId, BalanceOperationRequest request) {
+    String opId = request.getOperationId();
+    return Mono.defer(() -> {
+          Movement movement = MovementLedger.movement(accountId, request);
+          return execute(accountId, request, movement, false, MAX_ATTEMPTS)
+              .onErrorResume(ex -> idempotencyStore.release(accountId, opId).then(Mono.error(ex)))
+              .flatMap(outcome -> finish(accountId, opId, movement, outcome)
+                  .thenReturn(outcome.response));
+        })
+        .doOnCancel(() -> idempotencyStore.release(accountId, opId)
+            .subscribe(null, ex -> log.warn("No se pudo liberar la operación {} cancelada en cuenta {}: {}",
+                opId, accountId, ex.getMessage())));
+  }
+
+  // El saldo ya cambió: la reserva no se libera aunque falle lo que sigue. Orden: movimiento,
+  // registro y por último quitar el pendiente, para que una repetición siempre lo encuentre
+  private Mono<Void> finish(String accountId, String opId, Movement movement, Outcome outcome) {
+    if (outcome.settled) return Mono.empty();
+    BalanceOperationResponse resp = outcome.response;
+    if (!Boolean.TRUE.equals(resp.getApplied())) {
+      return idempotencyStore.complete(accountId, opId, resp)
+          .onErrorResume(ex -> {
+            log.warn("Operación {} sin completar su registro en cuenta {}: {}", opId, accountId, ex.getMessage());
+            return Mono.empty();
+          });
+    }
+    movement.setCommissionApplied(resp.getCommissionApplied());
+    List<Movement> stale = outcome.account == null ? List.of() : pending(outcome.account).stream()
+        .filter(m -> !movement.getId().equals(m.getId()))
+        .filter(m -> m.getDate() == null || m.getDate().isBefore(Instant.now().minus(STALE_PENDING)))
+        .collect(Collectors.toList());
+    return movementLedger.record(movement)
+        .then(Mono.defer(() -> idempotencyStore.complete(accountId, opId, resp)).retry(1))
+        .then(Mono.defer(() -> movementLedger.clearPending(List.of(accountId), List.of(movement.getId()))))
+        .onErrorResume(ex -> {
+          log.warn("Operación {} aplicada con su movimiento pendiente en cuenta {}: {}",
+              opId, accountId, ex.getMessage());
+          return Mono.empty();
+        })
+        .then(stale.isEmpty() ? Mono.empty() : flush(accountId, resp.getNewBalance(), stale)
+            .onErrorResume(ex -> {
+              log.warn("No se pudo copiar {} movimientos pendientes de cuenta {}: {}",
+                  stale.size(), accountId, ex.getMessage());
+              return Mono.empty();
+            }));
+  }
+
+  // Pendientes de operaciones interrumpidas: el movimiento se copia si falta (su comisión es
+  // la conocida al aplicar, nula si la operación no llegó a calcularla) y el registro se completa
+  // solo si sigue en curso
+  private Mono<Void> flush(String accountId, BigDecimal balance, List<Movement> movements) {
+    Map<String, BalanceOperationResponse> responses = new LinkedHashMap<>();
+    movements.forEach(m -> responses.put(m.getId(), BalanceIdempotencyStore.recovered(m, balance)));
+    return movementLedger.recordIfAbsent(movements)
+        .then(Mono.defer(() -> idempotencyStore.completePending(responses)))
+        .then(Mono.defer(() -> movementLedger.clearPending(List.of(accountId), responses.keySet())));
+  }
+
+  // Un round trip en el caso normal; si el filtro no coincide se diagnostica el motivo
+  private Mono<Outcome> execute(String accountId, BalanceOperationRequest request, Movement movement,
+                                boolean rollover, int remaining) {
+    String ymNow = YearMonth.now().toString();
+    return mongoTemplate.findAndModify(
+            buildQuery(accountId, request, ymNow, rollover),
+            buildUpdate(request, movement, ymNow, rollover),
+            FindAndModifyOptions.options().returnNew(true),
+            Account.class)
+        .map(updated -> new Outcome(toResponse(updated, request), updated))
+        // $inc sobre un saldo String sin migrar: convertir la cuenta y repetir
+        .onErrorResume(AccountDataMigration::isTypeMismatch, ex -> dataMigration.migrateMoney(accountId)
+            .flatMap(converted -> converted
+                ? execute(accountId, request, movement, rollover, remaining)
+                : Mono.<Outcome>error(ex)))
+        .switchIfEmpty(Mono.defer(() -> resolveMiss(accountId, request, movement, ymNow, remaining)));
+  }
+
+  // El filtro no coincidió: leer la cuenta para devolver el mismo error que antes. Se lee sin
+  // mapear para ver los importes aún guardados como String; por eso el filtro va sobre _id
+  private Mono<Outcome> resolveMiss(String accountId, BalanceOperationRequest request, Movement movement,
+                                    String ymNow, int remaining) {
+    String key = BalanceIdempotencyStore.key(accountId, request.getOperationId());
+    Query query = new Query(Criteria.where("_id").is(accountId));
+    query.fields().include(BALANCE_FIELDS).elemMatch(MovementLedger.PENDING, Criteria.where("_id").is(key));
+    return mongoTemplate.findOne(query, Document.class, mongoTemplate.getCollectionName(Account.class))
+        .switchIfEmpty(Mono.error(new ResponseStatusException(
+            HttpStatus.NOT_FOUND, "Cuenta no encontrada")))
+        .zipWith(mongoTemplate.exists(legacyApplied(accountId, request.getOperationId()), Account.class))
+        .flatMap(found -> {
+          Document doc = found.getT1();
+          Account acc = mongoTemplate.getConverter().read(Account.class, doc);
+          // Un intento anterior con esta misma reserva ya aplicó el saldo (p. ej. timeout tras
+          // escribir y reintento): se recupera su movimiento en vez de aplicarlo otra vez
+          Optional<Movement> applied = pending(acc).stream().filter(m -> key.equals(m.getId())).findFirst();
+          if (applied.isPresent()) {
+            return settle(accountId, acc.getBalance(), applied.get());
+          }
+          // Aplicada antes del registro de idempotencia: misma respuesta que daba entonces
+          if (found.getT2()) {
+            return Mono.just(new Outcome(BalanceIdempotencyStore.alreadyApplied(acc.getBalance()), null));
+          }
+          BusinessException violation = ruleViolation(acc, request);
+          if (violation != null) {
+            return Mono.error(violation);
+          }
+          boolean rollover = !isCurrentMonth(acc, ymNow);
+          // Saldo String sin migrar: el filtro $gte no coincide hasta convertirlo. Solo entonces
+          // se escribe; un cambio de mes o un conflicto reintenta sin ese round trip extra
+          Mono<Boolean> migrate = AccountDataMigration.hasStringMoney(doc)
+              ? dataMigration.migrateMoney(accountId) : Mono.just(false);
+          return migrate.flatMap(converted -> {
+            if (converted) return execute(accountId, request, movement, rollover, remaining);
+            // Cambio de mes o escritura concurrente: reintentar con el filtro adecuado
+            if (remaining <= 1) {
+              log.warn("Operación {} sin aplicar tras {} intentos en cuenta {}",
+                  request.getOperationId(), MAX_ATTEMPTS, accountId);
+              return Mono.error(new ResponseStatusException(
+                  HttpStatus.CONFLICT, "Conflicto de concurrencia, reintente la operación"));
+            }
+            return execute(accountId, request, movement, rollover, remaining - 1);
+          });
+        });
+  }
+
+  // Movimiento de esta operación ya pendiente en la cuenta: copiarlo y completar el registro.
+  // El saldo ya cambió, así que un fallo aquí no libera la reserva: lo recupera la repetición
+  private Mono<Outcome> settle(String accountId, BigDecimal balance, Movement movement) {
+    BalanceOperationResponse response = BalanceIdempotencyStore.recovered(movement, balance);
+    return flush(accountId, balance, List.of(movement))
+        .onErrorResume(ex -> {
+          log.warn("Operación {} aplicada con su movimiento pendiente en cuenta {}: {}",
+              movement.getTransactionId(), accountId, ex.getMessage());
+          return Mono.empty();
+        })
+        .thenReturn(Outcome.settled(response));
+  }
+
+  // ===== Construcción de filtro y actualización =====
+
+  private static Query legacyApplied(String accountId, String operationId) {
+    return new Query(Criteria.where("id").is(accountId).and(AccountDataMigration.LEGACY_OP_IDS).is(operationId));
+  }
+
+  private Query buildQuery(String accountId, BalanceOperationRequest request, String ymNow, boolean rollover) {
+    Criteria criteria = Criteria.where("id").is(accountId)
+        // opIds heredado: operaciones aplicadas antes de balance_operations que
+        // AccountDataMigration aún no copió al registro de idempotencia
+        .and(AccountDataMigration.LEGACY_OP_IDS).ne(request.getOperationId())
+        // el movimiento entra en la misma escritura que el $inc: si ya está, el saldo ya se aplicó
+        .and(MovementLedger.PENDING + ".id").ne(BalanceIdempotencyStore.key(accountId, request.getOperationId()));
+    if (rollover) {
+      criteria.and("opsCounter.yearMonth").ne(ymNow);
+    } else {
+      criteria.and("opsCounter.yearMonth").is(ymNow);
+    }
+    if (isDebit(request.getType())) {
+      criteria.and("balance").gte(new Decimal128(request.getAmount()));
+      criteria.orOperator(
+          Criteria.where("accountType").ne(FIXED_TERM),
+          Criteria.where("allowedDayOfMonth").is(LocalDate.now().getDayOfMonth()));
+    }
+    Query query = new Query(criteria);
+    // Solo los campos necesarios para construir la respuesta y los movimientos pendientes
+    query.fields().include(BALANCE_FIELDS).include(MovementLedger.PENDING);
+    return query;
+  }
+
+  private Update buildUpdate(BalanceOperationRequest request, Movement movement, String ymNow, boolean rollover) {
+    int inc = countsForPolicy(request.getType()) ? 1 : 0;
+    Update update = new Update()
+        .inc("balance", new Decimal128(computeDelta(request.getType(), request.getAmount())));
+    if (rollover) {
+      OpsCounter oc = new OpsCounter();
+      oc.setYearMonth(ymNow);
+      oc.setCount(inc);
+      update.set("opsCounter", oc);
+    } else {
+      update.inc("opsCounter.count", inc);
+    }
+    // En la misma escritura que el saldo: el movimiento no se pierde si falla lo que sigue
+    update.push(MovementLedger.PENDING, movement);
+    return update;
+  }
+
+  private BalanceOperationResponse toResponse(Account updated, BalanceOperationRequest request) {
+    int count = updated.getOpsCounter() == null || updated.getOpsCounter().getCount() == null
+        ? 0 : updated.getOpsCounter().getCount();
+    return new BalanceOperationResponse()
+        .applied(true).newBalance(updated.getBalance())
+        .commissionApplied(commissionFor(updated, request.getType(), count)).message("OK");
+  }
+
+  // ===== Reglas (compartidas con el procesamiento en lote) =====
+
+  // Día permitido (FIXED_TERM) y saldo suficiente para débitos; null si la operación es válida
+  static BusinessException ruleViolation(Account acc, BalanceOperationRequest request) {
+    boolean isDebit = isDebit(request.getType());
+    if (FIXED_TERM.equalsIgnoreCase(acc.getAccountType()) && isDebit) {
+      int today = LocalDate.now().getDayOfMonth();
+      if (acc.getAllowedDayOfMonth() == null || !acc.getAllowedDayOfMonth().equals(today)) {
+        return new BusinessException("Día no permitido para débito en FIXED_TERM");
+      }
+    }
+    BigDecimal delta = computeDelta(request.getType(), request.getAmount());
+    if (isDebit && acc.getBalance().add(delta).compareTo(BigDecimal.ZERO) < 0) {
+      return new BusinessException("Saldo insuficiente");
+    }
+    return null;
+  }
+
+  // Comisión si la operación cuenta y el contador del mes supera las operaciones gratis
+  static BigDecimal commissionFor(Account acc, BalanceOperationType type, int countAfter) {
+    int free = acc.getFreeTransactionsLimit() == null ? 0 : acc.getFreeTransactionsLimit();
+    BigDecimal fee = acc.getCommissionFee() == null ? BigDecimal.ZERO : acc.getCommissionFee();
+    return (countsForPolicy(type) && countAfter > free) ? fee : BigDecimal.ZERO;
+  }
+
+  static boolean isCurrentMonth(Account acc, String ymNow) {
+    return acc.getOpsCounter() != null && ymNow.equals(acc.getOpsCounter().getYearMonth());
+  }
+
+  // ===== Helpers =====
+
+  private static List<Movement> pending(Account acc) {
+    return acc.getPendingMovements() == null ? List.of() : acc.getPendingMovements();
+  }
+
+  // Define si la operación es de débito (afecta negativamente el balance)
+  static boolean isDebit(BalanceOperationType type) {
+    return type == BalanceOperationType.WITHDRAWAL
+        || type == BalanceOperationType.TRANSFER_OUT;
+  }
+
+  // Define si la operación afecta el conteo para políticas de comisión
+  static boolean countsForPolicy(BalanceOperationType type) {
+    return type == BalanceOperationType.DEPOSIT
+        || type == BalanceOperationType.WITHDRAWAL
+        || type == BalanceOperationType.TRANSFER_IN
+        || type == BalanceOperationType.TRANSFER_OUT;
+  }
+
+  // Calcula el delta a aplicar al balance según el tipo de operación - positivo o negativo
+  static BigDecimal computeDelta(BalanceOperationType type, BigDecimal amount) {
+    if (type == BalanceOperationType.DEPOSIT
+        || type == BalanceOperationType.TRANSFER_IN) return amount;
+    if (type == BalanceOperationType.WITHDRAWAL
+        || type == BalanceOperationType.TRANSFER_OUT)
+      return amount.negate();
+    return BigDecimal.ZERO;
+  }
+
+  // Respuesta de la operación y estado de la cuenta que devolvió el findAndModify; settled si
+  // la respuesta es de un intento anterior cuyo movimiento y registro ya se completaron
+  private static final class Outcome {
+    private final BalanceOperationResponse response;
+    private final Account account;
+    private final boolean settled;
+
+    private Outcome(BalanceOperationResponse response, Account account) {
+      this(response, account, false);
+    }
+
+    private Outcome(BalanceOperationResponse response, Account account, boolean settled) {
+      this.response = response;
+      this.account = account;
+      this.settled = settled;
+    }
+
+    private static Outcome settled(BalanceOperationResponse response) {
+      return new Outcome(response, null, true);
+    }
+  }
+}
@@ -0,0 +1,394 @@
+package com.nttdata.accountservice.service.balance;
+
+import com.mongodb.bulk.*;
+import com.mongodb.client.model.*;
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import lombok.*;
+import lombok.extern.slf4j.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.http.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Procesamiento de operaciones de saldo en lote.
+ * Agrupa por cuenta, reserva las operaciones en {@link BalanceIdempotencyStore}, evalúa en
+ * memoria con las mismas reglas que {@link AccountBalanceEngine} y persiste cada bloque de
+ * cuentas con un único bulkWrite no ordenado. Cada actualización está condicionada al estado
+ * leído y agrega sus movimientos a pendingMovements de la cuenta; si otra escritura se
+ * adelantó, las operaciones de esa cuenta se reaplican una a una por el motor atómico.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceBatchProcessor {
+
+  // Marca de lote en la cuenta: permite saber qué cuentas aplicó un bulkWrite con conflictos
+  private static final String BATCH_MARKS = "batchMarks";
+  private static final int MAX_BATCH_MARKS = 10;
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final AccountBalanceEngine balanceEngine;
+  private final BalanceIdempotencyStore idempotencyStore;
+  private final MovementLedger movementLedger;
+
+  @Value("${balance.batch.chunkSize:500}")
+  private int chunkSize = 500;
+  @Value("${balance.batch.maxItems:10000}")
+  private int maxItems = 10000;
+
+  public Mono<List<BalanceOperationBatchResult>> process(List<BalanceOperationBatchItem> items) {
+    if (items == null || items.isEmpty()) {
+      return Mono.error(new IllegalArgumentException("items es obligatorio"));
+    }
+    if (items.size() > maxItems) {
+      return Mono.error(new IllegalArgumentException(
+          "El lote supera el máximo de " + maxItems + " operaciones"));
+    }
+    BalanceOperationBatchResult[] results = new BalanceOperationBatchResult[items.size()];
+    // Agrupar por cuenta conservando el orden de llegada dentro de cada cuenta
+    Map<String, List<Integer>> byAccount = new LinkedHashMap<>();
+    // Repeticiones dentro del mismo lote: índice repetido -> primera aparición
+    Map<String, Integer> firstByKey = new HashMap<>();
+    Map<Integer, Integer> duplicates = new LinkedHashMap<>();
+    for (int i = 0; i < items.size(); i++) {
+      BalanceOperationBatchItem item = items.get(i);
+      String invalid = validateItem(item);
+      if (invalid != null) {
+        results[i] = rejected(item, new IllegalArgumentException(invalid));
+        continue;
+      }
+      Integer first = firstByKey.putIfAbsent(key(item), i);
+      if (first != null) {
+        duplicates.put(i, first);
+      } else {
+        byAccount.computeIfAbsent(item.getAccountId(), k -> new ArrayList<>()).add(i);
+      }
+    }
+    log.info("Lote de {} operaciones sobre {} cuentas", items.size(), byAccount.size());
+    return Flux.fromIterable(byAccount.entrySet())
+        .buffer(chunkSize)
+        .concatMap(chunk -> processChunk(chunk, items, results))
+        .then(Mono.fromSupplier(() -> {
+          duplicates.forEach((i, first) -> results[i] = repeated(results[first]));
+          return Arrays.asList(results);
+        }));
+  }
+
+  // Un bulkWrite de reservas, una lectura de cuentas y un bulkWrite de saldos por bloque
+  private Mono<Void> processChunk(List<Map.Entry<String, List<Integer>>> chunk,
+                                  List<BalanceOperationBatchItem> items,
+                                  BalanceOperationBatchResult[] results) {
+    List<String> ids = chunk.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    List<BalanceOperationRecord> claims = chunk.stream()
+        .flatMap(e -> e.getValue().stream())
+        .map(i -> BalanceIdempotencyStore.pending(
+            items.get(i).getAccountId(), items.get(i).getOperation().getOperationId()))
+        .collect(Collectors.toList());
+    return Mono.zip(
+            idempotencyStore.claimAll(claims),
+            mongoTemplate.find(balanceQuery(ids), Account.class)
+                .collectMap(Account::getId))
+        .flatMap(tuple -> {
+          Map<String, BalanceOperationRecord> previous = tuple.getT1();
+          Map<String, Account> accounts = tuple.getT2();
+          List<AccountPlan> plans = new ArrayList<>();
+          List<String> released = new ArrayList<>();
+          List<Mono<Void>> replays = new ArrayList<>();
+          for (Map.Entry<String, List<Integer>> entry : chunk) {
+            List<Integer> pending = new ArrayList<>();
+            for (Integer i : entry.getValue()) {
+              BalanceOperationRecord record = previous.get(key(items.get(i)));
+              if (record == null) {
+                pending.add(i);
+              } else {
+                replays.add(replay(items.get(i), record).doOnNext(r -> results[i] = r).then());
+              }
+            }
+            Account acc = accounts.get(entry.getKey());
+            if (acc == null) {
+              pending.forEach(i -> {
+                results[i] = rejected(items.get(i),
+                    new ResponseStatusException(HttpStatus.NOT_FOUND, "Cuenta no encontrada"));
+                released.add(key(items.get(i)));
+              });
+              continue;
+            }
+            if (pending.isEmpty()) continue;
+            AccountPlan plan = plan(acc, pending, items, results);
+            released.addAll(plan.rejectedKeys);
+            if (!plan.applied.isEmpty()) plans.add(plan);
+          }
+          String batchId = UUID.randomUUID().toString();
+          Mono<Void> write = plans.isEmpty() ? Mono.empty() : bulkWrite(plans, batchId)
+              .flatMap(matched -> matched == plans.size()
+                  ? complete(plans, items, results)
+                  : reconcile(plans, batchId, items, results));
+          return Flux.concat(replays)
+              .then(idempotencyStore.releaseAll(released))
+              .then(write);
+        });
+  }
+
+  // Aplicar en memoria las operaciones de una cuenta, en orden, con las reglas del motor
+  private AccountPlan plan(Account acc, List<Integer> indexes,
+                           List<BalanceOperationBatchItem> items,
+                           BalanceOperationBatchResult[] results) {
+    String ymNow = YearMonth.now().toString();
+    AccountPlan plan = new AccountPlan(acc, indexes, ymNow);
+    indexes.forEach(i -> plan.operationIds.add(items.get(i).getOperation().getOperationId()));
+    if (acc.getBalance() == null) acc.setBalance(BigDecimal.ZERO);
+    int count = plan.rollover ? 0 : plan.readCount == null ? 0 : plan.readCount;
+    for (Integer i : indexes) {
+      BalanceOperationRequest req = items.get(i).getOperation();
+      BusinessException violation = AccountBalanceEngine.ruleViolation(acc, req);
+      if (violation != null) {
+        results[i] = rejected(items.get(i), violation);
+        plan.rejectedKeys.add(key(items.get(i)));
+        continue;
+      }
+      BigDecimal delta = AccountBalanceEngine.computeDelta(req.getType(), req.getAmount());
+      acc.setBalance(acc.getBalance().add(delta));
+      plan.netDelta = plan.netDelta.add(delta);
+      if (AccountBalanceEngine.countsForPolicy(req.getType())) count++;
+      plan.applied.add(i);
+      BalanceOperationResponse response = new BalanceOperationResponse()
+          .applied(true).newBalance(acc.getBalance())
+          .commissionApplied(AccountBalanceEngine.commissionFor(acc, req.getType(), count))
+          .message("OK");
+      plan.movements.add(MovementLedger.movement(acc.getId(), req, response));
+      results[i] = result(items.get(i), BalanceOperationBatchResult.StatusEnum.APPLIED, response);
+    }
+    plan.finalCount = count;
+    return plan;
+  }
+
+  private Mono<Integer> bulkWrite(List<AccountPlan> plans, String batchId) {
+    MongoConverter converter = mongoTemplate.getConverter();
+    MongoPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(Account.class);
+    QueryMapper queryMapper = new QueryMapper(converter);
+    UpdateMapper updateMapper = new UpdateMapper(converter);
+    List<UpdateOneModel<Document>> models = plans.stream()
+        .map(p -> new UpdateOneModel<Document>(
+            queryMapper.getMappedObject(p.guard().getQueryObject(), entity),
+            updateMapper.getMappedObject(p.update(batchId).getUpdateObject(), entity)))
+        .collect(Collectors.toList());
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Account.class))
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .map(BulkWriteResult::getMatchedCount);
+  }
+
+  // Movimientos y respuestas de las operaciones aplicadas (para futuras repeticiones). Los
+  // saldos ya cambiaron: si algo falla, los movimientos siguen pendientes en las cuentas y los
+  // recupera el motor al repetir la operación o en la siguiente operación sobre la cuenta
+  private Mono<Void> complete(List<AccountPlan> plans,
+                              List<BalanceOperationBatchItem> items,
+                              BalanceOperationBatchResult[] results) {
+    if (plans.isEmpty()) return Mono.empty();
+    Map<String, BalanceOperationResponse> responses = new LinkedHashMap<>();
+    List<Movement> movements = new ArrayList<>();
+    plans.forEach(p -> {
+      p.applied.forEach(i -> responses.put(key(items.get(i)), results[i].getResult()));
+      movements.addAll(p.movements);
+    });
+    List<String> accountIds = plans.stream().map(p -> p.accountId).collect(Collectors.toList());
+    return movementLedger.recordAll(movements)
+        .then(Mono.defer(() -> idempotencyStore.completeAll(responses)))
+        .then(Mono.defer(() -> movementLedger.clearPending(accountIds, responses.keySet())))
+        .onErrorResume(ex -> {
+          log.warn("Lote aplicado con {} movimientos pendientes en {} cuentas: {}",
+              movements.size(), accountIds.size(), ex.getMessage());
+          return Mono.empty();
+        });
+  }
+
+  // Alguna cuenta cambió entre la lectura y el bulkWrite: reaplicar sus operaciones una a una
+  private Mono<Void> reconcile(List<AccountPlan> plans, String batchId,
+                               List<BalanceOperationBatchItem> items,
+                               BalanceOperationBatchResult[] results) {
+    List<String> ids = plans.stream().map(p -> p.accountId).collect(Collectors.toList());
+    Query query = new Query(Criteria.where("id").in(ids).and(BATCH_MARKS).is(batchId));
+    query.fields().include("id");
+    return mongoTemplate.find(query, Account.class)
+        .map(Account::getId)
+        .collect(Collectors.toSet())
+        .flatMap(appliedIds -> {
+          Map<Boolean, List<AccountPlan>> split = plans.stream()
+              .collect(Collectors.partitioningBy(p -> appliedIds.contains(p.accountId)));
+          List<AccountPlan> conflicted = split.get(false);
+          List<String> released = conflicted.stream()
+              .flatMap(p -> p.applied.stream().map(i -> key(items.get(i))))
+              .collect(Collectors.toList());
+          return complete(split.get(true), items, results)
+              .then(idempotencyStore.releaseAll(released))
+              .thenMany(Flux.fromIterable(conflicted))
+              .concatMap(p -> {
+                log.warn("Conflicto en lote para cuenta {}, reaplicando {} operaciones",
+                    p.accountId, p.indexes.size());
+                return Flux.fromIterable(p.indexes)
+                    .concatMap(i -> balanceEngine.apply(p.accountId, items.get(i).getOperation())
+                        .map(resp -> result(items.get(i),
+                            BalanceOperationBatchResult.StatusEnum.APPLIED, resp))
+                        .onErrorResume(ex -> Mono.just(rejected(items.get(i), ex)))
+                        .doOnNext(r -> results[i] = r));
+              })
+              .then();
+        });
+  }
+
+  // ===== Helpers =====
+
+  // Lectura del bloque con los campos que usan las reglas y el plan de cada cuenta
+  private static Query balanceQuery(List<String> ids) {
+    Query query = new Query(Criteria.where("id").in(ids));
+    query.fields().include(AccountBalanceEngine.BALANCE_FIELDS);
+    return query;
+  }
+
+  private String validateItem(BalanceOperationBatchItem item) {
+    if (item == null || item.getAccountId() == null || item.getAccountId().isBlank()) {
+      return "accountId es obligatorio";
+    }
+    BalanceOperationRequest op = item.getOperation();
+    if (op == null || op.getType() == null) return "operation es obligatoria";
+    if (op.getAmount() == null || op.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+      return "amount debe ser > 0";
+    }
+    if (op.getOperationId() == null || op.getOperationId().isBlank()) {
+      return "operationId es obligatorio";
+    }
+    return null;
+  }
+
+  private static String key(BalanceOperationBatchItem item) {
+    return BalanceIdempotencyStore.key(item.getAccountId(), item.getOperation().getOperationId());
+  }
+
+  // Operación ya registrada: respuesta original, recuperada si quedó en curso con su movimiento
+  // pendiente, aplicada por el motor si la reserva quedó abandonada, o rechazo si sigue en curso
+  private Mono<BalanceOperationBatchResult> replay(BalanceOperationBatchItem item,
+                                                   BalanceOperationRecord record) {
+    Mono<BalanceOperationResponse> response = BalanceOperationRecord.COMPLETED.equals(record.getStatus())
+        ? BalanceIdempotencyStore.replay(record)
+        : balanceEngine.resume(item.getAccountId(), item.getOperation(), record);
+    return response
+        .map(resp -> result(item, BalanceOperationBatchResult.StatusEnum.IDEMPOTENT, resp))
+        .onErrorResume(ex -> Mono.just(rejected(item, ex)));
+  }
+
+  // Repetición dentro del lote: mismo resultado que la primera aparición
+  private static BalanceOperationBatchResult repeated(BalanceOperationBatchResult first) {
+    BalanceOperationBatchResult.StatusEnum status =
+        first.getStatus() == BalanceOperationBatchResult.StatusEnum.REJECTED
+            ? BalanceOperationBatchResult.StatusEnum.REJECTED
+            : BalanceOperationBatchResult.StatusEnum.IDEMPOTENT;
+    return new BalanceOperationBatchResult()
+        .accountId(first.getAccountId())
+        .operationId(first.getOperationId())
+        .status(status)
+        .result(first.getResult())
+        .error(first.getError());
+  }
+
+  private static BalanceOperationBatchResult result(BalanceOperationBatchItem item,
+                                                    BalanceOperationBatchResult.StatusEnum status,
+                                                    BalanceOperationResponse response) {
+    return new BalanceOperationBatchResult()
+        .accountId(item.getAccountId())
+        .operationId(item.getOperation().getOperationId())
+        .status(status)
+        .result(response);
+  }
+
+  private static BalanceOperationBatchResult rejected(BalanceOperationBatchItem item, Throwable ex) {
+    HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
+    String message = "Error interno";
+    if (ex instanceof ResponseStatusException) {
+      status = HttpStatus.valueOf(((ResponseStatusException) ex).getStatus().value());
+      message = ((ResponseStatusException) ex).getReason();
+    } else if (ex instanceof BusinessException) {
+      status = HttpStatus.UNPROCESSABLE_ENTITY;
+      message = ex.getMessage();
+    } else if (ex instanceof IllegalArgumentException) {
+      status = HttpStatus.BAD_REQUEST;
+      message = ex.getMessage();
+    }
+    return new BalanceOperationBatchResult()
+        .accountId(item == null ? null : item.getAccountId())
+        .operationId(item == null || item.getOperation() == null
+            ? null : item.getOperation().getOperationId())
+        .status(BalanceOperationBatchResult.StatusEnum.REJECTED)
+        .error(new ErrorResponse()
+            .timestamp(OffsetDateTime.now())
+            .status(status.value())
+            .error(status.getReasonPhrase())
+            .message(message));
+  }
+
+  // Estado leído de una cuenta y cambios acumulados del lote
+  private static final class AccountPlan {
+    private final String accountId;
+    private final List<Integer> indexes;
+    private final String ymNow;
+    private final BigDecimal readBalance;
+    private final String readYearMonth;
+    private final Integer readCount;
+    private final boolean rollover;
+    private final List<Integer> applied = new ArrayList<>();
+    private final List<String> rejectedKeys = new ArrayList<>();
+    private final List<String> operationIds = new ArrayList<>();
+    private final List<Movement> movements = new ArrayList<>();
+    private BigDecimal netDelta = BigDecimal.ZERO;
+    private int finalCount;
+
+    private AccountPlan(Account acc, List<Integer> indexes, String ymNow) {
+      this.accountId = acc.getId();
+      this.indexes = indexes;
+      this.ymNow = ymNow;
+      this.readBalance = acc.getBalance();
+      this.readYearMonth = acc.getOpsCounter() == null ? null : acc.getOpsCounter().getYearMonth();
+      this.readCount = acc.getOpsCounter() == null ? null : acc.getOpsCounter().getCount();
+      this.rollover = !AccountBalanceEngine.isCurrentMonth(acc, ymNow);
+    }
+
+    // Solo aplica si la cuenta sigue en el estado leído y ninguna operación figura en el
+    // opIds heredado; si no, el motor las reaplica una a una y detecta las ya aplicadas
+    private Query guard() {
+      return new Query(Criteria.where("id").is(accountId)
+          .and("balance").is(readBalance == null ? null : new Decimal128(readBalance))
+          .and("opsCounter.yearMonth").is(readYearMonth)
+          .and("opsCounter.count").is(readCount)
+          .and(AccountDataMigration.LEGACY_OP_IDS).nin(operationIds));
+    }
+
+    private Update update(String batchId) {
+      Update update = new Update().inc("balance", new Decimal128(netDelta));
+      if (rollover) {
+        OpsCounter oc = new OpsCounter();
+        oc.setYearMonth(ymNow);
+        oc.setCount(finalCount);
+        update.set("opsCounter", oc);
+      } else {
+        update.inc("opsCounter.count", finalCount - (readCount == null ? 0 : readCount));
+      }
+      update.push(BATCH_MARKS).slice(-MAX_BATCH_MARKS).each(batchId);
+      update.push(MovementLedger.PENDING).each(movements.toArray());
+      return update;
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package com.nttdata.accountservice.service.balance;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.*;
+import com.mongodb.client.model.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import lombok.*;
+import org.bson.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.http.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Almacén de idempotencia de operaciones de saldo (colección balance_operations).
+ * Cada operación se reserva con un upsert sobre _id = "accountId:operationId" antes de
+ * tocar la cuenta y se completa con la respuesta original; una repetición es una sola
+ * lectura por _id que devuelve esa misma respuesta. Una reserva en curso más antigua que el
+ * lease se considera abandonada y la puede tomar una repetición. Los registros expiran por el
+ * índice TTL que crea MongoIndexManager.
+ */
+@Component
+@RequiredArgsConstructor
+public class BalanceIdempotencyStore {
+
+  // Código de Mongo para clave duplicada
+  private static final int DUPLICATE_KEY = 11000;
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  // Más que lo que tarda una operación: una reserva en curso más antigua quedó abandonada
+  @Value("${balance.idempotency.lease:PT30S}")
+  private Duration lease = Duration.ofSeconds(30);
+
+  public static String key(String accountId, String operationId) {
+    return accountId + ":" + operationId;
+  }
+
+  /**
+   * Reserva la operación. Vacío si la reserva es nueva; si ya existía, el registro previo.
+   */
+  public Mono<Optional<BalanceOperationRecord>> claim(String accountId, String operationId) {
+    String key = key(accountId, operationId);
+    return mongoTemplate.findAndModify(
+            new Query(Criteria.where("id").is(key)),
+            pendingUpdate(accountId, operationId),
+            FindAndModifyOptions.options().upsert(true).returnNew(false),
+            BalanceOperationRecord.class)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        // Dos upserts simultáneos: el perdedor recibe clave duplicada. Si el registro ya expiró
+        // (TTL) entre el upsert y la lectura, se vuelve a reservar para emitir siempre
+        .onErrorResume(DuplicateKeyException.class,
+            ex -> mongoTemplate.findById(key, BalanceOperationRecord.class).map(Optional::of)
+                .switchIfEmpty(Mono.defer(() -> claim(accountId, operationId))));
+  }
+
+  /**
+   * Reserva un bloque de operaciones con un único bulkWrite de upserts.
+   * Devuelve los registros que ya existían, por clave; el resto quedó reservado.
+   */
+  public Mono<Map<String, BalanceOperationRecord>> claimAll(List<BalanceOperationRecord> claims) {
+    if (claims.isEmpty()) return Mono.just(Map.of());
+    Mapper mapper = new Mapper();
+    List<UpdateOneModel<Document>> models = claims.stream()
+        .map(c -> new UpdateOneModel<Document>(
+            new Document("_id", c.getId()),
+            mapper.update(pendingUpdate(c.getAccountId(), c.getOperationId())),
+            new UpdateOptions().upsert(true)))
+        .collect(Collectors.toList());
+    return collection()
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteResult()))
+        .flatMap(result -> {
+          Set<Integer> inserted = result.getUpserts().stream()
+              .map(BulkWriteUpsert::getIndex).collect(Collectors.toSet());
+          List<String> existing = new ArrayList<>();
+          for (int i = 0; i < claims.size(); i++) {
+            if (!inserted.contains(i)) existing.add(claims.get(i).getId());
+          }
+          if (existing.isEmpty()) return Mono.just(Map.<String, BalanceOperationRecord>of());
+          return mongoTemplate.find(new Query(Criteria.where("id").in(existing)),
+                  BalanceOperationRecord.class)
+              .collectMap(BalanceOperationRecord::getId);
+        });
+  }
+
+  /**
+   * Toma una reserva en curso abandonada (creada o tomada hace más que el lease); true si esta
+   * petición pasó a ser su dueña. Dos repeticiones a la vez: solo una la toma. Reinicia
+   * createdAt, del que corren el lease y el TTL.
+   */
+  public Mono<Boolean> takeOver(String accountId, String operationId) {
+    Instant now = Instant.now();
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(key(accountId, operationId))
+                .and("status").is(BalanceOperationRecord.PENDING)
+                .and("createdAt").lte(now.minus(lease))),
+            new Update().set("createdAt", now), BalanceOperationRecord.class)
+        .map(result -> result.getModifiedCount() > 0);
+  }
+
+  public Mono<Void> complete(String accountId, String operationId, BalanceOperationResponse response) {
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(key(accountId, operationId))),
+            completedUpdate(response), BalanceOperationRecord.class)
+        .then();
+  }
+
+  public Mono<Void> completeAll(Map<String, BalanceOperationResponse> responses) {
+    return completeAll(responses, false);
+  }
+
+  /**
+   * Completa solo los registros que siguen en curso o que ya no existen (recuperación de
+   * movimientos pendientes): no pisa la respuesta que ya guardó la operación original. El
+   * movimiento prueba que la operación se aplicó, así que una reserva liberada (p. ej. al
+   * cancelarse la petición tras escribir) se vuelve a crear completada.
+   */
+  public Mono<Void> completePending(Map<String, BalanceOperationResponse> responses) {
+    return completeAll(responses, true);
+  }
+
+  private Mono<Void> completeAll(Map<String, BalanceOperationResponse> responses, boolean onlyPending) {
+    if (responses.isEmpty()) return Mono.empty();
+    Mapper mapper = new Mapper();
+    List<UpdateOneModel<Document>> models = responses.entrySet().stream()
+        .map(e -> {
+          Document filter = new Document("_id", e.getKey());
+          Update update = completedUpdate(e.getValue());
+          if (!onlyPending) {
+            return new UpdateOneModel<Document>(filter, mapper.update(update));
+          }
+          filter.append("status", BalanceOperationRecord.PENDING);
+          // _id = accountId:operationId y el accountId no lleva ':'
+          String[] parts = e.getKey().split(":", 2);
+          update.setOnInsert("accountId", parts[0])
+              .setOnInsert("operationId", parts.length > 1 ? parts[1] : null)
+              .setOnInsert("createdAt", Instant.now());
+          return new UpdateOneModel<Document>(filter, mapper.update(update), new UpdateOptions().upsert(true));
+        })
+        .collect(Collectors.toList());
+    return collection()
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        // Ya completado: el upsert choca con su _id y se deja como está
+        .onErrorResume(MongoBulkWriteException.class, ex -> onlyPending && ex.getWriteErrors().stream()
+                .allMatch(err -> err.getCode() == DUPLICATE_KEY)
+            ? Mono.empty() : Mono.error(ex))
+        .then();
+  }
+
+  // La operación no se aplicó: liberar la reserva para permitir reintentos
+  public Mono<Void> release(String accountId, String operationId) {
+    return releaseAll(List.of(key(accountId, operationId)));
+  }
+
+  public Mono<Void> releaseAll(Collection<String> keys) {
+    if (keys.isEmpty()) return Mono.empty();
+    return mongoTemplate.remove(
+            new Query(Criteria.where("id").in(keys)
+                .and("status").is(BalanceOperationRecord.PENDING)),
+            BalanceOperationRecord.class)
+        .then();
+  }
+
+  /**
+   * Respuesta original de una operación ya registrada; 409 si aún está en curso.
+   */
+  public static Mono<BalanceOperationResponse> replay(BalanceOperationRecord record) {
+    if (!BalanceOperationRecord.COMPLETED.equals(record.getStatus())) {
+      return Mono.error(new ResponseStatusException(
+          HttpStatus.CONFLICT, "Operación en curso, reintente más tarde"));
+    }
+    return Mono.just(new BalanceOperationResponse()
+        .applied(record.getApplied())
+        .newBalance(record.getNewBalance())
+        .commissionApplied(record.getCommissionApplied())
+        .message(record.getMessage()));
+  }
+
+  /**
+   * Copia al registro las operaciones del opIds heredado de una cuenta, como ya aplicadas
+   * (no pisa registros existentes). El TTL corre desde la copia.
+   */
+  public Mono<Void> backfill(String accountId, Collection<String> operationIds, BigDecimal balance) {
+    if (operationIds.isEmpty()) return Mono.empty();
+    Mapper mapper = new Mapper();
+    BalanceOperationResponse response = alreadyApplied(balance);
+    List<UpdateOneModel<Document>> models = operationIds.stream()
+        .map(opId -> new UpdateOneModel<Document>(
+            new Document("_id", key(accountId, opId)),
+            mapper.update(new Update()
+                .setOnInsert("accountId", accountId)
+                .setOnInsert("operationId", opId)
+                .setOnInsert("createdAt", Instant.now())
+                .setOnInsert("status", BalanceOperationRecord.COMPLETED)
+                .setOnInsert("applied", response.getApplied())
+                .setOnInsert("newBalance", response.getNewBalance())
+                .setOnInsert("commissionApplied", response.getCommissionApplied())
+                .setOnInsert("message", response.getMessage())),
+            new UpdateOptions().upsert(true)))
+        .collect(Collectors.toList());
+    return collection()
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .then();
+  }
+
+  // Respuesta de una operación que ya figuraba en el opIds heredado (la de antes del registro)
+  public static BalanceOperationResponse alreadyApplied(BigDecimal balance) {
+    return new BalanceOperationResponse()
+        .applied(false).newBalance(balance)
+        .commissionApplied(BigDecimal.ZERO)
+        .message("Idempotente");
+  }
+
+  // Respuesta de una operación aplicada cuyo registro quedó en curso, a partir de su
+  // movimiento pendiente: el saldo es el actual de la cuenta, no el que dejó la operación
+  public static BalanceOperationResponse recovered(Movement movement, BigDecimal balance) {
+    return new BalanceOperationResponse()
+        .applied(true).newBalance(balance)
+        .commissionApplied(movement.getCommissionApplied() == null
+            ? BigDecimal.ZERO : movement.getCommissionApplied())
+        .message("OK (recuperada)");
+  }
+
+  public static BalanceOperationRecord pending(String accountId, String operationId) {
+    BalanceOperationRecord record = new BalanceOperationRecord();
+    record.setId(key(accountId, operationId));
+    record.setAccountId(accountId);
+    record.setOperationId(operationId);
+    record.setStatus(BalanceOperationRecord.PENDING);
+    return record;
+  }
+
+  // ===== Helpers =====
+
+  private static Update pendingUpdate(String accountId, String operationId) {
+    return new Update()
+        .setOnInsert("accountId", accountId)
+        .setOnInsert("operationId", operationId)
+        .setOnInsert("status", BalanceOperationRecord.PENDING)
+        .setOnInsert("createdAt", Instant.now());
+  }
+
+  private static Update completedUpdate(BalanceOperationResponse response) {
+    return new Update()
+        .set("status", BalanceOperationRecord.COMPLETED)
+        .set("applied", response.getApplied())
+        .set("newBalance", response.getNewBalance())
+        .set("commissionApplied", response.getCommissionApplied())
+        .set("message", response.getMessage());
+  }
+
+  private Mono<com.mongodb.reactivestreams.client.MongoCollection<Document>> collection() {
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(BalanceOperationRecord.class));
+  }
+
+  // Mapea Update a Document respetando los tipos declarados en la entidad (Decimal128)
+  private final class Mapper {
+    private final MongoPersistentEntity<?> entity;
+    private final UpdateMapper updateMapper;
+
+    private Mapper() {
+      MongoConverter converter = mongoTemplate.getConverter();
+      this.entity = converter.getMappingContext().getRequiredPersistentEntity(BalanceOperationRecord.class);
+      this.updateMapper = new UpdateMapper(converter);
+    }
+
+    private Document update(Update update) {
+      return updateMapper.getMappedObject(update.getUpdateObject(), entity);
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.nttdata.accountservice.service.balance;
+
+import com.mongodb.client.model.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import lombok.*;
+import org.bson.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.nio.charset.*;
+import java.time.*;
+import java.time.temporal.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Libro de movimientos de las cuentas (colección account_movements, solo inserción).
+ * Cada operación de saldo deja su movimiento en la lista pendingMovements de la cuenta, en
+ * la misma escritura que el saldo; después se copia aquí y se quita de la cuenta. El _id
+ * determinista hace que reescribirlo sea inocuo. La lectura es por keyset sobre el índice
+ * (accountId, date, _id) que crea MongoIndexManager, sin skip.
+ */
+@Component
+@RequiredArgsConstructor
+public class MovementLedger {
+
+  // Movimientos aplicados en la cuenta y aún no copiados a account_movements
+  public static final String PENDING = "pendingMovements";
+  private static final Sort PAGE_SORT = Sort.by(Sort.Direction.DESC, "date", "id");
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final MovementRepository movementRepository;
+
+  public Mono<Void> record(Movement movement) {
+    return movementRepository.save(movement).then();
+  }
+
+  // Un bulkWrite de reemplazos con upsert por bloque de movimientos
+  public Mono<Void> recordAll(List<Movement> movements) {
+    if (movements.isEmpty()) return Mono.empty();
+    List<ReplaceOneModel<Document>> models = movements.stream()
+        .map(m -> {
+          Document doc = new Document();
+          mongoTemplate.getConverter().write(m, doc);
+          return new ReplaceOneModel<>(new Document("_id", m.getId()), doc,
+              new ReplaceOptions().upsert(true));
+        })
+        .collect(Collectors.toList());
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Movement.class))
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .then();
+  }
+
+  // Recuperación de pendientes: sin pisar el movimiento si ya se copió con su comisión
+  public Mono<Void> recordIfAbsent(List<Movement> movements) {
+    if (movements.isEmpty()) return Mono.empty();
+    List<UpdateOneModel<Document>> models = movements.stream()
+        .map(m -> {
+          Document doc = new Document();
+          mongoTemplate.getConverter().write(m, doc);
+          doc.remove("_id");
+          return new UpdateOneModel<Document>(new Document("_id", m.getId()),
+              new Document("$setOnInsert", doc), new UpdateOptions().upsert(true));
+        })
+        .collect(Collectors.toList());
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Movement.class))
+        .flatMap(col -> Mono.from(col.bulkWrite(models, new BulkWriteOptions().ordered(false))))
+        .then();
+  }
+
+  /**
+   * Quita de las cuentas los movimientos pendientes ya copiados al libro.
+   */
+  public Mono<Void> clearPending(Collection<String> accountIds, Collection<String> movementIds) {
+    if (movementIds.isEmpty()) return Mono.empty();
+    return mongoTemplate.updateMulti(
+            new Query(Criteria.where("id").in(accountIds)),
+            new Update().pull(PENDING, Query.query(Criteria.where("id").in(movementIds))),
+            Account.class)
+        .then();
+  }
+
+  /**
+   * Página de movimientos, más recientes primero, a partir del cursor (o desde el inicio).
+   */
+  public Flux<Movement> page(String accountId, String cursor, int limit) {
+    Pageable page = PageRequest.of(0, limit, PAGE_SORT);
+    if (cursor == null || cursor.isBlank()) {
+      return movementRepository.findByAccountId(accountId, page);
+    }
+    return Flux.defer(() -> {
+      String[] parts = decode(cursor);
+      return movementRepository.findPageBefore(
+          accountId, Instant.ofEpochMilli(Long.parseLong(parts[0])), parts[1], page);
+    });
+  }
+
+  // Movimiento antes de aplicar la operación: la comisión se conoce con el saldo resultante
+  public static Movement movement(String accountId, BalanceOperationRequest request) {
+    return movement(accountId, request, new BalanceOperationResponse());
+  }
+
+  public static Movement movement(String accountId, BalanceOperationRequest request,
+                                  BalanceOperationResponse response) {
+    Movement movement = new Movement();
+    movement.setId(BalanceIdempotencyStore.key(accountId, request.getOperationId()));
+    movement.setAccountId(accountId);
+    movement.setTransactionId(request.getOperationId());
+    // Mongo guarda milisegundos: truncar para que el cursor coincida con lo persistido
+    movement.setDate(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+    movement.setType(movementType(request.getType()).getValue());
+    movement.setAmount(AccountBalanceEngine.computeDelta(request.getType(), request.getAmount()));
+    movement.setCommissionApplied(response.getCommissionApplied());
+    return movement;
+  }
+
+  public static String cursorOf(Movement movement) {
+    String raw = movement.getDate().toEpochMilli() + "|" + movement.getId();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // ===== Helpers =====
+
+  private static String[] decode(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\|", 2);
+      Long.parseLong(parts[0]);
+      if (parts.length != 2 || parts[1].isEmpty()) throw new IllegalArgumentException();
+      return parts;
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("cursor inválido");
+    }
+  }
+
+  private static AccountMovement.TypeEnum movementType(BalanceOperationType type) {
+    switch (type) {
+      case DEPOSIT:
+        return AccountMovement.TypeEnum.DEPOSIT;
+      case WITHDRAWAL:
+        return AccountMovement.TypeEnum.WITHDRAWAL;
+      case TRANSFER_IN:
+      case TRANSFER_OUT:
+        return AccountMovement.TypeEnum.TRANSFER;
+      default:
+        return AccountMovement.TypeEnum.COMMISSION;
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.nttdata.accountservice.service.cache;
+
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import com.nttdata.accountservice.model.*;
+import io.micrometer.core.instrument.*;
+import lombok.extern.slf4j.*;
+import org.openapitools.jackson.nullable.*;
+import org.springframework.beans.factory.annotation.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.*;
+import org.springframework.stereotype.*;
+import reactor.core.publisher.*;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * Caché de lectura de {@link AccountResponse} por id en Redis (read-through).
+ * Las escrituras de cuenta la invalidan. Redis es opcional para el servicio:
+ * un fallo o una demora por encima de {@code cache.account.timeout} se trata como fallo de
+ * caché y la lectura sigue contra Mongo.
+ * <p>
+ * Cada invalidación sube una generación por cuenta ({@code account:<id>:gen}). El relleno tras
+ * un fallo solo se guarda si la generación sigue siendo la leída antes de ir a Mongo: una
+ * lectura que empezó antes de una escritura no deja en caché el valor anterior.
+ */
+@Slf4j
+@Component
+public class AccountCache {
+
+  private static final String KEY_PREFIX = "account:";
+  private static final String GEN_SUFFIX = ":gen";
+
+  // KEYS: entrada, generación. ARGV: generación leída ('' si no había), json, ttl en ms
+  private static final RedisScript<Long> FILL = RedisScript.of(
+      "if (redis.call('GET', KEYS[2]) or '') ~= ARGV[1] then return 0 end "
+          + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+  // KEYS: pares entrada, generación. ARGV: ttl en ms
+  private static final RedisScript<Long> EVICT = RedisScript.of(
+      "for i = 1, #KEYS, 2 do redis.call('DEL', KEYS[i]) redis.call('INCR', KEYS[i + 1]) "
+          + "redis.call('PEXPIRE', KEYS[i + 1], ARGV[1]) end return 1", Long.class);
+
+  private final ReactiveStringRedisTemplate redis;
+  private final ObjectMapper mapper;
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter errors;
+
+  @Value("${cache.account.enabled:true}")
+  private boolean enabled = true;
+  @Value("${cache.account.ttl:PT10M}")
+  private Duration ttl = Duration.ofMinutes(10);
+  @Value("${cache.account.timeout:PT0.2S}")
+  private Duration timeout = Duration.ofMillis(200);
+
+  public AccountCache(ReactiveStringRedisTemplate redis, ObjectMapper objectMapper,
+                      MeterRegistry meterRegistry) {
+    this.redis = redis;
+    this.mapper = objectMapper.copy().registerModule(new JsonNullableModule());
+    this.hits = cacheCounter(meterRegistry, "hit");
+    this.misses = cacheCounter(meterRegistry, "miss");
+    this.errors = cacheCounter(meterRegistry, "error");
+  }
+
+  /**
+   * Devuelve la cuenta desde Redis o, si no está, desde {@code loader} guardándola con TTL
+   * si ninguna escritura de la cuenta se ha cruzado con la carga.
+   */
+  public Mono<AccountResponse> get(String id, Mono<AccountResponse> loader) {
+    if (!enabled) return loader;
+    return redis.opsForValue().multiGet(List.of(KEY_PREFIX + id, KEY_PREFIX + id + GEN_SUFFIX))
+        .timeout(timeout)
+        .map(Optional::of)
+        .onErrorResume(ex -> failed("leer", id, ex).thenReturn(Optional.empty()))
+        .flatMap(values -> Mono.justOrEmpty(values.map(v -> v.get(0)))
+            .map(this::read)
+            .doOnNext(hit -> hits.increment())
+            .onErrorResume(ex -> failed("leer", id, ex))
+            .switchIfEmpty(Mono.defer(() -> {
+              misses.increment();
+              // sin generación leída (Redis caído) no se rellena: no hay con qué comparar
+              return values
+                  .map(v -> loader.flatMap(resp -> fill(id, Objects.toString(v.get(1), ""), resp).thenReturn(resp)))
+                  .orElse(loader);
+            })));
+  }
+
+  public Mono<Void> evict(String id) {
+    return evictAll(List.of(id));
+  }
+
+  public Mono<Void> evictAll(Collection<String> ids) {
+    if (!enabled || ids.isEmpty()) return Mono.empty();
+    List<String> keys = new ArrayList<>(ids.size() * 2);
+    ids.forEach(id -> {
+      keys.add(KEY_PREFIX + id);
+      keys.add(KEY_PREFIX + id + GEN_SUFFIX);
+    });
+    return redis.execute(EVICT, keys, List.of(String.valueOf(ttl.toMillis())))
+        .timeout(timeout)
+        .then()
+        .onErrorResume(ex -> failed("invalidar", String.join(",", ids), ex));
+  }
+
+  // ===== Helpers =====
+
+  private Mono<Void> fill(String id, String generation, AccountResponse account) {
+    return Mono.fromCallable(() -> mapper.writeValueAsString(account))
+        .flatMapMany(json -> redis.execute(FILL, List.of(KEY_PREFIX + id, KEY_PREFIX + id + GEN_SUFFIX),
+            List.of(generation, json, String.valueOf(ttl.toMillis()))))
+        .timeout(timeout)
+        .then()
+        .onErrorResume(ex -> failed("guardar", id, ex));
+  }
+
+  private AccountResponse read(String json) {
+    try {
+      return mapper.readValue(json, AccountResponse.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Entrada de caché ilegible", e);
+    }
+  }
+
+  private <T> Mono<T> failed(String action, String id, Throwable ex) {
+    errors.increment();
+    log.warn("Caché de cuentas no disponible al {} {}: {}", action, id, ex.toString());
+    return Mono.empty();
+  }
+
+  private static Counter cacheCounter(MeterRegistry registry, String result) {
+    return Counter.builder("account.cache.requests")
+        .description("Accesos a la caché de cuentas por resultado")
+        .tag("cache", "account")
+        .tag("result", result)
+        .register(registry);
+  }
+}
@@ -0,0 +1,90 @@
+package com.nttdata.accountservice.service.impl;
+
+import com.fasterxml.jackson.annotation.*;
+import com.fasterxml.jackson.core.*;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.ser.*;
+import com.fasterxml.jackson.databind.ser.impl.*;
+import com.nttdata.accountservice.model.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Campos parciales de cuenta ({@code ?fields=id,accountNumber,...}). Los nombres son los de
+ * {@link AccountResponse}; se traducen a una proyección de Mongo y la respuesta parcial
+ * solo serializa esos campos mediante el filtro {@link #FILTER_ID}.
+ */
+public final class AccountFields {
+
+  public static final String FILTER_ID = "accountFields";
+
+  // Los campos de FIXED_TERM solo se informan según accountType
+  private static final Set<String> FIXED_TERM_FIELDS =
+      Set.of("openingDate", "maturityDate", "earlyWithdrawalPenalty", "term");
+
+  private AccountFields() {
+  }
+
+  /**
+   * Campos pedidos, en orden y sin repetir; null si fields viene vacío (cuenta completa).
+   */
+  public static Set<String> parse(String fields) {
+    if (fields == null || fields.isBlank()) return null;
+    Set<String> requested = Arrays.stream(fields.split(","))
+        .map(String::trim)
+        .filter(field -> !field.isEmpty())
+        .collect(Collectors.toCollection(LinkedHashSet::new));
+    if (requested.isEmpty()) {
+      throw new IllegalArgumentException("fields no contiene ningún campo");
+    }
+    for (String field : requested) {
+      if (!AccountMapper.responseFields().contains(field)) {
+        throw new IllegalArgumentException("fields contiene un campo desconocido: " + field);
+      }
+    }
+    return requested;
+  }
+
+  // Campos de la entidad que hay que leer para escribir los pedidos
+  public static List<String> projection(Set<String> fields) {
+    List<String> projection = new ArrayList<>(fields);
+    if (!fields.contains("accountType") && fields.stream().anyMatch(FIXED_TERM_FIELDS::contains)) {
+      projection.add("accountType");
+    }
+    return projection;
+  }
+
+  public static PropertyFilter filter() {
+    return new SparseFilter();
+  }
+
+  /**
+   * Respuesta parcial: recuerda los campos pedidos para que el filtro omita el resto.
+   */
+  public static class SparseAccountResponse extends AccountResponse {
+    @JsonIgnore
+    private final Set<String> fields;
+
+    public SparseAccountResponse(Set<String> fields) {
+      this.fields = fields;
+    }
+
+    public boolean includes(String field) {
+      return fields.contains(field);
+    }
+  }
+
+  // Deja pasar todo en las respuestas completas
+  private static final class SparseFilter extends SimpleBeanPropertyFilter {
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator gen, SerializerProvider provider,
+                                 PropertyWriter writer) throws Exception {
+      if (pojo instanceof SparseAccountResponse
+          && !((SparseAccountResponse) pojo).includes(writer.getName())) {
+        return;
+      }
+      writer.serializeAsField(pojo, gen, provider);
+    }
+  }
+}
@@ -9,6 +9,9 @@ import java.util.function.*;
 import java.util.regex.*;
 import java.util.stream.*;
 import com.nttdata.accountservice.model.entity.Account;
+import com.nttdata.accountservice.model.entity.Movement;
+import com.nttdata.accountservice.service.balance.MovementLedger;
+import org.springframework.data.mongodb.core.query.Update;
 import static java.util.Optional.*;
 
 
@@ -16,6 +19,7 @@ public class AccountMapper {
 
 
   private static final Pattern DOC_PATTERN = Pattern.compile("^\\d{8,11}$");
+  private static final Map<String, BiConsumer<Account, AccountResponse>> RESPONSE_FIELDS = responseWriters();
 
   private AccountMapper() {
   }
@@ -24,13 +28,34 @@ public class AccountMapper {
     if (account == null) return null;
 
     AccountResponse dto = new AccountResponse();
+    RESPONSE_FIELDS.values().forEach(writer -> writer.accept(account, dto));
+    return dto;
+  }
+
+  /**
+   * Respuesta parcial con solo los campos pedidos ({@link AccountFields}); null = completa.
+   */
+  public static AccountResponse toResponse(Account account, Set<String> fields) {
+    if (account == null) return null;
+    if (fields == null) return toResponse(account);
 
-    dto.setId(account.getId());
-    dto.setAccountNumber(account.getAccountNumber());
-    dto.setInterbankNumber(account.getInterbankNumber());
+    AccountResponse dto = new AccountFields.SparseAccountResponse(fields);
+    fields.forEach(field -> RESPONSE_FIELDS.get(field).accept(account, dto));
+    return dto;
+  }
 
-    dto.setHolderDocument(safeTrim(account.getHolderDocument()));
-    dto.setHolderDocumentType(
+  static Set<String> responseFields() {
+    return RESPONSE_FIELDS.keySet();
+  }
+
+  // Escritura de cada campo de la respuesta, por su nombre JSON
+  private static Map<String, BiConsumer<Account, AccountResponse>> responseWriters() {
+    Map<String, BiConsumer<Account, AccountResponse>> writers = new LinkedHashMap<>();
+    writers.put("id", (account, dto) -> dto.setId(account.getId()));
+    writers.put("accountNumber", (account, dto) -> dto.setAccountNumber(account.getAccountNumber()));
+    writers.put("interbankNumber", (account, dto) -> dto.setInterbankNumber(account.getInterbankNumber()));
+    writers.put("holderDocument", (account, dto) -> dto.setHolderDocument(safeTrim(account.getHolderDocument())));
+    writers.put("holderDocumentType", (account, dto) -> dto.setHolderDocumentType(
         Optional.ofNullable(account.getHolderDocumentType())
             .map(String::trim)
             .flatMap(t -> {
@@ -40,40 +65,50 @@ public class AccountMapper {
                 return Optional.empty();
               }
             }).orElse(null)
-    );
+    ));
     // Firmantes
-    dto.setAuthorizedSigners(cleanDocs(account.getAuthorizedSigners()));
+    writers.put("authorizedSigners", (account, dto) -> dto.setAuthorizedSigners(cleanDocs(account.getAuthorizedSigners())));
 
     // accountType
-    dto.setAccountType(toResponseEnum(account.getAccountType()));
-
-    dto.setBalance(ofNullable(account.getBalance()).orElse(BigDecimal.ZERO));
-    dto.setInterestRate(account.getInterestRate());
-    dto.setMonthlyMovementLimit(jn(account.getMonthlyMovementLimit()));
-    dto.setMaintenanceFee(jn(account.getMaintenanceFee()));
-    dto.setAllowedDayOfMonth(jn(account.getAllowedDayOfMonth()));
-    dto.setCreationDate(account.getCreationDate());
-    dto.setActive(account.getActive());
-
-    if (account.getLinkedCard() != null) {
-      var lc = new com.nttdata.accountservice.model.LinkedCard();
-      lc.setId(account.getLinkedCard().getId());
-      dto.setLinkedCard(lc);
-    }
+    writers.put("accountType", (account, dto) -> dto.setAccountType(toResponseEnum(account.getAccountType())));
+
+    writers.put("balance", (account, dto) -> dto.setBalance(ofNullable(account.getBalance()).orElse(BigDecimal.ZERO)));
+    writers.put("interestRate", (account, dto) -> dto.setInterestRate(account.getInterestRate()));
+    writers.put("monthlyMovementLimit", (account, dto) -> dto.setMonthlyMovementLimit(jn(account.getMonthlyMovementLimit())));
+    writers.put("maintenanceFee", (account, dto) -> dto.setMaintenanceFee(jn(account.getMaintenanceFee())));
+    writers.put("allowedDayOfMonth", (account, dto) -> dto.setAllowedDayOfMonth(jn(account.getAllowedDayOfMonth())));
+    writers.put("creationDate", (account, dto) -> dto.setCreationDate(account.getCreationDate()));
+    writers.put("active", (account, dto) -> dto.setActive(account.getActive()));
+
+    writers.put("linkedCard", (account, dto) -> {
+      if (account.getLinkedCard() != null) {
+        var lc = new com.nttdata.accountservice.model.LinkedCard();
+        lc.setId(account.getLinkedCard().getId());
+        dto.setLinkedCard(lc);
+      }
+    });
 
     // Política por cuenta
-    dto.setFreeTransactionsLimit(account.getFreeTransactionsLimit());
-    dto.setCommissionFee(account.getCommissionFee());
+    writers.put("freeTransactionsLimit", (account, dto) -> dto.setFreeTransactionsLimit(account.getFreeTransactionsLimit()));
+    writers.put("commissionFee", (account, dto) -> dto.setCommissionFee(account.getCommissionFee()));
     // Campos solo para FIXED_TERM
-    if ("FIXED_TERM".equalsIgnoreCase(account.getAccountType())) {
-      dto.setOpeningDate(account.getOpeningDate());
-      dto.setMaturityDate(account.getMaturityDate());
-      dto.setEarlyWithdrawalPenalty(account.getEarlyWithdrawalPenalty());
-      dto.setTerm(account.getTerm());
-    }
-
+    writers.put("openingDate", (account, dto) -> {
+      if (isFixedTerm(account)) dto.setOpeningDate(account.getOpeningDate());
+    });
+    writers.put("maturityDate", (account, dto) -> {
+      if (isFixedTerm(account)) dto.setMaturityDate(account.getMaturityDate());
+    });
+    writers.put("earlyWithdrawalPenalty", (account, dto) -> {
+      if (isFixedTerm(account)) dto.setEarlyWithdrawalPenalty(account.getEarlyWithdrawalPenalty());
+    });
+    writers.put("term", (account, dto) -> {
+      if (isFixedTerm(account)) dto.setTerm(account.getTerm());
+    });
+    return Collections.unmodifiableMap(writers);
+  }
 
-    return dto;
+  private static boolean isFixedTerm(Account account) {
+    return "FIXED_TERM".equalsIgnoreCase(account.getAccountType());
   }
 
 
@@ -173,6 +208,40 @@ public class AccountMapper {
   }
 
 
+  /**
+   * $set de los campos editables que trae la petición, con los valores ya normalizados por
+   * {@link #mergeIntoEntity}. No reemplaza el documento: saldo y contador que cambian las
+   * operaciones, movimientos pendientes y marcas de lote quedan como estén en Mongo.
+   */
+  public static Update editableUpdate(Account merged, AccountRequest request) {
+    Update update = new Update();
+    setIfPresent(update, request.getHolderDocument(), "holderDocument", merged.getHolderDocument());
+    setIfPresent(update, request.getHolderDocumentType(), "holderDocumentType", merged.getHolderDocumentType());
+    setIfPresent(update, request.getAccountType(), "accountType", merged.getAccountType());
+    setIfPresent(update, request.getBalance(), "balance", merged.getBalance());
+    setIfPresent(update, request.getInterestRate(), "interestRate", merged.getInterestRate());
+    setIfPresent(update, request.getMonthlyMovementLimit(), "monthlyMovementLimit", merged.getMonthlyMovementLimit());
+    setIfPresent(update, request.getMaintenanceFee(), "maintenanceFee", merged.getMaintenanceFee());
+    setIfPresent(update, request.getAllowedDayOfMonth(), "allowedDayOfMonth", merged.getAllowedDayOfMonth());
+    setIfPresent(update, request.getActive(), "active", merged.getActive());
+    setIfPresent(update, request.getLinkedCard(), "linkedCard", merged.getLinkedCard());
+    setIfPresent(update, request.getAuthorizedSigners(), "authorizedSigners", merged.getAuthorizedSigners());
+    setIfPresent(update, request.getFreeTransactionsLimit(), "freeTransactionsLimit", merged.getFreeTransactionsLimit());
+    setIfPresent(update, request.getCommissionFee(), "commissionFee", merged.getCommissionFee());
+    if ("FIXED_TERM".equalsIgnoreCase(merged.getAccountType())) {
+      setIfPresent(update, request.getOpeningDate(), "openingDate", merged.getOpeningDate());
+      setIfPresent(update, request.getMaturityDate(), "maturityDate", merged.getMaturityDate());
+      setIfPresent(update, request.getEarlyWithdrawalPenalty(), "earlyWithdrawalPenalty",
+          merged.getEarlyWithdrawalPenalty());
+      setIfPresent(update, request.getTerm(), "term", merged.getTerm());
+    }
+    return update;
+  }
+
+  private static void setIfPresent(Update update, Object requested, String field, Object value) {
+    if (requested != null) update.set(field, value);
+  }
+
   private static <T> void applyIfPresent(T value, Consumer<T> setter) {
     ofNullable(value).ifPresent(setter);
   }
@@ -193,6 +262,17 @@ public class AccountMapper {
         .collect(Collectors.toList());
   }
 
+  public static AccountMovement toMovementResponse(Movement movement) {
+    if (movement == null) return null;
+    return new AccountMovement()
+        .transactionId(movement.getTransactionId())
+        .date(movement.getDate() == null ? null : movement.getDate().atOffset(java.time.ZoneOffset.UTC))
+        .type(movement.getType() == null ? null : AccountMovement.TypeEnum.fromValue(movement.getType()))
+        .amount(movement.getAmount())
+        .commissionApplied(movement.getCommissionApplied())
+        .cursor(MovementLedger.cursorOf(movement));
+  }
+
   private static AccountResponse.AccountTypeEnum toResponseEnum(String type) {
     return ofNullable(type)
         .map(String::trim)
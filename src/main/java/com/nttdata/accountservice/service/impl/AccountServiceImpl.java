@@ -3,10 +3,13 @@ package com.nttdata.accountservice.service.impl;
 import com.nttdata.accountservice.config.*;
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
+import com.nttdata.accountservice.integration.support.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.model.entity.*;
 import com.nttdata.accountservice.repository.*;
 import com.nttdata.accountservice.service.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
 import com.nttdata.accountservice.util.*;
@@ -15,6 +18,7 @@ import lombok.extern.slf4j.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.*;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.*;
 import org.springframework.stereotype.*;
 import org.springframework.web.server.*;
@@ -23,6 +27,8 @@ import reactor.core.publisher.*;
 import java.math.*;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
 @Slf4j
 @Service
@@ -32,6 +38,10 @@ public class AccountServiceImpl implements AccountService {
 
   private static final BigDecimal MIN_OPENING_BALANCE = BigDecimal.ZERO;
   private static final String ACCOUNT_NOT_FOUND_MSG = "Cuenta no encontrada con ID: ";
+  private static final int DEFAULT_PAGE_LIMIT = 100;
+  private static final int MAX_PAGE_LIMIT = 500;
+  private static final int DEFAULT_MOVEMENTS_LIMIT = 50;
+  private static final int MAX_MOVEMENTS_LIMIT = 500;
   private final AccountRepository accountRepository;
 
   // Integraciones y servicios de dominio
@@ -39,12 +49,19 @@ public class AccountServiceImpl implements AccountService {
   private final CreditsClient creditsClient;
   private final AccountRulesService accountRules;
   private final AccountPolicyService policyService;
+  private final AccountBalanceEngine balanceEngine;
+  private final BalanceBatchProcessor batchProcessor;
+  private final MovementLedger movementLedger;
+  private final AccountCache accountCache;
 
 
   @Value("${benefit.savings.vip.requireCreditCard:true}")
   private boolean requireCcForVip;
   @Value("${benefit.checking.pyme.requireCreditCard:true}")
   private boolean requireCcForPyme;
+  // Usar hasActiveCreditCard de Customers si viene informado, sin consultar Credits
+  @Value("${benefit.creditCard.trustEligibility:true}")
+  private boolean trustEligibilityCreditCard = true;
 
   @Override
   public Flux<AccountResponse> listAccounts() {
@@ -54,16 +71,64 @@ public class AccountServiceImpl implements AccountService {
         .map(AccountMapper::toResponse);
   }
 
+  @Override
+  // Página por keyset: se pide limit + 1 para saber si hay página siguiente
+  public Mono<InlineResponse200> listAccountsPage(Integer limit, String cursor, String accountType,
+                                                  Boolean active, LocalDate creationDateFrom,
+                                                  LocalDate creationDateTo) {
+    int size = limit == null ? DEFAULT_PAGE_LIMIT : limit;
+    if (size < 1 || size > MAX_PAGE_LIMIT) {
+      return Mono.error(new IllegalArgumentException("limit debe estar entre 1 y " + MAX_PAGE_LIMIT));
+    }
+    if (creationDateFrom != null && creationDateTo != null && creationDateFrom.isAfter(creationDateTo)) {
+      return Mono.error(new IllegalArgumentException(
+          "creationDateFrom no puede ser posterior a creationDateTo"));
+    }
+    AccountSearchCriteria criteria = new AccountSearchCriteria();
+    criteria.setAccountType(accountType);
+    criteria.setActive(active);
+    criteria.setCreationDateFrom(creationDateFrom);
+    criteria.setCreationDateTo(creationDateTo);
+    criteria.setLimit(size + 1);
+    return Mono.fromCallable(() -> decodeCursor(cursor))
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMap(afterId -> {
+          criteria.setAfterId(afterId.orElse(null));
+          return accountRepository.findPage(criteria).collectList();
+        })
+        .map(accounts -> {
+          boolean hasMore = accounts.size() > size;
+          List<Account> page = hasMore ? accounts.subList(0, size) : accounts;
+          List<AccountResponse> items = new ArrayList<>(page.size());
+          page.forEach(a -> items.add(AccountMapper.toResponse(a)));
+          return new InlineResponse200()
+              .items(items)
+              .nextCursor(hasMore ? encodeCursor(page.get(page.size() - 1).getId()) : null);
+        });
+  }
+
   @Override
   public Mono<AccountResponse> getAccountById(String id) {
     log.info("Buscando cuenta por ID: {}", id);
-    return accountRepository.findById(id)
+    return accountCache.get(id, accountRepository.findById(id)
         .switchIfEmpty(Mono.defer(() -> {
           log.warn("Cuenta no encontrada con ID: {}", id);
           return Mono.error(new ResponseStatusException(
               HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id));
         }))
-        .map(AccountMapper::toResponse);
+        .map(AccountMapper::toResponse));
+  }
+
+  @Override
+  // Respuesta parcial: proyección en Mongo y sin pasar por la caché de cuentas completas
+  public Mono<AccountResponse> getAccountById(String id, String fields) {
+    if (fields == null || fields.isBlank()) return getAccountById(id);
+    return Mono.fromCallable(() -> AccountFields.parse(fields))
+        .flatMap(requested -> accountRepository.findByIdIncluding(id, AccountFields.projection(requested))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(
+                HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id)))
+            .map(acc -> AccountMapper.toResponse(acc, requested)));
   }
 
 
@@ -74,16 +139,39 @@ public class AccountServiceImpl implements AccountService {
       return Mono.error(new BusinessException("AccountRequest no puede ser nulo"));
     }
     return validateRequest(request)
-        .then(Mono.defer(() ->
-            customersClient.getEligibilityByDocument(
-                    request.getHolderDocumentType().getValue(),
-                    request.getHolderDocument()
-                )
-                .switchIfEmpty(Mono.error(new BusinessException(
-                    "No existe cliente activo para el documento.")))
-        ))
-        .flatMap(elig -> validateAllRules(request, elig)
-            .then(Mono.defer(() -> persistNewAccount(request, elig))))
+        .then(Mono.defer(() -> {
+          Mono<EligibilityResponse> eligibility = customersClient.getEligibilityByDocument(
+                  request.getHolderDocumentType().getValue(),
+                  request.getHolderDocument()
+              )
+              .switchIfEmpty(Mono.error(new BusinessException(
+                  "No existe cliente activo para el documento.")))
+              .cache();
+          return validateAllRules(request, eligibility).then(eligibility);
+        }))
+        // vencido el plazo de la petición se abandonan las validaciones y no se persiste
+        .transform(Deadline::bounded)
+        // cupo en el resumen del titular antes de guardar; se devuelve si el alta falla
+        .flatMap(elig -> {
+          String holder = request.getHolderDocument();
+          String type = request.getAccountType().getValue();
+          String reservation = UUID.randomUUID().toString();
+          CompletableFuture<Account> create = accountRules.reserve(holder, request.getAccountType(), elig.getType(), reservation)
+              .then(Mono.defer(() -> persistNewAccount(request, elig)
+                  .onErrorResume(ex -> accountRules.release(holder, type, reservation).then(Mono.error(ex)))))
+              .flatMap(saved -> accountRules.confirm(holder, reservation)
+                  .onErrorResume(ex -> {
+                    log.warn("No se pudo confirmar la reserva {} de {}: {}", reservation, holder, ex.getMessage());
+                    return Mono.empty();
+                  })
+                  .thenReturn(saved))
+              .toFuture();
+          // Iniciada la reserva, el alta termina aunque se cancele la petición (cliente
+          // desconectado): cortada a mitad dejaría el cupo tomado sin cuenta o una cuenta sin
+          // confirmar. Futuro derivado: cancelar esta suscripción no cancela el alta
+          return Mono.fromFuture(create.thenApply(Function.identity()));
+        })
+        .onErrorMap(CompletionException.class, ex -> ex.getCause() != null ? ex.getCause() : ex)
         .map(AccountMapper::toResponse);
   }
 
@@ -93,16 +181,26 @@ public class AccountServiceImpl implements AccountService {
         .then(accountRepository.findById(id)
             .switchIfEmpty(Mono.error(new ResponseStatusException(
                 HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id)))
-            // Actualizar campos permitidos
+            // Actualizar solo los campos permitidos que trae la petición ($set, sin reemplazar el
+            // documento: los campos gestionados por el sistema y las operaciones en curso se conservan)
             .flatMap(existing -> {
+              String previousHolder = existing.getHolderDocument();
+              String previousType = existing.getAccountType();
               AccountMapper.mergeIntoEntity(existing, request);
-              // proteger campos inmutables o gestionados por el sistema
-              existing.setAccountNumber(existing.getAccountNumber());
-              existing.setInterbankNumber(existing.getInterbankNumber());
-              existing.setCreationDate(existing.getCreationDate());
-              return accountRepository.save(existing);
+              Update update = AccountMapper.editableUpdate(existing, request);
+              Mono<Account> write = update.getUpdateObject().isEmpty()
+                  ? Mono.just(existing)
+                  : accountRepository.updateFields(id, update)
+                      .switchIfEmpty(Mono.error(new ResponseStatusException(
+                          HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id)));
+              return write
+                  .flatMap(saved -> accountRules.move(previousHolder, previousType,
+                          saved.getHolderDocument(), saved.getAccountType())
+                      .thenReturn(saved));
             }))
-        .map(AccountMapper::toResponse);
+        // Se invalida en vez de guardar la respuesta: una operación de saldo confirmada entre la
+        // escritura y el guardado dejaría en caché el saldo anterior
+        .flatMap(saved -> accountCache.evict(id).thenReturn(AccountMapper.toResponse(saved)));
   }
 
   @Override
@@ -110,12 +208,14 @@ public class AccountServiceImpl implements AccountService {
     return accountRepository.findById(id)
         .switchIfEmpty(Mono.error(new ResponseStatusException(
             HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id)))
-        .flatMap(acc -> accountRepository.deleteById(id));
+        .flatMap(acc -> accountRepository.deleteById(id)
+            .then(accountRules.release(acc.getHolderDocument(), acc.getAccountType())))
+        .then(Mono.defer(() -> accountCache.evict(id)));
   }
 
   @Override
   public Mono<AccountLimitsResponse> getAccountLimits(String id) {
-    return accountRepository.findById(id)
+    return accountRepository.findLimitsById(id)
         .switchIfEmpty(Mono.error(new ResponseStatusException(
             HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + id)))
         // Obtener límites y operaciones usadas en el mes actual
@@ -149,104 +249,36 @@ public class AccountServiceImpl implements AccountService {
       return Mono.error(new IllegalArgumentException("amount debe ser > 0"));
     if (request.getOperationId().isBlank())
       return Mono.error(new IllegalArgumentException("operationId es obligatorio"));
-    // Buscar cuenta y procesar operación de balance
-    return accountRepository.findById(accountId)
-        .switchIfEmpty(Mono.error(new ResponseStatusException(
-            HttpStatus.NOT_FOUND, "Cuenta no encontrada")))
-        .flatMap(acc -> processBalanceOperation(acc, request));
-  }
-
-  // Lógica para procesar la operación de balance
-  private Mono<BalanceOperationResponse> processBalanceOperation(
-      Account acc, BalanceOperationRequest request) {
-    // Idempotencia: si ya se aplicó la operación, devolver estado sin cambios
-    if (isOperationAlreadyApplied(acc, request)) {
-      return Mono.just(new BalanceOperationResponse()
-          .applied(false).newBalance(acc.getBalance())
-          .commissionApplied(BigDecimal.ZERO)
-          .message("Idempotente"));
-    }
-    // Determinar si es débito o crédito
-    boolean isDebit = isDebit(request.getType());
-    // Validaciones específicas según tipo de cuenta y operación
-    return validateFixedTermDay(acc, isDebit)
-        // luego validar saldo suficiente si es débito
-        .then(validateSufficientBalance(acc, request, isDebit))
-        // todas las validaciones pasaron, proceder a actualizar cuenta
-        .thenReturn(true)
-        // finalmente actualizar cuenta y devolver resultado
-        .flatMap(valid -> updateAccountForOperation(acc, request));
-  }
-
-  // Verifica si la operación ya fue aplicada a la cuenta (idempotencia)
-  private boolean isOperationAlreadyApplied(Account acc, BalanceOperationRequest request) {
-    // Si no hay historial de operaciones, no se ha aplicado
-    return acc.getOpIds() != null && acc.getOpIds().contains(request.getOperationId());
+    // Validación y escritura en un único findAndModify condicional
+    return balanceEngine.apply(accountId, request)
+        .flatMap(resp -> accountCache.evict(accountId).thenReturn(resp));
   }
 
-  // Validar día permitido para débito en cuentas a plazo fijo
-  private Mono<Void> validateFixedTermDay(Account acc, boolean isDebit) {
-    // Si es cuenta FIXED_TERM y es débito, validar día permitido
-    if ("FIXED_TERM".equalsIgnoreCase(acc.getAccountType()) && isDebit) {
-      int today = LocalDate.now().getDayOfMonth();
-      // Si no coincide, rechazar
-      if (acc.getAllowedDayOfMonth() == null || !acc.getAllowedDayOfMonth().equals(today)) {
-        // Día no permitido
-        return Mono.error(new BusinessException(
-            "Día no permitido para débito en FIXED_TERM"));
-      }
-    }
-    return Mono.empty();
-  }
-
-  // Validar que la cuenta tiene saldo suficiente para la operación de débito
-  private Mono<Void> validateSufficientBalance(
-      Account acc, BalanceOperationRequest request, boolean isDebit) {
-    // Si es débito, verificar saldo
-    BigDecimal delta = computeDelta(request.getType(), request.getAmount());
-    if (isDebit && acc.getBalance().add(delta).compareTo(BigDecimal.ZERO) < 0) {
-      return Mono.error(new BusinessException("Saldo insuficiente"));
-    }
-    // Si es crédito o hay saldo suficiente, OK
-    return Mono.empty();
+  @Override
+  // Aplicar operaciones de balance en lote (agrupadas por cuenta, un bulkWrite por bloque)
+  public Mono<BalanceOperationBatchResponse> applyBalanceOperationsBatch(
+      BalanceOperationBatchRequest request) {
+    if (request == null || request.getItems() == null)
+      return Mono.error(new IllegalArgumentException("items es obligatorio"));
+    return batchProcessor.process(request.getItems())
+        .flatMap(results -> accountCache.evictAll(touchedAccountIds(results))
+            .thenReturn(new BalanceOperationBatchResponse().results(results)));
   }
 
-  // Actualizar cuenta con nueva operación, calcular comisión si aplica
-  private Mono<BalanceOperationResponse> updateAccountForOperation(
-      Account acc, BalanceOperationRequest request) {
-    // Obtener o inicializar contador de operaciones del mes actual
-    String ymNow = YearMonth.now().toString();
-    // Si es otro mes, reiniciar contador
-    OpsCounter oc = acc.getOpsCounter();
-    // Si no existe o es otro mes, crear nuevo
-    if (oc == null || !ymNow.equals(oc.getYearMonth())) {
-      oc = new OpsCounter();
-      oc.setYearMonth(ymNow);
-      oc.setCount(0);
+  @Override
+  // Movimientos de la cuenta por keyset, en streaming desde el cursor de Mongo
+  public Flux<AccountMovement> listAccountMovements(String accountId, String cursor, Integer limit) {
+    int size = limit == null ? DEFAULT_MOVEMENTS_LIMIT : limit;
+    if (size < 1 || size > MAX_MOVEMENTS_LIMIT) {
+      return Flux.error(new IllegalArgumentException(
+          "limit debe estar entre 1 y " + MAX_MOVEMENTS_LIMIT));
     }
-    // Actualizar contador y calcular comisión si aplica
-    boolean counts = countsForPolicy(request.getType());
-    int nextCount = oc.getCount() + (counts ? 1 : 0);
-    int free = acc.getFreeTransactionsLimit() == null ? 0 : acc.getFreeTransactionsLimit();
-    BigDecimal fee = acc.getCommissionFee() == null ? BigDecimal.ZERO : acc.getCommissionFee();
-    BigDecimal commissionApplied = (counts && nextCount > free) ? fee : BigDecimal.ZERO;
-    BigDecimal delta = computeDelta(request.getType(), request.getAmount());
-    BigDecimal newBalance = acc.getBalance().add(delta);
-    // Aplicar comisión si corresponde
-    acc.setBalance(newBalance);
-    oc.setCount(nextCount);
-    acc.setOpsCounter(oc);
-    // Registrar ID de operación para idempotencia
-    if (acc.getOpIds() == null) acc.setOpIds(new ArrayList<>());
-    acc.getOpIds().add(request.getOperationId());
-    // Restar comisión del balance si aplica
-    if (acc.getOpIds().size() > 200) acc.getOpIds().remove(0);
-    // Actualizar balance con comisión si aplica
-    return accountRepository.save(acc)
-        // Si hay comisión, restarla del balance y guardar de nuevo
-        .map(saved -> new BalanceOperationResponse()
-            .applied(true).newBalance(saved.getBalance())
-            .commissionApplied(commissionApplied).message("OK"));
+    return accountRepository.existsById(accountId)
+        .flatMapMany(exists -> exists
+            ? movementLedger.page(accountId, cursor, size)
+            : Flux.error(new ResponseStatusException(
+                HttpStatus.NOT_FOUND, ACCOUNT_NOT_FOUND_MSG + accountId)))
+        .map(AccountMapper::toMovementResponse);
   }
 
   //Buscar cuentas por documento de cliente - utilizado por transacciones
@@ -258,14 +290,44 @@ public class AccountServiceImpl implements AccountService {
         .map(AccountMapper::toResponse);
   }
 
+  @Override
+  public Flux<AccountResponse> getAccountsByHolderDocument(String holderDocument, String fields) {
+    if (fields == null || fields.isBlank()) return getAccountsByHolderDocument(holderDocument);
+    return Mono.fromCallable(() -> AccountFields.parse(fields))
+        .flatMapMany(requested -> accountRepository
+            .findByHolderDocumentIncluding(holderDocument, AccountFields.projection(requested))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(
+                HttpStatus.NOT_FOUND, "No se encontraron cuentas para el documento: " + holderDocument)))
+            .map(acc -> AccountMapper.toResponse(acc, requested)));
+  }
+
   // ===== Lógica de negocio específica =====
+  /**
+   * Reglas de alta en paralelo: la consulta de cuentas del titular corre junto a la
+   * elegibilidad, y la consulta de tarjeta arranca en cuanto se conoce el cliente.
+   * Cualquier error técnico corta el resto; el rechazo por falta de tarjeta se decide
+   * después de las reglas previas, para conservar la prioridad de los mensajes.
+   */
   private Mono<Void> validateAllRules(
-      AccountRequest req, EligibilityResponse elig) {
+      AccountRequest req, Mono<EligibilityResponse> eligibility) {
     Mono<Void> legacy = accountRules.validateLegacyRules(
         req.getHolderDocument(),
         req.getAccountType(),
-        elig.getType());
+        eligibility);
+    Mono<Optional<String>> benefit = eligibility
+        .flatMap(elig -> benefitViolation(req, elig))
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty());
+
+    // zip: el primer error cancela la otra rama
+    return Mono.zip(legacy.thenReturn(true), benefit)
+        .flatMap(t -> t.getT2()
+            .<Mono<Void>>map(message -> Mono.error(new BusinessException(message)))
+            .orElseGet(Mono::empty));
+  }
 
+  // Mensaje de rechazo del beneficio si exige tarjeta y el cliente no la tiene
+  private Mono<String> benefitViolation(AccountRequest req, EligibilityResponse elig) {
     boolean isVipSavings = "PERSONAL".equals(elig.getType())
         && "VIP".equals(elig.getProfile())
         && req.getAccountType() == AccountRequest.AccountTypeEnum.SAVINGS;
@@ -274,20 +336,20 @@ public class AccountServiceImpl implements AccountService {
         && "PYME".equals(elig.getProfile())
         && req.getAccountType() == AccountRequest.AccountTypeEnum.CHECKING;
 
-    Mono<Void> benefit = Mono.empty();
+    String message;
     if (isVipSavings && requireCcForVip) {
-      benefit = creditsClient.hasActiveCreditCard(elig.getCustomerId())
-          .flatMap(has -> Boolean.TRUE.equals(has) ? Mono.empty() :
-              Mono.error(new BusinessException(
-                  "Ahorro VIP requiere tener Tarjeta de Crédito activa.")));
+      message = "Ahorro VIP requiere tener Tarjeta de Crédito activa.";
     } else if (isPymeChecking && requireCcForPyme) {
-      benefit = creditsClient.hasActiveCreditCard(elig.getCustomerId())
-          .flatMap(has -> Boolean.TRUE.equals(has) ? Mono.empty() :
-              Mono.error(new BusinessException(
-                  "Cuenta Corriente PYME requiere Tarjeta de Crédito activa.")));
+      message = "Cuenta Corriente PYME requiere Tarjeta de Crédito activa.";
+    } else {
+      return Mono.empty();
     }
-
-    return legacy.then(benefit);
+    Mono<Boolean> hasCard = trustEligibilityCreditCard && elig.getHasActiveCreditCard() != null
+        ? Mono.just(elig.getHasActiveCreditCard())
+        : creditsClient.hasActiveCreditCard(elig.getCustomerId());
+    return hasCard
+        .filter(has -> !Boolean.TRUE.equals(has))
+        .map(has -> message);
   }
 
   private Mono<Account> persistNewAccount(
@@ -298,7 +360,6 @@ public class AccountServiceImpl implements AccountService {
     if (account.getCreationDate() == null) account.setCreationDate(LocalDate.now());
     if (account.getActive() == null) account.setActive(Boolean.TRUE);
     if (account.getBalance() == null) account.setBalance(BigDecimal.ZERO);
-    if (account.getOpIds() == null) account.setOpIds(new ArrayList<>());
     if (account.getOpsCounter() == null) {
       OpsCounter oc = new OpsCounter();
       oc.setYearMonth(YearMonth.now().toString());
@@ -336,36 +397,6 @@ public class AccountServiceImpl implements AccountService {
         });
   }
 
-  // ===== Helpers =====
-
-  // Define si la operación es de débito (afecta negativamente el balance)
-  private boolean isDebit(BalanceOperationType type) {
-    // Retiro y Transferencia Out son débitos
-    return type == BalanceOperationType.WITHDRAWAL
-        || type == BalanceOperationType.TRANSFER_OUT;
-  }
-
-  // Define si la operación afecta el conteo para políticas de comisión
-  private boolean countsForPolicy(BalanceOperationType type) {
-    return type == BalanceOperationType.DEPOSIT
-        || type == BalanceOperationType.WITHDRAWAL
-        || type == BalanceOperationType.TRANSFER_IN
-        || type == BalanceOperationType.TRANSFER_OUT;
-  }
-
-  // Calcula el delta a aplicar al balance según el tipo de operación - positivo o negativo
-  private BigDecimal computeDelta(BalanceOperationType type, BigDecimal amount) {
-    // Depósito y Transferencia In suman (delta positivo)
-    if (type == BalanceOperationType.DEPOSIT
-        || type == BalanceOperationType.TRANSFER_IN) return amount;
-    // Retiro y Transferencia Out restan (delta negativo)
-    if (type == BalanceOperationType.WITHDRAWAL
-        || type == BalanceOperationType.TRANSFER_OUT)
-      return amount.negate();
-    return BigDecimal.ZERO;
-  }
-
-
   // Validaciones de negocio para creación y actualización
   private Mono<Void> validateRequest(AccountRequest request) {
     if (request.getHolderDocument() == null || request.getHolderDocument().isBlank()) { // NOSONAR
@@ -438,5 +469,29 @@ public class AccountServiceImpl implements AccountService {
     return Mono.empty();
   }
 
-}
+  // Cuentas cuyo saldo pudo cambiar en el lote (para invalidar la caché). IDEMPOTENT incluido:
+  // la repetición de una reserva en curso abandonada la toma y aplica el movimiento
+  private static Set<String> touchedAccountIds(List<BalanceOperationBatchResult> results) {
+    Set<String> ids = new LinkedHashSet<>();
+    results.stream()
+        .filter(r -> r.getStatus() != BalanceOperationBatchResult.StatusEnum.REJECTED)
+        .forEach(r -> ids.add(r.getAccountId()));
+    return ids;
+  }
 
+  // ===== Cursor de paginación (opaco, _id de la última cuenta) =====
+
+  private static String encodeCursor(String id) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(id.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+  }
+
+  private static String decodeCursor(String cursor) {
+    if (cursor == null || cursor.isBlank()) return null;
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), java.nio.charset.StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("cursor inválido");
+    }
+  }
+}
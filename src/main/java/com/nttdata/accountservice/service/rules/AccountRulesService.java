@@ -1,46 +1,234 @@
 package com.nttdata.accountservice.service.rules;
 
 import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
 import com.nttdata.accountservice.repository.*;
 import lombok.*;
+import org.bson.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
 import org.springframework.stereotype.*;
 import reactor.core.publisher.*;
 
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * Reglas de alta por titular sobre su resumen de cuentas (colección holder_summaries):
+ * la validación es una lectura por _id y {@link #reserve} incrementa el contador con un
+ * update condicional, de modo que dos altas simultáneas no superan el máximo por tipo.
+ * Cada reserva deja su id en {@code reservations} hasta que el alta se confirma o se
+ * devuelve, así solo se descuenta el cupo que esa alta llegó a tomar. Una reserva más antigua
+ * que el lease quedó abandonada (proceso caído, devolución fallida): la siguiente reserva del
+ * titular recalcula ese contador desde sus cuentas.
+ * Un titular sin resumen se rellena una sola vez a partir de sus cuentas.
+ */
 @Service
 @RequiredArgsConstructor
 public class AccountRulesService {
 
+  private static final String COUNTS = "counts.";
+  private static final String RESERVATIONS = "reservations";
+
   private final AccountRepository accountRepository;
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  // Más que lo que tarda un alta entre reserva y confirmación: una reserva más antigua quedó abandonada
+  @Value("${accounts.reservation.lease:PT30S}")
+  private Duration reservationLease = Duration.ofSeconds(30);
 
   public Mono<Void> validateLegacyRules(String holderDocument,
                                         AccountRequest.AccountTypeEnum reqType,
                                         String customerType) {
+    return summary(holderDocument)
+        .flatMap(summary -> checkLegacyRules(summary, reqType, customerType));
+  }
+
+  /**
+   * Igual que la variante por tipo de cliente, pero la lectura del resumen del titular
+   * corre en paralelo con la elegibilidad en lugar de esperarla.
+   */
+  public Mono<Void> validateLegacyRules(String holderDocument,
+                                        AccountRequest.AccountTypeEnum reqType,
+                                        Mono<EligibilityResponse> eligibility) {
+    return Mono.zip(summary(holderDocument), eligibility)
+        .flatMap(t -> checkLegacyRules(t.getT1(), reqType, t.getT2().getType()));
+  }
+
+  /**
+   * Reserva el cupo de la nueva cuenta en el resumen del titular. Para los tipos con
+   * máximo (PERSONAL: SAVINGS y CHECKING) el incremento solo se aplica si el contador
+   * sigue en cero; si otra alta lo ganó, BusinessException. {@code reservationId} queda
+   * pendiente en el resumen hasta {@link #confirm} o {@link #release(String, String, String)}.
+   */
+  public Mono<Void> reserve(String holderDocument,
+                            AccountRequest.AccountTypeEnum reqType,
+                            String customerType,
+                            String reservationId) {
+    Criteria criteria = Criteria.where("id").is(holderDocument);
+    if (isLimited(reqType, customerType)) {
+      criteria = criteria.and(COUNTS + reqType.getValue()).not().gte(1);
+    }
+    Instant now = Instant.now();
+    Update update = new Update()
+        .inc(COUNTS + reqType.getValue(), 1)
+        .push(RESERVATIONS, new HolderReservation(reservationId, reqType.getValue(), now))
+        .set("customerType", customerType)
+        .set("updatedAt", now);
+    Query query = new Query(criteria);
+    return summary(holderDocument)
+        .flatMap(this::reclaimExpired)
+        .then(Mono.defer(() -> mongoTemplate.updateFirst(query, update, HolderSummary.class)))
+        .flatMap(result -> result.getMatchedCount() > 0
+            ? Mono.<Void>empty()
+            : Mono.error(personalLimit(reqType.getValue())));
+  }
+
+  // Devuelve el cupo: alta fallida o baja de la cuenta
+  public Mono<Void> release(String holderDocument, String accountType) {
+    if (holderDocument == null || accountType == null) return Mono.empty();
+    String field = COUNTS + accountType.toUpperCase();
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(holderDocument).and(field).gt(0)),
+            new Update().inc(field, -1).set("updatedAt", Instant.now()),
+            HolderSummary.class)
+        .then();
+  }
+
+  /**
+   * Devuelve solo el cupo de la reserva indicada (alta fallida o cancelada): el decremento
+   * es condicional a que la reserva siga pendiente, así no descuenta reservas de otras altas
+   * en curso ni una reserva que no llegó a Mongo o ya se devolvió.
+   */
+  public Mono<Void> release(String holderDocument, String accountType, String reservationId) {
+    if (holderDocument == null || accountType == null || reservationId == null) return Mono.empty();
+    String field = COUNTS + accountType.toUpperCase();
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(holderDocument).and(RESERVATIONS + ".reservationId").is(reservationId)
+                .and(field).gt(0)),
+            new Update().inc(field, -1).pull(RESERVATIONS, byId(reservationId)).set("updatedAt", Instant.now()),
+            HolderSummary.class)
+        .then();
+  }
+
+  // Alta guardada: la reserva pasa a ser la cuenta y deja de estar pendiente
+  public Mono<Void> confirm(String holderDocument, String reservationId) {
+    if (holderDocument == null || reservationId == null) return Mono.empty();
+    return mongoTemplate.updateFirst(
+            new Query(Criteria.where("id").is(holderDocument)),
+            new Update().pull(RESERVATIONS, byId(reservationId)),
+            HolderSummary.class)
+        .then();
+  }
+
+  /**
+   * Traslada el cupo cuando una actualización cambia el titular o el tipo de la cuenta.
+   * La actualización no aplica las reglas de alta, así que el incremento no es condicional.
+   */
+  public Mono<Void> move(String fromHolder, String fromType, String toHolder, String toType) {
+    if (Objects.equals(fromHolder, toHolder)
+        && fromType != null && toType != null && fromType.equalsIgnoreCase(toType)) {
+      return Mono.empty();
+    }
+    Mono<Void> acquire = toHolder == null || toType == null ? Mono.empty()
+        : summary(toHolder).then(Mono.defer(() -> mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(toHolder)),
+                new Update().inc(COUNTS + toType.toUpperCase(), 1).set("updatedAt", Instant.now()),
+                HolderSummary.class)))
+            .then();
+    return acquire.then(release(fromHolder, fromType));
+  }
+
+  // ===== Helpers =====
+
+  private Mono<HolderSummary> summary(String holderDocument) {
+    return mongoTemplate.findById(holderDocument, HolderSummary.class)
+        .switchIfEmpty(Mono.defer(() -> backfill(holderDocument)));
+  }
+
+  /**
+   * Devuelve el cupo de las reservas abandonadas: para cada tipo con reservas vencidas y ninguna
+   * vigente, el contador pasa a ser el número de cuentas del titular de ese tipo y sus reservas
+   * se quitan. Con reservas vigentes del tipo no se toca (su cuenta podría estar ya guardada y
+   * contarse dos veces). Condicionado a que el resumen no haya cambiado desde la lectura.
+   */
+  private Mono<Void> reclaimExpired(HolderSummary summary) {
+    if (summary.getReservations() == null || summary.getReservations().isEmpty()) return Mono.empty();
+    Instant cutoff = Instant.now().minus(reservationLease);
+    Set<String> expired = new HashSet<>();
+    Set<String> live = new HashSet<>();
+    summary.getReservations().forEach(r ->
+        (r.getAt() == null || r.getAt().isBefore(cutoff) ? expired : live).add(r.getAccountType()));
+    expired.removeAll(live);
+    if (expired.isEmpty()) return Mono.empty();
+    return accountRepository.findByHolderDocument(summary.getId())
+        .filter(a -> a.getAccountType() != null && expired.contains(a.getAccountType().toUpperCase()))
+        .collect(Collectors.groupingBy(a -> a.getAccountType().toUpperCase(), Collectors.summingInt(a -> 1)))
+        .flatMap(counts -> {
+          Update update = new Update()
+              .pull(RESERVATIONS, new Document("accountType", new Document("$in", new ArrayList<>(expired))))
+              .set("updatedAt", Instant.now());
+          expired.forEach(type -> update.set(COUNTS + type, counts.getOrDefault(type, 0)));
+          return mongoTemplate.updateFirst(
+              new Query(Criteria.where("id").is(summary.getId()).and("updatedAt").is(summary.getUpdatedAt())),
+              update, HolderSummary.class);
+        })
+        .then();
+  }
+
+  private static Document byId(String reservationId) {
+    return new Document("reservationId", reservationId);
+  }
+
+  // Primer acceso del titular: contadores desde sus cuentas, solo si nadie los creó antes
+  private Mono<HolderSummary> backfill(String holderDocument) {
     return accountRepository.findByHolderDocument(holderDocument)
-        .collectList()
-        .flatMap(existing -> {
-          if ("BUSINESS".equals(customerType)) {
-            if (reqType == AccountRequest.AccountTypeEnum.SAVINGS
-                || reqType == AccountRequest.AccountTypeEnum.FIXED_TERM) {
-              return Mono.error(new BusinessException(
-                  "Cliente BUSINESS no puede abrir SAVINGS ni FIXED_TERM."));
-            }
-            return Mono.empty();
-          }
-          // PERSONAL: máx 1 SAVINGS y máx 1 CHECKING
-          boolean hasSavings = existing.stream().anyMatch(
-              a -> "SAVINGS".equalsIgnoreCase(a.getAccountType()));
-          boolean hasChecking = existing.stream().anyMatch(
-              a -> "CHECKING".equalsIgnoreCase(a.getAccountType()));
-          if (reqType == AccountRequest.AccountTypeEnum.SAVINGS && hasSavings) {
-            return Mono.error(new BusinessException(
-                "Cliente PERSONAL ya tiene una cuenta de tipo SAVINGS."));
-          }
-          if (reqType == AccountRequest.AccountTypeEnum.CHECKING && hasChecking) {
-            return Mono.error(new BusinessException(
-                "Cliente PERSONAL ya tiene una cuenta de tipo CHECKING."));
-          }
-          return Mono.empty();
-        });
-  }
-}
\ No newline at end of file
+        .filter(a -> a.getAccountType() != null)
+        .collect(Collectors.groupingBy(a -> a.getAccountType().toUpperCase(),
+            Collectors.summingInt(a -> 1)))
+        .flatMap(counts -> {
+          Update update = new Update().setOnInsert("updatedAt", Instant.now());
+          counts.forEach((type, n) -> update.setOnInsert(COUNTS + type, n));
+          return mongoTemplate.findAndModify(
+              new Query(Criteria.where("id").is(holderDocument)), update,
+              FindAndModifyOptions.options().upsert(true).returnNew(true),
+              HolderSummary.class);
+        })
+        // Dos rellenos simultáneos: el perdedor recibe clave duplicada
+        .onErrorResume(DuplicateKeyException.class,
+            ex -> mongoTemplate.findById(holderDocument, HolderSummary.class));
+  }
+
+  private static boolean isLimited(AccountRequest.AccountTypeEnum reqType, String customerType) {
+    return !"BUSINESS".equals(customerType)
+        && (reqType == AccountRequest.AccountTypeEnum.SAVINGS
+        || reqType == AccountRequest.AccountTypeEnum.CHECKING);
+  }
+
+  private static BusinessException personalLimit(String accountType) {
+    return new BusinessException("Cliente PERSONAL ya tiene una cuenta de tipo " + accountType + ".");
+  }
+
+  private Mono<Void> checkLegacyRules(HolderSummary summary,
+                                      AccountRequest.AccountTypeEnum reqType,
+                                      String customerType) {
+    if ("BUSINESS".equals(customerType)) {
+      if (reqType == AccountRequest.AccountTypeEnum.SAVINGS
+          || reqType == AccountRequest.AccountTypeEnum.FIXED_TERM) {
+        return Mono.error(new BusinessException(
+            "Cliente BUSINESS no puede abrir SAVINGS ni FIXED_TERM."));
+      }
+      return Mono.empty();
+    }
+    // PERSONAL: máx 1 SAVINGS y máx 1 CHECKING
+    if (isLimited(reqType, customerType) && summary.countOf(reqType.getValue()) > 0) {
+      return Mono.error(personalLimit(reqType.getValue()));
+    }
+    return Mono.empty();
+  }
+}
@@ -28,10 +28,10 @@ class AccountApiDelegateImplErrorsTest {
 
   @Test
   void getById_notFound_propagates404() {
-    when(service.getAccountById("ZZZ"))
+    when(service.getAccountById("ZZZ", null))
         .thenReturn(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
 
-    StepVerifier.create(delegate.getAccountById("ZZZ", null))
+    StepVerifier.create(delegate.getAccountById("ZZZ", null, null))
         .expectError(ResponseStatusException.class)
         .verify();
   }
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.*;
 import org.mockito.*;
 import org.mockito.junit.jupiter.*;
 import org.springframework.http.*;
+import org.springframework.test.web.reactive.server.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
 
@@ -32,10 +33,10 @@ class AccountApiDelegateImplMoreTest {
 
   @Test
   void getById_ok() {
-    when(service.getAccountById("A1"))
+    when(service.getAccountById("A1", null))
         .thenReturn(Mono.just(new AccountResponse().id("A1")));
 
-    StepVerifier.create(delegate.getAccountById("A1", null))
+    StepVerifier.create(delegate.getAccountById("A1", null, null))
         .assertNext(re -> {
           assertEquals(200, re.getStatusCodeValue());
           assertNotNull(re.getBody());
@@ -46,14 +47,16 @@ class AccountApiDelegateImplMoreTest {
 
   @Test
   void listAccounts_ok() {
-    when(service.listAccounts())
-        .thenReturn(Flux.just(new AccountResponse().id("A1")));
+    when(service.listAccountsPage(10, "c1", "SAVINGS", true, null, null))
+        .thenReturn(Mono.just(new InlineResponse200()
+            .items(List.of(new AccountResponse().id("A1"))).nextCursor("c2")));
 
 
-    StepVerifier.create(delegate.listAccounts(null))
+    StepVerifier.create(delegate.listAccounts(10, "c1", "SAVINGS", true, null, null, null))
         .assertNext(re -> {
           assertEquals(200, re.getStatusCodeValue());
           assertNotNull(re.getBody());
+          assertEquals("c2", re.getBody().getNextCursor().get());
         })
         .verifyComplete();
   }
@@ -118,6 +121,92 @@ class AccountApiDelegateImplMoreTest {
         .verifyComplete();
   }
 
+  @Test
+  void applyBalanceOperationsBatch_ok() {
+    BalanceOperationBatchRequest rq = new BalanceOperationBatchRequest().items(List.of(
+        new BalanceOperationBatchItem().accountId("A1").operation(new BalanceOperationRequest()
+            .operationId("op1").type(BalanceOperationType.DEPOSIT).amount(new BigDecimal("10")))));
+
+    when(service.applyBalanceOperationsBatch(any(BalanceOperationBatchRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationBatchResponse().results(List.of(
+            new BalanceOperationBatchResult().accountId("A1").operationId("op1")
+                .status(BalanceOperationBatchResult.StatusEnum.APPLIED)))));
+
+    StepVerifier.create(delegate.applyBalanceOperationsBatch(Mono.just(rq), null))
+        .assertNext(re -> {
+          assertEquals(200, re.getStatusCodeValue());
+          assertNotNull(re.getBody());
+          assertEquals(1, re.getBody().getResults().size());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void streamAccounts_noAcumulaYRespetaDemanda() {
+    Flux<AccountResponse> accounts = Flux.range(1, 1000).map(i -> new AccountResponse().id("A" + i));
+    when(service.listAccounts()).thenReturn(accounts);
+
+    StepVerifier.create(delegate.streamAccounts(null))
+        .assertNext(re -> {
+          assertEquals(200, re.getStatusCodeValue());
+          // el cuerpo se consume por demanda, elemento a elemento
+          StepVerifier.create(re.getBody(), 2)
+              .expectNextCount(2)
+              .thenRequest(998)
+              .expectNextCount(998)
+              .verifyComplete();
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void streamAccounts_ndjson_unDocumentoPorLinea() {
+    when(service.listAccounts()).thenReturn(Flux.just(
+        new AccountResponse().id("A1").balance(new BigDecimal("10.50")),
+        new AccountResponse().id("A2"),
+        new AccountResponse().id("A3")));
+
+    String body = WebTestClient.bindToController(new ApiApiController(delegate)).build()
+        .get().uri("/api/accounts/stream")
+        .accept(MediaType.APPLICATION_NDJSON)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+        .expectBody(String.class)
+        .returnResult().getResponseBody();
+
+    assertNotNull(body);
+    String[] lines = body.trim().split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[0].startsWith("{") && lines[0].contains("\"id\":\"A1\""));
+    assertTrue(lines[2].startsWith("{") && lines[2].contains("\"id\":\"A3\""));
+  }
+
+  @Test
+  void streamAccountEvents_sse_unEventoPorCuenta() {
+    when(service.listAccounts()).thenReturn(Flux.just(new AccountResponse().id("A1")));
+
+    WebTestClient.bindToController(new ApiApiController(delegate)).build().get().uri("/api/accounts/stream/events").accept(MediaType.TEXT_EVENT_STREAM)
+        .exchange()
+        .expectStatus().isOk()
+        .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+        .expectBody(String.class)
+        .value(body -> assertTrue(body.startsWith("data:") && body.contains("\"id\":\"A1\"")));
+  }
+
+  @Test
+  void listAccountMovements_streamSinBuffer() {
+    when(service.listAccountMovements("A1", "c1", 10))
+        .thenReturn(Flux.just(new AccountMovement().transactionId("op1"), new AccountMovement().transactionId("op2")));
+
+    StepVerifier.create(delegate.listAccountMovements("A1", "c1", 10, null))
+        .assertNext(re -> {
+          assertEquals(200, re.getStatusCodeValue());
+          StepVerifier.create(re.getBody()).expectNextCount(2).verifyComplete();
+        })
+        .verifyComplete();
+  }
+
   @Test
   void registerAccount_creaYDevuelve201ConLocation() {
     AccountRequest rq = new AccountRequest().holderDocument("123").holderDocumentType(AccountRequest.HolderDocumentTypeEnum.DNI);
@@ -136,10 +225,10 @@ class AccountApiDelegateImplMoreTest {
   @Test
   void listAccountsByHolderDocument_ok() {
     var rs = new AccountResponse().id("A1");
-    when(service.getAccountsByHolderDocument("123"))
+    when(service.getAccountsByHolderDocument("123", null))
         .thenReturn(reactor.core.publisher.Flux.just(rs));
 
-    StepVerifier.create(delegate.listAccountsByHolderDocument("123", null))
+    StepVerifier.create(delegate.listAccountsByHolderDocument("123", null, null))
         .assertNext((ResponseEntity<reactor.core.publisher.Flux<AccountResponse>> re) ->
             StepVerifier.create(Objects.requireNonNull(re.getBody()))
                 .expectNextMatches(a -> "A1".equals(a.getId()))
@@ -150,15 +239,15 @@ class AccountApiDelegateImplMoreTest {
 
   @Test
   void listAccountsByHolderDocument_vacio_devuelve404() {
-    when(service.getAccountsByHolderDocument("999")).thenReturn(Flux.empty());
+    when(service.getAccountsByHolderDocument("999", null)).thenReturn(Flux.empty());
 
-    StepVerifier.create(delegate.listAccountsByHolderDocument("999", null))
+    StepVerifier.create(delegate.listAccountsByHolderDocument("999", null, null))
         .assertNext((ResponseEntity<Flux<AccountResponse>> re) -> {
           assertEquals(404, re.getStatusCodeValue());
           StepVerifier.create(Objects.requireNonNull(re.getBody())).verifyComplete();
         })
         .verifyComplete();
 
-    verify(service).getAccountsByHolderDocument("999");
+    verify(service).getAccountsByHolderDocument("999", null);
   }
 }
@@ -0,0 +1,129 @@
+package com.nttdata.accountservice.account.config;
+
+/*
+ * Migración de cuentas heredadas.
+ * Cubre: updateMulti con pipeline $toDecimal solo sobre cuentas con importes String,
+ * conversión de una sola cuenta, detección de importes String en el documento leído y del
+ * error de tipo de $inc, y copia del opIds heredado a balance_operations antes de eliminarlo.
+ */
+
+import com.mongodb.*;
+import com.mongodb.client.result.*;
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.service.balance.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountDataMigrationTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  BalanceIdempotencyStore idempotencyStore;
+
+  @Test
+  void migrateMoney_pipelineToDecimalSobreImportesString() {
+    when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Account.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(3, 3L, null)));
+
+    StepVerifier.create(new AccountDataMigration(mongoTemplate, idempotencyStore).migrateMoney())
+        .expectNext(3L)
+        .verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(Account.class));
+    List<?> or = (List<?>) query.getValue().getQueryObject().get("$or");
+    assertTrue(or.contains(new Document("balance", new Document("$type", 2))));
+    assertTrue(or.contains(new Document("commissionFee", new Document("$type", 2))));
+    assertInstanceOf(AggregationUpdate.class, update.getValue());
+    Document set = (Document) ((AggregationUpdate) update.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT)
+        .get(0).get("$set");
+    assertTrue(set.toJson().contains("\"$toDecimal\": \"$balance\""));
+    assertTrue(set.containsKey("earlyWithdrawalPenalty"));
+  }
+
+  @Test
+  void migrateMoney_unaCuenta_indicaSiConvirtio() {
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Account.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+    AccountDataMigration migration = new AccountDataMigration(mongoTemplate, idempotencyStore);
+
+    StepVerifier.create(migration.migrateMoney("A1")).expectNext(true).verifyComplete();
+    StepVerifier.create(migration.migrateMoney("A1")).expectNext(false).verifyComplete();
+
+    verify(mongoTemplate, times(2)).updateFirst(
+        argThat(q -> "A1".equals(q.getQueryObject().get("id"))), any(UpdateDefinition.class), eq(Account.class));
+  }
+
+  @Test
+  void isTypeMismatch_soloParaCodigo14() {
+    MongoCommandException mismatch = new MongoCommandException(
+        new BsonDocument("ok", new BsonDouble(0)).append("code", new BsonInt32(14)), new ServerAddress());
+    MongoCommandException other = new MongoCommandException(
+        new BsonDocument("ok", new BsonDouble(0)).append("code", new BsonInt32(11000)), new ServerAddress());
+
+    assertTrue(AccountDataMigration.isTypeMismatch(new RuntimeException(mismatch)));
+    assertFalse(AccountDataMigration.isTypeMismatch(other));
+    assertFalse(AccountDataMigration.isTypeMismatch(new IllegalStateException()));
+  }
+
+  @Test
+  void hasStringMoney_soloConImportesString() {
+    assertTrue(AccountDataMigration.hasStringMoney(new Document("balance", new Decimal128(BigDecimal.ONE))
+        .append("commissionFee", "1.50")));
+    assertFalse(AccountDataMigration.hasStringMoney(new Document("balance", new Decimal128(BigDecimal.ONE))
+        .append("accountType", "SAVINGS")));
+  }
+
+  @Test
+  void backfillOperationIds_copiaAlRegistroYLuegoEliminaOpIds() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(Account.class)).thenReturn("accounts");
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("accounts")))
+        .thenReturn(Flux.just(new Document("_id", new ObjectId("66aa00000000000000000001"))
+            .append("balance", new Decimal128(new BigDecimal("40.00")))
+            .append("opIds", List.of("op-1", "op-2"))));
+    when(idempotencyStore.backfill(anyString(), anyCollection(), any(BigDecimal.class))).thenReturn(Mono.empty());
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Account.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(new AccountDataMigration(mongoTemplate, idempotencyStore).backfillOperationIds())
+        .expectNext(1L)
+        .verifyComplete();
+
+    InOrder order = inOrder(idempotencyStore, mongoTemplate);
+    order.verify(idempotencyStore).backfill(eq("66aa00000000000000000001"),
+        eq(List.of("op-1", "op-2")), argThat(b -> new BigDecimal("40").compareTo(b) == 0));
+    order.verify(mongoTemplate).updateFirst(
+        argThat(q -> "66aa00000000000000000001".equals(q.getQueryObject().get("id"))),
+        argThat(u -> ((Update) u).getUpdateObject().get("$unset", Document.class).containsKey("opIds")),
+        eq(Account.class));
+  }
+}
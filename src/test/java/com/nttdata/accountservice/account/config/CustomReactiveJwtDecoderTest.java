@@ -0,0 +1,203 @@
+package com.nttdata.accountservice.account.config;
+
+/*
+ * Decodificador JWT multi-emisor.
+ * Cubre: elección del decoder por iss sin probar otros emisores, JWKS en caché entre tokens,
+ * recarga ante rotación de claves limitada por intervalo, alias de emisor con JWKS configurado
+ * (caché compartida), emisor no permitido, token mal formado, y JWKS lento o caído acotado por
+ * timeout sirviendo el que ya estaba en caché.
+ */
+
+import com.nimbusds.jose.*;
+import com.nimbusds.jose.crypto.*;
+import com.nimbusds.jose.jwk.*;
+import com.nimbusds.jose.jwk.gen.*;
+import com.nimbusds.jwt.*;
+import com.nttdata.accountservice.config.*;
+import okhttp3.mockwebserver.*;
+import org.junit.jupiter.api.*;
+import org.springframework.security.oauth2.jwt.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CustomReactiveJwtDecoderTest {
+
+  // holgado: la primera conexión del test puede tardar más que el timeout por defecto
+  static final Duration RELAXED = Duration.ofSeconds(10);
+
+  MockWebServer keycloak;
+  String issuerA;
+  String issuerB;
+  RSAKey keyA;
+  RSAKey keyB;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    keycloak = new MockWebServer();
+    keycloak.start();
+    issuerA = keycloak.url("/realms/a").toString().replaceAll("/$", "");
+    issuerB = keycloak.url("/realms/b").toString().replaceAll("/$", "");
+    keyA = new RSAKeyGenerator(2048).keyID("ka").generate();
+    keyB = new RSAKeyGenerator(2048).keyID("kb").generate();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    keycloak.shutdown();
+  }
+
+  @Test
+  void tokenDelSegundoEmisor_usaSuDecoderDirectamente_yCacheaJwks() throws Exception {
+    keycloak.enqueue(jwks(keyB));
+    CustomReactiveJwtDecoder decoder = decoder();
+
+    for (int i = 0; i < 3; i++) {
+      StepVerifier.create(decoder.decode(token(keyB, issuerB)))
+          .assertNext(jwt -> assertEquals(issuerB, jwt.getIssuer().toString()))
+          .verifyComplete();
+    }
+
+    // una sola descarga del JWKS, y solo del emisor del token
+    assertEquals(1, keycloak.getRequestCount());
+    assertEquals("/realms/b/protocol/openid-connect/certs", keycloak.takeRequest().getPath());
+  }
+
+  @Test
+  void rotacionDeClaves_recargaJwks_conLimiteDeFrecuencia() throws Exception {
+    RSAKey rotated = new RSAKeyGenerator(2048).keyID("ka2").generate();
+    RSAKey unknown = new RSAKeyGenerator(2048).keyID("ka3").generate();
+    keycloak.enqueue(jwks(keyA));
+    keycloak.enqueue(jwks(keyA, rotated));
+    CustomReactiveJwtDecoder decoder = new CustomReactiveJwtDecoder(
+        issuerA + "," + issuerB, "", Duration.ZERO, Duration.ofMinutes(10), RELAXED);
+
+    StepVerifier.create(decoder.decode(token(keyA, issuerA))).expectNextCount(1).verifyComplete();
+    // kid nuevo: recarga el JWKS una vez
+    StepVerifier.create(decoder.decode(token(rotated, issuerA))).expectNextCount(1).verifyComplete();
+    assertEquals(2, keycloak.getRequestCount());
+
+    CustomReactiveJwtDecoder limited = decoder();
+    keycloak.enqueue(jwks(keyA));
+    StepVerifier.create(limited.decode(token(keyA, issuerA))).expectNextCount(1).verifyComplete();
+    // kid desconocido dentro del intervalo mínimo: no vuelve a pedir el JWKS
+    StepVerifier.create(limited.decode(token(unknown, issuerA))).expectError(JwtException.class).verify();
+    StepVerifier.create(limited.decode(token(unknown, issuerA))).expectError(JwtException.class).verify();
+    assertEquals(3, keycloak.getRequestCount());
+  }
+
+  @Test
+  void aliasDelEmisor_usaElJwksConfigurado_yCompartenCache() throws Exception {
+    // como en docker: el token de "localhost" no puede pedir su JWKS a localhost desde el contenedor
+    String alias = "http://localhost:8091/realms/a";
+    String certs = issuerA + "/protocol/openid-connect/certs";
+    keycloak.enqueue(jwks(keyA));
+    CustomReactiveJwtDecoder decoder = new CustomReactiveJwtDecoder(issuerA + "," + alias,
+        alias + "=" + certs, Duration.ofMinutes(1), Duration.ofMinutes(10), RELAXED);
+
+    StepVerifier.create(decoder.decode(token(keyA, alias)))
+        .assertNext(jwt -> assertEquals(alias, jwt.getIssuer().toString()))
+        .verifyComplete();
+    StepVerifier.create(decoder.decode(token(keyA, issuerA)))
+        .assertNext(jwt -> assertEquals(issuerA, jwt.getIssuer().toString()))
+        .verifyComplete();
+
+    // una sola descarga, del JWKS configurado, para los dos alias
+    assertEquals(1, keycloak.getRequestCount());
+    assertEquals("/realms/a/protocol/openid-connect/certs", keycloak.takeRequest().getPath());
+  }
+
+  @Test
+  void jwksLentoSinCache_fallaAlVencerElTimeout() throws Exception {
+    keycloak.enqueue(jwks(keyA).setHeadersDelay(1, TimeUnit.SECONDS));
+    CustomReactiveJwtDecoder decoder = new CustomReactiveJwtDecoder(issuerA, "",
+        Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofMillis(200));
+
+    // sin JWKS previo no hay clave con la que validar: error en lugar de quedarse esperando
+    StepVerifier.create(decoder.decode(token(keyA, issuerA)))
+        .expectError()
+        .verify(Duration.ofSeconds(2));
+  }
+
+  @Test
+  void recargaLentaOFallida_sirveElJwksEnCache() throws Exception {
+    keycloak.enqueue(jwks(keyA));
+    keycloak.enqueue(jwks(keyA).setHeadersDelay(1, TimeUnit.SECONDS));
+    keycloak.enqueue(new MockResponse().setResponseCode(503));
+    // maxAge cero: cada token intenta recargar el JWKS
+    CustomReactiveJwtDecoder decoder = new CustomReactiveJwtDecoder(issuerA, "",
+        Duration.ZERO, Duration.ZERO, Duration.ofMillis(200));
+
+    for (int i = 0; i < 3; i++) {
+      StepVerifier.create(decoder.decode(token(keyA, issuerA)))
+          .expectNextCount(1)
+          .verifyComplete();
+    }
+    assertEquals(3, keycloak.getRequestCount());
+  }
+
+  @Test
+  void jwksUrisMalFormado_falla() {
+    assertThrows(IllegalArgumentException.class, () -> new CustomReactiveJwtDecoder(
+        issuerA, issuerA, Duration.ofMinutes(1), Duration.ofMinutes(10), RELAXED));
+  }
+
+  @Test
+  void emisorNoPermitido_rechazaSinRed() throws Exception {
+    StepVerifier.create(decoder().decode(token(keyA, "http://otro/realms/x")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BadJwtException.class, ex);
+          assertTrue(ex.getMessage().contains("http://otro/realms/x"));
+        })
+        .verify();
+    assertEquals(0, keycloak.getRequestCount());
+  }
+
+  @Test
+  void firmaDeOtroEmisor_rechaza() throws Exception {
+    keycloak.enqueue(jwks(keyA));
+    // iss de A pero firmado con la clave de B (kid desconocido para A)
+    StepVerifier.create(decoder().decode(token(keyB, issuerA)))
+        .expectError(JwtException.class)
+        .verify();
+  }
+
+  @Test
+  void tokenMalFormado_badJwt() {
+    StepVerifier.create(decoder().decode("no-es-un-jwt"))
+        .expectError(BadJwtException.class)
+        .verify();
+  }
+
+  // ===== Helpers =====
+
+  private CustomReactiveJwtDecoder decoder() {
+    return new CustomReactiveJwtDecoder(issuerA + ", " + issuerB, "",
+        Duration.ofMinutes(1), Duration.ofMinutes(10), RELAXED);
+  }
+
+  private static String token(RSAKey key, String issuer) throws JOSEException {
+    SignedJWT jwt = new SignedJWT(
+        new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+        new JWTClaimsSet.Builder()
+            .issuer(issuer)
+            .subject("partner")
+            .claim("scope", "Partners")
+            .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+            .build());
+    jwt.sign(new RSASSASigner(key));
+    return jwt.serialize();
+  }
+
+  private static MockResponse jwks(RSAKey... keys) {
+    List<JWK> pub = new ArrayList<>();
+    for (RSAKey k : keys) pub.add(k.toPublicJWK());
+    return new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBody(new JWKSet(pub).toString());
+  }
+}
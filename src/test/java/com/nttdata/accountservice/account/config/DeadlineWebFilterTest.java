@@ -0,0 +1,71 @@
+package com.nttdata.accountservice.account.config;
+
+/*
+ * Plazo de la petición entrante.
+ * Cubre: plazo de la cabecera, tope máximo, valor por defecto sin cabecera o con cabecera
+ * inválida, y filtro desactivado.
+ */
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.integration.support.*;
+import org.junit.jupiter.api.*;
+import org.springframework.mock.http.server.reactive.*;
+import org.springframework.mock.web.server.*;
+import org.springframework.test.util.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineWebFilterTest {
+
+  final DeadlineWebFilter filter = new DeadlineWebFilter();
+  final AtomicReference<Deadline> captured = new AtomicReference<>();
+  final WebFilterChain chain = exchange -> Mono.deferContextual(ctx -> {
+    captured.set(ctx.getOrDefault(Deadline.class, null));
+    return Mono.empty();
+  });
+
+  @Test
+  void cabecera_fijaElPlazo() {
+    run(MockServerHttpRequest.get("/api/accounts").header(Deadline.HEADER, "800"));
+
+    Duration remaining = captured.get().remaining();
+    assertTrue(remaining.compareTo(Duration.ZERO) > 0 && remaining.compareTo(Duration.ofMillis(800)) <= 0);
+  }
+
+  @Test
+  void cabeceraPorEncimaDelMaximo_seAcota() {
+    ReflectionTestUtils.setField(filter, "maxBudget", Duration.ofSeconds(1));
+
+    run(MockServerHttpRequest.get("/api/accounts").header(Deadline.HEADER, "60000"));
+
+    assertTrue(captured.get().remaining().compareTo(Duration.ofSeconds(1)) <= 0);
+  }
+
+  @Test
+  void sinCabeceraOInvalida_usaElPlazoPorDefecto() {
+    run(MockServerHttpRequest.get("/api/accounts"));
+    assertTrue(captured.get().remaining().compareTo(Duration.ofSeconds(4)) > 0);
+
+    run(MockServerHttpRequest.get("/api/accounts").header(Deadline.HEADER, "abc"));
+    assertTrue(captured.get().remaining().compareTo(Duration.ofSeconds(4)) > 0);
+  }
+
+  @Test
+  void desactivado_sinPlazoEnElContexto() {
+    ReflectionTestUtils.setField(filter, "enabled", false);
+
+    run(MockServerHttpRequest.get("/api/accounts").header(Deadline.HEADER, "800"));
+
+    assertNull(captured.get());
+  }
+
+  private void run(MockServerHttpRequest.BaseBuilder<?> request) {
+    StepVerifier.create(filter.filter(MockServerWebExchange.from(request), chain)).verifyComplete();
+  }
+}
@@ -0,0 +1,164 @@
+package com.nttdata.accountservice.account.config;
+
+/*
+ * Gestión de índices de Mongo.
+ * Cubre: creación en segundo plano de los índices requeridos (titular/tipo, tarjeta vinculada,
+ * firmantes, movimientos y TTL; sin creationDate/_id, que ninguna consulta usa), deriva por colección, endpoint de actuator
+ * y arranque fallido con fail-on-missing.
+ */
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.entity.*;
+import org.bson.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.index.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoIndexManagerTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  ReactiveIndexOperations accountOps;
+  @Mock
+  ReactiveIndexOperations movementOps;
+  @Mock
+  ReactiveIndexOperations operationOps;
+
+  MongoIndexManager manager;
+
+  @BeforeEach
+  void setUp() {
+    when(mongoTemplate.getConverter()).thenReturn(converter());
+    lenient().when(mongoTemplate.indexOps(Account.class)).thenReturn(accountOps);
+    lenient().when(mongoTemplate.indexOps(Movement.class)).thenReturn(movementOps);
+    lenient().when(mongoTemplate.indexOps(BalanceOperationRecord.class)).thenReturn(operationOps);
+    lenient().when(mongoTemplate.getCollectionName(Account.class)).thenReturn("accounts");
+    lenient().when(mongoTemplate.getCollectionName(Movement.class)).thenReturn("account_movements");
+    lenient().when(mongoTemplate.getCollectionName(BalanceOperationRecord.class)).thenReturn("balance_operations");
+    for (ReactiveIndexOperations ops : List.of(accountOps, movementOps, operationOps)) {
+      lenient().when(ops.ensureIndex(any())).thenReturn(Mono.just("idx"));
+    }
+    manager = new MongoIndexManager(mongoTemplate, Duration.ofDays(7));
+  }
+
+  @Test
+  void creaLosIndicesRequeridosEnSegundoPlano() {
+    StepVerifier.create(manager.ensureIndexes()).verifyComplete();
+
+    ArgumentCaptor<IndexDefinition> indexes = ArgumentCaptor.forClass(IndexDefinition.class);
+    verify(accountOps, atLeastOnce()).ensureIndex(indexes.capture());
+    Set<String> keys = indexes.getAllValues().stream()
+        .map(index -> index.getIndexKeys().toJson()).collect(Collectors.toSet());
+    assertTrue(keys.contains("{\"holderDocument\": 1, \"accountType\": 1}"));
+    // la tarjeta vinculada se guarda como linkedCard._id (ver AccountDocumentCodec)
+    assertTrue(keys.contains("{\"linkedCard._id\": 1}"));
+    assertFalse(keys.contains("{\"linkedCard.id\": 1}"));
+    assertTrue(keys.contains("{\"authorizedSigners\": 1}"));
+    // el paginado ordena por _id con los índices *_id_created; creationDate/_id no lo usa nadie
+    assertFalse(keys.contains("{\"creationDate\": -1, \"_id\": -1}"));
+    assertTrue(keys.contains("{\"accountNumber\": 1}"));
+    IndexDefinition holderType = indexes.getAllValues().stream()
+        .filter(index -> index.getIndexKeys().containsKey("holderDocument")).findFirst().orElseThrow();
+    assertEquals(true, holderType.getIndexOptions().get("background"));
+
+    ArgumentCaptor<IndexDefinition> ttl = ArgumentCaptor.forClass(IndexDefinition.class);
+    verify(operationOps).ensureIndex(ttl.capture());
+    assertEquals(Duration.ofDays(7).getSeconds(), ttl.getValue().getIndexOptions().get("expireAfterSeconds"));
+    verify(movementOps).ensureIndex(argThat(index ->
+        index.getIndexKeys().toJson().equals("{\"accountId\": 1, \"date\": -1, \"_id\": -1}")));
+  }
+
+  @Test
+  void indiceQueFallaAlCrear_noCortaElResto() {
+    when(movementOps.ensureIndex(any())).thenReturn(Mono.error(new IllegalStateException("conflicto")));
+
+    StepVerifier.create(manager.ensureIndexes()).verifyComplete();
+    verify(operationOps).ensureIndex(any());
+  }
+
+  @Test
+  void deriva_faltantesYNoDeclarados() {
+    when(accountOps.getIndexInfo()).thenReturn(Flux.just(
+        info("_id_", IndexField.create("_id", Sort.Direction.ASC)),
+        info("accountNumber", IndexField.create("accountNumber", Sort.Direction.ASC)),
+        info("legacy", IndexField.create("holderDocument", Sort.Direction.ASC))));
+    when(movementOps.getIndexInfo()).thenReturn(Flux.just(info("accountId_1_date_-1__id_-1",
+        IndexField.create("accountId", Sort.Direction.ASC),
+        IndexField.create("date", Sort.Direction.DESC),
+        IndexField.create("_id", Sort.Direction.DESC))));
+    when(operationOps.getIndexInfo()).thenReturn(Flux.just(
+        info("createdAt_1", IndexField.create("createdAt", Sort.Direction.ASC))));
+
+    StepVerifier.create(manager.drift())
+        .assertNext(drift -> {
+          MongoIndexManager.CollectionDrift accounts = drift.get(0);
+          assertEquals("accounts", accounts.getCollection());
+          assertTrue(accounts.getMissing().contains("{\"holderDocument\": 1, \"accountType\": 1}"));
+          assertFalse(accounts.getMissing().contains("{\"accountNumber\": 1}"));
+          assertEquals(List.of("{\"holderDocument\": 1}"), accounts.getUnexpected());
+          assertTrue(drift.get(1).getMissing().isEmpty());
+          assertTrue(drift.get(2).getMissing().isEmpty());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void endpoint_informaDeriva() {
+    when(accountOps.getIndexInfo()).thenReturn(Flux.empty());
+    when(movementOps.getIndexInfo()).thenReturn(Flux.empty());
+    when(operationOps.getIndexInfo()).thenReturn(Flux.empty());
+
+    StepVerifier.create(new MongoIndexesEndpoint(manager).indexes())
+        .assertNext(body -> {
+          assertEquals("DRIFT", body.get("status"));
+          assertEquals(3, ((List<?>) body.get("collections")).size());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void failOnMissing_arranqueFallaSiFaltanIndices() {
+    ReflectionTestUtils.setField(manager, "failOnMissing", true);
+    when(accountOps.getIndexInfo()).thenReturn(Flux.empty());
+    when(movementOps.getIndexInfo()).thenReturn(Flux.empty());
+    when(operationOps.getIndexInfo()).thenReturn(Flux.empty());
+
+    IllegalStateException ex = assertThrows(IllegalStateException.class, manager::ensureRequiredIndexes);
+    assertTrue(ex.getMessage().contains("accounts"));
+  }
+
+  // ===== Helpers =====
+
+  private static MappingMongoConverter converter() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  private static IndexInfo info(String name, IndexField... fields) {
+    return new IndexInfo(List.of(fields), name, false, false, null);
+  }
+}
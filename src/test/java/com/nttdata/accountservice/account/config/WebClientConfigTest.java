@@ -0,0 +1,160 @@
+package com.nttdata.accountservice.account.config;
+
+/*
+ * WebClient por servicio remoto.
+ * Cubre: pool con nombre configurado desde properties, URL base y cabeceras comunes
+ * del cliente pre-construido, métricas del pool publicadas en Micrometer, reutilización de
+ * la conexión del pool (según sus gauges) y plazo restante de la petición enviado como cabecera.
+ */
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.integration.support.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.simple.*;
+import okhttp3.mockwebserver.*;
+import org.junit.jupiter.api.*;
+import org.springframework.cloud.client.discovery.simple.*;
+import org.springframework.mock.env.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.netty.resources.*;
+import reactor.test.*;
+
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebClientConfigTest {
+
+  final WebClientConfig config = new WebClientConfig();
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @BeforeEach
+  void setUp() {
+    // reactor-netty publica las métricas del pool en el registro global
+    Metrics.addRegistry(registry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    Metrics.removeRegistry(registry);
+  }
+
+  @Test
+  void pool_usaNombreYLimitesConfigurados() {
+    MockEnvironment env = new MockEnvironment()
+        .withProperty("services.customers.pool.max-connections", "7");
+
+    ConnectionProvider customers = config.customersConnectionProvider(env);
+    ConnectionProvider credits = config.creditsConnectionProvider(env);
+    try {
+      assertEquals("customers", customers.name());
+      assertEquals(7, customers.maxConnections());
+      // sin propiedades: valores por defecto
+      assertEquals("credits", credits.name());
+      assertEquals(50, credits.maxConnections());
+    } finally {
+      customers.dispose();
+      credits.dispose();
+    }
+  }
+
+  @Test
+  void clientePreconstruido_usaUrlBaseYPublicaMetricasDelPool() throws Exception {
+    ConnectionProvider provider = config.customersConnectionProvider(new MockEnvironment());
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("ok"));
+      WebClient client = config.customersWebClient(
+          config.webClientBuilder(), provider, server.url("/api/v1").toString(), loadBalancer());
+
+      StepVerifier.create(client.get().uri("/ping").retrieve().bodyToMono(String.class))
+          .expectNext("ok")
+          .verifyComplete();
+
+      RecordedRequest req = server.takeRequest();
+      assertEquals("/api/v1/ping", req.getPath());
+      assertEquals("application/json", req.getHeader("Content-Type"));
+      assertNotNull(registry.find("reactor.netty.connection.provider.total.connections")
+          .tag("name", "customers").gauge());
+    } finally {
+      provider.dispose();
+    }
+  }
+
+  @Test
+  void segundaPeticion_reutilizaLaConexionDelPool() throws Exception {
+    ConnectionProvider provider = config.customersConnectionProvider(new MockEnvironment());
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("ok"));
+      server.enqueue(new MockResponse().setBody("ok"));
+      WebClient client = config.customersWebClient(
+          config.webClientBuilder(), provider, server.url("/api/v1").toString(), loadBalancer());
+
+      StepVerifier.create(client.get().uri("/ping").retrieve().bodyToMono(String.class))
+          .expectNext("ok")
+          .verifyComplete();
+      // la conexión vuelve al pool de forma asíncrona: esperar a verla ociosa, no un tiempo fijo
+      awaitPool(server, "idle", 1);
+      assertEquals(1, pool(server, "total"));
+
+      StepVerifier.create(client.get().uri("/ping").retrieve().bodyToMono(String.class))
+          .expectNext("ok")
+          .verifyComplete();
+      awaitPool(server, "idle", 1);
+
+      // una sola conexión para las dos peticiones
+      assertEquals(1, pool(server, "total"));
+      assertEquals(0, server.takeRequest().getSequenceNumber());
+      assertEquals(1, server.takeRequest().getSequenceNumber());
+    } finally {
+      provider.dispose();
+    }
+  }
+
+  @Test
+  void plazoEnContexto_seEnviaElRestanteComoCabecera() throws Exception {
+    ConnectionProvider provider = config.customersConnectionProvider(new MockEnvironment());
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setBody("ok"));
+      server.enqueue(new MockResponse().setBody("ok"));
+      WebClient client = config.customersWebClient(
+          config.webClientBuilder(), provider, server.url("/api/v1").toString(), loadBalancer());
+
+      StepVerifier.create(client.get().uri("/ping").retrieve().bodyToMono(String.class)
+              .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(Duration.ofSeconds(3)))))
+          .expectNext("ok")
+          .verifyComplete();
+      StepVerifier.create(client.get().uri("/ping").retrieve().bodyToMono(String.class))
+          .expectNext("ok")
+          .verifyComplete();
+
+      long remaining = Long.parseLong(server.takeRequest().getHeader(Deadline.HEADER));
+      assertTrue(remaining > 0 && remaining <= 3000);
+      // sin plazo en el contexto no se envía
+      assertNull(server.takeRequest().getHeader(Deadline.HEADER));
+    } finally {
+      provider.dispose();
+    }
+  }
+
+  // Gauges del pool "customers" hacia el servidor (reactor.netty.connection.provider.<kind>.connections)
+  private double pool(MockWebServer server, String kind) {
+    Gauge gauge = registry.find("reactor.netty.connection.provider." + kind + ".connections")
+        .tag("name", "customers")
+        .tag("remote.address", server.getHostName() + ":" + server.getPort())
+        .gauge();
+    return gauge == null ? 0 : gauge.value();
+  }
+
+  private void awaitPool(MockWebServer server, String kind, double expected) throws InterruptedException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (pool(server, kind) != expected && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, pool(server, kind), kind + ".connections");
+  }
+
+  private LatencyAwareLoadBalancer loadBalancer() {
+    return new LatencyAwareLoadBalancer(new SimpleDiscoveryClient(new SimpleDiscoveryProperties()), registry,
+        Duration.ofSeconds(10), Duration.ofSeconds(1), 3, 3, Duration.ofSeconds(30));
+  }
+}
@@ -0,0 +1,105 @@
+package com.nttdata.accountservice.account.mapper;
+
+/*
+ * Respuestas parciales de cuenta (?fields=).
+ * Cubre: parseo y campos desconocidos, proyección con accountType para campos FIXED_TERM,
+ * toResponse parcial y serialización con el filtro (parcial solo con los campos pedidos,
+ * completa sin cambios).
+ */
+
+import com.fasterxml.jackson.databind.*;
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.Account;
+import com.nttdata.accountservice.service.impl.*;
+import org.junit.jupiter.api.*;
+import org.openapitools.jackson.nullable.*;
+import org.springframework.http.converter.json.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountFieldsTest {
+
+  private final ObjectMapper mapper = objectMapper();
+
+  @Test
+  void parse_ordenadoSinRepetirYVacioEsCompleto() {
+    assertEquals(List.of("id", "balance"), new ArrayList<>(AccountFields.parse(" id,balance,id ")));
+    assertNull(AccountFields.parse(null));
+    assertNull(AccountFields.parse("  "));
+  }
+
+  @Test
+  void parse_campoDesconocidoOVacio_lanzaIllegalArgument() {
+    IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+        () -> AccountFields.parse("id,password"));
+    assertTrue(ex.getMessage().contains("password"));
+    assertThrows(IllegalArgumentException.class, () -> AccountFields.parse(",,"));
+  }
+
+  @Test
+  void proyeccion_agregaAccountTypeParaCamposDePlazoFijo() {
+    assertEquals(List.of("term", "accountType"), AccountFields.projection(Set.of("term")));
+    assertEquals(List.of("id", "balance"),
+        AccountFields.projection(new LinkedHashSet<>(List.of("id", "balance"))));
+  }
+
+  @Test
+  void toResponseParcial_soloEscribeLosCamposPedidos() {
+    AccountResponse r = AccountMapper.toResponse(fixedTerm(), Set.of("id", "term"));
+
+    assertEquals("FT1", r.getId());
+    assertEquals(12, r.getTerm());
+    assertNull(r.getBalance());
+    assertNull(r.getAccountType());
+  }
+
+  @Test
+  void serializacion_parcialSoloConCamposPedidos_completaSinCambios() throws Exception {
+    Account acc = fixedTerm();
+
+    JsonNode partial = mapper.valueToTree(
+        AccountMapper.toResponse(acc, new LinkedHashSet<>(List.of("id", "balance"))));
+    JsonNode full = mapper.valueToTree(AccountMapper.toResponse(acc));
+
+    assertEquals(Set.of("id", "balance"), names(partial));
+    assertEquals(0, new BigDecimal("100.50").compareTo(partial.get("balance").decimalValue()));
+    assertTrue(full.has("holderDocument"));
+    assertTrue(full.has("term"));
+    assertEquals(names(new ObjectMapper().registerModule(new JsonNullableModule())
+        .findAndRegisterModules().valueToTree(AccountMapper.toResponse(acc))), names(full));
+  }
+
+  // ===== Helpers =====
+
+  private static Account fixedTerm() {
+    Account acc = new Account();
+    acc.setId("FT1");
+    acc.setAccountType("FIXED_TERM");
+    acc.setHolderDocument("12345678");
+    acc.setBalance(new BigDecimal("100.50"));
+    acc.setActive(true);
+    acc.setCreationDate(LocalDate.of(2024, 1, 10));
+    acc.setOpeningDate(LocalDate.of(2024, 1, 10));
+    acc.setMaturityDate(LocalDate.of(2025, 1, 10));
+    acc.setTerm(12);
+    return acc;
+  }
+
+  private static Set<String> names(JsonNode node) {
+    Set<String> names = new HashSet<>();
+    node.fieldNames().forEachRemaining(names::add);
+    return names;
+  }
+
+  private static ObjectMapper objectMapper() {
+    Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder()
+        .modulesToInstall(new JsonNullableModule());
+    new AccountFieldsConfig().accountFieldsFilter().customize(builder);
+    return builder.build();
+  }
+}
@@ -0,0 +1,77 @@
+package com.nttdata.accountservice.account.repository;
+
+/*
+ * Micro-benchmark del codec manual de Account frente al mapeo reflexivo.
+ * Cubre: tiempo de lectura (Document -> Account, como en cada elemento de listAccounts) y de
+ * escritura (Account -> Document) de una cuenta FIXED_TERM completa con la lista opIds
+ * heredada. Que ambos caminos den el mismo resultado se comprueba en la suite normal; los
+ * tiempos (@Tag("benchmark"), -Pbenchmark) solo se registran como referencia.
+ */
+
+import com.nttdata.accountservice.model.entity.*;
+import lombok.extern.slf4j.*;
+import org.bson.*;
+import org.junit.jupiter.api.*;
+import org.springframework.data.mongodb.core.convert.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class AccountCodecBenchmarkTest {
+
+  private static final int WARMUP = 5_000;
+  private static final int ITERATIONS = 50_000;
+
+  private final MappingMongoConverter reflective = AccountDocumentCodecTest.converter(false);
+  private final MappingMongoConverter codec = AccountDocumentCodecTest.converter(true);
+
+  @Test
+  void codec_mismoResultadoQueMapeoReflexivo() {
+    Account acc = AccountDocumentCodecTest.fullAccount();
+    Document doc = legacyDocument(acc);
+
+    assertEquals(reflective.read(Account.class, doc), codec.read(Account.class, doc));
+    assertEquals(write(reflective, acc), write(codec, acc));
+  }
+
+  @Test
+  @Tag("benchmark")
+  void codec_tiempoFrenteAMapeoReflexivo() {
+    Account acc = AccountDocumentCodecTest.fullAccount();
+    Document doc = legacyDocument(acc);
+
+    log.info("Lectura:   reflexivo {} ns, codec {} ns",
+        nanos(() -> reflective.read(Account.class, doc)), nanos(() -> codec.read(Account.class, doc)));
+    log.info("Escritura: reflexivo {} ns, codec {} ns",
+        nanos(() -> write(reflective, acc)), nanos(() -> write(codec, acc)));
+  }
+
+  // ===== Helpers =====
+
+  // Documento completo con la lista opIds heredada, que el codec omite al leer
+  private Document legacyDocument(Account acc) {
+    Document doc = write(reflective, acc);
+    doc.append("opIds", IntStream.range(0, 200).mapToObj(i -> "op-" + i).collect(Collectors.toList()));
+    return doc;
+  }
+
+  private static Document write(MappingMongoConverter converter, Account acc) {
+    Document doc = new Document();
+    converter.write(acc, doc);
+    return doc;
+  }
+
+  private static long nanos(Supplier<Object> op) {
+    Object sink = null;
+    for (int i = 0; i < WARMUP; i++) sink = op.get();
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) sink = op.get();
+    long elapsed = System.nanoTime() - start;
+    assertNotNull(sink);
+    return elapsed / ITERATIONS;
+  }
+}
@@ -0,0 +1,200 @@
+package com.nttdata.accountservice.account.repository;
+
+/*
+ * Codec manual de Account.
+ * Cubre: equivalencia con el mapeo reflexivo (mismo documento escrito y misma entidad leída,
+ * cuenta completa y mínima), ida y vuelta por BSON binario, dinero heredado como String,
+ * documento proyectado, campos no declarados (opIds), entidad sin campos fuera del codec y
+ * AccountMongoConverter (Account por el codec, resto reflexivo, codec desactivado).
+ */
+
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import org.bson.*;
+import org.bson.codecs.*;
+import org.bson.io.*;
+import org.bson.types.*;
+import org.junit.jupiter.api.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.util.*;
+
+import java.math.*;
+import java.nio.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountDocumentCodecTest {
+
+  private final MappingMongoConverter reflective = converter(false);
+  private final MappingMongoConverter codec = converter(true);
+
+  @Test
+  void escritura_mismoDocumentoQueElMapeoReflexivo() {
+    for (Account acc : List.of(fullAccount(), minimalAccount())) {
+      Document expected = new Document();
+      reflective.write(acc, expected);
+      Document actual = new Document();
+      codec.write(acc, actual);
+
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void lectura_mismaEntidadQueElMapeoReflexivo() {
+    for (Account acc : List.of(fullAccount(), minimalAccount())) {
+      Document doc = new Document();
+      reflective.write(acc, doc);
+
+      assertEquals(reflective.read(Account.class, doc), codec.read(Account.class, doc));
+      assertEquals(acc, codec.read(Account.class, doc));
+    }
+  }
+
+  @Test
+  void idaYVuelta_porBsonBinario() {
+    Account acc = fullAccount();
+    Document doc = new Document();
+    codec.write(acc, doc);
+
+    Document decoded = roundTrip(doc);
+
+    assertTrue(decoded.get("_id") instanceof ObjectId);
+    assertTrue(decoded.get("commissionFee") instanceof Decimal128);
+    assertEquals(acc, codec.read(Account.class, decoded));
+  }
+
+  @Test
+  void lectura_dineroHeredadoComoStringYCamposNoDeclarados() {
+    Document doc = new Document("_id", "LEGACY-1")
+        .append("balance", new Decimal128(new BigDecimal("10.00")))
+        .append("interestRate", "0.045")
+        .append("commissionFee", "1.50")
+        .append("monthlyMovementLimit", 5L)
+        .append("opIds", List.of("op-1", "op-2"));
+
+    Account acc = codec.read(Account.class, doc);
+
+    assertEquals("LEGACY-1", acc.getId());
+    assertEquals(new BigDecimal("0.045"), acc.getInterestRate());
+    assertEquals(new BigDecimal("1.50"), acc.getCommissionFee());
+    assertEquals(5, acc.getMonthlyMovementLimit());
+    assertEquals(reflective.read(Account.class, doc), acc);
+  }
+
+  @Test
+  void lectura_documentoProyectado() {
+    Document doc = new Document("_id", new ObjectId("66aa00000000000000000001"))
+        .append("freeTransactionsLimit", 4)
+        .append("opsCounter", new Document("yearMonth", "2025-01").append("count", 7));
+
+    Account acc = codec.read(Account.class, doc);
+
+    assertEquals("66aa00000000000000000001", acc.getId());
+    assertEquals(4, acc.getFreeTransactionsLimit());
+    assertEquals(7, acc.getOpsCounter().getCount());
+    assertNull(acc.getHolderDocument());
+    assertNull(acc.getLinkedCard());
+  }
+
+  @Test
+  void cuentaCompleta_informaTodosLosCamposDeLaEntidad() {
+    // Un campo nuevo en Account sin agregarlo al codec rompe este test y el de equivalencia
+    Account acc = fullAccount();
+    ReflectionUtils.doWithFields(Account.class,
+        field -> {
+          ReflectionUtils.makeAccessible(field);
+          assertNotNull(field.get(acc), field.getName());
+        },
+        field -> !java.lang.reflect.Modifier.isStatic(field.getModifiers()));
+  }
+
+  @Test
+  void otrosTiposYCodecDesactivado_usanElMapeoReflexivo() {
+    Movement movement = new Movement();
+    movement.setAccountId("A1");
+    movement.setAmount(new BigDecimal("5.00"));
+    Document expected = new Document();
+    reflective.write(movement, expected);
+    Document actual = new Document();
+    codec.write(movement, actual);
+    assertEquals(expected, actual);
+
+    Document doc = new Document("_id", "X").append("commissionFee", "2.00");
+    assertEquals(new BigDecimal("2.00"), converter(false).read(Account.class, doc).getCommissionFee());
+  }
+
+  // ===== Helpers =====
+
+  static Account fullAccount() {
+    Account acc = new Account();
+    acc.setId("66aa00000000000000000001");
+    acc.setAccountNumber("12345678901");
+    acc.setInterbankNumber("12345678901234567890");
+    acc.setHolderDocument("12345678");
+    acc.setHolderDocumentType("DNI");
+    acc.setAuthorizedSigners(List.of("87654321", "11223344"));
+    acc.setAccountType("FIXED_TERM");
+    acc.setActive(true);
+    acc.setBalance(new BigDecimal("15234.75"));
+    acc.setInterestRate(new BigDecimal("0.045"));
+    acc.setMonthlyMovementLimit(10);
+    acc.setMaintenanceFee(new BigDecimal("12.00"));
+    acc.setAllowedDayOfMonth(15);
+    acc.setCreationDate(LocalDate.of(2024, 1, 10));
+    acc.setLinkedCard(new LinkedCard().id("CARD-1"));
+    acc.setFreeTransactionsLimit(4);
+    acc.setCommissionFee(new BigDecimal("1.50"));
+    OpsCounter oc = new OpsCounter();
+    oc.setYearMonth("2025-01");
+    oc.setCount(7);
+    acc.setOpsCounter(oc);
+    acc.setOpeningDate(LocalDate.of(2024, 1, 10));
+    acc.setMaturityDate(LocalDate.of(2025, 1, 10));
+    acc.setEarlyWithdrawalPenalty(new BigDecimal("2.5"));
+    acc.setTerm(12);
+    Movement pending = new Movement();
+    pending.setId("66aa00000000000000000001:op-1");
+    pending.setAccountId("66aa00000000000000000001");
+    pending.setTransactionId("op-1");
+    pending.setDate(Instant.ofEpochMilli(1_736_500_000_123L));
+    pending.setType("deposit");
+    pending.setAmount(new BigDecimal("25.00"));
+    pending.setCommissionApplied(new BigDecimal("1.50"));
+    acc.setPendingMovements(List.of(pending));
+    acc.setBatchMarks(List.of("batch-1"));
+    return acc;
+  }
+
+  private static Account minimalAccount() {
+    Account acc = new Account();
+    acc.setId("ACC-1");
+    acc.setAccountType("SAVINGS");
+    acc.setBalance(BigDecimal.ZERO);
+    acc.setAuthorizedSigners(List.of());
+    return acc;
+  }
+
+  private static Document roundTrip(Document doc) {
+    DocumentCodec bson = new DocumentCodec();
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    bson.encode(new BsonBinaryWriter(buffer), doc, EncoderContext.builder().build());
+    return bson.decode(new BsonBinaryReader(ByteBuffer.wrap(buffer.toByteArray())),
+        DecoderContext.builder().build());
+  }
+
+  static MappingMongoConverter converter(boolean accountCodec) {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter =
+        new AccountMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext, accountCodec);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+}
@@ -0,0 +1,152 @@
+package com.nttdata.accountservice.account.repository;
+
+/*
+ * Micro-benchmark de lecturas proyectadas de Account.
+ * Cubre: bytes BSON por llamada y tiempo de decodificación (BSON -> Account) del documento
+ * completo frente a la proyección de límites (findLimitsById) y de saldo, sobre una cuenta
+ * FIXED_TERM con la lista opIds heredada de 200 entradas. Los bytes y el contenido de la
+ * proyección se comprueban en la suite normal; los tiempos (@Tag("benchmark"), -Pbenchmark)
+ * solo se registran como referencia.
+ */
+
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import lombok.extern.slf4j.*;
+import org.bson.*;
+import org.bson.codecs.*;
+import org.bson.io.*;
+import org.junit.jupiter.api.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.Query;
+
+import java.math.*;
+import java.nio.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+class AccountProjectionBenchmarkTest {
+
+  private static final int WARMUP = 2_000;
+  private static final int ITERATIONS = 20_000;
+  private static final List<String> BALANCE_FIELDS = List.of(
+      "accountType", "allowedDayOfMonth", "balance", "opsCounter", "freeTransactionsLimit", "commissionFee");
+
+  private final MappingMongoConverter converter = converter();
+  private final DocumentCodec codec = new DocumentCodec();
+
+  @Test
+  void proyeccion_reduceLosBytesYConservaLoQueSeLee() throws Exception {
+    Document full = fullDocument();
+    byte[] fullBytes = encode(full);
+    byte[] limitsBytes = encode(project(full, limitsFields()));
+    byte[] balanceBytes = encode(project(full, BALANCE_FIELDS));
+
+    assertTrue(limitsBytes.length * 10 < fullBytes.length);
+    assertTrue(balanceBytes.length * 10 < fullBytes.length);
+    // la proyección sigue teniendo lo que leen los límites
+    Account limited = decode(limitsBytes);
+    assertEquals(4, limited.getFreeTransactionsLimit());
+    assertEquals(0, new BigDecimal("1.50").compareTo(limited.getCommissionFee()));
+    assertEquals(7, limited.getOpsCounter().getCount());
+    assertNull(limited.getHolderDocument());
+  }
+
+  @Test
+  @Tag("benchmark")
+  void proyeccion_tiempoDeDecodificacion() throws Exception {
+    Document full = fullDocument();
+    byte[] fullBytes = encode(full);
+    byte[] limitsBytes = encode(project(full, limitsFields()));
+    byte[] balanceBytes = encode(project(full, BALANCE_FIELDS));
+
+    log.info("Account completo:   {} bytes, {} ns/lectura", fullBytes.length, decodeNanos(fullBytes));
+    log.info("Proyección límites: {} bytes, {} ns/lectura", limitsBytes.length, decodeNanos(limitsBytes));
+    log.info("Proyección saldo:   {} bytes, {} ns/lectura", balanceBytes.length, decodeNanos(balanceBytes));
+  }
+
+  // ===== Helpers =====
+
+  private static Set<String> limitsFields() throws NoSuchMethodException {
+    return Document.parse(AccountRepository.class
+        .getMethod("findLimitsById", String.class).getAnnotation(Query.class).fields()).keySet();
+  }
+
+  private long decodeNanos(byte[] bytes) {
+    for (int i = 0; i < WARMUP; i++) decode(bytes);
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) decode(bytes);
+    return (System.nanoTime() - start) / ITERATIONS;
+  }
+
+  private Account decode(byte[] bytes) {
+    Document doc = codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)),
+        DecoderContext.builder().build());
+    return converter.read(Account.class, doc);
+  }
+
+  private byte[] encode(Document doc) {
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    codec.encode(new BsonBinaryWriter(buffer), doc, EncoderContext.builder().build());
+    return buffer.toByteArray();
+  }
+
+  // Lo que devuelve el servidor para la proyección: _id y los campos incluidos
+  private static Document project(Document full, Collection<String> fields) {
+    Document projected = new Document("_id", full.get("_id"));
+    fields.forEach(field -> {
+      if (full.containsKey(field)) projected.append(field, full.get(field));
+    });
+    return projected;
+  }
+
+  private Document fullDocument() {
+    Account acc = new Account();
+    acc.setId("66aa00000000000000000001");
+    acc.setAccountNumber("12345678901");
+    acc.setInterbankNumber("12345678901234567890");
+    acc.setHolderDocument("12345678");
+    acc.setHolderDocumentType("DNI");
+    acc.setAuthorizedSigners(List.of("87654321", "11223344"));
+    acc.setAccountType("FIXED_TERM");
+    acc.setActive(true);
+    acc.setBalance(new BigDecimal("15234.75"));
+    acc.setInterestRate(new BigDecimal("0.045"));
+    acc.setAllowedDayOfMonth(15);
+    acc.setCreationDate(LocalDate.of(2024, 1, 10));
+    acc.setFreeTransactionsLimit(4);
+    acc.setCommissionFee(new BigDecimal("1.50"));
+    OpsCounter oc = new OpsCounter();
+    oc.setYearMonth(YearMonth.now().toString());
+    oc.setCount(7);
+    acc.setOpsCounter(oc);
+    acc.setOpeningDate(LocalDate.of(2024, 1, 10));
+    acc.setMaturityDate(LocalDate.of(2025, 1, 10));
+    acc.setEarlyWithdrawalPenalty(new BigDecimal("2.5"));
+    acc.setTerm(12);
+    acc.setLinkedCard(new LinkedCard().id("CARD-1"));
+    Document doc = new Document();
+    converter.write(acc, doc);
+    // Lista heredada de operaciones aplicadas (cuentas anteriores al registro de idempotencia)
+    doc.append("opIds", IntStream.range(0, 200)
+        .mapToObj(i -> "op-" + UUID.nameUUIDFromBytes(new byte[]{(byte) i}))
+        .collect(Collectors.toList()));
+    return doc;
+  }
+
+  private static MappingMongoConverter converter() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+}
@@ -0,0 +1,89 @@
+package com.nttdata.accountservice.account.repository;
+
+/*
+ * Consulta paginada de cuentas (keyset) y actualización parcial.
+ * Cubre: filtros opcionales, posición por _id, orden descendente y límite sin skip;
+ * $set por id devolviendo el documento nuevo.
+ */
+
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import org.bson.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountRepositoryImplTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+
+  @Test
+  void findPage_conFiltrosYCursor() {
+    when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+    AccountSearchCriteria criteria = new AccountSearchCriteria();
+    criteria.setAccountType("SAVINGS");
+    criteria.setActive(true);
+    criteria.setCreationDateFrom(LocalDate.of(2024, 1, 1));
+    criteria.setCreationDateTo(LocalDate.of(2024, 6, 30));
+    criteria.setAfterId("66aa");
+    criteria.setLimit(11);
+
+    StepVerifier.create(new AccountRepositoryImpl(mongoTemplate).findPage(criteria)).verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(q.capture(), eq(Account.class));
+    Document filter = q.getValue().getQueryObject();
+    assertEquals("SAVINGS", filter.get("accountType"));
+    assertEquals(true, filter.get("active"));
+    assertEquals(new Document("$lt", "66aa"), filter.get("id"));
+    Document date = (Document) filter.get("creationDate");
+    assertEquals(LocalDate.of(2024, 1, 1), date.get("$gte"));
+    assertEquals(LocalDate.of(2024, 6, 30), date.get("$lte"));
+    assertEquals(new Document("id", -1), q.getValue().getSortObject());
+    assertEquals(11, q.getValue().getLimit());
+    assertEquals(0, q.getValue().getSkip());
+  }
+
+  @Test
+  void findPage_sinFiltros_primeraPagina() {
+    when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+    AccountSearchCriteria criteria = new AccountSearchCriteria();
+    criteria.setLimit(101);
+
+    StepVerifier.create(new AccountRepositoryImpl(mongoTemplate).findPage(criteria)).verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(q.capture(), eq(Account.class));
+    assertTrue(q.getValue().getQueryObject().isEmpty());
+  }
+
+  @Test
+  void updateFields_setPorIdYDevuelveElNuevo() {
+    Account updated = new Account();
+    when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+        eq(Account.class))).thenReturn(Mono.just(updated));
+    Update update = new Update().set("monthlyMovementLimit", 9);
+
+    StepVerifier.create(new AccountRepositoryImpl(mongoTemplate).updateFields("A1", update))
+        .expectNext(updated)
+        .verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+    verify(mongoTemplate).findAndModify(q.capture(), same(update), options.capture(), eq(Account.class));
+    assertEquals(new Document("id", "A1"), q.getValue().getQueryObject());
+    assertTrue(options.getValue().isReturnNew());
+  }
+}
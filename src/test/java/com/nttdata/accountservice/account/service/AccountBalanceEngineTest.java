@@ -0,0 +1,648 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Motor atómico de saldos (findAndModify condicional).
+ * Cubre: depósito/retiro en un solo round trip, comisión por exceso, filtro de saldo
+ * y día FIXED_TERM, repetición con la respuesta original, reserva en curso, toma de una reserva
+ * abandonada (lease vencido), liberación de la reserva ante error o cancelación, movimiento pendiente en la misma escritura que el saldo y copiado después
+ * al libro, cuenta no encontrada, cambio de mes, conflicto tras reintentos, saldo String heredado
+ * (conversión a Decimal128 y reintento, solo si la lectura lo muestra como String), opIds heredado
+ * (filtro y respuesta idempotente), fallos tras aplicar (movimiento o registro) sin liberar la
+ * reserva ni aplicar de nuevo, reintento tras un error ambiguo que ya aplicó el saldo (filtro por
+ * movimiento pendiente), recuperación del pendiente al repetir y copia de pendientes antiguos en la
+ * siguiente operación.
+ */
+
+import com.mongodb.*;
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountBalanceEngineTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  BalanceIdempotencyStore idempotencyStore;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountDataMigration dataMigration;
+
+  AccountBalanceEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    engine = new AccountBalanceEngine(mongoTemplate, idempotencyStore, movementLedger, dataMigration);
+    lenient().when(movementLedger.record(any(Movement.class))).thenReturn(Mono.empty());
+    lenient().when(movementLedger.recordIfAbsent(anyList())).thenReturn(Mono.empty());
+    lenient().when(movementLedger.clearPending(anyCollection(), anyCollection())).thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.completePending(anyMap())).thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.claim(anyString(), anyString()))
+        .thenReturn(Mono.just(Optional.empty()));
+    lenient().when(idempotencyStore.complete(anyString(), anyString(), any()))
+        .thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.release(anyString(), anyString())).thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.takeOver(anyString(), anyString())).thenReturn(Mono.just(false));
+    lenient().when(dataMigration.migrateMoney(anyString())).thenReturn(Mono.just(false));
+    lenient().when(mongoTemplate.exists(any(Query.class), eq(Account.class))).thenReturn(Mono.just(false));
+    lenient().when(mongoTemplate.getCollectionName(Account.class)).thenReturn("accounts");
+    lenient().when(mongoTemplate.getConverter()).thenReturn(converter());
+  }
+
+  @Test
+  void deposit_ok_unSoloRoundTrip() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("110", 1, 99, "1.50")));
+
+    StepVerifier.create(engine.apply("A1", op("op-1", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance()));
+          assertEquals(0, BigDecimal.ZERO.compareTo(res.getCommissionApplied()));
+        })
+        .verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).findAndModify(q.capture(), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(mongoTemplate, never()).findOne(any(Query.class), eq(Account.class));
+    verify(mongoTemplate, never()).findOne(any(Query.class), eq(Document.class), anyString());
+
+    Document filter = q.getValue().getQueryObject();
+    assertEquals("A1", filter.get("id"));
+    assertEquals(new Document("$ne", "op-1"), filter.get("opIds"));
+    // con el movimiento ya pendiente el filtro no coincide: un reintento no aplica dos veces
+    assertEquals(new Document("$ne", "A1:op-1"), filter.get("pendingMovements.id"));
+    assertEquals(YearMonth.now().toString(), filter.get("opsCounter.yearMonth"));
+    // depósito: sin filtro de saldo ni de día
+    assertFalse(filter.containsKey("balance"));
+    assertFalse(filter.containsKey("$or"));
+
+    Document inc = (Document) u.getValue().getUpdateObject().get("$inc");
+    assertEquals(new Decimal128(new BigDecimal("10")), inc.get("balance"));
+    assertEquals(1, inc.get("opsCounter.count"));
+    // el movimiento va en la misma escritura que el saldo
+    Movement pushed = (Movement) ((Document) u.getValue().getUpdateObject().get("$push")).get("pendingMovements");
+    assertEquals("A1:op-1", pushed.getId());
+    assertEquals(0, new BigDecimal("10").compareTo(pushed.getAmount()));
+    assertTrue(q.getValue().getFieldsObject().containsKey("pendingMovements"));
+    // movimiento al libro, respuesta para futuras repeticiones y por último se quita el pendiente
+    InOrder order = inOrder(movementLedger, idempotencyStore);
+    order.verify(movementLedger).record(argThat(m -> m == pushed
+        && BigDecimal.ZERO.compareTo(m.getCommissionApplied()) == 0));
+    order.verify(idempotencyStore).complete(eq("A1"), eq("op-1"),
+        argThat(r -> r.getApplied() && new BigDecimal("110").compareTo(r.getNewBalance()) == 0));
+    order.verify(movementLedger).clearPending(List.of("A1"), List.of("A1:op-1"));
+    verify(movementLedger, never()).recordIfAbsent(anyList());
+  }
+
+  @Test
+  void deposit_superaLimite_cobraComision() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("110", 1, 0, "1.50")));
+
+    StepVerifier.create(engine.apply("A2", op("op-3", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals(0, new BigDecimal("1.50").compareTo(res.getCommissionApplied()));
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void withdrawal_filtroExigeSaldoYDiaPermitido() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("140", 3, 10, "1.00")));
+
+    StepVerifier.create(engine.apply("A4", op("wd-1", BalanceOperationType.WITHDRAWAL, "60")))
+        .assertNext(res -> assertEquals(0, new BigDecimal("140").compareTo(res.getNewBalance())))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).findAndModify(q.capture(), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    Document filter = q.getValue().getQueryObject();
+    assertEquals(new Document("$gte", new Decimal128(new BigDecimal("60"))), filter.get("balance"));
+    assertTrue(filter.containsKey("$or"));
+    Document inc = (Document) u.getValue().getUpdateObject().get("$inc");
+    assertEquals(new Decimal128(new BigDecimal("-60")), inc.get("balance"));
+  }
+
+  @Test
+  void transferIn_conComisionCuandoSuperaLimite() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("90", 1, 0, "2.00")));
+
+    StepVerifier.create(engine.apply("A2", op("ti-1", BalanceOperationType.TRANSFER_IN, "40")))
+        .assertNext(res -> {
+          assertEquals(0, new BigDecimal("90").compareTo(res.getNewBalance()));
+          assertEquals(0, new BigDecimal("2.00").compareTo(res.getCommissionApplied()));
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void commissionType_noCuentaParaPolitica_deltaCero() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("100", 5, 0, "1.00")));
+
+    StepVerifier.create(engine.apply("A3", op("c-1", BalanceOperationType.COMMISSION, "999")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals(0, new BigDecimal("100").compareTo(res.getNewBalance()));
+          assertEquals(0, BigDecimal.ZERO.compareTo(res.getCommissionApplied()));
+        })
+        .verifyComplete();
+
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).findAndModify(any(Query.class), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    Document inc = (Document) u.getValue().getUpdateObject().get("$inc");
+    assertEquals(new Decimal128(BigDecimal.ZERO), inc.get("balance"));
+    assertEquals(0, inc.get("opsCounter.count"));
+  }
+
+  @Test
+  void withdraw_saldoInsuficiente_errorDeNegocio() {
+    stubMiss(account("A1", "SAVINGS", "5"));
+
+    StepVerifier.create(engine.apply("A1", op("op-2", BalanceOperationType.WITHDRAWAL, "10")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertTrue(ex.getMessage().contains("Saldo insuficiente"));
+        })
+        .verify();
+
+    verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    // sin aplicar: la reserva se libera para permitir reintentos
+    verify(idempotencyStore).release("A1", "op-2");
+    verify(idempotencyStore, never()).complete(anyString(), anyString(), any());
+    verifyNoInteractions(movementLedger);
+  }
+
+  @Test
+  void fixedTerm_withdrawal_diaNoPermitido_error() {
+    Account acc = account("A7", "FIXED_TERM", "100");
+    acc.setAllowedDayOfMonth((LocalDate.now().getDayOfMonth() % 28) + 1);
+    stubMiss(acc);
+
+    StepVerifier.create(engine.apply("A7", op("fx-err", BalanceOperationType.WITHDRAWAL, "10")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertTrue(ex.getMessage().contains("Día no permitido"));
+        })
+        .verify();
+  }
+
+  @Test
+  void repeticion_devuelveRespuestaOriginal_sinTocarCuenta() {
+    BalanceOperationRecord record = BalanceIdempotencyStore.pending("A3", "op-dup");
+    record.setStatus(BalanceOperationRecord.COMPLETED);
+    record.setApplied(true);
+    record.setNewBalance(new BigDecimal("110"));
+    record.setCommissionApplied(new BigDecimal("1.50"));
+    record.setMessage("OK");
+    when(idempotencyStore.claim("A3", "op-dup")).thenReturn(Mono.just(Optional.of(record)));
+
+    StepVerifier.create(engine.apply("A3", op("op-dup", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals("OK", res.getMessage());
+          assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance()));
+          assertEquals(0, new BigDecimal("1.50").compareTo(res.getCommissionApplied()));
+        })
+        .verifyComplete();
+
+    verifyNoInteractions(mongoTemplate, movementLedger);
+    verify(idempotencyStore, never()).complete(anyString(), anyString(), any());
+  }
+
+  @Test
+  void repeticion_reservaEnCursoSinPendiente_conflicto() {
+    when(idempotencyStore.claim("A3", "op-run"))
+        .thenReturn(Mono.just(Optional.of(BalanceIdempotencyStore.pending("A3", "op-run"))));
+    when(mongoTemplate.findOne(any(Query.class), eq(Account.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(engine.apply("A3", op("op-run", BalanceOperationType.DEPOSIT, "10")))
+        .expectErrorSatisfies(ex -> assertEquals(HttpStatus.CONFLICT,
+            ((ResponseStatusException) ex).getStatus()))
+        .verify();
+    verify(mongoTemplate).findOne(argThat((Query q) ->
+        "A3:op-run".equals(q.getQueryObject().get("pendingMovements.id"))), eq(Account.class));
+    // dentro del lease: sigue siendo de la petición original
+    verify(idempotencyStore).takeOver("A3", "op-run");
+    verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+  }
+
+  @Test
+  void repeticion_reservaAbandonadaSinPendiente_laTomaYAplica() {
+    when(idempotencyStore.claim("A3", "op-lost"))
+        .thenReturn(Mono.just(Optional.of(BalanceIdempotencyStore.pending("A3", "op-lost"))));
+    when(mongoTemplate.findOne(any(Query.class), eq(Account.class))).thenReturn(Mono.empty());
+    when(idempotencyStore.takeOver("A3", "op-lost")).thenReturn(Mono.just(true));
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("110", 1, 99, "1.50")));
+
+    StepVerifier.create(engine.apply("A3", op("op-lost", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals("OK", res.getMessage());
+        })
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(idempotencyStore).complete(eq("A3"), eq("op-lost"), argThat(BalanceOperationResponse::getApplied));
+  }
+
+  @Test
+  void cancelada_liberaLaReserva() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class))).thenReturn(Mono.never());
+
+    StepVerifier.create(engine.apply("A19", op("op-x", BalanceOperationType.DEPOSIT, "10")))
+        .expectSubscription()
+        .thenCancel()
+        .verify();
+
+    verify(idempotencyStore).release("A19", "op-x");
+    verify(idempotencyStore, never()).complete(anyString(), anyString(), any());
+  }
+
+  @Test
+  void cuentaNoExiste_notFound() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class))).thenReturn(Mono.empty());
+    when(mongoTemplate.findOne(byId("NOPE"), eq(Document.class), eq("accounts"))).thenReturn(Mono.empty());
+
+    StepVerifier.create(engine.apply("NOPE", op("op", BalanceOperationType.DEPOSIT, "5")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(ResponseStatusException.class, ex);
+          assertEquals(HttpStatus.NOT_FOUND, ((ResponseStatusException) ex).getStatus());
+        })
+        .verify();
+  }
+
+  @Test
+  void cambioDeMes_reintentaReiniciandoContador() {
+    Account acc = account("A9", "SAVINGS", "10");
+    OpsCounter old = new OpsCounter();
+    old.setYearMonth(YearMonth.now().minusMonths(1).toString());
+    old.setCount(7);
+    acc.setOpsCounter(old);
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.empty())
+        .thenReturn(Mono.just(updated("25", 1, 100, "5")));
+    when(mongoTemplate.findOne(byId("A9"), eq(Document.class), eq("accounts"))).thenReturn(Mono.just(doc(acc)));
+
+    StepVerifier.create(engine.apply("A9", op("dep-1", BalanceOperationType.DEPOSIT, "15")))
+        .assertNext(res -> assertEquals(0, new BigDecimal("25").compareTo(res.getNewBalance())))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate, times(2)).findAndModify(q.capture(), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    assertEquals(new Document("$ne", YearMonth.now().toString()),
+        q.getAllValues().get(1).getQueryObject().get("opsCounter.yearMonth"));
+    OpsCounter reset = (OpsCounter) ((Document) u.getAllValues().get(1)
+        .getUpdateObject().get("$set")).get("opsCounter");
+    assertEquals(YearMonth.now().toString(), reset.getYearMonth());
+    assertEquals(1, reset.getCount());
+    // el cambio de mes no es un importe String: sin escritura de migración
+    verify(dataMigration, never()).migrateMoney(anyString());
+  }
+
+  @Test
+  void escrituraConcurrente_agotaReintentos_conflicto() {
+    stubMiss(account("A5", "SAVINGS", "1000"));
+
+    StepVerifier.create(engine.apply("A5", op("op-c", BalanceOperationType.WITHDRAWAL, "10")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(ResponseStatusException.class, ex);
+          assertEquals(HttpStatus.CONFLICT, ((ResponseStatusException) ex).getStatus());
+        })
+        .verify();
+
+    verify(mongoTemplate, times(3)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(dataMigration, never()).migrateMoney(anyString());
+  }
+
+  @Test
+  void reintentoTrasErrorAmbiguo_conMovimientoPendiente_noAplicaDosVeces() {
+    // el primer intento escribió saldo y movimiento pero la respuesta se perdió (timeout):
+    // la reserva se liberó y el reintento la vuelve a tomar; el filtro ya no coincide
+    Movement pushed = new Movement();
+    pushed.setId("A18:op-a");
+    pushed.setAccountId("A18");
+    pushed.setTransactionId("op-a");
+    pushed.setDate(Instant.now());
+    pushed.setAmount(new BigDecimal("10"));
+    Account acc = account("A18", "SAVINGS", "110");
+    acc.setPendingMovements(List.of(pushed));
+    stubMiss(acc);
+
+    StepVerifier.create(engine.apply("A18", op("op-a", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals("OK (recuperada)", res.getMessage());
+          assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance()));
+        })
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    // la lectura de diagnóstico trae solo el pendiente de esta operación
+    verify(mongoTemplate).findOne(argThat((Query q) -> q.getFieldsObject().get("pendingMovements") != null),
+        eq(Document.class), eq("accounts"));
+    InOrder order = inOrder(movementLedger, idempotencyStore);
+    order.verify(movementLedger).recordIfAbsent(argThat(l -> l.size() == 1 && "A18:op-a".equals(l.get(0).getId())));
+    order.verify(idempotencyStore).completePending(argThat(r -> r.containsKey("A18:op-a")));
+    order.verify(movementLedger).clearPending(List.of("A18"), Set.of("A18:op-a"));
+    verify(movementLedger, never()).record(any(Movement.class));
+    verify(idempotencyStore, never()).complete(anyString(), anyString(), any());
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+  }
+
+  @Test
+  void opIdsHeredados_noSeEliminanHastaMigrarlos() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("101", 1, 999, "0.10")));
+
+    StepVerifier.create(engine.apply("A10", op("op-200", BalanceOperationType.DEPOSIT, "1")))
+        .expectNextCount(1)
+        .verifyComplete();
+
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).findAndModify(any(Query.class), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    Document update = u.getValue().getUpdateObject();
+    assertFalse(update.containsKey("$unset"));
+    assertEquals(Set.of("pendingMovements"), ((Document) update.get("$push")).keySet());
+  }
+
+  @Test
+  void opIdHeredado_respuestaIdempotenteSinAplicarNiMovimiento() {
+    stubMiss(account("A14", "SAVINGS", "50"));
+    when(mongoTemplate.exists(argThat((Query q) -> "op-old".equals(q.getQueryObject().get("opIds"))),
+        eq(Account.class))).thenReturn(Mono.just(true));
+
+    StepVerifier.create(engine.apply("A14", op("op-old", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertFalse(res.getApplied());
+          assertEquals("Idempotente", res.getMessage());
+          assertEquals(0, new BigDecimal("50").compareTo(res.getNewBalance()));
+        })
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(idempotencyStore).complete(eq("A14"), eq("op-old"), argThat(r -> !r.getApplied()));
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+    verifyNoInteractions(movementLedger);
+  }
+
+  @Test
+  void movimientoFallaTrasAplicar_laRepeticionRecuperaElPendienteSinAplicarDeNuevo() {
+    // registro de idempotencia en memoria: la primera reserva es nueva, la repetición la encuentra
+    AtomicReference<BalanceOperationRecord> stored = new AtomicReference<>();
+    when(idempotencyStore.claim("A15", "op-m")).thenAnswer(inv -> {
+      BalanceOperationRecord previous = stored.get();
+      if (previous == null) stored.set(BalanceIdempotencyStore.pending("A15", "op-m"));
+      return Mono.just(Optional.ofNullable(previous));
+    });
+    when(movementLedger.record(any(Movement.class)))
+        .thenReturn(Mono.error(new IllegalStateException("ledger caído")));
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    when(mongoTemplate.findAndModify(any(Query.class), u.capture(),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("110", 1, 99, "1.50")));
+
+    StepVerifier.create(engine.apply("A15", op("op-m", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> assertTrue(res.getApplied()))
+        .verifyComplete();
+    verify(idempotencyStore, never()).complete(anyString(), anyString(), any());
+    verify(movementLedger, never()).clearPending(anyCollection(), anyCollection());
+
+    // la cuenta conserva el movimiento escrito con el saldo
+    Movement pushed = (Movement) ((Document) u.getValue().getUpdateObject().get("$push")).get("pendingMovements");
+    Account withPending = updated("110", 1, 99, "1.50");
+    withPending.setPendingMovements(List.of(pushed));
+    when(mongoTemplate.findOne(any(Query.class), eq(Account.class))).thenReturn(Mono.just(withPending));
+
+    StepVerifier.create(engine.apply("A15", op("op-m", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance()));
+          assertEquals("OK (recuperada)", res.getMessage());
+        })
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+    InOrder order = inOrder(movementLedger, idempotencyStore);
+    order.verify(movementLedger).recordIfAbsent(List.of(pushed));
+    order.verify(idempotencyStore).completePending(argThat(r -> r.containsKey("A15:op-m")));
+    order.verify(movementLedger).clearPending(List.of("A15"), Set.of("A15:op-m"));
+  }
+
+  @Test
+  void pendientesAntiguosDeOtrasOperaciones_seCopianEnLaSiguiente() {
+    Movement old = new Movement();
+    old.setId("A17:op-old");
+    old.setDate(Instant.now().minus(Duration.ofMinutes(10)));
+    Movement inFlight = new Movement();
+    inFlight.setId("A17:op-other");
+    inFlight.setDate(Instant.now());
+    Account acc = updated("110", 1, 99, "1.50");
+    acc.setPendingMovements(List.of(old, inFlight));
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(acc));
+
+    StepVerifier.create(engine.apply("A17", op("op-new", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> assertEquals("OK", res.getMessage()))
+        .verifyComplete();
+
+    // solo el antiguo: el reciente puede ser de una operación aún en curso
+    verify(movementLedger).recordIfAbsent(List.of(old));
+    verify(idempotencyStore).completePending(argThat(r -> r.keySet().equals(Set.of("A17:op-old"))));
+    verify(movementLedger).clearPending(List.of("A17"), Set.of("A17:op-old"));
+  }
+
+  @Test
+  void registroFallaTrasAplicar_reservaQuedaEnCurso() {
+    when(idempotencyStore.complete(eq("A16"), eq("op-r"), any()))
+        .thenReturn(Mono.error(new IllegalStateException("timeout")));
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.just(updated("110", 1, 99, "1.50")));
+
+    StepVerifier.create(engine.apply("A16", op("op-r", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> assertTrue(res.getApplied()))
+        .verifyComplete();
+
+    verify(idempotencyStore, times(2)).complete(eq("A16"), eq("op-r"), any());
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+    // sin registro completado el pendiente se queda en la cuenta para recuperarlo al repetir
+    verify(movementLedger, never()).clearPending(anyCollection(), anyCollection());
+  }
+
+  @Test
+  void deposit_saldoStringHeredado_conviertePorCuentaYReintenta() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.error(typeMismatch()))
+        .thenReturn(Mono.just(updated("110", 1, 99, "1.50")));
+    when(dataMigration.migrateMoney("A11")).thenReturn(Mono.just(true));
+
+    StepVerifier.create(engine.apply("A11", op("op-s", BalanceOperationType.DEPOSIT, "10")))
+        .assertNext(res -> assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance())))
+        .verifyComplete();
+
+    verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class));
+    verify(idempotencyStore, never()).release(anyString(), anyString());
+  }
+
+  @Test
+  void withdrawal_saldoStringHeredado_filtroNoCoincide_convierteYAplica() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.empty())
+        .thenReturn(Mono.just(updated("90", 1, 99, "1.50")));
+    Document legacy = doc(account("A12", "SAVINGS", "100"));
+    legacy.put("balance", "100");
+    when(mongoTemplate.findOne(byId("A12"), eq(Document.class), eq("accounts"))).thenReturn(Mono.just(legacy));
+    when(dataMigration.migrateMoney("A12")).thenReturn(Mono.just(true));
+
+    StepVerifier.create(engine.apply("A12", op("op-w", BalanceOperationType.WITHDRAWAL, "10")))
+        .assertNext(res -> assertEquals(0, new BigDecimal("90").compareTo(res.getNewBalance())))
+        .verifyComplete();
+  }
+
+  @Test
+  void errorDeTipoSinImportesString_sePropaga() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class)))
+        .thenReturn(Mono.error(typeMismatch()));
+
+    StepVerifier.create(engine.apply("A13", op("op-t", BalanceOperationType.DEPOSIT, "10")))
+        .expectError(UncategorizedMongoDbException.class)
+        .verify();
+    verify(idempotencyStore).release("A13", "op-t");
+  }
+
+  // ===== Helpers =====
+
+  private static UncategorizedMongoDbException typeMismatch() {
+    return new UncategorizedMongoDbException("Cannot apply $inc to a value of non-numeric type",
+        new MongoCommandException(new BsonDocument("ok", new BsonDouble(0))
+            .append("code", new BsonInt32(14))
+            .append("errmsg", new BsonString("Cannot apply $inc")), new ServerAddress()));
+  }
+
+  private void stubMiss(Account acc) {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(Account.class))).thenReturn(Mono.empty());
+    when(mongoTemplate.findOne(byId(acc.getId()), eq(Document.class), eq("accounts")))
+        .thenReturn(Mono.just(doc(acc)));
+  }
+
+  // Lectura de diagnóstico sin mapear por _id, proyectada a los campos de las reglas de saldo
+  private static Query byId(String id) {
+    return argThat(q -> id.equals(q.getQueryObject().get("_id"))
+        && q.getFieldsObject().containsKey("balance")
+        && !q.getFieldsObject().containsKey("holderDocument"));
+  }
+
+  // Documento tal como lo guarda Mongo
+  private static Document doc(Account acc) {
+    Document doc = new Document();
+    AccountDocumentCodec.write(acc, doc);
+    return doc;
+  }
+
+  private static MappingMongoConverter converter() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new AccountMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext, true);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  private static BalanceOperationRequest op(String id, BalanceOperationType type, String amount) {
+    return new BalanceOperationRequest().operationId(id).type(type).amount(new BigDecimal(amount));
+  }
+
+  private static Account account(String id, String type, String balance) {
+    Account acc = new Account();
+    acc.setId(id);
+    acc.setAccountType(type);
+    acc.setBalance(new BigDecimal(balance));
+    acc.setFreeTransactionsLimit(99);
+    acc.setCommissionFee(new BigDecimal("1.50"));
+    OpsCounter oc = new OpsCounter();
+    oc.setYearMonth(YearMonth.now().toString());
+    oc.setCount(0);
+    acc.setOpsCounter(oc);
+    return acc;
+  }
+
+  // Estado devuelto por findAndModify (proyección con returnNew)
+  private static Account updated(String balance, int count, int free, String fee) {
+    Account acc = new Account();
+    acc.setBalance(new BigDecimal(balance));
+    acc.setFreeTransactionsLimit(free);
+    acc.setCommissionFee(new BigDecimal(fee));
+    OpsCounter oc = new OpsCounter();
+    oc.setYearMonth(YearMonth.now().toString());
+    oc.setCount(count);
+    acc.setOpsCounter(oc);
+    return acc;
+  }
+}
@@ -0,0 +1,201 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Caché de cuentas en Redis (read-through).
+ * Cubre: fallo y acierto con un solo acceso a Mongo, Redis caído o lento tratado como fallo,
+ * invalidación, caché deshabilitada, conservación de campos JsonNullable/LocalDate y relleno
+ * descartado cuando una escritura se cruza con la carga (generación por cuenta).
+ */
+
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.service.cache.*;
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.redis.core.*;
+import org.springframework.data.redis.core.script.*;
+import org.springframework.http.converter.json.*;
+import org.springframework.test.util.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountCacheTest {
+
+  @Mock
+  ReactiveStringRedisTemplate redis;
+  @Mock
+  ReactiveValueOperations<String, String> ops;
+
+  // Redis en memoria: sin servidor embebido disponible en el build
+  final Map<String, String> store = new HashMap<>();
+  SimpleMeterRegistry registry;
+  AccountCache cache;
+
+  @BeforeEach
+  void setUp() {
+    registry = new SimpleMeterRegistry();
+    cache = new AccountCache(redis, Jackson2ObjectMapperBuilder.json().build(), registry);
+    lenient().when(redis.opsForValue()).thenReturn(ops);
+    lenient().when(ops.multiGet(anyList()))
+        .thenAnswer(inv -> Mono.just(inv.<List<String>>getArgument(0).stream()
+            .map(store::get)
+            .collect(Collectors.toList())));
+    lenient().when(redis.execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), anyList()))
+        .thenAnswer(inv -> Flux.defer(() ->
+            Flux.just(script(inv.getArgument(0), inv.getArgument(1), inv.getArgument(2)))));
+  }
+
+  @Test
+  void get_falloLuegoAcierto_cargaUnaSolaVez() {
+    AtomicInteger loads = new AtomicInteger();
+    Mono<AccountResponse> loader = Mono.fromCallable(() -> {
+      loads.incrementAndGet();
+      return account("A1");
+    });
+
+    StepVerifier.create(cache.get("A1", loader))
+        .assertNext(a -> assertEquals("A1", a.getId()))
+        .verifyComplete();
+    StepVerifier.create(cache.get("A1", loader))
+        .assertNext(a -> assertEquals("A1", a.getId()))
+        .verifyComplete();
+
+    assertEquals(1, loads.get());
+    assertTrue(store.containsKey("account:A1"));
+    assertEquals(1.0, count("miss"));
+    assertEquals(1.0, count("hit"));
+    verify(redis).execute(same(script("FILL")), eq(List.of("account:A1", "account:A1:gen")),
+        argThat(args -> args.size() == 3 && "".equals(args.get(0)) && "600000".equals(args.get(2))));
+  }
+
+  @Test
+  void get_redisCaido_leeDeMongo() {
+    when(ops.multiGet(anyList())).thenReturn(Mono.error(new IllegalStateException("conexión rechazada")));
+
+    StepVerifier.create(cache.get("A1", Mono.just(account("A1"))))
+        .assertNext(a -> assertEquals("A1", a.getId()))
+        .verifyComplete();
+
+    // error al leer; sin generación leída no se intenta rellenar
+    assertEquals(1.0, count("error"));
+    assertEquals(1.0, count("miss"));
+    verify(redis, never()).execute(ArgumentMatchers.<RedisScript<Long>>any(), anyList(), anyList());
+  }
+
+  @Test
+  void get_redisLento_superaTimeout_leeDeMongo() {
+    ReflectionTestUtils.setField(cache, "timeout", Duration.ofMillis(20));
+    when(ops.multiGet(anyList())).thenReturn(Mono.never());
+
+    StepVerifier.create(cache.get("A1", Mono.just(account("A1"))))
+        .assertNext(a -> assertEquals("A1", a.getId()))
+        .verifyComplete();
+    assertEquals(1.0, count("error"));
+  }
+
+  @Test
+  void evict_borraEntradasYSubeGeneracion() {
+    store.put("account:A1", "{}");
+    store.put("account:A2", "{}");
+
+    StepVerifier.create(cache.evict("A1")).verifyComplete();
+    assertFalse(store.containsKey("account:A1"));
+    assertEquals("1", store.get("account:A1:gen"));
+
+    StepVerifier.create(cache.evictAll(List.of("A2", "A3"))).verifyComplete();
+    assertFalse(store.containsKey("account:A2"));
+    assertFalse(store.containsKey("account:A3"));
+    assertEquals("1", store.get("account:A3:gen"));
+  }
+
+  @Test
+  void get_invalidacionDuranteLaCarga_noRellenaConValorAnterior() {
+    // la operación de saldo escribe en Mongo e invalida mientras la lectura aún trae el valor viejo
+    Mono<AccountResponse> staleLoader = cache.evict("A1").then(Mono.fromCallable(() -> account("A1")));
+
+    StepVerifier.create(cache.get("A1", staleLoader))
+        .assertNext(a -> assertEquals("A1", a.getId()))
+        .verifyComplete();
+
+    assertFalse(store.containsKey("account:A1"));
+  }
+
+  @Test
+  void deshabilitada_noTocaRedis() {
+    ReflectionTestUtils.setField(cache, "enabled", false);
+
+    StepVerifier.create(cache.get("A1", Mono.just(account("A1"))))
+        .expectNextCount(1)
+        .verifyComplete();
+    StepVerifier.create(cache.evict("A1")).verifyComplete();
+
+    verifyNoInteractions(redis);
+  }
+
+  @Test
+  void acierto_conservaCamposAnulablesYFechas() {
+    AccountResponse original = account("A1")
+        .maintenanceFee(new BigDecimal("5.00"))
+        .creationDate(LocalDate.of(2024, 3, 1));
+    StepVerifier.create(cache.get("A1", Mono.just(original))).expectNextCount(1).verifyComplete();
+
+    StepVerifier.create(cache.get("A1", Mono.error(new AssertionError("no debe cargar"))))
+        .assertNext(a -> {
+          assertEquals(LocalDate.of(2024, 3, 1), a.getCreationDate());
+          assertEquals(0, new BigDecimal("5.00").compareTo(a.getMaintenanceFee().get()));
+          // un campo no informado sigue sin informar tras la ida y vuelta
+          assertFalse(a.getAllowedDayOfMonth().isPresent());
+          assertEquals(AccountResponse.AccountTypeEnum.SAVINGS, a.getAccountType());
+        })
+        .verifyComplete();
+  }
+
+  // ===== Helpers =====
+
+  // Emula los scripts Lua de AccountCache sobre el mapa en memoria
+  private Long script(RedisScript<?> script, List<String> keys, List<String> args) {
+    if (script == script("FILL")) {
+      if (!Objects.toString(store.get(keys.get(1)), "").equals(args.get(0))) return 0L;
+      store.put(keys.get(0), args.get(1));
+    } else {
+      for (int i = 0; i < keys.size(); i += 2) {
+        store.remove(keys.get(i));
+        bump(keys.get(i + 1));
+      }
+    }
+    return 1L;
+  }
+
+  private void bump(String genKey) {
+    store.merge(genKey, "1", (current, one) -> String.valueOf(Long.parseLong(current) + 1));
+  }
+
+  private static RedisScript<?> script(String name) {
+    return (RedisScript<?>) ReflectionTestUtils.getField(AccountCache.class, name);
+  }
+
+  private double count(String result) {
+    return registry.get("account.cache.requests").tag("result", result).counter().count();
+  }
+
+  private static AccountResponse account(String id) {
+    return new AccountResponse()
+        .id(id)
+        .accountType(AccountResponse.AccountTypeEnum.SAVINGS)
+        .balance(new BigDecimal("100"))
+        .active(true);
+  }
+}
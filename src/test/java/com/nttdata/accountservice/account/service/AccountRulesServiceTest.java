@@ -1,31 +1,52 @@
 package com.nttdata.accountservice.account.service;
 
+/*
+ * Reglas de alta por titular sobre el resumen holder_summaries.
+ * Cubre: límites PERSONAL/BUSINESS con lectura por _id, relleno del resumen desde las
+ * cuentas del titular, reserva condicional del cupo, liberación (también de una reserva concreta),
+ * confirmación de la reserva, recuento del cupo de reservas vencidas (no con reservas vigentes
+ * del tipo) y traslado.
+ */
 
+import com.nttdata.accountservice.integration.customers.*;
+import com.mongodb.client.result.*;
 import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
 import com.nttdata.accountservice.repository.*;
 import com.nttdata.accountservice.service.rules.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
 import org.mockito.*;
 import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.query.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
 import com.nttdata.accountservice.config.BusinessException;
+import java.time.*;
+import java.util.*;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AccountRulesServiceTest {
   @Mock
   AccountRepository repository;
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+
+  AccountRulesService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new AccountRulesService(repository, mongoTemplate);
+  }
 
   @Test
   void personal_noPuedeTenerDosSavings() {
-    com.nttdata.accountservice.model.entity.Account existing = new com.nttdata.accountservice.model.entity.Account();
-    existing.setAccountType("SAVINGS");
-    when(repository.findByHolderDocument("123")).thenReturn(Flux.just(existing));
-
-    AccountRulesService service = new AccountRulesService(repository);
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary("SAVINGS", 1)));
 
     StepVerifier.create(service.validateLegacyRules("123", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL"))
         .expectErrorSatisfies(ex -> {
@@ -33,14 +54,13 @@ class AccountRulesServiceTest {
           assertTrue(ex.getMessage().contains("ya tiene una cuenta de tipo SAVINGS"));
         })
         .verify();
-    verify(repository).findByHolderDocument("123");
+    // una lectura por _id, sin recorrer las cuentas del titular
+    verifyNoInteractions(repository);
   }
 
   @Test
   void business_noPuedeAbrirSavingsNiFixed() {
-    when(repository.findByHolderDocument("RUC1")).thenReturn(Flux.empty());
-    AccountRulesService service = new AccountRulesService(repository);
-
+    when(mongoTemplate.findById("RUC1", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 0)));
     StepVerifier.create(service.validateLegacyRules("RUC1", AccountRequest.AccountTypeEnum.SAVINGS, "BUSINESS"))
         .expectError(BusinessException.class)
         .verify();
@@ -55,20 +75,14 @@ class AccountRulesServiceTest {
 
   @Test
   void personal_puedeAbrirCheckingSiNoTiene() {
-    when(repository.findByHolderDocument("123")).thenReturn(Flux.empty());
-    AccountRulesService service = new AccountRulesService(repository);
-
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 0)));
     StepVerifier.create(service.validateLegacyRules("123", AccountRequest.AccountTypeEnum.CHECKING, "PERSONAL"))
         .verifyComplete();
   }
 
   @Test
   void personal_noPuedeTenerDosChecking() {
-    com.nttdata.accountservice.model.entity.Account existing = new com.nttdata.accountservice.model.entity.Account();
-    existing.setAccountType("CHECKING");
-    when(repository.findByHolderDocument("456")).thenReturn(Flux.just(existing));
-
-    AccountRulesService service = new AccountRulesService(repository);
+    when(mongoTemplate.findById("456", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 1)));
 
     StepVerifier.create(service.validateLegacyRules("456", AccountRequest.AccountTypeEnum.CHECKING, "PERSONAL"))
         .expectErrorSatisfies(ex -> {
@@ -80,9 +94,7 @@ class AccountRulesServiceTest {
 
   @Test
   void business_puedeAbrirChecking() {
-    when(repository.findByHolderDocument("RUC2")).thenReturn(Flux.empty());
-
-    AccountRulesService service = new AccountRulesService(repository);
+    when(mongoTemplate.findById("RUC2", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 0)));
 
     StepVerifier.create(service.validateLegacyRules("RUC2", AccountRequest.AccountTypeEnum.CHECKING, "BUSINESS"))
         .verifyComplete();
@@ -90,13 +102,222 @@ class AccountRulesServiceTest {
 
   @Test
   void personal_puedeAbrirSavingsSiNoTiene() {
-    when(repository.findByHolderDocument("789")).thenReturn(Flux.empty());
-
-    AccountRulesService service = new AccountRulesService(repository);
+    when(mongoTemplate.findById("789", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 0)));
 
     StepVerifier.create(service.validateLegacyRules("789", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL"))
         .verifyComplete();
   }
 
+  @Test
+  void conElegibilidadAsincrona_consultaCuentasSinEsperarla() {
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 1)));
+    Sinks.One<EligibilityResponse> eligibility = Sinks.one();
+    EligibilityResponse elig = new EligibilityResponse();
+    elig.setType("PERSONAL");
+
+    StepVerifier.create(service.validateLegacyRules(
+            "123", AccountRequest.AccountTypeEnum.CHECKING, eligibility.asMono()))
+        // la lectura del resumen ya salió aunque la elegibilidad no haya llegado
+        .then(() -> verify(mongoTemplate).findById("123", HolderSummary.class))
+        .then(() -> eligibility.tryEmitValue(elig))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertTrue(ex.getMessage().contains("ya tiene una cuenta de tipo CHECKING"));
+        })
+        .verify();
+  }
+
+  @Test
+  void sinResumen_seRellenaDesdeLasCuentasDelTitular() {
+    Account existing = new Account();
+    existing.setAccountType("SAVINGS");
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.empty());
+    when(repository.findByHolderDocument("123")).thenReturn(Flux.just(existing));
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(summary("SAVINGS", 1)));
+
+    StepVerifier.create(service.validateLegacyRules("123", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL"))
+        .expectError(BusinessException.class)
+        .verify();
+
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+    verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), options.capture(),
+        eq(HolderSummary.class));
+    // solo en la inserción: un resumen creado entretanto por otra alta no se pisa
+    assertEquals(1, update.getValue().getUpdateObject().get("$setOnInsert", org.bson.Document.class)
+        .get("counts.SAVINGS"));
+    assertTrue(options.getValue().isUpsert());
+  }
+
+  @Test
+  void reserva_personalSavings_esCondicional() {
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary("SAVINGS", 0)));
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.reserve("123", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL", "r1"))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(HolderSummary.class));
+    assertEquals("123", query.getValue().getQueryObject().get("id"));
+    assertTrue(query.getValue().getQueryObject().containsKey("counts.SAVINGS"));
+    assertEquals(1, update.getValue().getUpdateObject().get("$inc", org.bson.Document.class)
+        .get("counts.SAVINGS"));
+    // la reserva queda pendiente, con su tipo y fecha, hasta confirmarse o devolverse
+    HolderReservation pushed = (HolderReservation) update.getValue().getUpdateObject()
+        .get("$push", org.bson.Document.class).get("reservations");
+    assertEquals("r1", pushed.getReservationId());
+    assertEquals("SAVINGS", pushed.getAccountType());
+    assertNotNull(pushed.getAt());
+    // sin reservas vencidas no se recuenta
+    verifyNoInteractions(repository);
+  }
+
+  @Test
+  void reserva_conReservaVencida_recuentaDesdeLasCuentas() {
+    Instant updatedAt = Instant.now().minusSeconds(60);
+    HolderSummary summary = summary("SAVINGS", 1);
+    summary.setId("123");
+    summary.setUpdatedAt(updatedAt);
+    // alta caída entre reserva y confirmación: el contador quedó en 1 sin cuenta
+    summary.setReservations(new ArrayList<>(List.of(
+        new HolderReservation("r0", "SAVINGS", updatedAt),
+        new HolderReservation("r9", "CHECKING", Instant.now()))));
+    Account checking = new Account();
+    checking.setAccountType("CHECKING");
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary));
+    when(repository.findByHolderDocument("123")).thenReturn(Flux.just(checking));
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.reserve("123", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL", "r1"))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(HolderSummary.class));
+    // primero el recuento, condicionado a que el resumen no haya cambiado desde la lectura
+    assertEquals(updatedAt, query.getAllValues().get(0).getQueryObject().get("updatedAt"));
+    org.bson.Document reclaim = update.getAllValues().get(0).getUpdateObject();
+    assertEquals(0, reclaim.get("$set", org.bson.Document.class).get("counts.SAVINGS"));
+    // CHECKING tiene una reserva vigente: ni se recuenta ni se quita
+    assertFalse(reclaim.get("$set", org.bson.Document.class).containsKey("counts.CHECKING"));
+    assertEquals(new org.bson.Document("accountType", new org.bson.Document("$in", List.of("SAVINGS"))),
+        reclaim.get("$pull", org.bson.Document.class).get("reservations"));
+    // luego la reserva condicional de siempre
+    assertEquals(1, update.getAllValues().get(1).getUpdateObject().get("$inc", org.bson.Document.class)
+        .get("counts.SAVINGS"));
+  }
 
+  @Test
+  void reserva_conReservaVigenteDelTipo_noRecuenta() {
+    HolderSummary summary = summary("SAVINGS", 1);
+    summary.setReservations(new ArrayList<>(List.of(
+        new HolderReservation("r0", "SAVINGS", Instant.now().minusSeconds(60)),
+        new HolderReservation("r2", "SAVINGS", Instant.now()))));
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary));
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+    StepVerifier.create(service.reserve("123", AccountRequest.AccountTypeEnum.SAVINGS, "PERSONAL", "r1"))
+        .expectError(BusinessException.class)
+        .verify();
+
+    // la cuenta de la reserva vigente podría estar ya guardada: contarla dos veces no
+    verifyNoInteractions(repository);
+    verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class));
+  }
+
+  @Test
+  void reserva_otraAltaGanoElCupo_businessException() {
+    when(mongoTemplate.findById("123", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 0)));
+    // el filtro condicional ya no encuentra el resumen: el contador dejó de ser cero
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+    StepVerifier.create(service.reserve("123", AccountRequest.AccountTypeEnum.CHECKING, "PERSONAL", "r1"))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertTrue(ex.getMessage().contains("ya tiene una cuenta de tipo CHECKING"));
+        })
+        .verify();
+  }
+
+  @Test
+  void reserva_businessChecking_sinCondicion() {
+    when(mongoTemplate.findById("RUC1", HolderSummary.class)).thenReturn(Mono.just(summary("CHECKING", 3)));
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.reserve("RUC1", AccountRequest.AccountTypeEnum.CHECKING, "BUSINESS", "r1"))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).updateFirst(query.capture(), any(UpdateDefinition.class), eq(HolderSummary.class));
+    assertEquals(Set.of("id"), query.getValue().getQueryObject().keySet());
+  }
+
+  @Test
+  void liberacion_decrementaSoloSiHayCupo() {
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.release("123", "savings")).verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(HolderSummary.class));
+    assertTrue(query.getValue().getQueryObject().containsKey("counts.SAVINGS"));
+    assertEquals(-1, update.getValue().getUpdateObject().get("$inc", org.bson.Document.class)
+        .get("counts.SAVINGS"));
+  }
+
+  @Test
+  void liberacionDeReserva_soloSiSiguePendiente() {
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.release("123", "savings", "r1")).verifyComplete();
+
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(HolderSummary.class));
+    // decremento condicional: no pisa reservas de otras altas ni devuelve dos veces la misma
+    assertEquals("r1", query.getValue().getQueryObject().get("reservations.reservationId"));
+    assertTrue(query.getValue().getQueryObject().containsKey("counts.SAVINGS"));
+    org.bson.Document applied = update.getValue().getUpdateObject();
+    assertEquals(-1, applied.get("$inc", org.bson.Document.class).get("counts.SAVINGS"));
+    assertEquals(new org.bson.Document("reservationId", "r1"),
+        applied.get("$pull", org.bson.Document.class).get("reservations"));
+  }
+
+  @Test
+  void confirmacion_quitaLaReservaSinTocarContadores() {
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(HolderSummary.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(service.confirm("123", "r1")).verifyComplete();
+
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(HolderSummary.class));
+    assertEquals(Set.of("$pull"), update.getValue().getUpdateObject().keySet());
+  }
+
+  @Test
+  void traslado_mismoTitularYTipo_noEscribe() {
+    StepVerifier.create(service.move("123", "SAVINGS", "123", "SAVINGS")).verifyComplete();
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  // ===== Helpers =====
+
+  private static HolderSummary summary(String accountType, int count) {
+    HolderSummary summary = new HolderSummary();
+    summary.setCounts(new HashMap<>(Map.of(accountType, count)));
+    return summary;
+  }
 }
@@ -12,6 +12,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -39,12 +41,20 @@ class AccountServiceImplAdditionalValidationTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
   @Test
@@ -2,8 +2,9 @@ package com.nttdata.accountservice.account.service;
 
 /*
  * Tests principales de applyBalanceOperation
- * Cubre: depósito simple, depósito con comisión, retiro saldo insuficiente,
- * idempotencia, débito FIXED_TERM en día no permitido.
+ * Cubre: validación de entrada, delegación al motor atómico de saldos e invalidación de la caché
+ * en lote de toda cuenta no rechazada (también las repeticiones, que pueden retomar y aplicar).
+ * Las reglas de saldo/comisión/idempotencia se prueban en AccountBalanceEngineTest.
  */
 
 
@@ -12,6 +13,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -23,6 +26,7 @@ import reactor.core.publisher.*;
 import reactor.test.*;
 
 import java.math.*;
+import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -40,30 +44,34 @@ class AccountServiceImplApplyBalanceOperationTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // caché de paso: siempre delega en Mongo
+    lenient().when(accountCache.get(anyString(), any())).thenAnswer(inv -> inv.getArgument(1));
+    lenient().when(accountCache.evict(anyString())).thenReturn(Mono.empty());
   }
 
   @Test
-  void deposit_ok_aplicaSinErrores() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A1");
-    acc.setAccountType("SAVINGS");
-    acc.setBalance(new BigDecimal("100.00"));
-    acc.setFreeTransactionsLimit(99);           // sin comisión
-    acc.setCommissionFee(new BigDecimal("1.50"));
-
-    when(repository.findById("A1")).thenReturn(Mono.just(acc));
-    when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
+  void deposit_ok_delegaEnMotorAtomico() {
     BalanceOperationRequest rq = new BalanceOperationRequest()
         .operationId("op-1")
         .type(BalanceOperationType.DEPOSIT)
         .amount(new BigDecimal("10"));
+    when(balanceEngine.apply("A1", rq)).thenReturn(Mono.just(new BalanceOperationResponse()
+        .applied(true).newBalance(new BigDecimal("110"))
+        .commissionApplied(BigDecimal.ZERO).message("OK")));
 
     StepVerifier.create(service.applyBalanceOperation("A1", rq))
         .assertNext(res -> {
@@ -73,8 +81,11 @@ class AccountServiceImplApplyBalanceOperationTest {
         })
         .verifyComplete();
 
-    verify(repository).findById("A1");
-    verify(repository).save(any(com.nttdata.accountservice.model.entity.Account.class));
+    verify(balanceEngine).apply("A1", rq);
+    // sin lectura previa ni save del documento completo
+    verifyNoInteractions(repository);
+    // la vista cacheada queda invalidada tras mover saldo
+    verify(accountCache).evict("A1");
   }
 
   @Test
@@ -91,113 +102,43 @@ class AccountServiceImplApplyBalanceOperationTest {
         })
         .verify();
 
-    verifyNoInteractions(repository);
+    verifyNoInteractions(repository, balanceEngine);
   }
 
   @Test
-  void withdraw_conSaldoInsuficiente_lanzaError() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A1");
-    acc.setAccountType("SAVINGS");
-    acc.setBalance(new BigDecimal("5"));        // saldo insuficiente
-    acc.setFreeTransactionsLimit(0);
-    acc.setCommissionFee(new BigDecimal("1.50"));
-
-    when(repository.findById("A1")).thenReturn(Mono.just(acc));
-
+  void withdraw_errorDelMotor_sePropaga() {
     BalanceOperationRequest rq = new BalanceOperationRequest()
         .operationId("op-2")
         .type(BalanceOperationType.WITHDRAWAL)
         .amount(new BigDecimal("10"));
+    when(balanceEngine.apply("A1", rq))
+        .thenReturn(Mono.error(new BusinessException("Saldo insuficiente")));
 
     StepVerifier.create(service.applyBalanceOperation("A1", rq))
         .expectErrorSatisfies(ex -> {
-          // “Saldo insuficiente”
           assertInstanceOf(BusinessException.class, ex);
           assertTrue(ex.getMessage().contains("Saldo insuficiente"));
         })
         .verify();
-
-    verify(repository).findById("A1");
-    verify(repository, never()).save(any());
   }
 
   @Test
-  void deposit_superaLimite_cobraComision() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A2");
-    acc.setAccountType("SAVINGS");
-    acc.setBalance(new BigDecimal("100"));
-    acc.setFreeTransactionsLimit(0);            // sin libres => cobra
-    acc.setCommissionFee(new BigDecimal("1.50"));
-
-    when(repository.findById("A2")).thenReturn(Mono.just(acc));
-    when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
-    BalanceOperationRequest rq = new BalanceOperationRequest()
-        .operationId("op-3")
-        .type(BalanceOperationType.DEPOSIT)
-        .amount(new BigDecimal("10"));
-
-    StepVerifier.create(service.applyBalanceOperation("A2", rq))
-        .assertNext(res -> {
-          assertTrue(res.getApplied());
-          assertEquals(0, new BigDecimal("110").compareTo(res.getNewBalance()));
-          assertEquals(0, new BigDecimal("1.50").compareTo(res.getCommissionApplied()));
-        })
+  void lote_invalidaTodaCuentaNoRechazada() {
+    BalanceOperationBatchRequest rq = new BalanceOperationBatchRequest().items(List.of());
+    when(batchProcessor.process(anyList())).thenReturn(Mono.just(List.of(
+        result("A1", BalanceOperationBatchResult.StatusEnum.APPLIED),
+        result("A2", BalanceOperationBatchResult.StatusEnum.IDEMPOTENT),
+        result("A3", BalanceOperationBatchResult.StatusEnum.REJECTED))));
+    when(accountCache.evictAll(anyCollection())).thenReturn(Mono.empty());
+
+    StepVerifier.create(service.applyBalanceOperationsBatch(rq))
+        .assertNext(res -> assertEquals(3, res.getResults().size()))
         .verifyComplete();
-  }
-
-  @Test
-  void applyBalanceOperation_idempotente_noDuplica() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A3");
-    acc.setAccountType("SAVINGS");
-    acc.setBalance(new BigDecimal("100"));
-    acc.setFreeTransactionsLimit(99);
-    acc.setCommissionFee(new BigDecimal("1.50"));
-    java.util.ArrayList<String> ids = new java.util.ArrayList<>();
-    ids.add("op-dup");
-    acc.setOpIds(ids);
-
-    when(repository.findById("A3")).thenReturn(Mono.just(acc));
-
-    BalanceOperationRequest rq = new BalanceOperationRequest()
-        .operationId("op-dup")                // ya existe
-        .type(BalanceOperationType.DEPOSIT)
-        .amount(new BigDecimal("10"));
 
-    StepVerifier.create(service.applyBalanceOperation("A3", rq))
-        .assertNext(res -> {
-          assertFalse(res.getApplied());      // idempotente
-          assertEquals(0, new BigDecimal("100").compareTo(res.getNewBalance()));
-        })
-        .verifyComplete();
+    verify(accountCache).evictAll(Set.of("A1", "A2"));
   }
 
-  @Test
-  void withdraw_fixedTerm_enDiaNoPermitido() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A4");
-    acc.setAccountType("FIXED_TERM");
-    int notToday = java.time.LocalDate.now().getDayOfMonth() == 28 ? 27 : 28;
-    acc.setAllowedDayOfMonth(notToday);           // garantizamos que NO sea hoy
-    acc.setBalance(new BigDecimal("100"));
-    acc.setFreeTransactionsLimit(99);
-    acc.setCommissionFee(new BigDecimal("1.50"));
-
-    when(repository.findById("A4")).thenReturn(Mono.just(acc));
-
-    BalanceOperationRequest rq = new BalanceOperationRequest()
-        .operationId("op-4")
-        .type(BalanceOperationType.WITHDRAWAL)
-        .amount(new BigDecimal("10"));
-
-    StepVerifier.create(service.applyBalanceOperation("A4", rq))
-        .expectErrorSatisfies(ex -> {
-          assertInstanceOf(BusinessException.class, ex);
-          assertTrue(ex.getMessage().contains("Día no permitido"));
-        })
-        .verify();
+  private static BalanceOperationBatchResult result(String accountId, BalanceOperationBatchResult.StatusEnum status) {
+    return new BalanceOperationBatchResult().accountId(accountId).status(status);
   }
 }
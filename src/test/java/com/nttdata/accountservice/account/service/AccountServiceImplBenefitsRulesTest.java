@@ -10,6 +10,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -42,12 +44,25 @@ class AccountServiceImplBenefitsRulesTest {
   AccountRulesService rules;
   @Mock
   AccountPolicyService policy;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void init() {
-    service = new AccountServiceImpl(repository, customers, credits, rules, policy);
+    service = new AccountServiceImpl(repository, customers, credits, rules, policy, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rules.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.confirm(any(), any())).thenReturn(Mono.empty());
 
   }
 
@@ -58,7 +73,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("C1");
     elig.setType("PERSONAL");
     elig.setProfile("VIP");
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
     when(credits.hasActiveCreditCard("C1")).thenReturn(Mono.just(true));
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
@@ -78,7 +93,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("C1B");
     elig.setType("PERSONAL");
     elig.setProfile("VIP");
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "99998888")).thenReturn(Mono.just(elig));
     when(credits.hasActiveCreditCard("C1B")).thenReturn(Mono.just(false));
     var req = new AccountRequest()
@@ -102,7 +117,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("C1C");
     elig.setType("PERSONAL");
     elig.setProfile("VIP");
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "77776666")).thenReturn(Mono.just(elig));
     // NO se debe llamar a credits.hasActiveCreditCard
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
@@ -126,7 +141,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setType("BUSINESS");
     elig.setProfile("PYME");
 
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "87654321")).thenReturn(Mono.just(elig));
     when(credits.hasActiveCreditCard("C2")).thenReturn(Mono.just(false));
 
@@ -153,7 +168,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("CPN");
     elig.setType("BUSINESS");
     elig.setProfile("PYME");
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "55554444")).thenReturn(Mono.just(elig));
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
@@ -178,7 +193,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("C3");
     elig.setType("BUSINESS");
     elig.setProfile("PYME");
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "11112222")).thenReturn(Mono.just(elig));
     when(credits.hasActiveCreditCard("C3")).thenReturn(Mono.just(true));
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
@@ -204,7 +219,7 @@ class AccountServiceImplBenefitsRulesTest {
     elig.setCustomerId("C4");
     elig.setType("PERSONAL");
     elig.setProfile("STANDARD"); // no VIP ni PYME
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(customers.getEligibilityByDocument("DNI", "22334455")).thenReturn(Mono.just(elig));
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
@@ -225,7 +240,7 @@ class AccountServiceImplBenefitsRulesTest {
   @Test
   void legacyRules_error_propagadoAntesBeneficios() {
     // Fuerza error en legacy para cubrir rama legacy.then(benefit) fallando antes de benefit
-    when(rules.validateLegacyRules(anyString(), any(),isNull()))
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class)))
         .thenReturn(Mono.error(new BusinessException("legacy fail")));
     when(customers.getEligibilityByDocument(anyString(), anyString()))
         .thenReturn(Mono.just(new EligibilityResponse()));
@@ -243,5 +258,71 @@ class AccountServiceImplBenefitsRulesTest {
         .verify();
     verifyNoInteractions(credits, repository);
   }
-}
 
+  @Test
+  void savingsVIP_tarjetaInformadaPorCustomers_noConsultaCredits() {
+    ReflectionTestUtils.setField(service, "requireCcForVip", true);
+    var elig = new EligibilityResponse();
+    elig.setCustomerId("C1");
+    elig.setType("PERSONAL");
+    elig.setProfile("VIP");
+    elig.setHasActiveCreditCard(true);
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
+    when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    var req = new AccountRequest()
+        .holderDocumentType(DNI)
+        .holderDocument("12345678")
+        .accountType(SAVINGS)
+        .monthlyMovementLimit(10);
+
+    StepVerifier.create(service.createAccount(req)).expectNextCount(1).verifyComplete();
+    verifyNoInteractions(credits);
+  }
+
+  @Test
+  void checkingPYME_customersSinTarjeta_rechazaSinConsultarCredits() {
+    ReflectionTestUtils.setField(service, "requireCcForPyme", true);
+    var elig = new EligibilityResponse();
+    elig.setCustomerId("C2");
+    elig.setType("BUSINESS");
+    elig.setProfile("PYME");
+    elig.setHasActiveCreditCard(false);
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
+    when(customers.getEligibilityByDocument("DNI", "55554444")).thenReturn(Mono.just(elig));
+    var req = new AccountRequest()
+        .holderDocumentType(DNI)
+        .holderDocument("55554444")
+        .accountType(CHECKING)
+        .maintenanceFee(BigDecimal.ONE)
+        .monthlyMovementLimit(9);
+
+    StepVerifier.create(service.createAccount(req))
+        .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("PYME requiere")))
+        .verify();
+    verifyNoInteractions(credits);
+  }
+
+  @Test
+  void savingsVIP_confianzaDeshabilitada_consultaCredits() {
+    ReflectionTestUtils.setField(service, "requireCcForVip", true);
+    ReflectionTestUtils.setField(service, "trustEligibilityCreditCard", false);
+    var elig = new EligibilityResponse();
+    elig.setCustomerId("C3");
+    elig.setType("PERSONAL");
+    elig.setProfile("VIP");
+    elig.setHasActiveCreditCard(true);
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
+    when(credits.hasActiveCreditCard("C3")).thenReturn(Mono.just(false));
+    var req = new AccountRequest()
+        .holderDocumentType(DNI)
+        .holderDocument("12345678")
+        .accountType(SAVINGS)
+        .monthlyMovementLimit(10);
+
+    StepVerifier.create(service.createAccount(req))
+        .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("Ahorro VIP requiere")))
+        .verify();
+  }
+}
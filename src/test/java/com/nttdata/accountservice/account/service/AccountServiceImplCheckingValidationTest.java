@@ -10,6 +10,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -42,12 +44,25 @@ class AccountServiceImplCheckingValidationTest {
   AccountRulesService rules;
   @Mock
   AccountPolicyService policy;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void init() {
-    service = new AccountServiceImpl(repository, customers, credits, rules, policy);
+    service = new AccountServiceImpl(repository, customers, credits, rules, policy, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rules.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.confirm(any(), any())).thenReturn(Mono.empty());
     // Desactivamos requisitos de tarjeta de crédito para cuentas VIP y PYMES para simplificar tests
     ReflectionTestUtils.setField(service, "requireCcForVip", false);
     ReflectionTestUtils.setField(service, "requireCcForPyme", false);
@@ -61,7 +76,7 @@ class AccountServiceImplCheckingValidationTest {
     elig.setProfile("STANDARD");
 
     when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
-    when(rules.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
     var req = new AccountRequest()
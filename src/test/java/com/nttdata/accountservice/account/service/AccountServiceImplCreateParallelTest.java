@@ -0,0 +1,200 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * createAccount con validaciones en paralelo.
+ * Cubre: reglas legacy y tarjeta de crédito en curso a la vez, una sola consulta de elegibilidad,
+ * corte inmediato ante error (cancelando lo pendiente), prioridad de mensajes entre reglas y
+ * alta cancelada a mitad que termina igualmente (confirma la reserva si guardó, la devuelve si no).
+ */
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.integration.credits.*;
+import com.nttdata.accountservice.integration.customers.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
+import com.nttdata.accountservice.service.impl.*;
+import com.nttdata.accountservice.service.policy.*;
+import com.nttdata.accountservice.service.rules.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.test.util.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+import reactor.test.publisher.*;
+
+import static com.nttdata.accountservice.model.AccountRequest.AccountTypeEnum.*;
+import static com.nttdata.accountservice.model.AccountRequest.HolderDocumentTypeEnum.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountServiceImplCreateParallelTest {
+
+  @Mock
+  AccountRepository repository;
+  @Mock
+  CustomersClient customers;
+  @Mock
+  CreditsClient credits;
+  @Mock
+  AccountRulesService rules;
+  @Mock
+  AccountPolicyService policy;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
+
+  AccountServiceImpl service;
+
+  @BeforeEach
+  void init() {
+    service = new AccountServiceImpl(repository, customers, credits, rules, policy, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rules.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rules.confirm(any(), any())).thenReturn(Mono.empty());
+    ReflectionTestUtils.setField(service, "requireCcForVip", true);
+  }
+
+  @Test
+  void tarjetaSeConsultaMientrasLegacySigueEnCurso() {
+    Sinks.Empty<Void> legacy = Sinks.empty();
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(legacy.asMono());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(vip()));
+    when(credits.hasActiveCreditCard("C1")).thenReturn(Mono.just(true));
+    when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .then(() -> verify(credits).hasActiveCreditCard("C1"))
+        .then(legacy::tryEmitEmpty)
+        .expectNextCount(1)
+        .verifyComplete();
+
+    // la elegibilidad se comparte entre reglas, beneficio y alta
+    verify(customers, times(1)).getEligibilityByDocument("DNI", "12345678");
+  }
+
+  @Test
+  void errorLegacy_cortaYCancelaTarjeta() {
+    Sinks.Empty<Void> legacy = Sinks.empty();
+    PublisherProbe<Boolean> card = PublisherProbe.of(Mono.never());
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(legacy.asMono());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(vip()));
+    when(credits.hasActiveCreditCard("C1")).thenReturn(card.mono());
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .then(card::assertWasSubscribed)
+        .then(() -> legacy.tryEmitError(new BusinessException("Cliente PERSONAL ya tiene una cuenta de tipo SAVINGS.")))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertTrue(ex.getMessage().contains("ya tiene una cuenta de tipo SAVINGS"));
+        })
+        .verify();
+
+    card.assertWasCancelled();
+    verifyNoInteractions(repository);
+  }
+
+  @Test
+  void ambasReglasFallan_prevaleceMensajeLegacy() {
+    Sinks.Empty<Void> legacy = Sinks.empty();
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(legacy.asMono());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(vip()));
+    // sin tarjeta: se conoce antes de que terminen las reglas legacy
+    when(credits.hasActiveCreditCard("C1")).thenReturn(Mono.just(false));
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .then(() -> legacy.tryEmitError(new BusinessException("Cliente PERSONAL ya tiene una cuenta de tipo SAVINGS.")))
+        .expectErrorSatisfies(ex -> assertTrue(ex.getMessage().contains("ya tiene una cuenta de tipo SAVINGS")))
+        .verify();
+  }
+
+  @Test
+  void sinClienteActivo_mismoMensajeYSinConsultarTarjeta() {
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class)))
+        .thenAnswer(inv -> inv.<Mono<EligibilityResponse>>getArgument(2).then());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.empty());
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .expectErrorSatisfies(ex -> {
+          assertInstanceOf(BusinessException.class, ex);
+          assertEquals("No existe cliente activo para el documento.", ex.getMessage());
+        })
+        .verify();
+
+    verifyNoInteractions(credits, repository);
+  }
+
+  @Test
+  void altaCancelada_guardaYConfirmaIgualmente() {
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(vip()));
+    when(credits.hasActiveCreditCard("C1")).thenReturn(Mono.just(true));
+    Sinks.One<Account> save = Sinks.one();
+    when(repository.save(any())).thenAnswer(inv -> save.asMono());
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .then(() -> verify(repository).save(any()))
+        .thenCancel()
+        .verify();
+    // el guardado termina después de la cancelación: la cuenta existe y su reserva se confirma
+    save.tryEmitValue(new Account());
+
+    ArgumentCaptor<String> reserved = ArgumentCaptor.forClass(String.class);
+    verify(rules).reserve(eq("12345678"), eq(SAVINGS), eq("PERSONAL"), reserved.capture());
+    verify(rules).confirm("12345678", reserved.getValue());
+    verify(rules, never()).release(any(), any(), any());
+  }
+
+  @Test
+  void altaCancelada_guardadoFallido_devuelveSoloSuReserva() {
+    when(rules.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
+    when(customers.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(vip()));
+    when(credits.hasActiveCreditCard("C1")).thenReturn(Mono.just(true));
+    Sinks.One<Account> save = Sinks.one();
+    when(repository.save(any())).thenAnswer(inv -> save.asMono());
+
+    StepVerifier.create(service.createAccount(vipSavings()))
+        .then(() -> verify(repository).save(any()))
+        .thenCancel()
+        .verify();
+    save.tryEmitError(new IllegalStateException("Mongo caído"));
+
+    // liberación condicionada a la reserva de esta alta, sin tocar las de otras en curso
+    ArgumentCaptor<String> reserved = ArgumentCaptor.forClass(String.class);
+    verify(rules).reserve(eq("12345678"), eq(SAVINGS), eq("PERSONAL"), reserved.capture());
+    verify(rules).release("12345678", "SAVINGS", reserved.getValue());
+    verify(rules, never()).release(any(), any());
+    verify(rules, never()).confirm(any(), any());
+  }
+
+  // ===== Helpers =====
+
+  private static EligibilityResponse vip() {
+    EligibilityResponse elig = new EligibilityResponse();
+    elig.setCustomerId("C1");
+    elig.setType("PERSONAL");
+    elig.setProfile("VIP");
+    return elig;
+  }
+
+  private static AccountRequest vipSavings() {
+    return new AccountRequest()
+        .holderDocumentType(DNI)
+        .holderDocument("12345678")
+        .accountType(SAVINGS)
+        .monthlyMovementLimit(10);
+  }
+}
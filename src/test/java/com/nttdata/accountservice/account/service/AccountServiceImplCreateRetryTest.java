@@ -2,13 +2,15 @@ package com.nttdata.accountservice.account.service;
 
 /*
  * createAccount retry / trySaveWithRetry
- * Cubre reintento tras DuplicateKeyException y éxito final.
+ * Cubre reintento tras DuplicateKeyException y éxito final (con la reserva del cupo confirmada).
  */
 
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -35,12 +37,25 @@ class AccountServiceImplCreateRetryTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rulesService.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.confirm(any(), any())).thenReturn(Mono.empty());
   }
 
   @Test
@@ -54,7 +69,7 @@ class AccountServiceImplCreateRetryTest {
 
     when(customersClient.getEligibilityByDocument("DNI", "12345678"))
         .thenReturn(Mono.just(new EligibilityResponse()));
-    when(rulesService.validateLegacyRules(any(), any(), any()))
+    when(rulesService.validateLegacyRules(any(), any(), any(Mono.class)))
         .thenReturn(Mono.empty());
 
     when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class)))
@@ -71,6 +86,8 @@ class AccountServiceImplCreateRetryTest {
         .verifyComplete();
 
     verify(repository, times(2)).save(any(com.nttdata.accountservice.model.entity.Account.class));
+    verify(rulesService).confirm(eq("12345678"), anyString());
+    verify(rulesService, never()).release(any(), any(), any());
   }
 
   @Test
@@ -83,7 +100,7 @@ class AccountServiceImplCreateRetryTest {
 
     when(customersClient.getEligibilityByDocument("DNI", "87654321"))
         .thenReturn(Mono.just(new EligibilityResponse()));
-    when(rulesService.validateLegacyRules(any(), any(), any()))
+    when(rulesService.validateLegacyRules(any(), any(), any(Mono.class)))
         .thenReturn(Mono.empty());
 
     when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class)))
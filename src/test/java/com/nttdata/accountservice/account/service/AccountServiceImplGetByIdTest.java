@@ -2,12 +2,15 @@ package com.nttdata.accountservice.account.service;
 
 /*
  * getAccountById
- * Cubre: cuenta encontrada y not found.
+ * Cubre: cuenta encontrada y not found; respuesta parcial (?fields=) con proyección y sin
+ * caché, not found y campo desconocido.
  */
 
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -19,6 +22,8 @@ import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
 
+import java.util.*;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -35,12 +40,23 @@ class AccountServiceImplGetByIdTest {
   AccountRulesService rules;
   @Mock
   AccountPolicyService policy;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void init() {
-    service = new AccountServiceImpl(repository, customers, credits, rules, policy);
+    service = new AccountServiceImpl(repository, customers, credits, rules, policy, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // caché de paso: siempre delega en Mongo
+    lenient().when(accountCache.get(anyString(), any())).thenAnswer(inv -> inv.getArgument(1));
+    lenient().when(accountCache.evict(anyString())).thenReturn(Mono.empty());
   }
 
   @Test
@@ -62,4 +78,53 @@ class AccountServiceImplGetByIdTest {
         .expectError(ResponseStatusException.class)
         .verify();
   }
+
+  @Test
+  void getAccountById_fields_proyectaYNoUsaCache() {
+    com.nttdata.accountservice.model.entity.Account e = new com.nttdata.accountservice.model.entity.Account();
+    e.setId("ID123");
+    e.setAccountType("FIXED_TERM");
+    e.setTerm(6);
+    when(repository.findByIdIncluding("ID123", List.of("id", "term", "accountType"))).thenReturn(Mono.just(e));
+
+    StepVerifier.create(service.getAccountById("ID123", "id,term"))
+        .assertNext(r -> {
+          assertEquals("ID123", r.getId());
+          assertEquals(6, r.getTerm());
+          assertNull(r.getAccountType());
+        })
+        .verifyComplete();
+    verify(accountCache, never()).get(anyString(), any());
+    verify(repository, never()).findById(anyString());
+  }
+
+  @Test
+  void getAccountById_fields_404() {
+    when(repository.findByIdIncluding(eq("Z"), anyCollection())).thenReturn(Mono.empty());
+
+    StepVerifier.create(service.getAccountById("Z", "balance"))
+        .expectError(ResponseStatusException.class)
+        .verify();
+  }
+
+  @Test
+  void getAccountById_fieldsDesconocido_illegalArgument() {
+    StepVerifier.create(service.getAccountById("ID123", "id,pin"))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+    verifyNoInteractions(repository);
+  }
+
+  @Test
+  void getAccountsByHolderDocument_fields_proyecta() {
+    com.nttdata.accountservice.model.entity.Account e = new com.nttdata.accountservice.model.entity.Account();
+    e.setId("A1");
+    e.setAccountNumber("123");
+    when(repository.findByHolderDocumentIncluding("12345678", List.of("id", "accountNumber")))
+        .thenReturn(Flux.just(e));
+
+    StepVerifier.create(service.getAccountsByHolderDocument("12345678", "id,accountNumber"))
+        .assertNext(r -> assertEquals("123", r.getAccountNumber()))
+        .verifyComplete();
+  }
 }
@@ -3,6 +3,8 @@ package com.nttdata.accountservice.account.service;
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -29,17 +31,25 @@ class AccountServiceImplGettersTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
   @Test
   void getAccountLimits_404() {
-    when(repository.findById("NOPE")).thenReturn(Mono.empty());
+    when(repository.findLimitsById("NOPE")).thenReturn(Mono.empty());
 
     StepVerifier.create(service.getAccountLimits("NOPE"))
         .expectErrorSatisfies(ex -> assertInstanceOf(ResponseStatusException.class, ex))
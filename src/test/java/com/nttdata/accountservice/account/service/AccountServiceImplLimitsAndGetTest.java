@@ -3,6 +3,8 @@ package com.nttdata.accountservice.account.service;
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -32,12 +34,20 @@ class AccountServiceImplLimitsAndGetTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
   @Test
@@ -51,7 +61,7 @@ class AccountServiceImplLimitsAndGetTest {
     oc.setCount(1);
     acc.setOpsCounter(oc);
 
-    when(repository.findById("A1")).thenReturn(Mono.just(acc));
+    when(repository.findLimitsById("A1")).thenReturn(Mono.just(acc));
 
     StepVerifier.create(service.getAccountLimits("A1"))
         .assertNext(r -> {
@@ -61,12 +71,14 @@ class AccountServiceImplLimitsAndGetTest {
         })
         .verifyComplete();
 
-    verify(repository).findById("A1");
+    // lectura proyectada: el documento completo no se pide
+    verify(repository).findLimitsById("A1");
+    verify(repository, never()).findById("A1");
   }
 
   @Test
   void getAccountLimits_404() {
-    when(repository.findById("X")).thenReturn(Mono.empty());
+    when(repository.findLimitsById("X")).thenReturn(Mono.empty());
 
     StepVerifier.create(service.getAccountLimits("X"))
         .expectErrorSatisfies(ex -> assertInstanceOf(ResponseStatusException.class, ex))
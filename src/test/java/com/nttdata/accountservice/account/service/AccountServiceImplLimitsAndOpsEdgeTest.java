@@ -3,13 +3,14 @@ package com.nttdata.accountservice.account.service;
 /*
  *
  * - getAccountLimits edge cases (contador nulo, mes distinto)
- * - applyBalanceOperation: trim de opIds (>200) y verificación de contador
  */
 
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -40,12 +41,20 @@ class AccountServiceImplLimitsAndOpsEdgeTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
   @Test
@@ -55,7 +64,7 @@ class AccountServiceImplLimitsAndOpsEdgeTest {
     acc.setFreeTransactionsLimit(2);
     acc.setCommissionFee(new BigDecimal("0.99"));
     acc.setOpsCounter(null);
-    when(repository.findById("A1")).thenReturn(Mono.just(acc));
+    when(repository.findLimitsById("A1")).thenReturn(Mono.just(acc));
 
     StepVerifier.create(service.getAccountLimits("A1"))
         .assertNext(r -> {
@@ -76,36 +85,10 @@ class AccountServiceImplLimitsAndOpsEdgeTest {
     oc.setYearMonth(YearMonth.now().minusMonths(1).toString());
     oc.setCount(7);
     acc.setOpsCounter(oc);
-    when(repository.findById("A2")).thenReturn(Mono.just(acc));
+    when(repository.findLimitsById("A2")).thenReturn(Mono.just(acc));
 
     StepVerifier.create(service.getAccountLimits("A2"))
         .assertNext(r -> assertEquals(0, r.getUsedTransactionsThisMonth()))
         .verifyComplete();
   }
-
-  @Test
-  void applyBalanceOperation_opIds_trim_excede200() {
-    com.nttdata.accountservice.model.entity.Account acc = new com.nttdata.accountservice.model.entity.Account();
-    acc.setId("A3");
-    acc.setAccountType("SAVINGS");
-    acc.setBalance(new BigDecimal("100"));
-    acc.setFreeTransactionsLimit(999);
-    acc.setCommissionFee(new BigDecimal("0.10"));
-    ArrayList<String> ids = new ArrayList<>();
-    for (int i = 0; i < 200; i++) ids.add("op-" + i);
-    acc.setOpIds(ids);
-
-    when(repository.findById("A3")).thenReturn(Mono.just(acc));
-    when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class)))
-        .thenAnswer(inv -> Mono.just(inv.getArgument(0)));
-
-    BalanceOperationRequest rq = new BalanceOperationRequest()
-        .operationId("op-201")
-        .type(BalanceOperationType.DEPOSIT)
-        .amount(new BigDecimal("1"));
-
-    StepVerifier.create(service.applyBalanceOperation("A3", rq))
-        .assertNext(BalanceOperationResponse::getApplied)
-        .verifyComplete();
-  }
 }
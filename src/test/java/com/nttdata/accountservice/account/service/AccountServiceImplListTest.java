@@ -2,12 +2,14 @@ package com.nttdata.accountservice.account.service;
 
 /*
  * listAccounts
- * Pruebas de listado básico.
+ * Pruebas de listado básico y paginado por cursor (keyset, filtros, validaciones).
  */
 
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -18,7 +20,10 @@ import org.mockito.junit.jupiter.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
 
+import java.time.*;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,12 +38,20 @@ class AccountServiceImplListTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
   @Test
@@ -58,4 +71,65 @@ class AccountServiceImplListTest {
     verify(repository).findAll();
     verifyNoMoreInteractions(repository);
   }
+
+  @Test
+  void listAccountsPage_hayMas_devuelveCursorDelUltimo() {
+    when(repository.findPage(any(AccountSearchCriteria.class)))
+        .thenReturn(Flux.just(account("A3"), account("A2"), account("A1")));
+
+    StepVerifier.create(service.listAccountsPage(2, null, "SAVINGS", true,
+            LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31)))
+        .assertNext(page -> {
+          assertEquals(2, page.getItems().size());
+          assertEquals("A2", page.getItems().get(1).getId());
+          assertNotNull(page.getNextCursor().get());
+        })
+        .verifyComplete();
+
+    ArgumentCaptor<AccountSearchCriteria> c = ArgumentCaptor.forClass(AccountSearchCriteria.class);
+    verify(repository).findPage(c.capture());
+    // se pide uno más para detectar la página siguiente
+    assertEquals(3, c.getValue().getLimit());
+    assertEquals("SAVINGS", c.getValue().getAccountType());
+    assertTrue(c.getValue().getActive());
+    assertNull(c.getValue().getAfterId());
+  }
+
+  @Test
+  void listAccountsPage_conCursor_ultimaPagina_sinCursorSiguiente() {
+    when(repository.findPage(any(AccountSearchCriteria.class))).thenReturn(Flux.just(account("A1")));
+    when(repository.findPage(argThat(c -> c != null && c.getAfterId() == null)))
+        .thenReturn(Flux.just(account("A3"), account("A2"), account("A1")));
+
+    String next = service.listAccountsPage(2, null, null, null, null, null)
+        .block().getNextCursor().get();
+
+    StepVerifier.create(service.listAccountsPage(2, next, null, null, null, null))
+        .assertNext(page -> {
+          assertEquals(1, page.getItems().size());
+          assertNull(page.getNextCursor().get());
+        })
+        .verifyComplete();
+
+    verify(repository).findPage(argThat(c -> c != null && "A2".equals(c.getAfterId())));
+  }
+
+  @Test
+  void listAccountsPage_parametrosInvalidos_400() {
+    StepVerifier.create(service.listAccountsPage(0, null, null, null, null, null))
+        .expectError(IllegalArgumentException.class).verify();
+    StepVerifier.create(service.listAccountsPage(null, null, null, null,
+            LocalDate.of(2024, 2, 1), LocalDate.of(2024, 1, 1)))
+        .expectError(IllegalArgumentException.class).verify();
+    StepVerifier.create(service.listAccountsPage(null, "%%%", null, null, null, null))
+        .expectErrorMessage("cursor inválido").verify();
+    verifyNoInteractions(repository);
+  }
+
+  private static com.nttdata.accountservice.model.entity.Account account(String id) {
+    com.nttdata.accountservice.model.entity.Account e = new com.nttdata.accountservice.model.entity.Account();
+    e.setId(id);
+    e.setAccountType("SAVINGS");
+    return e;
+  }
 }
@@ -0,0 +1,102 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Movimientos de la cuenta.
+ * Cubre: límite por defecto, límite fuera de rango, cuenta inexistente y mapeo con cursor.
+ */
+
+import com.nttdata.accountservice.integration.credits.*;
+import com.nttdata.accountservice.integration.customers.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
+import com.nttdata.accountservice.service.impl.*;
+import com.nttdata.accountservice.service.policy.*;
+import com.nttdata.accountservice.service.rules.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AccountServiceImplMovementsTest {
+  @Mock
+  AccountRepository repository;
+  @Mock
+  CustomersClient customersClient;
+  @Mock
+  CreditsClient creditsClient;
+  @Mock
+  AccountRulesService rulesService;
+  @Mock
+  AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
+
+  AccountServiceImpl service;
+
+  @BeforeEach
+  void setUp() {
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
+  }
+
+  @Test
+  void movimientos_ok_limitePorDefecto_conCursor() {
+    Movement m = new Movement();
+    m.setId("A1:op-1");
+    m.setTransactionId("op-1");
+    m.setDate(Instant.ofEpochMilli(1000));
+    m.setType("withdrawal");
+    m.setAmount(new BigDecimal("-20"));
+    m.setCommissionApplied(BigDecimal.ZERO);
+    when(repository.existsById("A1")).thenReturn(Mono.just(true));
+    when(movementLedger.page("A1", null, 50)).thenReturn(Flux.just(m));
+
+    StepVerifier.create(service.listAccountMovements("A1", null, null))
+        .assertNext(mv -> {
+          assertEquals("op-1", mv.getTransactionId());
+          assertEquals(AccountMovement.TypeEnum.WITHDRAWAL, mv.getType());
+          assertEquals(0, new BigDecimal("-20").compareTo(mv.getAmount()));
+          assertEquals(MovementLedger.cursorOf(m), mv.getCursor());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void movimientos_limiteFueraDeRango_400() {
+    StepVerifier.create(service.listAccountMovements("A1", null, 501))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+    verifyNoInteractions(repository, movementLedger);
+  }
+
+  @Test
+  void movimientos_cuentaNoExiste_404() {
+    when(repository.existsById("NOPE")).thenReturn(Mono.just(false));
+
+    StepVerifier.create(service.listAccountMovements("NOPE", null, 10))
+        .expectErrorSatisfies(ex -> assertEquals(HttpStatus.NOT_FOUND,
+            ((ResponseStatusException) ex).getStatus()))
+        .verify();
+    verify(movementLedger, never()).page(anyString(), any(), anyInt());
+  }
+}
@@ -9,6 +9,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -36,12 +38,25 @@ class AccountServiceImplRetryAndBenefitsFlagsTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rulesService.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.confirm(any(), any())).thenReturn(Mono.empty());
   }
 
   @Test
@@ -56,7 +71,7 @@ class AccountServiceImplRetryAndBenefitsFlagsTest {
     elig.setType("PERSONAL");
     elig.setProfile("STANDARD");
     when(customersClient.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
-    when(rulesService.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rulesService.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
 
     when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class)))
         .thenAnswer(inv -> Mono.error(new DuplicateKeyException("dup1")))
@@ -67,6 +82,12 @@ class AccountServiceImplRetryAndBenefitsFlagsTest {
     StepVerifier.create(service.createAccount(req))
         .expectError(DuplicateKeyException.class)
         .verify();
+    // el cupo reservado en el resumen del titular se devuelve
+    ArgumentCaptor<String> reserved = ArgumentCaptor.forClass(String.class);
+    verify(rulesService).reserve(eq("12345678"), eq(AccountRequest.AccountTypeEnum.SAVINGS), eq("PERSONAL"),
+        reserved.capture());
+    verify(rulesService).release("12345678", "SAVINGS", reserved.getValue());
+    verify(rulesService, never()).confirm(any(), any());
   }
 
   @Test
@@ -87,7 +108,7 @@ class AccountServiceImplRetryAndBenefitsFlagsTest {
     elig.setCustomerId("C1");
 
     when(customersClient.getEligibilityByDocument("DNI", "12345678")).thenReturn(Mono.just(elig));
-    when(rulesService.validateLegacyRules(anyString(), any(), anyString())).thenReturn(Mono.empty());
+    when(rulesService.validateLegacyRules(anyString(), any(), any(Mono.class))).thenReturn(Mono.empty());
     when(repository.save(any())).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
 
     StepVerifier.create(service.createAccount(req)).expectNextCount(1).verifyComplete();
@@ -2,13 +2,17 @@ package com.nttdata.accountservice.account.service;
 
 /*
  *updateAccount & deleteAccount
- * Cubre: actualización exitosa, protección de campos, not found en update/delete.
+ * Cubre: actualización exitosa ($set solo de los campos editables, invalida la caché), protección de campos,
+ * not found en update/delete,
+ * cupo del resumen del titular devuelto en la baja.
  */
 
 import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -16,6 +20,7 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.*;
 import org.mockito.*;
 import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.web.server.*;
 import reactor.core.publisher.*;
 import reactor.test.*;
@@ -35,12 +40,29 @@ class AccountServiceImplUpdateAndDeleteTest {
   AccountRulesService rulesService;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void setUp() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, rulesService, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
+    // resumen del titular: la reserva y la liberación del cupo siempre pasan
+    lenient().when(rulesService.reserve(any(), any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.release(any(), any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.confirm(any(), any())).thenReturn(Mono.empty());
+    lenient().when(rulesService.move(any(), any(), any(), any())).thenReturn(Mono.empty());
+    // caché de paso: siempre delega en Mongo
+    lenient().when(accountCache.get(anyString(), any())).thenAnswer(inv -> inv.getArgument(1));
+    lenient().when(accountCache.evict(anyString())).thenReturn(Mono.empty());
   }
 
   @Test
@@ -48,9 +70,10 @@ class AccountServiceImplUpdateAndDeleteTest {
     com.nttdata.accountservice.model.entity.Account existing = new com.nttdata.accountservice.model.entity.Account();
     existing.setId("A1");
     existing.setMonthlyMovementLimit(5);
+    existing.setBalance(new java.math.BigDecimal("100"));
 
     when(repository.findById("A1")).thenReturn(Mono.just(existing));
-    when(repository.save(any(com.nttdata.accountservice.model.entity.Account.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+    when(repository.updateFields(eq("A1"), any())).thenAnswer(inv -> Mono.just(existing));
 
     AccountRequest req = new AccountRequest()
         .holderDocument("12345678")
@@ -67,9 +90,17 @@ class AccountServiceImplUpdateAndDeleteTest {
         })
         .verifyComplete();
 
-    ArgumentCaptor<com.nttdata.accountservice.model.entity.Account> captor = ArgumentCaptor.forClass(com.nttdata.accountservice.model.entity.Account.class);
-    verify(repository).save(captor.capture());
-    assertEquals(9, captor.getValue().getMonthlyMovementLimit());
+    ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+    verify(repository).updateFields(eq("A1"), captor.capture());
+    org.bson.Document set = (org.bson.Document) captor.getValue().getUpdateObject().get("$set");
+    assertEquals(9, set.get("monthlyMovementLimit"));
+    // no reemplaza el documento: saldo, pendientes y marcas de lote no se tocan
+    assertFalse(set.containsKey("balance"));
+    assertFalse(set.containsKey("pendingMovements"));
+    assertFalse(set.containsKey("batchMarks"));
+    verify(repository, never()).save(any());
+    // la caché se invalida (no se guarda la respuesta, que podría llevar un saldo ya superado)
+    verify(accountCache).evict("A1");
   }
 
   @Test
@@ -91,11 +122,15 @@ class AccountServiceImplUpdateAndDeleteTest {
   void deleteAccount_ok() {
     com.nttdata.accountservice.model.entity.Account e = new com.nttdata.accountservice.model.entity.Account();
     e.setId("A1");
+    e.setHolderDocument("12345678");
+    e.setAccountType("SAVINGS");
     when(repository.findById("A1")).thenReturn(Mono.just(e));
     when(repository.deleteById("A1")).thenReturn(Mono.empty());
 
     StepVerifier.create(service.deleteAccount("A1")).verifyComplete();
     verify(repository).deleteById("A1");
+    verify(rulesService).release("12345678", "SAVINGS");
+    verify(accountCache).evict("A1");
   }
 
   @Test
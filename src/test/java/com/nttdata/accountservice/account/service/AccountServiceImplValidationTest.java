@@ -10,6 +10,8 @@ import com.nttdata.accountservice.integration.credits.*;
 import com.nttdata.accountservice.integration.customers.*;
 import com.nttdata.accountservice.model.*;
 import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import com.nttdata.accountservice.service.cache.*;
 import com.nttdata.accountservice.service.impl.*;
 import com.nttdata.accountservice.service.policy.*;
 import com.nttdata.accountservice.service.rules.*;
@@ -40,12 +42,20 @@ class AccountServiceImplValidationTest {
   AccountRulesService accountRules;
   @Mock
   AccountPolicyService policyService;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceBatchProcessor batchProcessor;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  AccountCache accountCache;
 
   AccountServiceImpl service;
 
   @BeforeEach
   void init() {
-    service = new AccountServiceImpl(repository, customersClient, creditsClient, accountRules, policyService);
+    service = new AccountServiceImpl(repository, customersClient, creditsClient, accountRules, policyService, balanceEngine, batchProcessor, movementLedger, accountCache);
   }
 
 
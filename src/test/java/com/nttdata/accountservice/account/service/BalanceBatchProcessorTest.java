@@ -0,0 +1,279 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Lote de operaciones de saldo (bulkWrite).
+ * Cubre: agrupación por cuenta con orden preservado, un find y un bulkWrite por bloque,
+ * reservas y respuestas guardadas en el almacén de idempotencia, movimientos pendientes en la misma
+ * escritura que el saldo y copiados después al libro (o pendientes si falla la copia), rechazos por
+ * validación/cuenta inexistente/saldo, repeticiones previas (en curso: recuperación por el motor) y dentro del lote,
+ * reaplicación por el motor ante conflicto y límite de tamaño.
+ */
+
+import com.mongodb.bulk.*;
+import com.mongodb.client.model.*;
+import com.mongodb.reactivestreams.client.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.service.balance.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.test.util.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceBatchProcessorTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  AccountBalanceEngine balanceEngine;
+  @Mock
+  BalanceIdempotencyStore idempotencyStore;
+  @Mock
+  MovementLedger movementLedger;
+  @Mock
+  MongoCollection<Document> collection;
+
+  BalanceBatchProcessor processor;
+
+  @BeforeEach
+  void setUp() {
+    processor = new BalanceBatchProcessor(mongoTemplate, balanceEngine, idempotencyStore, movementLedger);
+    lenient().when(movementLedger.recordAll(anyList())).thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.claimAll(anyList())).thenReturn(Mono.just(Map.of()));
+    lenient().when(idempotencyStore.completeAll(anyMap())).thenReturn(Mono.empty());
+    lenient().when(idempotencyStore.releaseAll(anyCollection())).thenReturn(Mono.empty());
+    lenient().when(movementLedger.clearPending(anyCollection(), anyCollection())).thenReturn(Mono.empty());
+  }
+
+  @Test
+  void lote_agrupaPorCuenta_unFindYUnBulkWrite() {
+    stubBulk(2);
+    when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+        .thenReturn(Flux.just(account("A1", "100", 0, 1), account("A2", "50", 99, 0)));
+
+    List<BalanceOperationBatchItem> items = List.of(
+        item("A1", "op-1", BalanceOperationType.DEPOSIT, "10"),
+        item("A2", "op-2", BalanceOperationType.WITHDRAWAL, "20"),
+        item("A1", "op-3", BalanceOperationType.WITHDRAWAL, "30"));
+
+    StepVerifier.create(processor.process(items))
+        .assertNext(results -> {
+          assertEquals(3, results.size());
+          assertEquals("op-1", results.get(0).getOperationId());
+          assertEquals(BalanceOperationBatchResult.StatusEnum.APPLIED, results.get(0).getStatus());
+          assertEquals(0, new BigDecimal("110").compareTo(results.get(0).getResult().getNewBalance()));
+          // A1 sin operaciones gratis: cada operación cobra comisión
+          assertEquals(0, new BigDecimal("1.50").compareTo(results.get(0).getResult().getCommissionApplied()));
+          assertEquals(0, new BigDecimal("30").compareTo(results.get(1).getResult().getNewBalance()));
+          // la segunda operación de A1 ve el saldo de la primera
+          assertEquals(0, new BigDecimal("80").compareTo(results.get(2).getResult().getNewBalance()));
+        })
+        .verifyComplete();
+
+    verify(mongoTemplate, times(1)).find(any(Query.class), eq(Account.class));
+    List<UpdateOneModel<Document>> models = captureModels();
+    assertEquals(2, models.size());
+    Document filterA1 = (Document) models.get(0).getFilter();
+    assertEquals(new Decimal128(new BigDecimal("100")), filterA1.get("balance"));
+    assertEquals(1, filterA1.get("opsCounter.count"));
+    // opIds heredado: las operaciones del bloque no deben figurar aún en la cuenta
+    assertEquals(new Document("$nin", List.of("op-1", "op-3")), filterA1.get("opIds"));
+    Document incA1 = (Document) ((Document) models.get(0).getUpdate()).get("$inc");
+    assertEquals(new Decimal128(new BigDecimal("-20")), incA1.get("balance"));
+    assertEquals(2, incA1.get("opsCounter.count"));
+    // movimientos en la misma escritura que el saldo de la cuenta
+    Document push = (Document) ((Document) models.get(0).getUpdate()).get("$push");
+    assertTrue(push.containsKey("batchMarks"));
+    List<?> pending = (List<?>) ((Document) push.get("pendingMovements")).get("$each");
+    assertEquals(2, pending.size());
+    assertEquals("A1:op-3", ((Document) pending.get(1)).get("_id"));
+    verifyNoInteractions(balanceEngine);
+
+    // una reserva por operación; movimientos y respuestas guardados en un solo paso cada uno
+    verify(idempotencyStore).claimAll(argThat(claims -> claims.size() == 3));
+    verify(movementLedger).recordAll(argThat(movements -> movements.size() == 3
+        && new BigDecimal("-30").compareTo(movements.get(1).getAmount()) == 0
+        && "withdrawal".equals(movements.get(1).getType())));
+    verify(idempotencyStore).completeAll(argThat(responses -> responses.size() == 3
+        && new BigDecimal("80").compareTo(responses.get("A1:op-3").getNewBalance()) == 0));
+    verify(movementLedger).clearPending(List.of("A1", "A2"), Set.of("A1:op-1", "A2:op-2", "A1:op-3"));
+  }
+
+  @Test
+  void lote_fallaLaCopiaDeMovimientos_respondeAplicadoYQuedanPendientes() {
+    stubBulk(1);
+    when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+        .thenReturn(Flux.just(account("A1", "100", 99, 0)));
+    when(movementLedger.recordAll(anyList())).thenReturn(Mono.error(new IllegalStateException("caído")));
+
+    StepVerifier.create(processor.process(List.of(item("A1", "op-1", BalanceOperationType.DEPOSIT, "10"))))
+        .assertNext(results -> assertEquals(BalanceOperationBatchResult.StatusEnum.APPLIED,
+            results.get(0).getStatus()))
+        .verifyComplete();
+
+    verify(idempotencyStore, never()).completeAll(anyMap());
+    verify(movementLedger, never()).clearPending(anyCollection(), anyCollection());
+    verify(idempotencyStore, never()).releaseAll(argThat(keys -> !keys.isEmpty()));
+  }
+
+  @Test
+  void lote_reservaEnCurso_recuperaPorElMotor() {
+    BalanceOperationRecord running = BalanceIdempotencyStore.pending("A1", "op-run");
+    when(idempotencyStore.claimAll(anyList())).thenReturn(Mono.just(Map.of(running.getId(), running)));
+    when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+        .thenReturn(Flux.just(account("A1", "10", 99, 0)));
+    when(balanceEngine.resume(eq("A1"), argThat(op -> "op-run".equals(op.getOperationId())), eq(running)))
+        .thenReturn(Mono.just(
+        new BalanceOperationResponse().applied(true).newBalance(new BigDecimal("15")).message("OK (recuperada)")));
+
+    StepVerifier.create(processor.process(List.of(item("A1", "op-run", BalanceOperationType.DEPOSIT, "5"))))
+        .assertNext(results -> {
+          assertEquals(BalanceOperationBatchResult.StatusEnum.IDEMPOTENT, results.get(0).getStatus());
+          assertEquals("OK (recuperada)", results.get(0).getResult().getMessage());
+        })
+        .verifyComplete();
+    verify(collection, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+
+  @Test
+  void lote_rechazosEIdempotencia_porOperacion() {
+    stubBulk(1);
+    BalanceOperationRecord old = BalanceIdempotencyStore.pending("A1", "op-old");
+    old.setStatus(BalanceOperationRecord.COMPLETED);
+    old.setApplied(true);
+    old.setNewBalance(new BigDecimal("15"));
+    old.setCommissionApplied(BigDecimal.ZERO);
+    old.setMessage("OK");
+    when(idempotencyStore.claimAll(anyList())).thenReturn(Mono.just(Map.of(old.getId(), old)));
+    when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+        .thenReturn(Flux.just(account("A1", "10", 99, 0)));
+
+    List<BalanceOperationBatchItem> items = List.of(
+        item("A1", "op-old", BalanceOperationType.DEPOSIT, "5"),
+        item("A1", "op-big", BalanceOperationType.WITHDRAWAL, "50"),
+        item("NOPE", "op-x", BalanceOperationType.DEPOSIT, "5"),
+        item("A1", "", BalanceOperationType.DEPOSIT, "5"),
+        item("A1", "op-ok", BalanceOperationType.DEPOSIT, "5"),
+        item("A1", "op-ok", BalanceOperationType.DEPOSIT, "5"));
+
+    StepVerifier.create(processor.process(items))
+        .assertNext(results -> {
+          assertEquals(BalanceOperationBatchResult.StatusEnum.IDEMPOTENT, results.get(0).getStatus());
+          // respuesta original, no el saldo actual
+          assertEquals(0, new BigDecimal("15").compareTo(results.get(0).getResult().getNewBalance()));
+          assertEquals(BalanceOperationBatchResult.StatusEnum.REJECTED, results.get(1).getStatus());
+          assertEquals(422, results.get(1).getError().getStatus());
+          assertEquals(404, results.get(2).getError().getStatus());
+          assertEquals(400, results.get(3).getError().getStatus());
+          assertEquals(BalanceOperationBatchResult.StatusEnum.APPLIED, results.get(4).getStatus());
+          assertEquals(BalanceOperationBatchResult.StatusEnum.IDEMPOTENT, results.get(5).getStatus());
+          assertSame(results.get(4).getResult(), results.get(5).getResult());
+        })
+        .verifyComplete();
+
+    assertEquals(1, captureModels().size());
+    // saldo insuficiente y cuenta inexistente liberan su reserva
+    verify(idempotencyStore).releaseAll(argThat(keys -> keys.containsAll(List.of("A1:op-big", "NOPE:op-x"))));
+  }
+
+  @Test
+  void lote_conflicto_reaplicaConMotor() {
+    stubBulk(0);
+    when(mongoTemplate.find(any(Query.class), eq(Account.class)))
+        .thenReturn(Flux.just(account("A1", "100", 99, 0)))
+        // la cuenta no lleva la marca del lote: la actualización no se aplicó
+        .thenReturn(Flux.empty());
+    when(balanceEngine.apply(eq("A1"), any(BalanceOperationRequest.class)))
+        .thenReturn(Mono.just(new BalanceOperationResponse().applied(true)
+            .newBalance(new BigDecimal("80")).commissionApplied(BigDecimal.ZERO).message("OK")));
+
+    StepVerifier.create(processor.process(List.of(
+            item("A1", "op-1", BalanceOperationType.DEPOSIT, "10"))))
+        .assertNext(results -> {
+          assertEquals(BalanceOperationBatchResult.StatusEnum.APPLIED, results.get(0).getStatus());
+          assertEquals(0, new BigDecimal("80").compareTo(results.get(0).getResult().getNewBalance()));
+        })
+        .verifyComplete();
+
+    verify(balanceEngine).apply(eq("A1"), any(BalanceOperationRequest.class));
+    // la reserva del lote se libera antes de que el motor la tome de nuevo
+    InOrder order = inOrder(idempotencyStore, balanceEngine);
+    order.verify(idempotencyStore).releaseAll(argThat(keys -> keys.contains("A1:op-1")));
+    order.verify(balanceEngine).apply(eq("A1"), any(BalanceOperationRequest.class));
+  }
+
+  @Test
+  void lote_superaMaximo_error() {
+    ReflectionTestUtils.setField(processor, "maxItems", 1);
+
+    StepVerifier.create(processor.process(List.of(
+            item("A1", "op-1", BalanceOperationType.DEPOSIT, "1"),
+            item("A1", "op-2", BalanceOperationType.DEPOSIT, "1"))))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+    verifyNoInteractions(mongoTemplate);
+  }
+
+  // ===== Helpers =====
+
+  private void stubBulk(int matched) {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(Account.class)).thenReturn("accounts");
+    when(mongoTemplate.getCollection("accounts")).thenReturn(Mono.just(collection));
+    when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, matched, 0, matched, List.of())));
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<UpdateOneModel<Document>> captureModels() {
+    ArgumentCaptor<List<UpdateOneModel<Document>>> models = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<BulkWriteOptions> options = ArgumentCaptor.forClass(BulkWriteOptions.class);
+    verify(collection).bulkWrite(models.capture(), options.capture());
+    assertFalse(options.getValue().isOrdered());
+    return models.getValue();
+  }
+
+  private static BalanceOperationBatchItem item(String accountId, String opId,
+                                                BalanceOperationType type, String amount) {
+    return new BalanceOperationBatchItem().accountId(accountId).operation(
+        new BalanceOperationRequest().operationId(opId).type(type).amount(new BigDecimal(amount)));
+  }
+
+  private static Account account(String id, String balance, int free, int count) {
+    Account acc = new Account();
+    acc.setId(id);
+    acc.setAccountType("SAVINGS");
+    acc.setBalance(new BigDecimal(balance));
+    acc.setFreeTransactionsLimit(free);
+    acc.setCommissionFee(new BigDecimal("1.50"));
+    OpsCounter oc = new OpsCounter();
+    oc.setYearMonth(YearMonth.now().toString());
+    oc.setCount(count);
+    acc.setOpsCounter(oc);
+    return acc;
+  }
+}
@@ -0,0 +1,217 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Almacén de idempotencia de operaciones de saldo.
+ * Cubre: reserva nueva y existente, carrera de upserts (clave duplicada), registro expirado entre
+ * el upsert y la lectura (se vuelve a reservar), reserva en bloque
+ * devolviendo solo registros previos, toma de una reserva en curso con el lease vencido,
+ * recuperación que recrea la reserva liberada sin pisar la completada, respuesta original en
+ * repeticiones y reserva en curso.
+ */
+
+import com.mongodb.*;
+import com.mongodb.bulk.*;
+import com.mongodb.client.model.*;
+import com.mongodb.client.result.*;
+import com.mongodb.reactivestreams.client.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.service.balance.*;
+import org.bson.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BalanceIdempotencyStoreTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  MongoCollection<Document> collection;
+
+  BalanceIdempotencyStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new BalanceIdempotencyStore(mongoTemplate);
+  }
+
+  @Test
+  void claim_nueva_vacio() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(BalanceOperationRecord.class))).thenReturn(Mono.empty());
+
+    StepVerifier.create(store.claim("A1", "op-1"))
+        .assertNext(previous -> assertTrue(previous.isEmpty()))
+        .verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<FindAndModifyOptions> o = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+    verify(mongoTemplate).findAndModify(q.capture(), any(UpdateDefinition.class), o.capture(),
+        eq(BalanceOperationRecord.class));
+    assertEquals("A1:op-1", q.getValue().getQueryObject().get("id"));
+    assertTrue(o.getValue().isUpsert());
+    assertFalse(o.getValue().isReturnNew());
+  }
+
+  @Test
+  void claim_carreraDeUpserts_devuelveRegistroExistente() {
+    BalanceOperationRecord record = completed("A1", "op-1", "50");
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(BalanceOperationRecord.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("dup")));
+    when(mongoTemplate.findById("A1:op-1", BalanceOperationRecord.class)).thenReturn(Mono.just(record));
+
+    StepVerifier.create(store.claim("A1", "op-1"))
+        .assertNext(previous -> assertSame(record, previous.orElseThrow()))
+        .verifyComplete();
+  }
+
+  @Test
+  void claim_carreraConRegistroExpirado_vuelveAReservar() {
+    when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(BalanceOperationRecord.class)))
+        .thenReturn(Mono.error(new DuplicateKeyException("dup")))
+        .thenReturn(Mono.empty());
+    when(mongoTemplate.findById("A1:op-1", BalanceOperationRecord.class)).thenReturn(Mono.empty());
+
+    StepVerifier.create(store.claim("A1", "op-1"))
+        .assertNext(previous -> assertTrue(previous.isEmpty()))
+        .verifyComplete();
+
+    verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+        any(FindAndModifyOptions.class), eq(BalanceOperationRecord.class));
+  }
+
+  @Test
+  void claimAll_devuelveSoloRegistrosPrevios() {
+    stubCollection();
+    BalanceOperationRecord old = completed("A1", "op-old", "10");
+    when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 1, 0, 0,
+            List.of(new BulkWriteUpsert(1, new BsonString("A1:op-new"))))));
+    when(mongoTemplate.find(any(Query.class), eq(BalanceOperationRecord.class)))
+        .thenReturn(Flux.just(old));
+
+    StepVerifier.create(store.claimAll(List.of(
+            BalanceIdempotencyStore.pending("A1", "op-old"),
+            BalanceIdempotencyStore.pending("A1", "op-new"))))
+        .assertNext(previous -> {
+          assertEquals(Set.of("A1:op-old"), previous.keySet());
+        })
+        .verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UpdateOneModel<Document>>> models = ArgumentCaptor.forClass(List.class);
+    verify(collection).bulkWrite(models.capture(), any(BulkWriteOptions.class));
+    assertTrue(models.getValue().get(0).getOptions().isUpsert());
+    assertTrue(((Document) models.getValue().get(0).getUpdate()).containsKey("$setOnInsert"));
+  }
+
+  @Test
+  void takeOver_soloReservaEnCursoConLeaseVencido() {
+    when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(BalanceOperationRecord.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+    StepVerifier.create(store.takeOver("A1", "op-1")).expectNext(true).verifyComplete();
+    StepVerifier.create(store.takeOver("A1", "op-1")).expectNext(false).verifyComplete();
+
+    ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+    ArgumentCaptor<UpdateDefinition> u = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate, times(2)).updateFirst(q.capture(), u.capture(), eq(BalanceOperationRecord.class));
+    Document filter = q.getValue().getQueryObject();
+    assertEquals("A1:op-1", filter.get("id"));
+    assertEquals(BalanceOperationRecord.PENDING, filter.get("status"));
+    Instant cutoff = (Instant) ((Document) filter.get("createdAt")).get("$lte");
+    assertTrue(cutoff.isBefore(Instant.now().minusSeconds(29)));
+    // el lease y el TTL vuelven a correr desde la toma
+    assertTrue(((Document) u.getValue().getUpdateObject().get("$set")).containsKey("createdAt"));
+  }
+
+  @Test
+  void completePending_recreaLaReservaLiberadaYToleraLaCompletada() {
+    stubCollection();
+    when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.error(new MongoBulkWriteException(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of()),
+            List.of(new BulkWriteError(11000, "dup", new BsonDocument(), 0)), null, new ServerAddress(),
+            Set.of())));
+
+    StepVerifier.create(store.completePending(Map.of("A1:op:1", new BalanceOperationResponse()
+            .applied(true).newBalance(BigDecimal.TEN).commissionApplied(BigDecimal.ZERO).message("OK (recuperada)"))))
+        .verifyComplete();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UpdateOneModel<Document>>> models = ArgumentCaptor.forClass(List.class);
+    verify(collection).bulkWrite(models.capture(), any(BulkWriteOptions.class));
+    UpdateOneModel<Document> model = models.getValue().get(0);
+    assertTrue(model.getOptions().isUpsert());
+    assertEquals(BalanceOperationRecord.PENDING, ((Document) model.getFilter()).get("status"));
+    Document onInsert = (Document) ((Document) model.getUpdate()).get("$setOnInsert");
+    assertEquals("A1", onInsert.get("accountId"));
+    assertEquals("op:1", onInsert.get("operationId"));
+    assertTrue(onInsert.containsKey("createdAt"));
+  }
+
+  @Test
+  void replay_completada_respuestaOriginal() {
+    StepVerifier.create(BalanceIdempotencyStore.replay(completed("A1", "op-1", "75")))
+        .assertNext(res -> {
+          assertTrue(res.getApplied());
+          assertEquals(0, new BigDecimal("75").compareTo(res.getNewBalance()));
+          assertEquals("OK", res.getMessage());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  void replay_enCurso_conflicto() {
+    StepVerifier.create(BalanceIdempotencyStore.replay(BalanceIdempotencyStore.pending("A1", "op-1")))
+        .expectErrorSatisfies(ex -> assertEquals(HttpStatus.CONFLICT,
+            ((ResponseStatusException) ex).getStatus()))
+        .verify();
+  }
+
+  // ===== Helpers =====
+
+  private void stubCollection() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter =
+        new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(BalanceOperationRecord.class)).thenReturn("balance_operations");
+    when(mongoTemplate.getCollection("balance_operations")).thenReturn(Mono.just(collection));
+  }
+
+  private static BalanceOperationRecord completed(String accountId, String opId, String balance) {
+    BalanceOperationRecord record = BalanceIdempotencyStore.pending(accountId, opId);
+    record.setStatus(BalanceOperationRecord.COMPLETED);
+    record.setApplied(true);
+    record.setNewBalance(new BigDecimal(balance));
+    record.setCommissionApplied(BigDecimal.ZERO);
+    record.setMessage("OK");
+    return record;
+  }
+}
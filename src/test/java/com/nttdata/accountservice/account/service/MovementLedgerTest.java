@@ -0,0 +1,177 @@
+package com.nttdata.accountservice.account.service;
+
+/*
+ * Libro de movimientos.
+ * Cubre: construcción del movimiento (tipo y monto con signo), escritura idempotente por _id,
+ * copia de pendientes sin pisar movimientos existentes ($setOnInsert), limpieza de
+ * pendingMovements en las cuentas, primera página y páginas siguientes por keyset con cursor opaco, y cursor inválido.
+ */
+
+import com.mongodb.bulk.*;
+import com.mongodb.client.model.*;
+import com.mongodb.client.result.*;
+import com.mongodb.reactivestreams.client.*;
+import com.nttdata.accountservice.model.*;
+import com.nttdata.accountservice.model.entity.*;
+import com.nttdata.accountservice.repository.*;
+import com.nttdata.accountservice.service.balance.*;
+import org.bson.*;
+import org.bson.types.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.*;
+import org.mockito.*;
+import org.mockito.junit.jupiter.*;
+import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.*;
+import org.springframework.data.mongodb.core.convert.*;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MovementLedgerTest {
+  @Mock
+  ReactiveMongoTemplate mongoTemplate;
+  @Mock
+  MovementRepository movementRepository;
+  @Mock
+  MongoCollection<Document> collection;
+
+  MovementLedger ledger;
+
+  @BeforeEach
+  void setUp() {
+    ledger = new MovementLedger(mongoTemplate, movementRepository);
+  }
+
+  @Test
+  void movement_transferOut_montoNegativoYTipoTransfer() {
+    Movement m = MovementLedger.movement("A1",
+        op("op-1", BalanceOperationType.TRANSFER_OUT, "25"),
+        new BalanceOperationResponse().applied(true).commissionApplied(new BigDecimal("1.50")));
+
+    assertEquals("A1:op-1", m.getId());
+    assertEquals("op-1", m.getTransactionId());
+    assertEquals("transfer", m.getType());
+    assertEquals(0, new BigDecimal("-25").compareTo(m.getAmount()));
+    assertEquals(0, new BigDecimal("1.50").compareTo(m.getCommissionApplied()));
+    assertEquals(0, m.getDate().getNano() % 1_000_000);
+  }
+
+  @Test
+  void record_guardaConIdDeterminista() {
+    when(movementRepository.save(any(Movement.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+    StepVerifier.create(ledger.record(MovementLedger.movement("A1", op("op-2", BalanceOperationType.DEPOSIT, "10"),
+            new BalanceOperationResponse().commissionApplied(BigDecimal.ZERO))))
+        .verifyComplete();
+
+    verify(movementRepository).save(argThat(m -> "A1:op-2".equals(m.getId())
+        && "deposit".equals(m.getType())));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void recordIfAbsent_upsertConSetOnInsertSinPisarExistentes() {
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(Movement.class)).thenReturn("account_movements");
+    when(mongoTemplate.getCollection("account_movements")).thenReturn(Mono.just(collection));
+    when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+        .thenReturn(Mono.just(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of())));
+    Movement m = movement("A1:op-3", 3000);
+    m.setAmount(new BigDecimal("-5"));
+
+    StepVerifier.create(ledger.recordIfAbsent(List.of(m))).verifyComplete();
+
+    ArgumentCaptor<List<UpdateOneModel<Document>>> models = ArgumentCaptor.forClass(List.class);
+    verify(collection).bulkWrite(models.capture(), any(BulkWriteOptions.class));
+    UpdateOneModel<Document> model = models.getValue().get(0);
+    assertEquals(new Document("_id", "A1:op-3"), model.getFilter());
+    assertTrue(model.getOptions().isUpsert());
+    Document insert = (Document) ((Document) model.getUpdate()).get("$setOnInsert");
+    assertFalse(insert.containsKey("_id"));
+    assertEquals(new Decimal128(new BigDecimal("-5")), insert.get("amount"));
+  }
+
+  @Test
+  void clearPending_quitaLosMovimientosDeLasCuentas() {
+    when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(Account.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+
+    StepVerifier.create(ledger.clearPending(List.of("A1"), List.of("A1:op-1"))).verifyComplete();
+    StepVerifier.create(ledger.clearPending(List.of("A1"), List.of())).verifyComplete();
+
+    ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+    verify(mongoTemplate, times(1)).updateMulti(
+        argThat(q -> q.getQueryObject().toJson().contains("A1")), update.capture(), eq(Account.class));
+    Document pull = (Document) update.getValue().getUpdateObject().get("$pull");
+    assertTrue(pull.containsKey(MovementLedger.PENDING));
+  }
+
+  @Test
+  void page_sinCursor_primeraPaginaOrdenadaPorFechaDesc() {
+    when(movementRepository.findByAccountId(eq("A1"), any(Pageable.class)))
+        .thenReturn(Flux.just(movement("A1:op-2", 2000), movement("A1:op-1", 1000)));
+
+    StepVerifier.create(ledger.page("A1", null, 2))
+        .expectNextCount(2)
+        .verifyComplete();
+
+    ArgumentCaptor<Pageable> page = ArgumentCaptor.forClass(Pageable.class);
+    verify(movementRepository).findByAccountId(eq("A1"), page.capture());
+    assertEquals(2, page.getValue().getPageSize());
+    assertEquals(0, page.getValue().getOffset());
+    assertEquals(Sort.Direction.DESC, page.getValue().getSort().getOrderFor("date").getDirection());
+  }
+
+  @Test
+  void page_conCursor_continuaDespuesDelUltimo() {
+    Movement last = movement("A1:op-7", 1_700_000_000_123L);
+    when(movementRepository.findPageBefore(eq("A1"), any(Instant.class), anyString(), any(Pageable.class)))
+        .thenReturn(Flux.empty());
+
+    StepVerifier.create(ledger.page("A1", MovementLedger.cursorOf(last), 50))
+        .verifyComplete();
+
+    verify(movementRepository).findPageBefore(eq("A1"),
+        eq(Instant.ofEpochMilli(1_700_000_000_123L)), eq("A1:op-7"), any(Pageable.class));
+    verify(movementRepository, never()).findByAccountId(anyString(), any(Pageable.class));
+  }
+
+  @Test
+  void page_cursorInvalido_badRequest() {
+    StepVerifier.create(ledger.page("A1", "no-es-un-cursor", 10))
+        .expectError(IllegalArgumentException.class)
+        .verify();
+    verifyNoInteractions(movementRepository);
+  }
+
+  // ===== Helpers =====
+
+  private static BalanceOperationRequest op(String id, BalanceOperationType type, String amount) {
+    return new BalanceOperationRequest().operationId(id).type(type).amount(new BigDecimal(amount));
+  }
+
+  private static Movement movement(String id, long epochMillis) {
+    Movement m = new Movement();
+    m.setId(id);
+    m.setAccountId("A1");
+    m.setDate(Instant.ofEpochMilli(epochMillis));
+    return m;
+  }
+}
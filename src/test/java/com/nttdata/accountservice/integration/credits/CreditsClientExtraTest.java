@@ -1,10 +1,11 @@
 package com.nttdata.accountservice.integration.credits;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
 import okhttp3.mockwebserver.*;
 import org.junit.jupiter.api.*;
-import org.springframework.test.util.*;
 import org.springframework.web.reactive.function.client.*;
 import reactor.test.*;
 
@@ -31,11 +32,15 @@ class CreditsClientExtraTest {
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
       CreditsClient client = new CreditsClient(
-          builder,
+          builder.baseUrl(base).build(),
           CircuitBreakerRegistry.ofDefaults(),
-          relaxedRegistry
+          relaxedRegistry,
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          retries()
       );
-      ReflectionTestUtils.setField(client, "baseUrl", base);
 
       StepVerifier.create(client.hasActiveCreditCard("C1"))
           .expectNext(false)
@@ -53,11 +58,15 @@ class CreditsClientExtraTest {
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
       CreditsClient client = new CreditsClient(
-          builder,
+          builder.baseUrl(base).build(),
           CircuitBreakerRegistry.ofDefaults(),
-          relaxedRegistry
+          relaxedRegistry,
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          retries()
       );
-      ReflectionTestUtils.setField(client, "baseUrl", base);
 
       StepVerifier.create(client.hasActiveCreditCard("C1"))
           .expectError(WebClientResponseException.class)
@@ -77,11 +86,15 @@ class CreditsClientExtraTest {
         WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
         CreditsClient client = new CreditsClient(
-            builder,
+            builder.baseUrl(base).build(),
             CircuitBreakerRegistry.ofDefaults(),
-            relaxedRegistry
+            relaxedRegistry,
+            cache(),
+            singleFlights(),
+            lastKnownGood(),
+            limiters(),
+            retries()
         );
-        ReflectionTestUtils.setField(client, "baseUrl", base);
 
         StepVerifier.create(client.hasActiveCreditCard("C1"))
             .expectNext(false)
@@ -102,11 +115,15 @@ class CreditsClientExtraTest {
         WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
         CreditsClient client = new CreditsClient(
-            builder,
+            builder.baseUrl(base).build(),
             CircuitBreakerRegistry.ofDefaults(),
-            relaxedRegistry
+            relaxedRegistry,
+            cache(),
+            singleFlights(),
+            lastKnownGood(),
+            limiters(),
+            retries()
         );
-        ReflectionTestUtils.setField(client, "baseUrl", base);
 
         StepVerifier.create(client.hasActiveCreditCard("C1"))
             .expectNext(false)
@@ -114,5 +131,26 @@ class CreditsClientExtraTest {
       }
     }
 
+  private static CreditCardCache cache() {
+    return new CreditCardCache(true, Duration.ofMinutes(10), Duration.ofMinutes(1), 100,
+        new SimpleMeterRegistry());
+  }
+
+  private static SingleFlightRegistry singleFlights() {
+    return new SingleFlightRegistry(new SimpleMeterRegistry());
+  }
+
+  private static LastKnownGoodRegistry lastKnownGood() {
+    return new LastKnownGoodRegistry(CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry(),
+        true, Duration.ofMinutes(30), 100, 50);
+  }
+
+  private static ConcurrencyLimiterRegistry limiters() {
+    return new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9);
+  }
 
+  private static RetryBudgetRegistry retries() {
+    return new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+        Duration.ofMillis(500));
+  }
 }
@@ -1,13 +1,16 @@
 package com.nttdata.accountservice.integration.credits;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
 import okhttp3.mockwebserver.*;
 import org.junit.jupiter.api.*;
-import org.springframework.test.util.*;
 import org.springframework.web.reactive.function.client.*;
 import reactor.test.*;
 
+import java.time.*;
+
 import static org.junit.Assert.*;
 
 class CreditsClientTest {
@@ -25,11 +28,15 @@ class CreditsClientTest {
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
       CreditsClient client = new CreditsClient(
-          builder,
+          builder.baseUrl(base).build(),
           CircuitBreakerRegistry.ofDefaults(),
-          TimeLimiterRegistry.ofDefaults()
+          TimeLimiterRegistry.ofDefaults(),
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          retries()
       );
-      ReflectionTestUtils.setField(client, "baseUrl", base);
 
       StepVerifier.create(client.hasActiveCreditCard("CUST1"))
           .expectNext(true)
@@ -38,6 +45,91 @@ class CreditsClientTest {
       RecordedRequest req = server.takeRequest();
       assertEquals("/api/v1/credits", req.getRequestUrl().encodedPath());
       assertEquals("CUST1", req.getRequestUrl().queryParameter("customerId"));
+      assertEquals("CREDIT_CARD", req.getRequestUrl().queryParameter("type"));
+      assertEquals("ACTIVE", req.getRequestUrl().queryParameter("status"));
+    }
+  }
+
+  @Test
+  void hasActiveCreditCard_repetida_seSirveDeCachePorCliente() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("[{\"id\":\"CR1\",\"type\":\"CREDIT_CARD\",\"status\":\"ACTIVE\"}]"));
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("[]"));
+
+      CreditsClient client = new CreditsClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          CircuitBreakerRegistry.ofDefaults(),
+          TimeLimiterRegistry.ofDefaults(),
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          retries()
+      );
+
+      for (int i = 0; i < 3; i++) {
+        StepVerifier.create(client.hasActiveCreditCard("CUST1")).expectNext(true).verifyComplete();
+        StepVerifier.create(client.hasActiveCreditCard("CUST2")).expectNext(false).verifyComplete();
+      }
+
+      assertEquals(2, server.getRequestCount());
+    }
+  }
+
+  @Test
+  void hasActiveCreditCard_503Transitorio_seReintentaYResponde() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse().setResponseCode(503));
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("[{\"id\":\"CR1\",\"type\":\"CREDIT_CARD\",\"status\":\"ACTIVE\"}]"));
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+      CreditsClient client = new CreditsClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          CircuitBreakerRegistry.ofDefaults(),
+          TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(10)).build()),
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          new RetryBudgetRegistry(registry, true, 3, 0.1, 10, Duration.ofMillis(10), Duration.ofMillis(50))
+      );
+
+      StepVerifier.create(client.hasActiveCreditCard("CUST1"))
+          .expectNext(true)
+          .verifyComplete();
+
+      assertEquals(2, server.getRequestCount());
+      assertEquals(1.0, registry.counter("integration.retry.retries", "name", "credits", "result", "succeeded")
+          .count(), 0.0);
     }
   }
+
+  private static CreditCardCache cache() {
+    return new CreditCardCache(true, Duration.ofMinutes(10), Duration.ofMinutes(1), 100,
+        new SimpleMeterRegistry());
+  }
+
+  private static SingleFlightRegistry singleFlights() {
+    return new SingleFlightRegistry(new SimpleMeterRegistry());
+  }
+
+  private static LastKnownGoodRegistry lastKnownGood() {
+    return new LastKnownGoodRegistry(CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry(),
+        true, Duration.ofMinutes(30), 100, 50);
+  }
+
+  private static ConcurrencyLimiterRegistry limiters() {
+    return new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9);
+  }
+
+  private static RetryBudgetRegistry retries() {
+    return new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+        Duration.ofMillis(500));
+  }
 }
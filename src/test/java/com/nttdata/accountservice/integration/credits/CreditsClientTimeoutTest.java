@@ -1,10 +1,11 @@
 package com.nttdata.accountservice.integration.credits;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
 import okhttp3.mockwebserver.*;
 import org.junit.jupiter.api.*;
-import org.springframework.test.util.*;
 import org.springframework.web.reactive.function.client.*;
 import org.springframework.web.server.*;
 import reactor.test.*;
@@ -34,11 +35,15 @@ class CreditsClientTimeoutTest {
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
       CreditsClient client = new CreditsClient(
-          builder,
+          builder.baseUrl(base).build(),
           CircuitBreakerRegistry.ofDefaults(),
-          tlr
+          tlr,
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          limiters(),
+          retries()
       );
-      ReflectionTestUtils.setField(client, "baseUrl", base);
 
       StepVerifier.create(client.hasActiveCreditCard("C1"))
           .expectErrorSatisfies(ex -> {
@@ -48,4 +53,27 @@ class CreditsClientTimeoutTest {
           .verify();
     }
   }
+
+  private static CreditCardCache cache() {
+    return new CreditCardCache(true, Duration.ofMinutes(10), Duration.ofMinutes(1), 100,
+        new SimpleMeterRegistry());
+  }
+
+  private static SingleFlightRegistry singleFlights() {
+    return new SingleFlightRegistry(new SimpleMeterRegistry());
+  }
+
+  private static LastKnownGoodRegistry lastKnownGood() {
+    return new LastKnownGoodRegistry(CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry(),
+        true, Duration.ofMinutes(30), 100, 50);
+  }
+
+  private static ConcurrencyLimiterRegistry limiters() {
+    return new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9);
+  }
+
+  private static RetryBudgetRegistry retries() {
+    return new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+        Duration.ofMillis(500));
+  }
 }
@@ -1,10 +1,11 @@
 package com.nttdata.accountservice.integration.customers;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
 import okhttp3.mockwebserver.*;
 import org.junit.jupiter.api.*;
-import org.springframework.test.util.*;
 import org.springframework.web.reactive.function.client.*;
 import org.springframework.web.server.*;
 import reactor.test.*;
@@ -25,12 +26,44 @@ class CustomersClientResilienceTest {
       ExchangeFilterFunction noAuth = (request, next) -> next.exchange(request);
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
-      CustomersClient client = new CustomersClient(builder, cbReg, tlReg);
-      ReflectionTestUtils.setField(client, "baseUrl", base);
+      CustomersClient client = new CustomersClient(builder.baseUrl(base).build(), cbReg, tlReg, cache(), singleFlights(), lastKnownGood(), batcher(), hedgers(), limiters(), retries());
 
       StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678"))
           .expectError(ResponseStatusException.class) // 504
           .verify();
     }
   }
+
+  private static EligibilityCache cache() {
+    return new EligibilityCache(true, Duration.ofMinutes(10), Duration.ofSeconds(30), 100,
+        new SimpleMeterRegistry());
+  }
+
+  private static SingleFlightRegistry singleFlights() {
+    return new SingleFlightRegistry(new SimpleMeterRegistry());
+  }
+
+  private static LastKnownGoodRegistry lastKnownGood() {
+    return new LastKnownGoodRegistry(CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry(),
+        true, Duration.ofMinutes(30), 100, 50);
+  }
+
+  private static EligibilityBatcher batcher() {
+    return new EligibilityBatcher(WebClient.create(), TimeLimiterRegistry.ofDefaults(), CircuitBreakerRegistry.ofDefaults(),
+        limiters(), retries(), new SimpleMeterRegistry(),
+        false, Duration.ofMillis(10), 50, "/customers/eligibility/batch", Duration.ofMinutes(1));
+  }
+
+  private static RequestHedgerRegistry hedgers() {
+    return new RequestHedgerRegistry(new SimpleMeterRegistry(), false, 0.95, Duration.ofMillis(20), 0.05, 20);
+  }
+
+  private static ConcurrencyLimiterRegistry limiters() {
+    return new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9);
+  }
+
+  private static RetryBudgetRegistry retries() {
+    return new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+        Duration.ofMillis(500));
+  }
 }
@@ -1,16 +1,27 @@
 package com.nttdata.accountservice.integration.customers;
 
+import com.nttdata.accountservice.integration.support.*;
 import io.github.resilience4j.circuitbreaker.*;
 import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
 import okhttp3.mockwebserver.*;
 import org.junit.jupiter.api.*;
-import org.springframework.test.util.*;
 import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.*;
 import reactor.test.*;
 
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
 import static org.junit.Assert.*;
 
 class CustomersClientTest {
+
+  // holgado: la primera conexión del test puede tardar más que el 1s por defecto
+  TimeLimiterRegistry relaxedRegistry = TimeLimiterRegistry.of(
+      TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(10)).build());
+
   @Test
   void getEligibilityByDocument_enviaTipoYNumeroComoQueryParams() throws Exception {
     try (MockWebServer server = new MockWebServer()) {
@@ -25,11 +36,17 @@ class CustomersClientTest {
       WebClient.Builder builder = WebClient.builder().filter(noAuth);
 
       CustomersClient client = new CustomersClient(
-          builder,
+          builder.baseUrl(base).build(),
           CircuitBreakerRegistry.ofDefaults(),
-          TimeLimiterRegistry.ofDefaults()
+          relaxedRegistry,
+          cache(),
+          singleFlights(),
+          lastKnownGood(),
+          batcher(),
+          hedgers(),
+          limiters(),
+          retries()
       );
-      ReflectionTestUtils.setField(client, "baseUrl", base);
 
       StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678"))
           .assertNext(r -> assertEquals("C1", r.getCustomerId()))
@@ -41,4 +58,209 @@ class CustomersClientTest {
       assertEquals("12345678", req.getRequestUrl().queryParameter("documentNumber"));
     }
   }
+
+  @Test
+  void getEligibilityByDocument_repetida_seSirveDeCache() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse()
+          .setResponseCode(200)
+          .addHeader("Content-Type", "application/json")
+          .setBody("{\"customerId\":\"C1\",\"type\":\"PERSONAL\",\"profile\":\"STANDARD\"}"));
+      // 404 = sin cliente activo: vacío y cacheado como negativo
+      server.enqueue(new MockResponse().setResponseCode(404));
+
+      CustomersClient client = new CustomersClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          CircuitBreakerRegistry.ofDefaults(), relaxedRegistry, cache(), singleFlights(), lastKnownGood(), batcher(), hedgers(), limiters(), retries());
+
+      for (int i = 0; i < 3; i++) {
+        StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678"))
+            .assertNext(r -> assertEquals("C1", r.getCustomerId()))
+            .verifyComplete();
+        StepVerifier.create(client.getEligibilityByDocument("DNI", "00000000"))
+            .verifyComplete();
+      }
+
+      assertEquals(2, server.getRequestCount());
+    }
+  }
+
+  @Test
+  void getEligibilityByDocument_concurrentesSinCache_unaSolaLlamada() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("{\"customerId\":\"C1\"}")
+          .setBodyDelay(200, TimeUnit.MILLISECONDS));
+
+      CustomersClient client = new CustomersClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          CircuitBreakerRegistry.ofDefaults(), relaxedRegistry,
+          new EligibilityCache(false, Duration.ofMinutes(10), Duration.ofSeconds(30), 100,
+              new SimpleMeterRegistry()),
+          singleFlights(), lastKnownGood(), batcher(), hedgers(), limiters(), retries());
+
+      StepVerifier.create(Flux.merge(
+              client.getEligibilityByDocument("DNI", "12345678"),
+              client.getEligibilityByDocument("DNI", "12345678"),
+              client.getEligibilityByDocument("DNI", "12345678")))
+          .expectNextCount(3)
+          .verifyComplete();
+
+      assertEquals(1, server.getRequestCount());
+    }
+  }
+
+  @Test
+  void getEligibilityByDocument_circuitoAbierto_sirveUltimoValorBueno() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("{\"customerId\":\"C1\",\"type\":\"PERSONAL\"}"));
+      CircuitBreakerRegistry breakers = CircuitBreakerRegistry.ofDefaults();
+
+      CustomersClient client = new CustomersClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          breakers, relaxedRegistry,
+          new EligibilityCache(false, Duration.ofMinutes(10), Duration.ofSeconds(30), 100,
+              new SimpleMeterRegistry()),
+          singleFlights(),
+          new LastKnownGoodRegistry(breakers, new SimpleMeterRegistry(), true, Duration.ofMinutes(30), 100, 50),
+          batcher(), hedgers(), limiters(), retries());
+
+      StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678")).expectNextCount(1).verifyComplete();
+      breakers.circuitBreaker("customers").transitionToForcedOpenState();
+
+      StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678"))
+          .assertNext(r -> assertEquals("C1", r.getCustomerId()))
+          .verifyComplete();
+      // sin valor previo para otro documento: el error del circuito se propaga
+      StepVerifier.create(client.getEligibilityByDocument("DNI", "99999999"))
+          .expectError(CallNotPermittedException.class)
+          .verify();
+      assertEquals(1, server.getRequestCount());
+    }
+  }
+
+  @Test
+  void getEligibilityByDocument_modoLote_unaSolaPeticionYRepartoPorDocumento() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      // el lote responde dos de los tres documentos: el tercero no tiene cliente activo
+      server.enqueue(new MockResponse()
+          .addHeader("Content-Type", "application/json")
+          .setBody("[{\"documentType\":\"DNI\",\"documentNumber\":\"1\",\"eligibility\":{\"customerId\":\"C1\"}},"
+              + "{\"documentType\":\"DNI\",\"documentNumber\":\"2\",\"eligibility\":{\"customerId\":\"C2\"}}]"));
+      WebClient webClient = WebClient.builder().baseUrl(server.url("/api/v1").toString()).build();
+
+      CustomersClient client = new CustomersClient(webClient,
+          CircuitBreakerRegistry.ofDefaults(), relaxedRegistry, cache(), singleFlights(),
+          lastKnownGood(), batcher(webClient, true), hedgers(), limiters(), retries());
+
+      StepVerifier.create(Flux.merge(
+              client.getEligibilityByDocument("DNI", "1").map(EligibilityResponse::getCustomerId),
+              client.getEligibilityByDocument("DNI", "2").map(EligibilityResponse::getCustomerId),
+              client.getEligibilityByDocument("DNI", "3").map(EligibilityResponse::getCustomerId))
+              .collectList())
+          .assertNext(ids -> assertEquals(Set.of("C1", "C2"), new HashSet<>(ids)))
+          .verifyComplete();
+
+      assertEquals(1, server.getRequestCount());
+      RecordedRequest req = server.takeRequest();
+      assertEquals("POST", req.getMethod());
+      assertEquals("/api/v1/customers/eligibility/batch", req.getRequestUrl().encodedPath());
+      String body = req.getBody().readUtf8();
+      assertTrue(body.contains("\"documentNumber\":\"1\"") && body.contains("\"documentNumber\":\"3\""));
+    }
+  }
+
+  @Test
+  void getEligibilityByDocument_modoLote_endpointNoDisponible_llamadasIndividuales() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.setDispatcher(new Dispatcher() {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+          if (request.getPath().contains("/batch")) return new MockResponse().setResponseCode(404);
+          return new MockResponse()
+              .addHeader("Content-Type", "application/json")
+              .setBody("{\"customerId\":\"C-" + request.getRequestUrl().queryParameter("documentNumber") + "\"}");
+        }
+      });
+      WebClient webClient = WebClient.builder().baseUrl(server.url("/api/v1").toString()).build();
+
+      CustomersClient client = new CustomersClient(webClient,
+          CircuitBreakerRegistry.ofDefaults(), relaxedRegistry, cache(), singleFlights(),
+          lastKnownGood(), batcher(webClient, true), hedgers(), limiters(), retries());
+
+      StepVerifier.create(Flux.merge(
+              client.getEligibilityByDocument("DNI", "1").map(EligibilityResponse::getCustomerId),
+              client.getEligibilityByDocument("DNI", "2").map(EligibilityResponse::getCustomerId))
+              .collectList())
+          .assertNext(ids -> assertEquals(Set.of("C-1", "C-2"), new HashSet<>(ids)))
+          .verifyComplete();
+      // con el endpoint de lote marcado como no disponible se va directo a la llamada individual
+      StepVerifier.create(client.getEligibilityByDocument("DNI", "3"))
+          .assertNext(r -> assertEquals("C-3", r.getCustomerId()))
+          .verifyComplete();
+
+      assertEquals(4, server.getRequestCount());
+      assertEquals("POST", server.takeRequest().getMethod());
+      for (int i = 0; i < 3; i++) {
+        assertEquals("GET", server.takeRequest().getMethod());
+      }
+    }
+  }
+
+  @Test
+  void getEligibilityByDocument_plazoVencido_noSaleALaRed() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      CustomersClient client = new CustomersClient(
+          WebClient.builder().baseUrl(server.url("/api/v1").toString()).build(),
+          CircuitBreakerRegistry.ofDefaults(), relaxedRegistry, cache(), singleFlights(), lastKnownGood(),
+          batcher(), hedgers(), limiters(), retries());
+
+      StepVerifier.create(client.getEligibilityByDocument("DNI", "12345678")
+              .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(Duration.ZERO))))
+          .expectError(DeadlineExceededException.class)
+          .verify();
+
+      assertEquals(0, server.getRequestCount());
+    }
+  }
+
+  private static EligibilityCache cache() {
+    return new EligibilityCache(true, Duration.ofMinutes(10), Duration.ofSeconds(30), 100,
+        new SimpleMeterRegistry());
+  }
+
+  private static SingleFlightRegistry singleFlights() {
+    return new SingleFlightRegistry(new SimpleMeterRegistry());
+  }
+
+  private static LastKnownGoodRegistry lastKnownGood() {
+    return new LastKnownGoodRegistry(CircuitBreakerRegistry.ofDefaults(), new SimpleMeterRegistry(),
+        true, Duration.ofMinutes(30), 100, 50);
+  }
+
+  private static EligibilityBatcher batcher() {
+    return batcher(WebClient.create(), false);
+  }
+
+  private static EligibilityBatcher batcher(WebClient webClient, boolean enabled) {
+    return new EligibilityBatcher(webClient, TimeLimiterRegistry.ofDefaults(), CircuitBreakerRegistry.ofDefaults(),
+        limiters(), retries(), new SimpleMeterRegistry(),
+        enabled, Duration.ofMillis(50), 50, "/customers/eligibility/batch", Duration.ofMinutes(1));
+  }
+
+  private static RequestHedgerRegistry hedgers() {
+    return new RequestHedgerRegistry(new SimpleMeterRegistry(), false, 0.95, Duration.ofMillis(20), 0.05, 20);
+  }
+
+  private static ConcurrencyLimiterRegistry limiters() {
+    return new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9);
+  }
+
+  private static RetryBudgetRegistry retries() {
+    return new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+        Duration.ofMillis(500));
+  }
 }
@@ -0,0 +1,147 @@
+package com.nttdata.accountservice.integration.customers;
+
+/*
+ * Lotes de elegibilidad (POST al endpoint de lote).
+ * Cubre: token y plazo de quien consulta en el POST, un lote por token, 401 que desactiva el
+ * lote y pasa a llamadas individuales sin abrir el circuito, y consultas canceladas que salen
+ * de la cola antes del envío.
+ */
+
+import com.nttdata.accountservice.config.*;
+import com.nttdata.accountservice.integration.support.*;
+import io.github.resilience4j.circuitbreaker.*;
+import io.github.resilience4j.timelimiter.*;
+import io.micrometer.core.instrument.simple.*;
+import okhttp3.mockwebserver.*;
+import org.junit.jupiter.api.*;
+import org.springframework.security.core.context.*;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.security.oauth2.server.resource.authentication.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EligibilityBatcherTest {
+
+  final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+  MockWebServer server;
+  WebClient webClient;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = new MockWebServer();
+    server.start();
+    // mismos filtros que en producción: reenvío del token y del plazo restante
+    webClient = new WebClientConfig().webClientBuilder().baseUrl(server.url("/api/v1").toString()).build();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    server.shutdown();
+  }
+
+  @Test
+  void lote_viajaConElTokenYElPlazoDeQuienConsulta() throws Exception {
+    // los dos POST pueden llegar en cualquier orden: cada respuesta trae ambos documentos
+    String both = "[{\"documentType\":\"DNI\",\"documentNumber\":\"1\",\"eligibility\":{\"customerId\":\"C1\"}},"
+        + "{\"documentType\":\"DNI\",\"documentNumber\":\"2\",\"eligibility\":{\"customerId\":\"C2\"}}]";
+    for (int i = 0; i < 2; i++) {
+      server.enqueue(new MockResponse().addHeader("Content-Type", "application/json").setBody(both));
+    }
+    EligibilityBatcher batcher = batcher(Duration.ofMillis(50));
+
+    StepVerifier.create(Flux.merge(
+                load(batcher, "1").contextWrite(as("token-a")),
+                load(batcher, "2").contextWrite(as("token-b")))
+            .map(EligibilityResponse::getCustomerId)
+            .collectList()
+            .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(Duration.ofSeconds(5)))))
+        .assertNext(ids -> assertEquals(Set.of("C1", "C2"), new HashSet<>(ids)))
+        .verifyComplete();
+
+    // un POST por token, cada uno con su documento
+    Map<String, String> bodyByToken = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      RecordedRequest req = server.takeRequest(1, TimeUnit.SECONDS);
+      assertEquals("POST", req.getMethod());
+      assertNotNull(req.getHeader(Deadline.HEADER));
+      bodyByToken.put(req.getHeader("Authorization"), req.getBody().readUtf8());
+    }
+    assertTrue(bodyByToken.get("Bearer token-a").contains("\"documentNumber\":\"1\""));
+    assertTrue(bodyByToken.get("Bearer token-b").contains("\"documentNumber\":\"2\""));
+  }
+
+  @Test
+  void lote401_desactivaElLoteSinAbrirElCircuito() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(401));
+    EligibilityBatcher batcher = batcher(Duration.ofMillis(10));
+
+    StepVerifier.create(load(batcher, "1").contextWrite(as("token-a")))
+        .assertNext(e -> assertEquals("single-1", e.getCustomerId()))
+        .verifyComplete();
+    // marcado como no disponible: la siguiente consulta va directa a la llamada individual
+    StepVerifier.create(load(batcher, "2").contextWrite(as("token-a")))
+        .assertNext(e -> assertEquals("single-2", e.getCustomerId()))
+        .verifyComplete();
+
+    assertEquals(1, server.getRequestCount());
+    CircuitBreaker.Metrics metrics = circuitBreakers.circuitBreaker("customers").getMetrics();
+    assertEquals(0, metrics.getNumberOfFailedCalls());
+  }
+
+  @Test
+  void consultaCancelada_saleDelLote() throws Exception {
+    server.enqueue(batchResponse("2", "C2"));
+    EligibilityBatcher batcher = batcher(Duration.ofMillis(50));
+
+    Disposable cancelled = load(batcher, "1").subscribe();
+    cancelled.dispose();
+
+    StepVerifier.create(load(batcher, "2"))
+        .assertNext(e -> assertEquals("C2", e.getCustomerId()))
+        .verifyComplete();
+
+    String body = server.takeRequest(1, TimeUnit.SECONDS).getBody().readUtf8();
+    assertFalse(body.contains("\"documentNumber\":\"1\""));
+    assertTrue(body.contains("\"documentNumber\":\"2\""));
+  }
+
+  // ===== Helpers =====
+
+  private EligibilityBatcher batcher(Duration window) {
+    return new EligibilityBatcher(webClient,
+        TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(10)).build()),
+        circuitBreakers,
+        new ConcurrencyLimiterRegistry(new SimpleMeterRegistry(), false, 20, 5, 50, 50, Duration.ofSeconds(1), 0.9),
+        new RetryBudgetRegistry(new SimpleMeterRegistry(), false, 3, 0.1, 10, Duration.ofMillis(50),
+            Duration.ofMillis(500)),
+        new SimpleMeterRegistry(), true, window, 50, "/customers/eligibility/batch", Duration.ofMinutes(1));
+  }
+
+  private static Mono<EligibilityResponse> load(EligibilityBatcher batcher, String documentNumber) {
+    return batcher.load("DNI", documentNumber, () -> {
+      EligibilityResponse single = new EligibilityResponse();
+      single.setCustomerId("single-" + documentNumber);
+      return Mono.just(single);
+    });
+  }
+
+  private static reactor.util.context.Context as(String token) {
+    Jwt jwt = Jwt.withTokenValue(token).header("alg", "none").claim("sub", "u").build();
+    return ReactiveSecurityContextHolder.withAuthentication(new JwtAuthenticationToken(jwt));
+  }
+
+  private static MockResponse batchResponse(String documentNumber, String customerId) {
+    return new MockResponse()
+        .addHeader("Content-Type", "application/json")
+        .setBody("[{\"documentType\":\"DNI\",\"documentNumber\":\"" + documentNumber
+            + "\",\"eligibility\":{\"customerId\":\"" + customerId + "\"}}]");
+  }
+}
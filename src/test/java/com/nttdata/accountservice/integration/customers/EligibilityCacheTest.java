@@ -0,0 +1,155 @@
+package com.nttdata.accountservice.integration.customers;
+
+/*
+ * Caché de elegibilidad (Caffeine).
+ * Cubre: acierto dentro del TTL, caché negativa con TTL corto, errores no cacheados,
+ * carga compartida entre consultas simultáneas, refresco que reemplaza la entrada vigente (y la
+ * conserva si falla), métricas y caché deshabilitada.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EligibilityCacheTest {
+
+  final AtomicLong now = new AtomicLong();
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final AtomicInteger loads = new AtomicInteger();
+
+  EligibilityCache cache;
+
+  @BeforeEach
+  void setUp() {
+    cache = new EligibilityCache(true, Duration.ofMinutes(10), Duration.ofSeconds(30), 100,
+        registry, now::get);
+  }
+
+  @Test
+  void positivo_seSirveDeCacheHastaElTtl() {
+    StepVerifier.create(cache.get("DNI", "1", () -> load(elig("C1"))))
+        .assertNext(e -> assertEquals("C1", e.getCustomerId()))
+        .verifyComplete();
+    advance(Duration.ofMinutes(9));
+    StepVerifier.create(cache.get("DNI", "1", () -> load(elig("C1"))))
+        .assertNext(e -> assertEquals("C1", e.getCustomerId()))
+        .verifyComplete();
+    assertEquals(1, loads.get());
+
+    // mismo número con otro tipo de documento es otra clave
+    StepVerifier.create(cache.get("RUC", "1", () -> load(elig("C2")))).expectNextCount(1).verifyComplete();
+    assertEquals(2, loads.get());
+
+    advance(Duration.ofMinutes(2));
+    StepVerifier.create(cache.get("DNI", "1", () -> load(elig("C1")))).expectNextCount(1).verifyComplete();
+    assertEquals(3, loads.get());
+  }
+
+  @Test
+  void negativo_usaTtlCorto() {
+    StepVerifier.create(cache.get("DNI", "404", () -> load(null))).verifyComplete();
+    advance(Duration.ofSeconds(20));
+    StepVerifier.create(cache.get("DNI", "404", () -> load(null))).verifyComplete();
+    assertEquals(1, loads.get());
+
+    advance(Duration.ofSeconds(15));
+    StepVerifier.create(cache.get("DNI", "404", () -> load(elig("C9"))))
+        .assertNext(e -> assertEquals("C9", e.getCustomerId()))
+        .verifyComplete();
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void error_noSeCachea() {
+    StepVerifier.create(cache.get("DNI", "1",
+            () -> Mono.error(new IllegalStateException("caído"))))
+        .expectErrorMatches(ex -> ex instanceof IllegalStateException && "caído".equals(ex.getMessage()))
+        .verify();
+
+    StepVerifier.create(cache.get("DNI", "1", () -> load(elig("C1")))).expectNextCount(1).verifyComplete();
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void consultasSimultaneas_compartenCarga() {
+    Sinks.One<EligibilityResponse> pending = Sinks.one();
+    Mono<EligibilityResponse> first = cache.get("DNI", "1", () -> {
+      loads.incrementAndGet();
+      return pending.asMono();
+    });
+    Mono<EligibilityResponse> second = cache.get("DNI", "1", () -> load(elig("OTRO")));
+
+    StepVerifier.create(Mono.zip(first, second))
+        .then(() -> pending.tryEmitValue(elig("C1")))
+        .assertNext(t -> {
+          assertEquals("C1", t.getT1().getCustomerId());
+          assertEquals("C1", t.getT2().getCustomerId());
+        })
+        .verifyComplete();
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void metricas_aciertosYFallos() {
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+
+    assertEquals(2.0, registry.get("cache.gets").tag("cache", EligibilityCache.CACHE_NAME)
+        .tag("result", "hit").functionCounter().count());
+    assertEquals(1.0, registry.get("cache.gets").tag("cache", EligibilityCache.CACHE_NAME)
+        .tag("result", "miss").functionCounter().count());
+  }
+
+  @Test
+  void refresco_reemplazaLaEntradaVigente() {
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+
+    StepVerifier.create(cache.refresh("DNI", "1", () -> load(elig("C1-nuevo"))))
+        .assertNext(e -> assertEquals("C1-nuevo", e.getCustomerId()))
+        .verifyComplete();
+    StepVerifier.create(cache.refresh("DNI", "1", () -> Mono.error(new IllegalStateException("caído"))))
+        .expectError(IllegalStateException.class)
+        .verify();
+
+    StepVerifier.create(cache.get("DNI", "1", () -> load(elig("otro"))))
+        .assertNext(e -> assertEquals("C1-nuevo", e.getCustomerId()))
+        .verifyComplete();
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void deshabilitada_siempreCarga() {
+    cache = new EligibilityCache(false, Duration.ofMinutes(10), Duration.ofSeconds(30), 100, registry);
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+    cache.get("DNI", "1", () -> load(elig("C1"))).block();
+    assertEquals(2, loads.get());
+  }
+
+  // ===== Helpers =====
+
+  private Mono<EligibilityResponse> load(EligibilityResponse response) {
+    return Mono.fromCallable(() -> {
+      loads.incrementAndGet();
+      return response;
+    });
+  }
+
+  private void advance(Duration duration) {
+    now.addAndGet(duration.toNanos());
+  }
+
+  private static EligibilityResponse elig(String customerId) {
+    EligibilityResponse e = new EligibilityResponse();
+    e.setCustomerId(customerId);
+    e.setType("PERSONAL");
+    e.setProfile("STANDARD");
+    return e;
+  }
+}
@@ -0,0 +1,114 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Límite adaptativo de concurrencia (AIMD).
+ * Cubre: espera en cola con el límite ocupado, rechazo inmediato con la cola llena, turno
+ * al terminar una llamada, cancelación en espera, subida con respuestas rápidas, bajada con
+ * respuestas lentas y timeouts, y gauges de límite/en curso/cola.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import reactor.core.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  @Test
+  void limiteOcupado_esperaEnCola_yConColaLlenaRechaza() {
+    ConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(1));
+    Sinks.One<String> first = Sinks.one();
+    AtomicInteger secondCalls = new AtomicInteger();
+
+    StepVerifier.create(Mono.zip(
+            limiter.execute(first::asMono),
+            limiter.execute(() -> {
+              secondCalls.incrementAndGet();
+              return Mono.just("B");
+            })))
+        .then(() -> {
+          assertEquals(0, secondCalls.get());
+          assertEquals(1.0, gauge("inflight"));
+          assertEquals(1.0, gauge("queue"));
+          StepVerifier.create(limiter.execute(() -> Mono.just("C")))
+              .expectError(ConcurrencyLimitExceededException.class)
+              .verify();
+          first.tryEmitValue("A");
+        })
+        .assertNext(t -> assertEquals("B", t.getT2()))
+        .verifyComplete();
+
+    assertEquals(1, secondCalls.get());
+    assertEquals(0.0, gauge("inflight"));
+    assertEquals(1.0, registry.counter("integration.concurrency.rejected", "name", "customers").count());
+  }
+
+  @Test
+  void cancelacionEnEspera_liberaLaCola() {
+    ConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(1));
+    Sinks.One<String> first = Sinks.one();
+    limiter.execute(first::asMono).subscribe();
+
+    Disposable waiting = limiter.execute(() -> Mono.just("B")).subscribe();
+    assertEquals(1.0, gauge("queue"));
+    waiting.dispose();
+
+    assertEquals(0.0, gauge("queue"));
+    first.tryEmitValue("A");
+    assertEquals(0.0, gauge("inflight"));
+  }
+
+  @Test
+  void respuestasRapidas_subenElLimiteSoloSiEstaEnUso() {
+    ConcurrencyLimiter limiter = limiter(2, 0, Duration.ofSeconds(1));
+
+    // una llamada en curso con límite 2: en uso, sube
+    StepVerifier.create(limiter.execute(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    assertEquals(3, limiter.limit());
+    // una llamada en curso con límite 3: holgado, no sube
+    StepVerifier.create(limiter.execute(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    assertEquals(3, limiter.limit());
+    assertEquals(3.0, gauge("limit"));
+  }
+
+  @Test
+  void respuestasLentasYTimeouts_bajanElLimite() {
+    ConcurrencyLimiter limiter = limiter(10, 0, Duration.ofMillis(10));
+
+    StepVerifier.create(limiter.execute(() -> Mono.delay(Duration.ofMillis(50)).thenReturn("lenta")))
+        .expectNext("lenta")
+        .verifyComplete();
+    assertEquals(5, limiter.limit());
+
+    StepVerifier.create(limiter.execute(() -> Mono.error(new TimeoutException())))
+        .expectError(TimeoutException.class)
+        .verify();
+    assertEquals(2, limiter.limit());
+
+    // otros errores no mueven el límite
+    StepVerifier.create(limiter.execute(() -> Mono.error(new IllegalStateException())))
+        .expectError(IllegalStateException.class)
+        .verify();
+    assertEquals(2, limiter.limit());
+  }
+
+  // ===== Helpers =====
+
+  private ConcurrencyLimiter limiter(int initialLimit, int maxQueue, Duration latencyThreshold) {
+    return new ConcurrencyLimiterRegistry(registry, true, initialLimit, 1, 50, maxQueue, latencyThreshold, 0.5)
+        .limiter("customers");
+  }
+
+  private double gauge(String metric) {
+    return registry.get("integration.concurrency." + metric).tag("name", "customers").gauge().value();
+  }
+}
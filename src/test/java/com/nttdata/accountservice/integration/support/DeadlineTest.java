@@ -0,0 +1,65 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Plazo de la petición en el contexto de Reactor.
+ * Cubre: sin plazo no cambia nada, plazo vencido sin suscribirse a la llamada, llamada
+ * cancelada al vencer el plazo, y llamada a tiempo.
+ */
+
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineTest {
+
+  final AtomicBoolean subscribed = new AtomicBoolean();
+
+  @Test
+  void sinPlazoEnElContexto_noLimita() {
+    StepVerifier.create(Deadline.bounded(Mono.delay(Duration.ofMillis(50)).thenReturn("ok")))
+        .expectNext("ok")
+        .verifyComplete();
+  }
+
+  @Test
+  void plazoVencido_noSeSuscribe() {
+    Mono<String> call = Mono.fromCallable(() -> {
+      subscribed.set(true);
+      return "ok";
+    });
+
+    StepVerifier.create(Deadline.bounded(call)
+            .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(Duration.ZERO))))
+        .expectError(DeadlineExceededException.class)
+        .verify();
+    assertFalse(subscribed.get());
+  }
+
+  @Test
+  void llamadaMasLargaQueElPlazo_seCancela() {
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    StepVerifier.create(Deadline.bounded(Mono.delay(Duration.ofSeconds(5)).thenReturn("ok")
+                .doOnCancel(() -> cancelled.set(true)))
+            .contextWrite(ctx -> ctx.put(Deadline.class, Deadline.after(Duration.ofMillis(50)))))
+        .expectErrorSatisfies(ex -> assertEquals(504, ((DeadlineExceededException) ex).getRawStatusCode()))
+        .verify(Duration.ofSeconds(2));
+    assertTrue(cancelled.get());
+  }
+
+  @Test
+  void llamadaATiempo_devuelveElResultado() {
+    Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+
+    StepVerifier.create(Deadline.bounded(Mono.just("ok"))
+            .contextWrite(ctx -> ctx.put(Deadline.class, deadline)))
+        .expectNext("ok")
+        .verifyComplete();
+    assertFalse(deadline.isExpired());
+  }
+}
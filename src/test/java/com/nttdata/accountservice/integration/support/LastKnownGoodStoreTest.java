@@ -0,0 +1,187 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Último valor bueno (stale-while-revalidate).
+ * Cubre: valor servido con circuito abierto o timeout, límite de antigüedad, errores que no
+ * aplican, refresco en segundo plano al volver a CLOSED y no en HALF_OPEN (limitado por
+ * transición, el resto con la siguiente lectura), contexto de la lectura en el refresco (sin su
+ * plazo) y métricas.
+ */
+
+import io.github.resilience4j.circuitbreaker.*;
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import org.springframework.http.*;
+import org.springframework.web.server.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LastKnownGoodStoreTest {
+
+  final AtomicLong now = new AtomicLong();
+  final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+  final CircuitBreakerRegistry breakers = CircuitBreakerRegistry.ofDefaults();
+  final LastKnownGoodStore store = new LastKnownGoodRegistry(
+      breakers, meters, true, Duration.ofMinutes(30), 100, 50, now::get).store("customers");
+
+  @Test
+  void circuitoAbierto_sirveUltimoValorBueno() {
+    StepVerifier.create(Mono.just("C1").transform(store.recording("DNI:1"))).expectNext("C1").verifyComplete();
+
+    StepVerifier.create(store.orStale("DNI:1", Mono.error(open()), () -> Mono.just("C1b")))
+        .expectNext("C1")
+        .verifyComplete();
+
+    assertEquals(1.0, count("served"));
+    assertEquals(1, store.pendingCount());
+  }
+
+  @Test
+  void timeout_sirveUltimoValorBueno() {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+
+    StepVerifier.create(store.orStale("DNI:1",
+            Mono.error(new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Timeout en Customers (2s)")),
+            Mono::empty))
+        .expectNext("C1")
+        .verifyComplete();
+  }
+
+  @Test
+  void valorDemasiadoAntiguo_propagaError() {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+    now.addAndGet(Duration.ofMinutes(31).toNanos());
+
+    StepVerifier.create(store.orStale("DNI:1", Mono.error(open()), Mono::empty))
+        .expectError(CallNotPermittedException.class)
+        .verify();
+    assertEquals(1.0, count("unavailable"));
+    assertEquals(0.0, count("served"));
+  }
+
+  @Test
+  void otrosErrores_noUsanValorGuardado() {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+
+    StepVerifier.create(store.orStale("DNI:1",
+            Mono.error(new ResponseStatusException(HttpStatus.BAD_GATEWAY, "x")), Mono::empty))
+        .expectError(ResponseStatusException.class)
+        .verify();
+    assertEquals(0.0, count("served"));
+    assertEquals(0, store.pendingCount());
+  }
+
+  @Test
+  void cerrado_refrescaEnSegundoPlanoLasClavesServidas() throws Exception {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+    CountDownLatch refreshed = new CountDownLatch(1);
+    store.orStale("DNI:1", Mono.error(open()),
+            () -> Mono.just("C1-nuevo").transform(store.recording("DNI:1")).doOnNext(v -> refreshed.countDown()))
+        .block();
+
+    CircuitBreaker cb = breakers.circuitBreaker("customers");
+    cb.transitionToOpenState();
+    cb.transitionToHalfOpenState();
+    // en HALF_OPEN las llamadas de prueba son del tráfico real: aún no se refresca
+    assertEquals(1, store.pendingCount());
+    cb.transitionToClosedState();
+
+    assertTrue(refreshed.await(2, TimeUnit.SECONDS));
+    assertEquals(0, store.pendingCount());
+    StepVerifier.create(store.orStale("DNI:1", Mono.error(open()), Mono::empty))
+        .expectNext("C1-nuevo")
+        .verifyComplete();
+  }
+
+  @Test
+  void cerrado_refrescaComoMaximoUnLotePorTransicion() throws Exception {
+    LastKnownGoodStore limited = new LastKnownGoodRegistry(
+        breakers, meters, true, Duration.ofMinutes(30), 100, 2, now::get).store("credits");
+    AtomicInteger refreshes = new AtomicInteger();
+    CountDownLatch refreshed = new CountDownLatch(2);
+    for (int i = 0; i < 5; i++) {
+      String key = "C" + i;
+      Mono.just(true).transform(limited.recording(key)).block();
+      limited.orStale(key, Mono.error(open()), () -> Mono.fromCallable(() -> {
+        refreshes.incrementAndGet();
+        refreshed.countDown();
+        return true;
+      }).transform(limited.recording(key))).block();
+    }
+
+    CircuitBreaker cb = breakers.circuitBreaker("credits");
+    cb.transitionToOpenState();
+    cb.transitionToHalfOpenState();
+    cb.transitionToClosedState();
+
+    // la transición decide en el acto qué claves refresca: las que salen de pendientes son las
+    // únicas suscritas, así que esperar a esas dos basta para contar sin dormir el hilo
+    assertEquals(3, limited.pendingCount());
+    assertTrue(refreshed.await(2, TimeUnit.SECONDS));
+    assertEquals(2, refreshes.get());
+  }
+
+  @Test
+  void refresco_llevaElContextoDeLaLecturaSinSuPlazo() throws Exception {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+    CompletableFuture<reactor.util.context.ContextView> seen = new CompletableFuture<>();
+    store.orStale("DNI:1", Mono.error(open()),
+            () -> Mono.deferContextual(ctx -> {
+              seen.complete(ctx);
+              return Mono.just("C1-nuevo");
+            }))
+        .contextWrite(ctx -> ctx.put("token", "t-1").put(Deadline.class, Deadline.after(Duration.ofSeconds(1))))
+        .block();
+
+    CircuitBreaker cb = breakers.circuitBreaker("customers");
+    cb.transitionToOpenState();
+    cb.transitionToHalfOpenState();
+    cb.transitionToClosedState();
+
+    reactor.util.context.ContextView ctx = seen.get(2, TimeUnit.SECONDS);
+    assertEquals("t-1", ctx.get("token"));
+    assertFalse(ctx.hasKey(Deadline.class));
+  }
+
+  @Test
+  void lecturaCorrecta_quitaElRefrescoPendiente() {
+    Mono.just("C1").transform(store.recording("DNI:1")).block();
+    store.orStale("DNI:1", Mono.error(open()), Mono::empty).block();
+    assertEquals(1, store.pendingCount());
+
+    StepVerifier.create(store.orStale("DNI:1", Mono.just("C1-nuevo").transform(store.recording("DNI:1")),
+            Mono::empty))
+        .expectNext("C1-nuevo")
+        .verifyComplete();
+
+    assertEquals(0, store.pendingCount());
+  }
+
+  @Test
+  void deshabilitado_propagaError() {
+    LastKnownGoodStore disabled = new LastKnownGoodRegistry(
+        breakers, meters, false, Duration.ofMinutes(30), 100, 50, now::get).store("credits");
+    Mono.just(true).transform(disabled.recording("C1")).block();
+
+    StepVerifier.create(disabled.orStale("C1", Mono.error(open()), Mono::empty))
+        .expectError(CallNotPermittedException.class)
+        .verify();
+  }
+
+  // ===== Helpers =====
+
+  private CallNotPermittedException open() {
+    return CallNotPermittedException.createCallNotPermittedException(breakers.circuitBreaker("customers"));
+  }
+
+  private double count(String result) {
+    return meters.get("integration.stale.fallbacks").tag("name", "customers").tag("result", result)
+        .counter().count();
+  }
+}
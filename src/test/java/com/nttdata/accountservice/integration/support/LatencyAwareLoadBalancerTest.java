@@ -0,0 +1,185 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Balanceo en cliente por latencia sobre instancias descubiertas (SimpleDiscoveryClient).
+ * Cubre: URL lb:// reescrita a la instancia, instancia lenta evitada por coste, expulsión
+ * pasiva solo tras varias respuestas lentas seguidas y por fallos seguidos, preferencia por la instancia con menos peticiones en curso, todas expulsadas,
+ * servicio sin instancias y URLs normales sin cambios.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import okhttp3.mockwebserver.*;
+import org.junit.jupiter.api.*;
+import org.springframework.cloud.client.*;
+import org.springframework.cloud.client.discovery.simple.*;
+import org.springframework.web.reactive.function.client.*;
+import org.springframework.web.server.*;
+import reactor.test.*;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyAwareLoadBalancerTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final SimpleDiscoveryProperties discovery = new SimpleDiscoveryProperties();
+  final LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+      new SimpleDiscoveryClient(discovery), registry,
+      Duration.ofSeconds(10), Duration.ofMillis(150), 2, 2, Duration.ofSeconds(30));
+  final WebClient client = WebClient.builder()
+      .baseUrl("lb://customers-service/api/v1")
+      .filter(loadBalancer)
+      .build();
+
+  @Test
+  void instanciaLenta_elTraficoVaALaRapida_sinExpulsarPorUnaRespuesta() throws Exception {
+    try (MockWebServer fast = new MockWebServer(); MockWebServer slow = new MockWebServer()) {
+      fast.setDispatcher(respond(0));
+      slow.setDispatcher(respond(400));
+      register(fast, slow);
+
+      for (int i = 0; i < 10; i++) {
+        StepVerifier.create(ping()).expectNext("ok").verifyComplete();
+      }
+
+      // la lenta se prueba una vez (sin muestras cuesta menos) y su latencia la deja fuera de
+      // la elección; una sola respuesta lenta no basta para expulsarla
+      assertEquals(1, slow.getRequestCount());
+      assertEquals(9, fast.getRequestCount());
+      assertEquals("/api/v1/ping", fast.takeRequest().getPath());
+      assertEquals(0.0, ejections("latency"));
+    }
+  }
+
+  @Test
+  void respuestasLentasSeguidas_expulsan_unaRapidaReiniciaLaCuenta() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      for (long delay : new long[]{400, 0, 400, 400}) {
+        server.enqueue(new MockResponse().setBody("ok").setHeadersDelay(delay, TimeUnit.MILLISECONDS));
+      }
+      register(server);
+
+      // lenta, rápida, lenta: la rápida corta la racha
+      for (int i = 0; i < 3; i++) {
+        StepVerifier.create(ping()).expectNext("ok").verifyComplete();
+      }
+      assertEquals(0.0, ejections("latency"));
+
+      // segunda lenta seguida (max-slow = 2)
+      StepVerifier.create(ping()).expectNext("ok").verifyComplete();
+      assertEquals(1.0, ejections("latency"));
+    }
+  }
+
+  @Test
+  void fallosSeguidos_expulsanLaInstancia() throws Exception {
+    try (MockWebServer healthy = new MockWebServer(); MockWebServer failing = new MockWebServer()) {
+      // la que falla responde antes: sin expulsión seguiría siendo la preferida
+      healthy.setDispatcher(respond(50));
+      failing.setDispatcher(new Dispatcher() {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+          return new MockResponse().setResponseCode(503);
+        }
+      });
+      register(healthy, failing);
+
+      int errors = 0;
+      for (int i = 0; i < 12; i++) {
+        try {
+          ping().block(Duration.ofSeconds(2));
+        } catch (WebClientResponseException e) {
+          errors++;
+        }
+      }
+
+      assertEquals(2, failing.getRequestCount());
+      assertEquals(2, errors);
+      assertEquals(1.0, ejections("failures"));
+    }
+  }
+
+  @Test
+  void conPeticionesEnCurso_eligeLaInstanciaMenosOcupada() throws Exception {
+    try (MockWebServer a = new MockWebServer(); MockWebServer b = new MockWebServer()) {
+      a.setDispatcher(respond(100));
+      b.setDispatcher(respond(100));
+      register(a, b);
+
+      // dos peticiones simultáneas con ambas instancias sin muestras: una a cada una
+      StepVerifier.create(ping().mergeWith(ping()))
+          .expectNext("ok", "ok")
+          .verifyComplete();
+
+      assertEquals(1, a.getRequestCount());
+      assertEquals(1, b.getRequestCount());
+    }
+  }
+
+  @Test
+  void todasExpulsadas_seUsanIgualmente() throws Exception {
+    try (MockWebServer slow = new MockWebServer()) {
+      slow.setDispatcher(respond(200));
+      register(slow);
+
+      StepVerifier.create(ping()).expectNext("ok").verifyComplete();
+      StepVerifier.create(ping()).expectNext("ok").verifyComplete();
+
+      assertEquals(2, slow.getRequestCount());
+    }
+  }
+
+  @Test
+  void sinInstancias_503() {
+    StepVerifier.create(ping())
+        .expectErrorSatisfies(ex -> assertEquals(503, ((ResponseStatusException) ex).getRawStatusCode()))
+        .verify();
+  }
+
+  @Test
+  void urlSinEsquemaLb_pasaSinCambios() throws Exception {
+    try (MockWebServer server = new MockWebServer()) {
+      server.setDispatcher(respond(0));
+      WebClient direct = WebClient.builder().baseUrl(server.url("/api/v1").toString())
+          .filter(loadBalancer).build();
+
+      StepVerifier.create(direct.get().uri("/ping").retrieve().bodyToMono(String.class))
+          .expectNext("ok")
+          .verifyComplete();
+      assertEquals(1, server.getRequestCount());
+    }
+  }
+
+  // ===== Helpers =====
+
+  private reactor.core.publisher.Mono<String> ping() {
+    return client.get().uri("/ping").retrieve().bodyToMono(String.class);
+  }
+
+  private void register(MockWebServer... servers) throws IOException {
+    List<DefaultServiceInstance> instances = new ArrayList<>();
+    for (MockWebServer server : servers) {
+      server.start();
+      instances.add(new DefaultServiceInstance(
+          "customers-" + server.getPort(), "customers-service", server.getHostName(), server.getPort(), false));
+    }
+    discovery.setInstances(Map.of("customers-service", instances));
+  }
+
+  private static Dispatcher respond(long delayMillis) {
+    return new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody("ok").setHeadersDelay(delayMillis, TimeUnit.MILLISECONDS);
+      }
+    };
+  }
+
+  private double ejections(String reason) {
+    return registry.counter("integration.lb.ejections", "service", "customers-service", "reason", reason).count();
+  }
+}
@@ -0,0 +1,108 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Peticiones de cobertura (hedging).
+ * Cubre: sin cobertura hasta tener muestras, cobertura que gana a una llamada lenta
+ * (y la cancela), presupuesto agotado, error de la cobertura ignorado, vacío como respuesta
+ * y contadores sent/won.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHedgerTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void llamadaLenta_coberturaGana_yCancelaLaOriginal() {
+    RequestHedger hedger = hedger(1.0);
+    warmUp(hedger);
+    AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+    StepVerifier.create(hedger.execute(() -> calls.incrementAndGet() == 1
+            ? Mono.delay(Duration.ofSeconds(5)).thenReturn("lenta")
+                .doOnCancel(() -> primaryCancelled.set(true))
+            : Mono.just("rápida")))
+        .expectNext("rápida")
+        .expectComplete()
+        .verify(Duration.ofSeconds(2));
+
+    assertEquals(2, calls.get());
+    assertTrue(primaryCancelled.get());
+    assertEquals(1.0, count("sent"));
+    assertEquals(1.0, count("won"));
+  }
+
+  @Test
+  void sinMuestrasSuficientes_noCubre() {
+    RequestHedger hedger = hedger(1.0);
+
+    StepVerifier.create(hedger.execute(() -> {
+          calls.incrementAndGet();
+          return Mono.delay(Duration.ofMillis(200)).thenReturn("lenta");
+        }))
+        .expectNext("lenta")
+        .verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(0.0, count("sent"));
+  }
+
+  @Test
+  void presupuestoAgotado_noCubre() {
+    RequestHedger hedger = hedger(0.0);
+    warmUp(hedger);
+
+    StepVerifier.create(hedger.execute(() -> calls.incrementAndGet() == 1
+            ? Mono.delay(Duration.ofMillis(200)).thenReturn("lenta")
+            : Mono.just("rápida")))
+        .expectNext("lenta")
+        .verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(0.0, count("sent"));
+  }
+
+  @Test
+  void errorDeLaCobertura_seIgnora_decideLaOriginal() {
+    RequestHedger hedger = hedger(1.0);
+    warmUp(hedger);
+
+    StepVerifier.create(hedger.execute(() -> calls.incrementAndGet() == 1
+            ? Mono.delay(Duration.ofMillis(200)).then(Mono.<String>empty())
+            : Mono.error(new IllegalStateException("boom"))))
+        // el vacío de la original es una respuesta válida
+        .verifyComplete();
+
+    assertEquals(2, calls.get());
+    assertEquals(1.0, count("sent"));
+    assertEquals(0.0, count("won"));
+  }
+
+  // ===== Helpers =====
+
+  private RequestHedger hedger(double maxExtraLoad) {
+    return new RequestHedgerRegistry(registry, true, 0.95, Duration.ofMillis(20), maxExtraLoad, 3)
+        .hedger("customers");
+  }
+
+  // latencias rápidas para estimar el percentil
+  private void warmUp(RequestHedger hedger) {
+    for (int i = 0; i < 3; i++) {
+      StepVerifier.create(hedger.execute(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    }
+  }
+
+  private double count(String result) {
+    return registry.counter("integration.hedge.requests", "name", "customers", "result", result).count();
+  }
+}
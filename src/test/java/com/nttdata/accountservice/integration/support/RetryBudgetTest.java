@@ -0,0 +1,112 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Reintentos con presupuesto y espera con jitter.
+ * Cubre: reintento de fallos transitorios (conexión, 503) hasta éxito, errores no
+ * transitorios sin reintento, máximo de intentos, presupuesto agotado y contadores
+ * attempted/succeeded/denied.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import org.springframework.http.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.io.*;
+import java.net.*;
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void falloTransitorio_seReintentaHastaResponder() {
+    RetryBudget budget = budget(10);
+
+    StepVerifier.create(budget.execute(() -> calls.incrementAndGet() < 3
+            ? Mono.error(connectionReset())
+            : Mono.just("ok")))
+        .expectNext("ok")
+        .verifyComplete();
+
+    assertEquals(3, calls.get());
+    assertEquals(2.0, count("attempted"));
+    assertEquals(1.0, count("succeeded"));
+  }
+
+  @Test
+  void errorNoTransitorio_noSeReintenta() {
+    RetryBudget budget = budget(10);
+
+    StepVerifier.create(budget.execute(() -> {
+          calls.incrementAndGet();
+          return Mono.error(status(HttpStatus.BAD_REQUEST));
+        }))
+        .expectError(WebClientResponseException.BadRequest.class)
+        .verify();
+
+    assertEquals(1, calls.get());
+    assertEquals(0.0, count("attempted"));
+  }
+
+  @Test
+  void maximoDeIntentos_devuelveElUltimoError() {
+    RetryBudget budget = budget(10);
+
+    StepVerifier.create(budget.execute(() -> {
+          calls.incrementAndGet();
+          return Mono.error(status(HttpStatus.SERVICE_UNAVAILABLE));
+        }))
+        .expectError(WebClientResponseException.ServiceUnavailable.class)
+        .verify();
+
+    assertEquals(3, calls.get());
+    assertEquals(2.0, count("attempted"));
+    assertEquals(0.0, count("succeeded"));
+  }
+
+  @Test
+  void presupuestoAgotado_noReintenta() {
+    RetryBudget budget = budget(1);
+
+    // la única ficha se gasta en el primer reintento
+    StepVerifier.create(budget.execute(() -> {
+          calls.incrementAndGet();
+          return Mono.error(status(HttpStatus.SERVICE_UNAVAILABLE));
+        }))
+        .expectError(WebClientResponseException.ServiceUnavailable.class)
+        .verify();
+
+    assertEquals(2, calls.get());
+    assertEquals(1.0, count("attempted"));
+    assertEquals(1.0, count("denied"));
+  }
+
+  // ===== Helpers =====
+
+  private RetryBudget budget(double maxTokens) {
+    return new RetryBudgetRegistry(registry, true, 3, 0.0, maxTokens, Duration.ofMillis(5), Duration.ofMillis(20))
+        .budget("customers");
+  }
+
+  private static WebClientRequestException connectionReset() {
+    return new WebClientRequestException(new IOException("Connection reset"), HttpMethod.GET,
+        URI.create("http://customers/api/v1/customers/eligibility"), HttpHeaders.EMPTY);
+  }
+
+  private static WebClientResponseException status(HttpStatus status) {
+    return WebClientResponseException.create(status.value(), status.getReasonPhrase(), HttpHeaders.EMPTY,
+        new byte[0], null);
+  }
+
+  private double count(String result) {
+    return registry.counter("integration.retry.retries", "name", "customers", "result", result).count();
+  }
+}
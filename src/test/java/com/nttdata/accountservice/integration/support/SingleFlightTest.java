@@ -0,0 +1,106 @@
+package com.nttdata.accountservice.integration.support;
+
+/*
+ * Agrupación de llamadas idénticas concurrentes.
+ * Cubre: una sola llamada por clave en curso, resultado/vacío/error compartido, liberación
+ * de la clave al terminar, claves independientes y contadores leader/coalesced.
+ */
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+import reactor.core.publisher.*;
+import reactor.test.*;
+
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+  final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  final SingleFlight flight = new SingleFlightRegistry(registry).singleFlight("customers");
+  final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void concurrentes_mismaClave_unaSolaLlamada() {
+    Sinks.One<String> response = Sinks.one();
+
+    StepVerifier.create(Mono.zip(
+            flight.execute("DNI:1", () -> call(response.asMono())),
+            flight.execute("DNI:1", () -> call(response.asMono())),
+            flight.execute("DNI:1", () -> call(response.asMono()))))
+        .then(() -> response.tryEmitValue("C1"))
+        .assertNext(t -> {
+          assertEquals("C1", t.getT1());
+          assertEquals("C1", t.getT3());
+        })
+        .verifyComplete();
+
+    assertEquals(1, calls.get());
+    assertEquals(1.0, count("leader"));
+    assertEquals(2.0, count("coalesced"));
+    // terminada la llamada, la clave queda libre
+    assertEquals(0, flight.inflightCount());
+    StepVerifier.create(flight.execute("DNI:1", () -> call(Mono.just("C1b")))).expectNext("C1b").verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void errorYVacio_seCompartenYLiberanLaClave() {
+    Sinks.One<String> failing = Sinks.one();
+    StepVerifier.create(Mono.zip(
+                flight.execute("K", () -> call(failing.asMono())),
+                flight.execute("K", () -> call(failing.asMono())))
+            .materialize())
+        .then(() -> failing.tryEmitError(new IllegalStateException("caído")))
+        .assertNext(signal -> assertEquals("caído", signal.getThrowable().getMessage()))
+        .verifyComplete();
+    assertEquals(1, calls.get());
+    assertEquals(0, flight.inflightCount());
+
+    Sinks.Empty<String> empty = Sinks.empty();
+    StepVerifier.create(Flux.merge(
+            flight.execute("K", () -> call(empty.asMono())),
+            flight.execute("K", () -> call(empty.asMono()))))
+        .then(empty::tryEmitEmpty)
+        .verifyComplete();
+    assertEquals(2, calls.get());
+  }
+
+  @Test
+  void clavesDistintas_noSeAgrupan() {
+    StepVerifier.create(Mono.zip(
+            flight.execute("A", () -> call(Mono.just("a"))),
+            flight.execute("B", () -> call(Mono.just("b")))))
+        .assertNext(t -> assertEquals("ab", t.getT1() + t.getT2()))
+        .verifyComplete();
+    assertEquals(2, calls.get());
+    assertEquals(0.0, count("coalesced"));
+  }
+
+  @Test
+  void cancelarUnSuscriptor_noCortaLaLlamadaCompartida() {
+    Sinks.One<String> response = Sinks.one();
+    Mono<String> first = flight.execute("K", () -> call(response.asMono()));
+    Mono<String> second = flight.execute("K", () -> call(response.asMono()));
+
+    StepVerifier.create(first).thenCancel().verify();
+    StepVerifier.create(second)
+        .then(() -> response.tryEmitValue("ok"))
+        .expectNext("ok")
+        .verifyComplete();
+    assertEquals(1, calls.get());
+  }
+
+  // ===== Helpers =====
+
+  private <T> Mono<T> call(Mono<T> downstream) {
+    calls.incrementAndGet();
+    return downstream;
+  }
+
+  private double count(String role) {
+    return registry.get("integration.singleflight.calls")
+        .tag("name", "customers").tag("role", role).counter().count();
+  }
+}